@@ -1,7 +1,7 @@
 #!/bin/sh
 set -ex
 
-COSBENCH_MANTA_PATH=$(find target -name 'cosbench-manta-*.jar' -print -quit)
+COSBENCH_MANTA_PATH=$(find target -name 'cosbench-manta-*.jar' ! -name '*-tests.jar' -print -quit)
 COSBENCH_MANTA_CHECKSUM=$(shasum -a256 $COSBENCH_MANTA_PATH | cut -d' ' -f1)
 
 if [ ! -f $COSBENCH_MANTA_PATH ]; then
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to resolve the Manta paths of the containers
+ * and objects named by COSBench, which happens on every operation.
+ *
+ * @since 1.1.3
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MantaPathResolverBenchmark {
+    /**
+     * Container type, either directories or buckets.
+     */
+    @Param({"directory", "buckets"})
+    private String testType;
+
+    /**
+     * Number of distinct objects whose paths are resolved in turn.
+     */
+    private static final int OBJECTS = 1024;
+
+    /**
+     * Resolver under test.
+     */
+    private MantaPathResolver resolver;
+
+    /**
+     * Object names in the form COSBench generates them.
+     */
+    private String[] objects;
+
+    /**
+     * Index of the next object to resolve.
+     */
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        if ("buckets".equals(testType)) {
+            resolver = new MantaPathResolver("/user/buckets/", true);
+        } else {
+            resolver = new MantaPathResolver("/user/stor/cosbench/1", false);
+        }
+
+        objects = new String[OBJECTS];
+
+        for (int i = 0; i < OBJECTS; i++) {
+            objects[i] = "myobjects" + (i + 1);
+        }
+    }
+
+    @Benchmark
+    public String containerPath() {
+        return resolver.containerPath("mycontainers1");
+    }
+
+    @Benchmark
+    public String objectPath() {
+        final String object = objects[next];
+        next = (next + 1) % OBJECTS;
+
+        return resolver.objectPath("mycontainers1", object);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import com.joyent.manta.client.MantaMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to turn the metadata passed to
+ * {@link MantaStorage#createMetadata} into Manta metadata.
+ *
+ * @since 1.1.3
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MetadataBenchmark {
+    /**
+     * Number of metadata entries.
+     */
+    @Param({"1", "8", "32"})
+    private int entries;
+
+    /**
+     * COSBench metadata to convert.
+     */
+    private Map<String, String> metadata;
+
+    /**
+     * Templates of the worker converting the metadata.
+     */
+    private RequestTemplates templates;
+
+    @Setup
+    public void setup() {
+        templates = new RequestTemplates(null);
+        metadata = new HashMap<>();
+
+        for (int i = 0; i < entries; i++) {
+            metadata.put("key" + i, "value" + i);
+        }
+    }
+
+    @Benchmark
+    public MantaMetadata buildMetadata() {
+        return templates.metadataOf(metadata);
+    }
+}
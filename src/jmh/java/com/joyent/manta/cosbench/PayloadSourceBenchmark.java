@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.apache.commons.io.input.NullInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of producing the content of an upload, which caps the
+ * upload throughput of a driver: reading a slice of the payload pool,
+ * generating verifiable content and generating random bytes one at a time
+ * the way {@link RandomInputStream} does.
+ *
+ * @since 1.1.3
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PayloadSourceBenchmark {
+    /**
+     * Size in bytes of each uploaded object.
+     */
+    @Param({"1048576"})
+    private long size;
+
+    /**
+     * Number of bytes requested by each read, the size of an upload buffer.
+     */
+    @Param({"16384"})
+    private int readSize;
+
+    /**
+     * Pool of off-heap slabs that the pooled content is read from.
+     */
+    private PayloadSlabPool pool;
+
+    /**
+     * Buffer that content is read into.
+     */
+    private byte[] buffer;
+
+    /**
+     * Number of objects uploaded so far, which varies their names.
+     */
+    private long objects;
+
+    @Setup
+    public void setup() {
+        pool = new PayloadSlabPool(PayloadSlabPool.DEFAULT_SIZE, 1L);
+        buffer = new byte[readSize];
+    }
+
+    @Benchmark
+    public long payloadPool() throws IOException {
+        return drain(pool.open(objects++, size, new NullInputStream(size)));
+    }
+
+    @Benchmark
+    public long verifiableContent() throws IOException {
+        return drain(new PayloadInputStream(new NullInputStream(size), objects++));
+    }
+
+    @Benchmark
+    public long randomBytes() throws IOException {
+        return drain(new RandomInputStream(size));
+    }
+
+    private long drain(final InputStream in) throws IOException {
+        long total = 0L;
+        int n;
+
+        while ((n = in.read(buffer)) != -1) {
+            total += n;
+        }
+
+        return total;
+    }
+}
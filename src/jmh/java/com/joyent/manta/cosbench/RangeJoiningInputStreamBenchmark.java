@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast {@link RangeJoiningInputStream} joins the sections of a
+ * file with different read sizes and numbers of sections. Reading from a
+ * local file isolates the cost of the stream itself from the network.
+ *
+ * @since 1.1.3
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RangeJoiningInputStreamBenchmark {
+    /**
+     * Size in bytes of the file read by every invocation.
+     */
+    private static final long SIZE = 1048576L;
+
+    /**
+     * Number of sections the file is split into.
+     */
+    @Param({"2", "64"})
+    private int sections;
+
+    /**
+     * Number of bytes requested by each read, where 1 reads a byte at a time
+     * with {@link InputStream#read()}.
+     */
+    @Param({"1", "512", "65536"})
+    private int readSize;
+
+    /**
+     * File the stream reads its sections from.
+     */
+    private Path file;
+
+    /**
+     * Buffer that reads are made into.
+     */
+    private byte[] buffer;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        file = Files.createTempFile("range-joining-benchmark", ".data");
+        buffer = new byte[readSize];
+
+        try (RandomInputStream in = new RandomInputStream(SIZE);
+             FileOutputStream out = new FileOutputStream(file.toFile())) {
+            IOUtils.copy(in, out);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long read() throws IOException {
+        long total = 0;
+
+        try (InputStream in = new RangeJoiningInputStream(SIZE, sections, file.toFile())) {
+            if (readSize == 1) {
+                int b;
+                while ((b = in.read()) != -1) {
+                    total += b;
+                }
+            } else {
+                int read;
+                while ((read = in.read(buffer, 0, readSize)) != -1) {
+                    total += read;
+                }
+            }
+        }
+
+        return total;
+    }
+
+    @Benchmark
+    public long transferTo() throws IOException {
+        try (InputStream in = new RangeJoiningInputStream(SIZE, sections, file.toFile())) {
+            return in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+}
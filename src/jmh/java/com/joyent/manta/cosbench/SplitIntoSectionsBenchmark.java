@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of splitting an object into the ranges requested by a
+ * {@link RangeJoiningInputStream}, which is paid on every ranged download.
+ *
+ * @since 1.1.3
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SplitIntoSectionsBenchmark {
+    /**
+     * Size in bytes of the object being split.
+     */
+    @Param({"1048576", "1073741824"})
+    private long size;
+
+    /**
+     * Number of sections the object is split into.
+     */
+    @Param({"2", "16", "1024"})
+    private int sections;
+
+    @Benchmark
+    public RangeJoiningInputStream.Range[] split() {
+        return RangeJoiningInputStream.splitIntoSections(size, sections);
+    }
+}
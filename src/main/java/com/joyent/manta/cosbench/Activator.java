@@ -35,5 +35,6 @@ public class Activator implements BundleActivator {
      */
     public void stop(final BundleContext bundleContext) throws Exception {
         LogFactory.getSystemLogger().info("Stopping Manta adapter");
+        MantaClientRegistry.shared().closeAll();
     }
 }
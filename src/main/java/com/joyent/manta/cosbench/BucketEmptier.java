@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import com.intel.cosbench.log.Logger;
+import com.joyent.manta.exception.MantaClientHttpResponseException;
+import com.joyent.manta.exception.MantaErrorCode;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Empties a bucket by listing its objects and deleting them as a pipeline.
+ * The listing is read on the calling thread and feeds a bounded queue that a
+ * pool of deleter threads drains, so listing and deleting overlap and
+ * memory use stays constant no matter how many objects the bucket holds.
+ * Deletes can be limited to a maximum rate, and objects that are already
+ * gone when they are deleted are counted rather than treated as failures.
+ *
+ * <p>The first failure stops the listing and every deleter, and is thrown
+ * to the caller once all deleters have stopped.</p>
+ *
+ * @since 1.1.3
+ */
+class BucketEmptier {
+    /**
+     * Default number of objects deleted at the same time.
+     */
+    static final int DEFAULT_PARALLELISM = 16;
+
+    /**
+     * Number of listed objects queued per deleter thread.
+     */
+    private static final int QUEUE_CAPACITY_PER_DELETER = 64;
+
+    /**
+     * Number of deleted objects between progress messages.
+     */
+    private static final long PROGRESS_INTERVAL = 10000L;
+
+    /**
+     * Milliseconds to wait on the queue before checking for failures.
+     */
+    private static final long POLL_MILLIS = 100L;
+
+    /**
+     * Listing entry type of bucket objects.
+     */
+    private static final String BUCKET_OBJECT_TYPE = "bucketobject";
+
+    /**
+     * Function that deletes a single object.
+     */
+    @FunctionalInterface
+    interface ObjectDeleter {
+        /**
+         * Deletes an object.
+         *
+         * @param path path of the object
+         * @throws IOException when the object can't be deleted
+         */
+        void delete(String path) throws IOException;
+    }
+
+    /**
+     * Function that deletes each object.
+     */
+    private final ObjectDeleter deleter;
+
+    /**
+     * Maximum number of objects deleted at the same time.
+     */
+    private final int parallelism;
+
+    /**
+     * Paces deletes to the configured rate.
+     */
+    private final RequestPacer pacer;
+
+    /**
+     * Logger for progress messages or null when logging is disabled.
+     */
+    private final Logger logger;
+
+    /**
+     * Number of objects listed so far.
+     */
+    private final AtomicLong listed = new AtomicLong();
+
+    /**
+     * Number of objects deleted so far.
+     */
+    private final AtomicLong deleted = new AtomicLong();
+
+    /**
+     * Number of listed objects that were already gone when deleted.
+     */
+    private final AtomicLong missing = new AtomicLong();
+
+    /**
+     * First failure of the listing or of a deleter.
+     */
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param deleter function that deletes each object
+     * @param parallelism maximum number of objects deleted at the same time
+     * @param deletesPerSecond maximum number of deletes started per second or zero for no limit
+     * @param logger logger for progress messages or null when logging is disabled
+     */
+    BucketEmptier(final ObjectDeleter deleter,
+                  final int parallelism,
+                  final int deletesPerSecond,
+                  final Logger logger) {
+        Objects.requireNonNull(deleter);
+
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Bucket delete parallelism must be greater than zero");
+        }
+
+        this.deleter = deleter;
+        this.parallelism = parallelism;
+        this.pacer = new RequestPacer(deletesPerSecond);
+        this.logger = logger;
+    }
+
+    /**
+     * Deletes every object in a bucket listing.
+     *
+     * @param bucket name of the bucket for progress messages
+     * @param listing entries of the bucket listing
+     * @param objectPath function resolving the path of an object from its name
+     * @throws IOException when the listing can't be read or an object can't be deleted
+     */
+    void empty(final String bucket,
+               final Iterator<Map<String, Object>> listing,
+               final Function<String, String> objectPath) throws IOException {
+        final BlockingQueue<String> queue = new ArrayBlockingQueue<>(parallelism * QUEUE_CAPACITY_PER_DELETER);
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        final List<Future<?>> deleters = new ArrayList<>(parallelism);
+        final AtomicBoolean listingDone = new AtomicBoolean();
+
+        try {
+            for (int i = 0; i < parallelism; i++) {
+                deleters.add(executor.submit(() -> drain(queue, listingDone)));
+            }
+
+            try {
+                list(listing, objectPath, queue);
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                listingDone.set(true);
+            }
+
+            for (Future<?> future : deleters) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while emptying bucket " + bucket);
+        } catch (ExecutionException e) {
+            failure.compareAndSet(null, new IOException("Unable to empty bucket " + bucket, e.getCause()));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (logger != null) {
+            logger.info("Emptied bucket {}: {} objects listed, {} deleted, {} already gone",
+                    new Object[] {bucket, listed.get(), deleted.get(), missing.get()});
+        }
+
+        rethrowFailure();
+    }
+
+    /**
+     * @return number of objects listed so far
+     */
+    long getListed() {
+        return listed.get();
+    }
+
+    /**
+     * @return number of objects deleted so far
+     */
+    long getDeleted() {
+        return deleted.get();
+    }
+
+    /**
+     * @return number of listed objects that were already gone when deleted
+     */
+    long getMissing() {
+        return missing.get();
+    }
+
+    /**
+     * Determines if a delete failed because the object was already gone.
+     *
+     * @param e exception thrown by the delete
+     * @return true when Manta reported that the object doesn't exist
+     */
+    static boolean isMissing(final IOException e) {
+        if (!(e instanceof MantaClientHttpResponseException)) {
+            return false;
+        }
+
+        final MantaErrorCode code = ((MantaClientHttpResponseException)e).getServerCode();
+
+        return MantaErrorCode.OBJECT_NOT_FOUND_ERROR.equals(code)
+                || MantaErrorCode.RESOURCE_NOT_FOUND_ERROR.equals(code);
+    }
+
+    /**
+     * Queues the path of every object in the listing until the listing ends
+     * or a deleter fails.
+     *
+     * @param listing entries of the bucket listing
+     * @param objectPath function resolving the path of an object from its name
+     * @param queue queue of paths to delete
+     * @throws InterruptedException when interrupted while waiting for space in the queue
+     */
+    private void list(final Iterator<Map<String, Object>> listing,
+                      final Function<String, String> objectPath,
+                      final BlockingQueue<String> queue) throws InterruptedException {
+        while (failure.get() == null && listing.hasNext()) {
+            final Map<String, Object> next = listing.next();
+
+            if (!BUCKET_OBJECT_TYPE.equals(Objects.toString(next.get("type")))) {
+                continue;
+            }
+
+            final String path = objectPath.apply(Objects.toString(next.get("name")));
+            listed.incrementAndGet();
+
+            while (!queue.offer(path, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (failure.get() != null) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes queued objects until the listing is done and the queue is
+     * empty, or until anything fails.
+     *
+     * @param queue queue of paths to delete
+     * @param listingDone true once the listing has ended
+     * @return null
+     * @throws InterruptedException when interrupted while waiting on the queue
+     */
+    private Void drain(final BlockingQueue<String> queue, final AtomicBoolean listingDone)
+            throws InterruptedException {
+        while (failure.get() == null) {
+            final String path = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+
+            if (path == null) {
+                if (listingDone.get() && queue.isEmpty()) {
+                    return null;
+                }
+
+                continue;
+            }
+
+            pacer.await();
+
+            try {
+                deleter.delete(path);
+                reportProgress(deleted.incrementAndGet());
+            } catch (IOException e) {
+                if (isMissing(e)) {
+                    missing.incrementAndGet();
+                } else {
+                    failure.compareAndSet(null, e);
+                }
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Logs the progress of emptying the bucket at regular intervals.
+     *
+     * @param deletedSoFar number of objects deleted so far
+     */
+    private void reportProgress(final long deletedSoFar) {
+        if (logger != null && deletedSoFar % PROGRESS_INTERVAL == 0) {
+            logger.info("Emptying bucket: {} objects listed, {} deleted, {} already gone",
+                    new Object[] {listed.get(), deletedSoFar, missing.get()});
+        }
+    }
+
+    /**
+     * Throws the first failure, if any.
+     *
+     * @throws IOException when the failure was an I/O failure
+     */
+    private void rethrowFailure() throws IOException {
+        final Exception e = failure.get();
+
+        if (e instanceof IOException) {
+            throw (IOException)e;
+        }
+
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException)e;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Warms up the connection pool of a Manta client before a benchmark starts.
+ * A number of cheap authenticated requests are sent at the same time so that
+ * each of them needs a connection of its own, which makes the pool open that
+ * many connections and pay for their TCP and TLS handshakes and the signer
+ * setup up front. The same number of requests is then sent again, which
+ * validates that the connections are kept alive and shows how much faster a
+ * request is on a hot pool.
+ *
+ * <p>Failed requests are counted rather than thrown, since warming up is only
+ * an optimization.</p>
+ *
+ * @since 1.1.3
+ */
+class ConnectionWarmer {
+    /**
+     * Function that sends a single cheap authenticated request.
+     */
+    @FunctionalInterface
+    interface WarmUpRequest {
+        /**
+         * Sends the request.
+         *
+         * @throws IOException when the request fails
+         */
+        void send() throws IOException;
+    }
+
+    /**
+     * Function that sends each warm-up request.
+     */
+    private final WarmUpRequest request;
+
+    /**
+     * Number of connections to open.
+     */
+    private final int connections;
+
+    /**
+     * Latency histograms that each request is recorded in, or null when
+     * latency histograms are disabled.
+     */
+    private final LatencyHistograms histograms;
+
+    /**
+     * Total nanoseconds spent in the requests that opened the connections.
+     */
+    private final AtomicLong coldNanos = new AtomicLong();
+
+    /**
+     * Total nanoseconds spent in the requests sent on the opened connections.
+     */
+    private final AtomicLong warmNanos = new AtomicLong();
+
+    /**
+     * Number of requests that failed.
+     */
+    private final AtomicInteger failures = new AtomicInteger();
+
+    /**
+     * Nanoseconds that the whole warm-up took.
+     */
+    private long elapsedNanos;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param request function that sends each warm-up request
+     * @param connections number of connections to open
+     * @param histograms latency histograms to record each request in or null when disabled
+     */
+    ConnectionWarmer(final WarmUpRequest request,
+                     final int connections,
+                     final LatencyHistograms histograms) {
+        Objects.requireNonNull(request);
+
+        if (connections <= 0) {
+            throw new IllegalArgumentException("Number of warm-up connections must be greater than zero");
+        }
+
+        this.request = request;
+        this.connections = connections;
+        this.histograms = histograms;
+    }
+
+    /**
+     * Opens the connections and then sends a request over each of them.
+     *
+     * @throws InterruptedIOException when interrupted while warming up
+     */
+    void warmUp() throws InterruptedIOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(connections);
+        final long start = System.nanoTime();
+
+        try {
+            sendAtOnce(executor, coldNanos);
+            sendAtOnce(executor, warmNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while warming up connections");
+        } finally {
+            executor.shutdownNow();
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * @return number of connections opened
+     */
+    int getConnections() {
+        return connections;
+    }
+
+    /**
+     * @return nanoseconds that the whole warm-up took
+     */
+    long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return average nanoseconds of the requests that opened the connections
+     */
+    long getAverageColdNanos() {
+        return coldNanos.get() / connections;
+    }
+
+    /**
+     * @return average nanoseconds of the requests sent on the opened connections
+     */
+    long getAverageWarmNanos() {
+        return warmNanos.get() / connections;
+    }
+
+    /**
+     * @return number of requests that failed
+     */
+    int getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Sends one request per connection, releasing them all at the same time
+     * so that none of them can reuse the connection of another.
+     *
+     * @param executor pool with one thread per connection
+     * @param total total nanoseconds spent in the requests
+     * @throws InterruptedException when interrupted while waiting for the requests
+     */
+    private void sendAtOnce(final ExecutorService executor, final AtomicLong total)
+            throws InterruptedException {
+        final CountDownLatch ready = new CountDownLatch(connections);
+        final CountDownLatch go = new CountDownLatch(1);
+        final List<Future<?>> requests = new ArrayList<>(connections);
+
+        for (int i = 0; i < connections; i++) {
+            requests.add(executor.submit(() -> {
+                ready.countDown();
+                go.await();
+                send(total);
+                return null;
+            }));
+        }
+
+        ready.await();
+        go.countDown();
+
+        for (Future<?> future : requests) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                failures.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Sends a single request, timing it and counting it when it fails.
+     *
+     * @param total total nanoseconds spent in the requests
+     */
+    private void send(final AtomicLong total) {
+        final long start = System.nanoTime();
+        Throwable failure = null;
+
+        try {
+            request.send();
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            failures.incrementAndGet();
+        } finally {
+            final long nanos = System.nanoTime() - start;
+            total.addAndGet(nanos);
+
+            if (histograms != null) {
+                histograms.record(MantaOperation.WARM_UP, -1L, failure, nanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import com.joyent.manta.cosbench.config.RateSchedule;
+
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Limits on operations per second, uploaded bytes per second and downloaded
+ * bytes per second that every worker in a driver shares. Workers with the
+ * same limits share one instance, which is reference counted so that the
+ * schedules of a later stage start over once every worker of the previous
+ * one has been disposed.
+ *
+ * @since 1.1.3
+ */
+final class DriverThrottle {
+    /**
+     * Throttles in use keyed by their limits.
+     */
+    private static final Map<List<RateSchedule>, DriverThrottle> REGISTERED = new HashMap<>();
+
+    /**
+     * Limits this throttle is registered under.
+     */
+    private final List<RateSchedule> key;
+
+    /**
+     * Bucket of operations or null when operations aren't limited.
+     */
+    private final TokenBucket operations;
+
+    /**
+     * Bucket of uploaded bytes or null when uploads aren't limited.
+     */
+    private final TokenBucket putBytes;
+
+    /**
+     * Bucket of downloaded bytes or null when downloads aren't limited.
+     */
+    private final TokenBucket getBytes;
+
+    /**
+     * Number of workers that have acquired and not yet released the throttle.
+     */
+    private int references = 0;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param key limits this throttle is registered under
+     * @param operations operations per second or null for no limit
+     * @param putBytes uploaded bytes per second or null for no limit
+     * @param getBytes downloaded bytes per second or null for no limit
+     */
+    private DriverThrottle(final List<RateSchedule> key,
+                           final RateSchedule operations,
+                           final RateSchedule putBytes,
+                           final RateSchedule getBytes) {
+        this.key = key;
+        this.operations = bucketOf(operations);
+        this.putBytes = bucketOf(putBytes);
+        this.getBytes = bucketOf(getBytes);
+    }
+
+    /**
+     * Creates a bucket for a schedule.
+     *
+     * @param schedule schedule or null for no limit
+     * @return bucket or null for no limit
+     */
+    private static TokenBucket bucketOf(final RateSchedule schedule) {
+        if (schedule == null) {
+            return null;
+        }
+
+        return new TokenBucket(schedule);
+    }
+
+    /**
+     * Returns the throttle shared by the workers with the specified limits,
+     * creating it if no worker is using one. Every call must be balanced by a
+     * call to {@link #release(DriverThrottle)}.
+     *
+     * @param operations operations per second or null for no limit
+     * @param putBytes uploaded bytes per second or null for no limit
+     * @param getBytes downloaded bytes per second or null for no limit
+     * @return shared throttle
+     */
+    static synchronized DriverThrottle acquire(final RateSchedule operations,
+                                               final RateSchedule putBytes,
+                                               final RateSchedule getBytes) {
+        final List<RateSchedule> key = Arrays.asList(operations, putBytes, getBytes);
+        DriverThrottle throttle = REGISTERED.get(key);
+
+        if (throttle == null) {
+            throttle = new DriverThrottle(key, operations, putBytes, getBytes);
+            REGISTERED.put(key, throttle);
+        }
+
+        throttle.references++;
+
+        return throttle;
+    }
+
+    /**
+     * Releases a throttle previously acquired, forgetting it once no worker
+     * is using it.
+     *
+     * @param throttle throttle to release
+     * @return true when the caller was the last worker using the throttle
+     */
+    static synchronized boolean release(final DriverThrottle throttle) {
+        throttle.references--;
+
+        if (throttle.references > 0) {
+            return false;
+        }
+
+        REGISTERED.remove(throttle.key, throttle);
+        return true;
+    }
+
+    /**
+     * Waits until another operation may start.
+     *
+     * @return nanoseconds spent waiting
+     * @throws InterruptedIOException when interrupted while waiting
+     */
+    long awaitOperation() throws InterruptedIOException {
+        if (operations == null) {
+            return 0L;
+        }
+
+        return operations.acquire(1L);
+    }
+
+    /**
+     * Limits the bytes read from the content of an upload.
+     *
+     * @param content content of the upload
+     * @return limited content or null when uploads aren't limited
+     */
+    ThrottledInputStream meterPut(final InputStream content) {
+        if (putBytes == null) {
+            return null;
+        }
+
+        return new ThrottledInputStream(content, putBytes);
+    }
+
+    /**
+     * Limits the bytes read from a download.
+     *
+     * @param download stream of the download
+     * @return limited stream or null when downloads aren't limited
+     */
+    ThrottledInputStream meterGet(final InputStream download) {
+        if (getBytes == null) {
+            return null;
+        }
+
+        return new ThrottledInputStream(download, getBytes);
+    }
+
+    /**
+     * @return bucket of operations or null when operations aren't limited
+     */
+    TokenBucket getOperations() {
+        return operations;
+    }
+
+    /**
+     * @return bucket of uploaded bytes or null when uploads aren't limited
+     */
+    TokenBucket getPutBytes() {
+        return putBytes;
+    }
+
+    /**
+     * @return bucket of downloaded bytes or null when downloads aren't limited
+     */
+    TokenBucket getGetBytes() {
+        return getBytes;
+    }
+}
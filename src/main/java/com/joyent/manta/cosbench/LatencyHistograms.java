@@ -0,0 +1,398 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import com.joyent.manta.exception.MantaClientHttpResponseException;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Latency histograms of Manta operations broken down by operation type,
+ * object size class and outcome. Recording is lock free: histograms are
+ * created on first use with a compare-and-set and values are recorded into
+ * {@link ConcurrentHistogram} instances.
+ *
+ * <p>Each worker records into its own instance so that workers don't contend
+ * on the same histograms. When a worker is disposed its histograms are merged
+ * into the driver-wide totals of its summary file, and the totals are written
+ * to that file. The totals of a file are reference counted like
+ * {@link DriverThrottle}, so they start over once every worker writing to
+ * the file has been disposed, and a later stage doesn't summarize the
+ * operations of the stages before it.</p>
+ *
+ * @since 1.1.3
+ */
+final class LatencyHistograms {
+    /**
+     * Outcome recorded for operations that completed successfully.
+     */
+    static final String SUCCESS = "OK";
+
+    /**
+     * Size class label of operations whose object size is unknown.
+     */
+    static final String UNKNOWN_SIZE = "unknown";
+
+    /**
+     * Upper bounds (inclusive) in bytes of each object size class.
+     */
+    private static final long[] SIZE_CLASS_BOUNDS = {
+            4096L, 65536L, 1048576L, 16777216L, 268435456L
+    };
+
+    /**
+     * Labels of each size class, the last one being for objects larger than
+     * every bound and the one after for unknown sizes.
+     */
+    private static final String[] SIZE_CLASS_LABELS = {
+            "0-4KiB", "4KiB-64KiB", "64KiB-1MiB", "1MiB-16MiB", "16MiB-256MiB", "256MiB+", UNKNOWN_SIZE
+    };
+
+    /**
+     * Number of size classes including the class for unknown sizes.
+     */
+    private static final int SIZE_CLASSES = SIZE_CLASS_LABELS.length;
+
+    /**
+     * Number of operation types.
+     */
+    private static final int OPERATIONS = MantaOperation.values().length;
+
+    /**
+     * Number of significant decimal digits kept by each histogram.
+     */
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    /**
+     * Percentiles written to the summary file.
+     */
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+
+    /**
+     * First line of the summary file.
+     */
+    private static final String SUMMARY_HEADER =
+            "operation,size_class,outcome,count,min_us,mean_us,p50_us,p90_us,p99_us,p99.9_us,max_us\n";
+
+    /**
+     * Number of nanoseconds in a microsecond, the unit of the summary file.
+     */
+    private static final double NANOS_PER_MICRO = TimeUnit.MICROSECONDS.toNanos(1L);
+
+    /**
+     * Totals of the workers in the driver keyed by the absolute path of
+     * their summary file. Guarded by the class.
+     */
+    private static final Map<Path, DriverTotals> DRIVER_TOTALS = new HashMap<>();
+
+    /**
+     * Totals of the disposed workers writing to one summary file.
+     */
+    private static final class DriverTotals {
+        /**
+         * Histograms of every disposed worker.
+         */
+        private final LatencyHistograms histograms = new LatencyHistograms();
+
+        /**
+         * Number of workers that have acquired and not yet published the totals.
+         */
+        private int references = 0;
+    }
+
+    /**
+     * Histograms keyed by outcome and indexed by operation and size class.
+     */
+    private final ConcurrentMap<String, AtomicReferenceArray<Histogram>> outcomes =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Histograms of successful operations, kept out of the map to avoid a lookup.
+     */
+    private final AtomicReferenceArray<Histogram> successes = newTable();
+
+    /**
+     * Creates a new empty set of histograms.
+     */
+    LatencyHistograms() {
+        outcomes.put(SUCCESS, successes);
+    }
+
+    /**
+     * Records the latency of an operation.
+     *
+     * @param operation type of operation
+     * @param size object size in bytes or a negative value when unknown
+     * @param failure exception thrown by the operation or null when it succeeded
+     * @param nanos latency of the operation in nanoseconds
+     */
+    void record(final MantaOperation operation, final long size, final Throwable failure, final long nanos) {
+        if (failure == null) {
+            recordOutcome(operation, size, SUCCESS, nanos);
+        } else {
+            recordOutcome(operation, size, outcomeOf(failure), nanos);
+        }
+    }
+
+    /**
+     * Records the latency of an operation with an explicit outcome.
+     *
+     * @param operation type of operation
+     * @param size object size in bytes or a negative value when unknown
+     * @param outcome {@link #SUCCESS} or a label describing why the operation didn't succeed
+     * @param nanos latency of the operation in nanoseconds
+     */
+    void recordOutcome(final MantaOperation operation, final long size, final String outcome, final long nanos) {
+        final AtomicReferenceArray<Histogram> table;
+
+        if (SUCCESS.equals(outcome)) {
+            table = successes;
+        } else {
+            table = outcomes.computeIfAbsent(outcome, k -> newTable());
+        }
+
+        histogram(table, operation.ordinal() * SIZE_CLASSES + sizeClass(size))
+                .recordValue(Math.max(0L, nanos));
+    }
+
+    /**
+     * Adds every recorded value of another set of histograms to this one.
+     *
+     * @param other histograms to add
+     */
+    void add(final LatencyHistograms other) {
+        for (Map.Entry<String, AtomicReferenceArray<Histogram>> entry : other.outcomes.entrySet()) {
+            final AtomicReferenceArray<Histogram> source = entry.getValue();
+            final AtomicReferenceArray<Histogram> target =
+                    outcomes.computeIfAbsent(entry.getKey(), k -> newTable());
+
+            for (int i = 0; i < source.length(); i++) {
+                final Histogram histogram = source.get(i);
+
+                if (histogram != null) {
+                    histogram(target, i).add(histogram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the histogram of an operation, object size class and outcome.
+     *
+     * @param operation type of operation
+     * @param sizeClass label of the size class
+     * @param outcome {@link #SUCCESS} or the outcome of a failed operation
+     * @return histogram of latencies in nanoseconds or null when nothing was recorded
+     */
+    Histogram histogram(final MantaOperation operation, final String sizeClass, final String outcome) {
+        final AtomicReferenceArray<Histogram> table = outcomes.get(outcome);
+
+        if (table == null) {
+            return null;
+        }
+
+        for (int i = 0; i < SIZE_CLASSES; i++) {
+            if (SIZE_CLASS_LABELS[i].equals(sizeClass)) {
+                return table.get(operation.ordinal() * SIZE_CLASSES + i);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes a summary of every histogram with recorded values as comma
+     * separated values with latencies in microseconds.
+     *
+     * @param writer destination of the summary
+     * @throws IOException when the summary can't be written
+     */
+    void writeSummary(final Writer writer) throws IOException {
+        writer.write(SUMMARY_HEADER);
+
+        final Map<String, AtomicReferenceArray<Histogram>> sorted = new TreeMap<>(outcomes);
+
+        for (MantaOperation operation : MantaOperation.values()) {
+            for (int sizeClass = 0; sizeClass < SIZE_CLASSES; sizeClass++) {
+                for (Map.Entry<String, AtomicReferenceArray<Histogram>> entry : sorted.entrySet()) {
+                    final Histogram histogram = entry.getValue().get(operation.ordinal() * SIZE_CLASSES + sizeClass);
+
+                    if (histogram == null || histogram.getTotalCount() == 0) {
+                        continue;
+                    }
+
+                    final Histogram snapshot = histogram.copy();
+                    final StringBuilder line = new StringBuilder();
+                    line.append(operation).append(',')
+                            .append(SIZE_CLASS_LABELS[sizeClass]).append(',')
+                            .append(entry.getKey()).append(',')
+                            .append(snapshot.getTotalCount()).append(',')
+                            .append(micros(snapshot.getMinValue())).append(',')
+                            .append(micros(snapshot.getMean()));
+
+                    for (double percentile : PERCENTILES) {
+                        line.append(',').append(micros(snapshot.getValueAtPercentile(percentile)));
+                    }
+
+                    line.append(',').append(micros(snapshot.getMaxValue())).append('\n');
+                    writer.write(line.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers a worker that will publish its histograms to a summary file.
+     * Every call must be balanced by a call to
+     * {@link #publish(LatencyHistograms, Path)}.
+     *
+     * @param summaryFile path of the summary file
+     */
+    static synchronized void acquire(final Path summaryFile) {
+        DRIVER_TOTALS.computeIfAbsent(summaryFile.toAbsolutePath(), k -> new DriverTotals()).references++;
+    }
+
+    /**
+     * Merges the histograms of a worker into the driver-wide totals of its
+     * summary file and rewrites the file with the new totals. The file is
+     * replaced atomically so that readers never see a partial summary. The
+     * totals are forgotten once every worker that acquired them has published.
+     *
+     * @param worker histograms recorded by the worker
+     * @param summaryFile path of the summary file
+     * @throws IOException when the summary can't be written
+     */
+    static synchronized void publish(final LatencyHistograms worker, final Path summaryFile) throws IOException {
+        final Path absolute = summaryFile.toAbsolutePath();
+        final DriverTotals totals = DRIVER_TOTALS.computeIfAbsent(absolute, k -> new DriverTotals());
+
+        try {
+            totals.histograms.add(worker);
+            write(totals.histograms, absolute);
+        } finally {
+            totals.references--;
+
+            if (totals.references <= 0) {
+                DRIVER_TOTALS.remove(absolute, totals);
+            }
+        }
+    }
+
+    /**
+     * Replaces a summary file with the summary of a set of histograms.
+     *
+     * @param histograms histograms to summarize
+     * @param absolute absolute path of the summary file
+     * @throws IOException when the summary can't be written
+     */
+    private static void write(final LatencyHistograms histograms, final Path absolute) throws IOException {
+        final Path directory = absolute.getParent();
+
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+
+        final Path temp = Files.createTempFile(directory, absolute.getFileName().toString(), ".tmp");
+
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            histograms.writeSummary(writer);
+        }
+
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Finds the size class of an object.
+     *
+     * @param size object size in bytes or a negative value when unknown
+     * @return index of the size class
+     */
+    static int sizeClass(final long size) {
+        if (size < 0) {
+            return SIZE_CLASSES - 1;
+        }
+
+        for (int i = 0; i < SIZE_CLASS_BOUNDS.length; i++) {
+            if (size <= SIZE_CLASS_BOUNDS[i]) {
+                return i;
+            }
+        }
+
+        return SIZE_CLASS_BOUNDS.length;
+    }
+
+    /**
+     * Determines the outcome of a failed operation: the Manta error code when
+     * Manta returned one and the exception type otherwise.
+     *
+     * @param failure exception thrown by the operation
+     * @return outcome label
+     */
+    static String outcomeOf(final Throwable failure) {
+        Throwable root = failure;
+
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MantaClientHttpResponseException
+                    && ((MantaClientHttpResponseException)cause).getServerCode() != null) {
+                return ((MantaClientHttpResponseException)cause).getServerCode().name();
+            }
+
+            root = cause;
+        }
+
+        return root.getClass().getSimpleName();
+    }
+
+    /**
+     * Returns the histogram at an index, creating it if needed.
+     *
+     * @param table table of histograms
+     * @param index index of the histogram
+     * @return histogram
+     */
+    private static Histogram histogram(final AtomicReferenceArray<Histogram> table, final int index) {
+        Histogram histogram = table.get(index);
+
+        if (histogram == null) {
+            table.compareAndSet(index, null, new ConcurrentHistogram(SIGNIFICANT_DIGITS));
+            histogram = table.get(index);
+        }
+
+        return histogram;
+    }
+
+    /**
+     * @return empty table with a slot for each operation and size class
+     */
+    private static AtomicReferenceArray<Histogram> newTable() {
+        return new AtomicReferenceArray<>(OPERATIONS * SIZE_CLASSES);
+    }
+
+    /**
+     * @param nanos latency in nanoseconds
+     * @return latency in microseconds formatted with one decimal
+     */
+    private static String micros(final double nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / NANOS_PER_MICRO);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Decides which entries of a directory or bucket listing are read and reads
+ * them. Listings are streamed by the client a page at a time, and entries are
+ * counted and dropped as they are read, so memory use stays constant no
+ * matter how many entries a container holds. Only entries whose name starts
+ * with the prefix are counted, and reading stops once the limit is reached,
+ * which also stops any further pages from being requested.
+ *
+ * <p>The time spent waiting on the listing is reported for every
+ * {@link #PAGE_SIZE} entries read, which is the number of entries the client
+ * requests per page. Every page request therefore falls in exactly one
+ * reported page, although pages of a directory listing after the first
+ * repeat the last entry of the page before them, which the client drops, so
+ * reported pages line up with requests only approximately.</p>
+ *
+ * <p>Instances are immutable.</p>
+ *
+ * @since 1.1.3
+ */
+final class ListingPolicy {
+    /**
+     * Number of entries the client requests per page of a listing.
+     */
+    static final int PAGE_SIZE = 1024;
+
+    /**
+     * Policy reading every entry of a listing.
+     */
+    static final ListingPolicy ALL = new ListingPolicy(null, null);
+
+    /**
+     * Receives the time spent reading each page of a listing.
+     */
+    @FunctionalInterface
+    interface PageListener {
+        /**
+         * Called once a page of a listing has been read.
+         *
+         * @param entries number of entries in the page
+         * @param nanos time spent waiting on the listing for the page
+         */
+        void pageRead(int entries, long nanos);
+    }
+
+    /**
+     * Prefix that counted entry names start with or null to count every entry.
+     */
+    private final String prefix;
+
+    /**
+     * Maximum number of entries counted by a listing or null for no limit.
+     */
+    private final Long limit;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param prefix prefix that counted entry names start with or null to count every entry
+     * @param limit maximum number of entries counted by a listing or null for no limit
+     */
+    ListingPolicy(final String prefix, final Long limit) {
+        if (limit != null && limit <= 0L) {
+            throw new IllegalArgumentException("List limit must be greater than zero");
+        }
+
+        this.prefix = prefix;
+        this.limit = limit;
+    }
+
+    /**
+     * Reads a listing until it ends or the limit is reached.
+     *
+     * @param listing entries of the listing
+     * @param listener receiver of the time spent reading each page
+     * @return number of entries counted
+     */
+    long drain(final Iterator<Map<String, Object>> listing, final PageListener listener) {
+        long counted = 0L;
+        int pageEntries = 0;
+        long pageNanos = 0L;
+        boolean more = true;
+
+        while (more) {
+            final long before = System.nanoTime();
+            more = listing.hasNext();
+            Map<String, Object> entry = null;
+            if (more) {
+                entry = listing.next();
+            }
+            pageNanos += System.nanoTime() - before;
+
+            if (entry != null) {
+                pageEntries++;
+
+                if (matches(entry)) {
+                    counted++;
+                    more = limit == null || counted < limit;
+                }
+            }
+
+            // Finding the end of a listing that ends on a page boundary, or
+            // is empty, still costs a request
+            if (pageEntries == PAGE_SIZE || (!more && (pageEntries > 0 || entry == null))) {
+                listener.pageRead(pageEntries, pageNanos);
+                pageEntries = 0;
+                pageNanos = 0L;
+            }
+        }
+
+        return counted;
+    }
+
+    /**
+     * Determines if an entry is counted.
+     *
+     * @param entry listing entry
+     * @return true when the name of the entry starts with the prefix
+     */
+    private boolean matches(final Map<String, Object> entry) {
+        return prefix == null || Objects.toString(entry.get("name")).startsWith(prefix);
+    }
+
+    /**
+     * @return prefix that counted entry names start with or null to count every entry
+     */
+    String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return maximum number of entries counted by a listing or null for no limit
+     */
+    Long getLimit() {
+        return limit;
+    }
+}
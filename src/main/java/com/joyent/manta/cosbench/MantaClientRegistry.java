@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import com.joyent.manta.client.MantaClient;
+import com.joyent.manta.config.ConfigContext;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Reference counted registry of {@link MantaClient} instances shared by all
+ * of the workers in a driver. Workers with the same effective configuration
+ * share one client, and with it one connection pool, one set of TLS sessions
+ * and one copy of the signing key. A client is closed when the last worker
+ * using it releases it, or when the bundle is stopped.
+ *
+ * @since 1.1.3
+ */
+final class MantaClientRegistry {
+    /**
+     * Registry shared by the whole driver.
+     */
+    private static final MantaClientRegistry SHARED = new MantaClientRegistry();
+
+    /**
+     * Registered clients keyed by their effective configuration.
+     */
+    private final Map<List<Object>, Registration> clients = new HashMap<>();
+
+    /**
+     * Creates the client of a configuration that no worker is using yet.
+     */
+    private final Function<ConfigContext, MantaClient> clientFactory;
+
+    /**
+     * A registered client and the number of workers using it.
+     */
+    private static final class Registration {
+        /**
+         * Shared client.
+         */
+        private final MantaClient client;
+
+        /**
+         * Number of workers that have acquired and not yet released the client.
+         */
+        private int references = 0;
+
+        /**
+         * True once a worker has warmed up the connections of the client.
+         */
+        private boolean warmedUp = false;
+
+        /**
+         * Creates a new registration.
+         *
+         * @param client shared client
+         */
+        Registration(final MantaClient client) {
+            this.client = client;
+        }
+    }
+
+    /**
+     * Creates a new registry of {@link MantaClient} instances.
+     */
+    MantaClientRegistry() {
+        this(MantaClient::new);
+    }
+
+    /**
+     * Creates a new registry.
+     *
+     * @param clientFactory creates the client of a configuration that no worker is using yet
+     */
+    MantaClientRegistry(final Function<ConfigContext, MantaClient> clientFactory) {
+        this.clientFactory = clientFactory;
+    }
+
+    /**
+     * @return the registry shared by the whole driver
+     */
+    static MantaClientRegistry shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the client for the specified configuration, creating it if no
+     * worker is using one with the same configuration. Every call must be
+     * balanced by a call to {@link #release(MantaClient)}.
+     *
+     * @param context effective configuration of the client
+     * @return shared client
+     */
+    synchronized MantaClient acquire(final ConfigContext context) {
+        final List<Object> key = keyOf(context);
+        Registration registration = clients.get(key);
+
+        if (registration == null) {
+            registration = new Registration(clientFactory.apply(context));
+            clients.put(key, registration);
+        }
+
+        registration.references++;
+
+        return registration.client;
+    }
+
+    /**
+     * Releases a client previously acquired from this registry, closing it
+     * when no other worker is using it. Unknown clients are ignored.
+     *
+     * @param client client to release
+     */
+    synchronized void release(final MantaClient client) {
+        final Iterator<Registration> itr = clients.values().iterator();
+
+        while (itr.hasNext()) {
+            final Registration registration = itr.next();
+
+            if (registration.client == client) {
+                registration.references--;
+
+                if (registration.references <= 0) {
+                    itr.remove();
+                    client.closeQuietly();
+                }
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * Claims the warm-up of a client's connections, so that workers sharing a
+     * client only warm up its connection pool once.
+     *
+     * @param client client to warm up
+     * @return true when the caller should warm up the client, false when
+     *         another worker already has or the client isn't registered
+     */
+    synchronized boolean claimWarmUp(final MantaClient client) {
+        for (Registration registration : clients.values()) {
+            if (registration.client == client) {
+                final boolean claimed = !registration.warmedUp;
+                registration.warmedUp = true;
+                return claimed;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Closes every registered client regardless of how many workers are using it.
+     */
+    synchronized void closeAll() {
+        for (Registration registration : clients.values()) {
+            registration.client.closeQuietly();
+        }
+
+        clients.clear();
+    }
+
+    /**
+     * @return number of distinct clients currently registered
+     */
+    synchronized int size() {
+        return clients.size();
+    }
+
+    /**
+     * Builds a key that is equal for two configurations only when every
+     * setting that affects the client is equal.
+     *
+     * @param context configuration to build a key for
+     * @return configuration key
+     */
+    static List<Object> keyOf(final ConfigContext context) {
+        final byte[] encryptionKey = context.getEncryptionPrivateKeyBytes();
+        final ByteBuffer encryptionKeyValue;
+
+        if (encryptionKey == null) {
+            encryptionKeyValue = null;
+        } else {
+            encryptionKeyValue = ByteBuffer.wrap(encryptionKey.clone());
+        }
+
+        return Arrays.asList(
+                context.getMantaURL(),
+                context.getMantaUser(),
+                context.getMantaKeyId(),
+                context.getMantaKeyPath(),
+                context.getPrivateKeyContent(),
+                context.getPassword(),
+                context.getTimeout(),
+                context.getRetries(),
+                context.getMaximumConnections(),
+                context.getHttpBufferSize(),
+                context.getHttpsProtocols(),
+                context.getHttpsCipherSuites(),
+                context.noAuth(),
+                context.disableNativeSignatures(),
+                context.getTcpSocketTimeout(),
+                context.getConnectionRequestTimeout(),
+                context.getExpectContinueTimeout(),
+                context.verifyUploads(),
+                context.getUploadBufferSize(),
+                context.getSkipDirectoryDepth(),
+                context.downloadContinuations(),
+                context.getMetricReporterMode(),
+                context.getMetricReporterOutputInterval(),
+                context.isClientEncryptionEnabled(),
+                context.permitUnencryptedDownloads(),
+                context.getEncryptionKeyId(),
+                context.getEncryptionAlgorithm(),
+                context.getEncryptionAuthenticationMode(),
+                context.getEncryptionPrivateKeyPath(),
+                encryptionKeyValue,
+                context.tlsInsecure(),
+                context.isContentTypeDetectionEnabled(),
+                context.getPruneEmptyParentDepth());
+    }
+}
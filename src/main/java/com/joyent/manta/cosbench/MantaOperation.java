@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+/**
+ * Types of operations that the adaptor performs against Manta and records
+ * latency for.
+ *
+ * @since 1.1.3
+ */
+enum MantaOperation {
+    /**
+     * Object upload with a single PUT.
+     */
+    PUT,
+
+    /**
+     * Object upload split into multipart upload parts.
+     */
+    MULTIPART_PUT,
+
+    /**
+     * Object download with a single GET.
+     */
+    GET,
+
+    /**
+     * Time from issuing a single GET until the first byte of the object is read.
+     */
+    GET_FIRST_BYTE,
+
+    /**
+     * Time from the first byte of a single GET until the object is read to its end.
+     */
+    GET_TRANSFER,
+
+    /**
+     * Object download split into HTTP range requests.
+     */
+    RANGE_GET,
+
+    /**
+     * Time from issuing a download split into HTTP range requests until the
+     * first byte of the object is read.
+     */
+    RANGE_GET_FIRST_BYTE,
+
+    /**
+     * Time from the first byte of a download split into HTTP range requests
+     * until the object is read to its end.
+     */
+    RANGE_GET_TRANSFER,
+
+    /**
+     * Time from requesting a single HTTP range until its first byte is read.
+     */
+    RANGE_FIRST_BYTE,
+
+    /**
+     * Object metadata lookup.
+     */
+    HEAD,
+
+    /**
+     * Object metadata update.
+     */
+    PUT_METADATA,
+
+    /**
+     * Object removal.
+     */
+    DELETE,
+
+    /**
+     * Directory or bucket creation.
+     */
+    CREATE_CONTAINER,
+
+    /**
+     * Directory or bucket removal.
+     */
+    DELETE_CONTAINER,
+
+    /**
+     * Directory or bucket listing read until its end or the list limit.
+     */
+    LIST,
+
+    /**
+     * Time spent waiting on a listing for one page of its entries.
+     */
+    LIST_PAGE,
+
+    /**
+     * Request sent while warming up connections before the benchmark starts.
+     */
+    WARM_UP,
+
+    /**
+     * Time an operation waited for the driver-wide operation rate before it started.
+     */
+    THROTTLE_OPERATION,
+
+    /**
+     * Time an upload waited for the driver-wide upload bandwidth.
+     */
+    THROTTLE_PUT_BYTES,
+
+    /**
+     * Time a download waited for the driver-wide download bandwidth.
+     */
+    THROTTLE_GET_BYTES
+}
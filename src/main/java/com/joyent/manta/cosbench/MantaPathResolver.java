@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import com.joyent.manta.client.MantaClient;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the Manta paths of containers and objects. Container paths are
+ * computed once and cached, and object paths are built in a per-thread
+ * builder so that resolving a path only allocates the resulting string.
+ *
+ * <p>In buckets mode, bucket and object names are lower cased and stripped of
+ * everything except ASCII letters and digits. ASCII names are sanitized by a
+ * scan of their characters; any other name goes through the same lower
+ * casing and regular expression as before, so the resulting paths are
+ * identical in every case.</p>
+ *
+ * @since 1.1.3
+ */
+class MantaPathResolver {
+    /**
+     * Characters removed from bucket and object names in buckets mode.
+     */
+    private static final Pattern NOT_ALPHANUMERIC = Pattern.compile("[^a-zA-Z0-9]");
+
+    /**
+     * Largest ASCII code point.
+     */
+    private static final char MAX_ASCII = 0x7F;
+
+    /**
+     * Initial capacity of the per-thread path builders.
+     */
+    private static final int INITIAL_BUILDER_CAPACITY = 256;
+
+    /**
+     * Per-thread builder used to assemble object paths.
+     */
+    private static final ThreadLocal<StringBuilder> BUILDERS =
+            ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_BUILDER_CAPACITY));
+
+    /**
+     * Directory or bucket path that all containers are created under.
+     */
+    private final String basePath;
+
+    /**
+     * Flag indicating that containers are buckets rather than directories.
+     */
+    private final boolean buckets;
+
+    /**
+     * Flag indicating that the default locale lower cases ASCII letters to
+     * ASCII letters, which isn't true for Turkish and Azeri.
+     */
+    private final boolean asciiLowerCase;
+
+    /**
+     * Paths of containers that have already been resolved.
+     */
+    private final ConcurrentMap<String, String> containerPaths = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param basePath directory or bucket path that all containers are created under
+     * @param buckets true when containers are buckets rather than directories
+     */
+    MantaPathResolver(final String basePath, final boolean buckets) {
+        this.basePath = basePath;
+        this.buckets = buckets;
+        this.asciiLowerCase = "I".toLowerCase().equals("i");
+    }
+
+    /**
+     * Provides the base path of a bucket or directory container.
+     *
+     * @param container container name
+     * @return path of the directory or bucket
+     */
+    String containerPath(final String container) {
+        if (container == null) {
+            return buildContainerPath(null);
+        }
+
+        return containerPaths.computeIfAbsent(container, this::buildContainerPath);
+    }
+
+    /**
+     * Provides the path of an object in a bucket or directory container.
+     *
+     * @param container container name
+     * @param object object name
+     * @return path of the object
+     */
+    String objectPath(final String container, final String object) {
+        final StringBuilder builder = BUILDERS.get();
+        builder.setLength(0);
+        builder.append(containerPath(container)).append(MantaClient.SEPARATOR);
+
+        if (buckets) {
+            builder.append(MantaStorage.DEFAULT_BUCKETS_OBJECT);
+            appendSanitized(builder, object);
+        } else {
+            builder.append(object);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Computes the base path of a container.
+     *
+     * @param container container name
+     * @return path of the directory or bucket
+     */
+    private String buildContainerPath(final String container) {
+        final StringBuilder builder = new StringBuilder(basePath);
+
+        if (buckets) {
+            appendSanitized(builder, container);
+        } else {
+            builder.append(MantaClient.SEPARATOR).append(container);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Appends a name lower cased and stripped of everything except ASCII
+     * letters and digits.
+     *
+     * @param builder builder to append to
+     * @param name name to sanitize
+     */
+    private void appendSanitized(final StringBuilder builder, final String name) {
+        if (!asciiLowerCase || !isAscii(name)) {
+            builder.append(NOT_ALPHANUMERIC.matcher(name.toLowerCase()).replaceAll(""));
+            return;
+        }
+
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                builder.append(c);
+            } else if (c >= 'A' && c <= 'Z') {
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+    }
+
+    /**
+     * @param name name to check
+     * @return true when every character of the name is ASCII
+     */
+    private static boolean isAscii(final String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) > MAX_ASCII) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
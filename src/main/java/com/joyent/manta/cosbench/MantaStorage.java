@@ -13,7 +13,9 @@ import com.intel.cosbench.config.Config;
 import com.intel.cosbench.log.Logger;
 import com.joyent.manta.client.MantaBucketListingIterator;
 import com.joyent.manta.client.MantaClient;
-import com.joyent.manta.client.MantaMetadata;
+import com.joyent.manta.client.MantaDirectoryListingIterator;
+import com.joyent.manta.client.MantaObject;
+import com.joyent.manta.client.MantaObjectInputStream;
 import com.joyent.manta.client.multipart.EncryptedServerSideMultipartManager;
 import com.joyent.manta.client.multipart.MantaMultipartManager;
 import com.joyent.manta.client.multipart.MantaMultipartUpload;
@@ -25,17 +27,26 @@ import com.joyent.manta.config.EnvVarConfigContext;
 import com.joyent.manta.config.StandardConfigContext;
 import com.joyent.manta.config.SystemSettingsConfigContext;
 import com.joyent.manta.cosbench.config.CosbenchMantaConfigContext;
+import com.joyent.manta.cosbench.config.RateSchedule;
 import com.joyent.manta.exception.MantaClientHttpResponseException;
 import com.joyent.manta.exception.MantaErrorCode;
 import com.joyent.manta.http.MantaHttpHeaders;
-import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.input.NullInputStream;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 /**
  * Manta implementation of the COSBench {@link com.intel.cosbench.api.storage.StorageAPI}.
@@ -58,32 +69,75 @@ public class MantaStorage extends NoneStorage {
     /**
      * Hardcoded bucket in Manta in which all buckets benchmark files are stored.
      */
-    private static final String DEFAULT_BUCKETS_OBJECT = "objects/";
+    static final String DEFAULT_BUCKETS_OBJECT = "objects/";
 
     /**
      * The default number of maximum HTTP connections at one time to the Manta API.
      */
     private static final int MAX_CONNECTIONS = 1024;
 
+    /**
+     * Object size recorded with the latency of operations whose object size isn't known.
+     */
+    private static final long UNKNOWN_SIZE = -1L;
+
+    /**
+     * Outcome recorded for downloads that COSBench closed before reading them to their end.
+     */
+    private static final String CLOSED_BEFORE_END = "CLOSED_BEFORE_END";
+
+    /**
+     * End of file code returned by streams.
+     */
+    private static final int EOF = -1;
+
+    /**
+     * Number of seconds that disposing a worker waits for its outstanding
+     * open-loop operations.
+     */
+    private static final long OPEN_LOOP_SHUTDOWN_SECONDS = 60L;
+
     /**
      * Manta client driver.
      */
     private MantaClient client;
 
+    /**
+     * Flag indicating that the client is shared with other workers through
+     * the {@link MantaClientRegistry}.
+     */
+    private boolean sharedClient;
+
     /**
      * The current test directory or bucket name.
      */
     private String currentTestDirOrBucket;
 
     /**
-     * Number of copies of object to store.
+     * Resolver of container and object paths under the test directory or bucket.
+     */
+    private MantaPathResolver pathResolver;
+
+    /**
+     * Settings of operations whose config doesn't override any of them.
+     */
+    private OperationSettings settings;
+
+    /**
+     * Settings of operations resolved once per distinct operation config.
+     */
+    private final Map<Config, OperationSettings> operationSettings = new ConcurrentHashMap<>();
+
+    /**
+     * Problems of operation configs that couldn't be resolved, so that
+     * invalid configs are only parsed once.
      */
-    private Integer durabilityLevel;
+    private final Map<Config, IllegalArgumentException> invalidOperationSettings = new ConcurrentHashMap<>();
 
     /**
-     * Flag that toggles chunked transfer encoding.
+     * Headers and metadata keys reused from one request to the next.
      */
-    private boolean chunked;
+    private RequestTemplates requestTemplates;
 
     /**
      * Flag indicating that logging is enabled.
@@ -91,31 +145,135 @@ public class MantaStorage extends NoneStorage {
     private boolean logging;
 
     /**
-     * FLag indicating that we will use multipart uploads.
+     * 5mb is the default split for a file, it is the minimum split size.
      */
-    private boolean multipart;
+    public static final int DEFAULT_SPLIT = CosbenchMantaConfigContext.DEFAULT_SPLIT_SIZE;
 
     /**
-     * When multipart, how large should each file be.
+     * Maximum number of distinct operation configs whose settings are cached.
      */
-    private Integer splitSize;
+    private static final int MAX_OPERATION_SETTINGS = 64;
 
     /**
-     * 5mb is the default split for a file, it is the minimum split size.
+     * Thread pool used to upload multipart parts. Null until the first
+     * multipart upload uploader is created.
+     */
+    private ExecutorService multipartExecutor;
+
+    /**
+     * Uploaders used for multipart uploads keyed by their part size. Every
+     * uploader shares the same upload threads and part buffers.
+     */
+    private final Map<Integer, MultipartUploader> multipartUploaders = new ConcurrentHashMap<>();
+
+    /**
+     * Number of parts of a multipart upload uploaded at the same time.
      */
-    public static final int DEFAULT_SPLIT = 5242880;
+    private int multipartParallelism;
 
     /**
-     * Number of sections in which to download files. If greater than one, then multiple HTTP Range requests will be
-     * used to assemble the file.
+     * Part buffers shared by every multipart upload of this worker.
      */
-    private int sections;
+    private PartBufferPool partBuffers;
+
+    /**
+     * Largest part size in bytes of a multipart upload, so that two parts
+     * always fit in the memory budget of the part buffers.
+     */
+    private int maxPartSize;
+
+    /**
+     * Number of objects that a multipart threshold sent with a single PUT.
+     */
+    private final AtomicLong thresholdSinglePuts = new AtomicLong();
+
+    /**
+     * Number of objects that a multipart threshold sent as multipart uploads.
+     */
+    private final AtomicLong thresholdMultipartPuts = new AtomicLong();
+
+    /**
+     * Number of container listings read.
+     */
+    private final AtomicLong listings = new AtomicLong();
+
+    /**
+     * Number of listing entries counted.
+     */
+    private final AtomicLong listedEntries = new AtomicLong();
+
+    /**
+     * Number of listing pages read.
+     */
+    private final AtomicLong listedPages = new AtomicLong();
+
+    /**
+     * Time in nanoseconds spent reading listings.
+     */
+    private final AtomicLong listingNanos = new AtomicLong();
 
     /**
      * Size of the object being benchmarked - used only with HTTP range request benchmarks.
      */
     private Integer objectSize;
 
+    /**
+     * Driver-wide cache of object sizes used to split objects into HTTP range sections.
+     */
+    private ObjectSizeCache objectSizeCache;
+
+    /**
+     * 1mb is the default amount of data buffered ahead for each section of an HTTP range request benchmark.
+     */
+    public static final int DEFAULT_RANGE_BUFFER_SIZE = 1048576;
+
+    /**
+     * Seed that object content is derived from when content is verified and no seed is set.
+     */
+    public static final long DEFAULT_PAYLOAD_SEED = 0L;
+
+    /**
+     * Number of HTTP Range requests to make at the same time when downloading sections.
+     */
+    private int rangeParallelism;
+
+    /**
+     * Number of bytes buffered ahead for each section being downloaded in the background.
+     */
+    private int rangeBufferSize;
+
+    /**
+     * Thread pool used to download sections in the background. Null when sections are
+     * always downloaded one after another.
+     */
+    private ExecutorService rangeExecutor;
+
+    /**
+     * Hedger of HTTP range requests that are slow to return their first
+     * byte. Null when each range is requested once.
+     */
+    private RangeHedger rangeHedger;
+
+    /**
+     * Number of objects deleted at the same time when emptying a bucket.
+     */
+    private int bucketDeleteParallelism;
+
+    /**
+     * Maximum number of objects deleted per second when emptying a bucket, or zero for no limit.
+     */
+    private int bucketDeleteRate;
+
+    /**
+     * Number of directories listed and entries deleted at the same time when deleting a directory container.
+     */
+    private int dirDeleteParallelism;
+
+    /**
+     * Maximum number of entries deleted per second when deleting a directory container, or zero for no limit.
+     */
+    private int dirDeleteRate;
+
     /**
      * Multipart manager for encrypted loads.
      */
@@ -131,6 +289,67 @@ public class MantaStorage extends NoneStorage {
      */
     private String testType;
 
+    /**
+     * Latency histograms recorded by this worker. Null when latency histograms are disabled.
+     */
+    private volatile LatencyHistograms latencyHistograms;
+
+    /**
+     * File that the driver-wide latency histograms are summarized into on dispose.
+     */
+    private Path latencySummaryFile;
+
+    /**
+     * Totals of the content checked while downloading. Null when content
+     * verification is disabled.
+     */
+    private VerifyingInputStream.Stats verification;
+
+    /**
+     * Seed that the content of every object is derived from when content is
+     * verified or streamed from the payload pool.
+     */
+    private long payloadSeed;
+
+    /**
+     * Driver-wide pool of off-heap slabs that uploads stream their content
+     * from. Null when uploads stream the data generated by COSBench.
+     */
+    private PayloadSlabPool payloadPool;
+
+    /**
+     * Schedules operations at a target rate when the open-loop load mode is
+     * enabled. Null when each operation starts once the previous one finished.
+     */
+    private OpenLoopEngine openLoop;
+
+    /**
+     * Limits on operations and bytes per second shared by every worker in the
+     * driver. Null when nothing is throttled.
+     */
+    private DriverThrottle throttle;
+
+    /**
+     * Records the time until the first byte of each HTTP range when latency
+     * histograms are enabled.
+     */
+    private final RangeJoiningInputStream.SectionListener rangeLatencyListener =
+            new RangeJoiningInputStream.SectionListener() {
+                @Override
+                public void sectionFirstByte(final long bytes, final long nanos) {
+                    final LatencyHistograms histograms = latencyHistograms;
+
+                    if (histograms != null) {
+                        histograms.record(MantaOperation.RANGE_FIRST_BYTE, bytes, null, nanos);
+                    }
+                }
+
+                @Override
+                public void sectionCompleted(final long bytes, final long nanos) {
+                    // Only the first byte of each range is recorded
+                }
+            };
+
     @Override
     public void init(final Config config, final Logger logger) {
         logger.debug("Manta client has started initialization");
@@ -150,47 +369,125 @@ public class MantaStorage extends NoneStorage {
                 cosbenchConfig);
 
         this.testType = cosbenchConfig.testType();
-        this.durabilityLevel = cosbenchConfig.getDurabilityLevel();
+        this.sharedClient = cosbenchConfig.isSharedClient();
+
+        final String latencySummary = cosbenchConfig.getLatencySummaryFile();
+        if (latencySummary != null) {
+            this.latencySummaryFile = Paths.get(latencySummary);
+            this.latencyHistograms = new LatencyHistograms();
+            LatencyHistograms.acquire(latencySummaryFile);
+        }
         this.logging = cosbenchConfig.logging();
-        this.sections = cosbenchConfig.getNumberOfSections();
+        this.settings = OperationSettings.of(cosbenchConfig, DEFAULT_SPLIT);
+        this.requestTemplates = new RequestTemplates(settings.getDurabilityLevel());
+
+        Long configuredPayloadSeed = cosbenchConfig.getPayloadSeed();
+        if (configuredPayloadSeed == null) {
+            configuredPayloadSeed = DEFAULT_PAYLOAD_SEED;
+        }
+        this.payloadSeed = configuredPayloadSeed;
+
+        if (cosbenchConfig.isVerifyContent()) {
+            this.verification = new VerifyingInputStream.Stats();
+        }
+
+        initializePayloadPool(cosbenchConfig);
+
         this.objectSize = cosbenchConfig.getObjectSize();
-        this.multipart = cosbenchConfig.isMultipart();
+        this.rangeParallelism = cosbenchConfig.getRangeParallelism();
 
-        this.splitSize = cosbenchConfig.getSplitSize();
-        if (splitSize == null) {
-            splitSize = DEFAULT_SPLIT;
+        Integer sizeCacheCapacity = cosbenchConfig.getObjectSizeCacheCapacity();
+        if (sizeCacheCapacity == null) {
+            sizeCacheCapacity = ObjectSizeCache.DEFAULT_CAPACITY;
         }
-        if (cosbenchConfig.chunked() == null) {
-            if (logging) {
-                logger.info("Chunked mode is disabled");
-            }
+        this.objectSizeCache = ObjectSizeCache.shared(sizeCacheCapacity);
 
-            this.chunked = false;
-        } else {
-            final String status;
-            if (cosbenchConfig.chunked()) {
-                status = "enabled";
-            } else {
-                status = "disabled";
+        if (logging && objectSizeCache.capacity() != ObjectSizeCache.slotsFor(sizeCacheCapacity)) {
+            logger.warn("Object size cache capacity of {} is ignored because the driver already shares a "
+                    + "cache of {} entries", sizeCacheCapacity, objectSizeCache.capacity());
+        }
+
+        Integer configuredRangeBufferSize = cosbenchConfig.getRangeBufferSize();
+        if (configuredRangeBufferSize == null) {
+            configuredRangeBufferSize = DEFAULT_RANGE_BUFFER_SIZE;
+        }
+        this.rangeBufferSize = configuredRangeBufferSize;
+
+        // Operations can enable range requests in their own config, so the
+        // pool is created whenever sections may be downloaded concurrently
+        // or hedged. Its threads are only started by the first range request.
+        final Double hedgePercentile = cosbenchConfig.getRangeHedgePercentile();
+        if (rangeParallelism > 1 || hedgePercentile != null) {
+            this.rangeExecutor = Executors.newCachedThreadPool();
+        }
+
+        if (hedgePercentile != null) {
+            Integer hedgeMinDelay = cosbenchConfig.getRangeHedgeMinDelay();
+            if (hedgeMinDelay == null) {
+                hedgeMinDelay = 0;
             }
 
+            this.rangeHedger = new RangeHedger(hedgePercentile,
+                    TimeUnit.MILLISECONDS.toNanos(hedgeMinDelay), rangeExecutor);
+
             if (logging) {
-                logger.info("Chunked mode is " + status);
+                logger.info("Hedging HTTP range requests slower than the p{} time to first byte "
+                        + "and at least {} ms", hedgePercentile, hedgeMinDelay);
+            }
+        }
+
+        Integer deleteParallelism = cosbenchConfig.getBucketDeleteParallelism();
+        if (deleteParallelism == null) {
+            deleteParallelism = BucketEmptier.DEFAULT_PARALLELISM;
+        }
+        this.bucketDeleteParallelism = deleteParallelism;
+
+        Integer deleteRate = cosbenchConfig.getBucketDeleteRate();
+        if (deleteRate == null) {
+            deleteRate = 0;
+        }
+        this.bucketDeleteRate = deleteRate;
+
+        Integer treeDeleteParallelism = cosbenchConfig.getDirDeleteParallelism();
+        if (treeDeleteParallelism == null) {
+            treeDeleteParallelism = TreeDeleter.DEFAULT_PARALLELISM;
+        }
+        this.dirDeleteParallelism = treeDeleteParallelism;
+
+        Integer treeDeleteRate = cosbenchConfig.getDirDeleteRate();
+        if (treeDeleteRate == null) {
+            treeDeleteRate = 0;
+        }
+        this.dirDeleteRate = treeDeleteRate;
+
+        if (logging) {
+            if (settings.isChunked()) {
+                logger.info("Chunked mode is enabled");
+            } else {
+                logger.info("Chunked mode is disabled");
             }
-            this.chunked = cosbenchConfig.chunked();
         }
 
         if (logging) {
             logger.info(String.format("Client configuration: %s", context));
         }
 
-        try {
+        if (sharedClient) {
+            client = MantaClientRegistry.shared().acquire(context);
+
+            if (logging) {
+                logger.info("Sharing a Manta client of at most {} connections with the other workers "
+                        + "of the driver that have the same configuration", context.getMaximumConnections());
+            }
+        } else {
             client = new MantaClient(context);
+        }
 
+        try {
             initializeClient(cosbenchConfig, context);
-
         } catch (IOException e) {
             logger.error("Error in initialization", e);
+            releaseClient();
             throw new StorageException(e);
         }
 
@@ -206,76 +503,937 @@ public class MantaStorage extends NoneStorage {
             serverMultipartManager = new ServerSideMultipartManager(client);
         }
 
+        initializeMultipart(cosbenchConfig, context);
+        initializeOpenLoop(cosbenchConfig);
+        initializeThrottle(cosbenchConfig);
+        warmUpConnections(cosbenchConfig, context);
+    }
+
+    /**
+     * Helper method that joins the driver-wide throttle when operations or
+     * bytes per second are limited.
+     *
+     * @param cosbenchConfig - The cosbench config.
+     */
+    private void initializeThrottle(final CosbenchMantaConfigContext cosbenchConfig) {
+        final RateSchedule opsRate = cosbenchConfig.getThrottleOpsRate();
+        final RateSchedule putBandwidth = cosbenchConfig.getThrottlePutBandwidth();
+        final RateSchedule getBandwidth = cosbenchConfig.getThrottleGetBandwidth();
+
+        if (opsRate == null && putBandwidth == null && getBandwidth == null) {
+            return;
+        }
+
+        this.throttle = DriverThrottle.acquire(opsRate, putBandwidth, getBandwidth);
+
+        if (logging) {
+            logger.info("Driver throttle limits operations per second to {}, uploaded bytes per second "
+                    + "to {} and downloaded bytes per second to {}",
+                    new Object[] {opsRate, putBandwidth, getBandwidth});
+        }
     }
 
+    /**
+     * Helper method that creates the open-loop engine of this worker when the
+     * open-loop load mode is enabled.
+     *
+     * @param cosbenchConfig - The cosbench config.
+     */
+    private void initializeOpenLoop(final CosbenchMantaConfigContext cosbenchConfig) {
+        if (!cosbenchConfig.isOpenLoop()) {
+            return;
+        }
+
+        Integer maxOutstanding = cosbenchConfig.getOpenLoopMaxOutstanding();
+        if (maxOutstanding == null) {
+            maxOutstanding = OpenLoopEngine.DEFAULT_MAX_OUTSTANDING;
+        }
+
+        this.openLoop = new OpenLoopEngine(cosbenchConfig.getOpenLoopRate(), maxOutstanding);
+
+        if (logging) {
+            logger.info("Open-loop load mode will start {} operations per second with at most {} outstanding",
+                    openLoop.getOperationsPerSecond(), openLoop.getMaxOutstanding());
+        }
+    }
 
     /**
-     * Helper method for initializing cosbench.
+     * Helper method that opens and validates connections before the benchmark
+     * starts when warm-up connections are configured, so that timed operations
+     * don't pay for TCP and TLS handshakes. Workers sharing a client warm it up
+     * once. The warm-up is logged and recorded in its own latency histogram,
+     * apart from the benchmark operations.
      *
      * @param cosbenchConfig - The cosbench config.
      * @param context - The manta config context.
-     * @throws IOException when there is a problem in initializing the manta client
-     * @throws MantaClientHttpResponseException if buckets unsupported in Manta
-     * @throws StorageException if test path setup fails
      */
-    private void initializeClient(final CosbenchMantaConfigContext cosbenchConfig,
-                                  final ChainedConfigContext context) throws IOException {
+    private void warmUpConnections(final CosbenchMantaConfigContext cosbenchConfig,
+                                   final ChainedConfigContext context) {
+        final Integer configured = cosbenchConfig.getWarmUpConnections();
+        if (configured == null || configured == 0) {
+            return;
+        }
+
+        if (sharedClient && !MantaClientRegistry.shared().claimWarmUp(client)) {
+            return;
+        }
+
+        int connections = configured;
+        final Integer maximumConnections = context.getMaximumConnections();
+        if (maximumConnections != null && maximumConnections < connections) {
+            connections = maximumConnections;
+        }
+
+        final ConnectionWarmer warmer;
         if ("buckets".equals(testType)) {
             final String bucketsPath = context.getMantaBucketsDirectory();
-            try {
-                client.options(bucketsPath);
-            } catch (MantaClientHttpResponseException e) {
-                if (MantaErrorCode.RESOURCE_NOT_FOUND_ERROR.equals(e.getServerCode())) {
-                    logger.error("Buckets not supported in current Manta",
-                            e.getStatusMessage());
-                    throw new StorageException(e);
-                }
-            }
-            currentTestDirOrBucket = String.format("%s%s%s",
-                    context.getMantaHomeDirectory(), MantaClient.SEPARATOR,
-                    DEFAULT_COSBENCH_BUCKETS_PATH);
+            warmer = new ConnectionWarmer(() -> client.options(bucketsPath), connections, latencyHistograms);
         } else {
-            final String baseDir = Objects.toString(cosbenchConfig.getBaseDirectory(),
-                    DEFAULT_COSBENCH_BASE_DIR);
-            currentTestDirOrBucket = String.format("%s%s%s",
-                    context.getMantaHomeDirectory(), MantaClient.SEPARATOR, baseDir);
-            client.putDirectory(currentTestDirOrBucket, true);
-            if (!client.existsAndIsAccessible(currentTestDirOrBucket)) {
-                String msg = "Unable to create base test directory";
-                throw new StorageException(msg);
-            }
+            final String baseDir = currentTestDirOrBucket;
+            warmer = new ConnectionWarmer(() -> client.head(baseDir), connections, latencyHistograms);
+        }
+
+        try {
+            warmer.warmUp();
+        } catch (IOException e) {
+            logger.error("Error warming up connections", e);
+            releaseClient();
+            throw new StorageException(e);
         }
-    }
 
-    @Override
-    public void createContainer(final String container, final Config config) {
         if (logging) {
-            if ("buckets".equals(testType)) {
-                logger.info("Performing CREATE bucket at /{}", container);
-            } else {
-                logger.info("Performing PUT dir at /{}", container);
+            logger.info("Warmed up {} connections in {} ms: {} us per request opening a connection, "
+                            + "{} us per request on an open connection, {} failed",
+                    new Object[] {warmer.getConnections(),
+                            TimeUnit.NANOSECONDS.toMillis(warmer.getElapsedNanos()),
+                            TimeUnit.NANOSECONDS.toMicros(warmer.getAverageColdNanos()),
+                            TimeUnit.NANOSECONDS.toMicros(warmer.getAverageWarmNanos()),
+                            warmer.getFailures()});
+        }
+    }
+
+    /**
+     * Helper method that sets up the part upload pipeline for multipart
+     * uploads. Encrypted multipart uploads depend on the cipher state of the
+     * previous part, so their parts are always uploaded one after another.
+     *
+     * @param cosbenchConfig - The cosbench config.
+     * @param context - The manta config context.
+     */
+    private void initializeMultipart(final CosbenchMantaConfigContext cosbenchConfig,
+                                     final ChainedConfigContext context) {
+        int parallelism = cosbenchConfig.getMultipartParallelism();
+
+        if (context.isClientEncryptionEnabled() && parallelism > 1) {
+            if (logging) {
+                logger.warn("Multipart parallelism is ignored when client-side encryption is enabled");
             }
+
+            parallelism = 1;
         }
-        try {
-            if ("buckets".equals(testType)) {
-                final String bucketPath = pathOfBaseContainer(container);
-                client.createBucket(bucketPath);
-                if (!client.existsAndIsAccessible(bucketPath)) {
-                    String msg = "Unable to create test bucket";
-                    throw new StorageException(msg);
-                }
+
+        final MultipartPolicy multipartPolicy = settings.getMultipartPolicy();
+
+        Long memoryBudget = cosbenchConfig.getMultipartMemoryBudget();
+        if (memoryBudget == null) {
+            // With a threshold the part size grows with the object, so the
+            // default budget doesn't cap it and parts are only as large as
+            // the objects need.
+            if (multipartPolicy.isAutomatic()) {
+                memoryBudget = (parallelism + 1L) * MultipartPolicy.MAX_PART_SIZE;
             } else {
-                client.putDirectory(pathOfBaseContainer(container));
-            }
-        } catch (Exception e) {
-            if (logging) {
-                logger.error("Error creating container", e);
+                memoryBudget = (parallelism + 1L) * multipartPolicy.getSplitSize();
             }
         }
+
+        this.multipartParallelism = parallelism;
+        this.partBuffers = new PartBufferPool(memoryBudget);
+        this.maxPartSize = (int)Math.min(memoryBudget / 2, MultipartPolicy.MAX_PART_SIZE);
+
+        if (logging && multipartPolicy.isEnabled()) {
+            logger.info("Multipart uploads will use {} upload threads, {} bytes of part buffers and parts "
+                    + "of at most {} bytes", new Object[] {parallelism, memoryBudget, maxPartSize});
+        }
+
+        if (logging && multipartPolicy.isAutomatic()) {
+            logger.info("Objects of {} bytes or more will be uploaded as multipart uploads of at most {} parts",
+                    multipartPolicy.getThreshold(), multipartPolicy.getMaxParts());
+        }
     }
 
-    @Override
+    /**
+     * Helper method that sets up the pool of off-heap slabs that uploads
+     * stream their content from. Verified content has to be derived from the
+     * object name byte by byte, so the pool isn't used when content is
+     * verified.
+     *
+     * @param cosbenchConfig - The cosbench config.
+     */
+    private void initializePayloadPool(final CosbenchMantaConfigContext cosbenchConfig) {
+        if (!cosbenchConfig.isPayloadPool()) {
+            return;
+        }
+
+        if (verification != null) {
+            if (logging) {
+                logger.warn("The payload pool is ignored when content is verified");
+            }
+
+            return;
+        }
+
+        Long poolSize = cosbenchConfig.getPayloadPoolSize();
+        if (poolSize == null) {
+            poolSize = PayloadSlabPool.DEFAULT_SIZE;
+        }
+
+        this.payloadPool = PayloadSlabPool.shared(poolSize, payloadSeed);
+
+        if (logging && (payloadPool.getSize() != PayloadSlabPool.sizeFor(poolSize)
+                || payloadPool.getSeed() != payloadSeed)) {
+            logger.warn("Payload pool size of {} bytes and seed {} are ignored because the driver already "
+                    + "shares a pool of {} bytes generated from seed {}",
+                    new Object[] {poolSize, payloadSeed, payloadPool.getSize(), payloadPool.getSeed()});
+        }
+
+        if (logging) {
+            logger.info("Uploads will stream from a payload pool of {} bytes", payloadPool.getSize());
+        }
+    }
+
+    /**
+     * Finds the uploader for multipart uploads with the specified part size,
+     * creating it the first time an upload uses that part size. Every
+     * uploader shares the same pool of upload threads and part buffers.
+     *
+     * @param splitSize size in bytes of each part
+     * @return multipart uploader
+     */
+    private MultipartUploader multipartUploader(final int splitSize) {
+        return multipartUploaders.computeIfAbsent(splitSize, size -> {
+            synchronized (multipartUploaders) {
+                if (multipartExecutor == null) {
+                    multipartExecutor = Executors.newFixedThreadPool(multipartParallelism);
+                }
+            }
+
+            return new MultipartUploader(multipartExecutor, size, multipartParallelism, partBuffers);
+        });
+    }
+
+    /**
+     * Resolves the settings of an operation from its config. Settings are
+     * resolved once per distinct config instance, so operations only pay for
+     * parsing their config the first time it is used. Invalid configs are
+     * remembered too, so every later operation with the same config fails
+     * without parsing it again.
+     *
+     * @param config operation config or null
+     * @return settings of the operation
+     * @throws StorageException when the config has invalid settings
+     */
+    private OperationSettings settingsFor(final Config config) {
+        if (config == null) {
+            return settings;
+        }
+
+        final OperationSettings resolved = operationSettings.get(config);
+        if (resolved != null) {
+            return resolved;
+        }
+
+        final IllegalArgumentException invalid = invalidOperationSettings.get(config);
+        if (invalid != null) {
+            throw new StorageException(invalid);
+        }
+
+        final OperationSettings operation;
+
+        try {
+            operation = settings.withOverrides(new CosbenchMantaConfigContext(config));
+            checkSplitSize(operation.getMultipartPolicy());
+        } catch (IllegalArgumentException e) {
+            if (logging) {
+                logger.error("Invalid operation config", e);
+            }
+
+            if (invalidOperationSettings.size() < MAX_OPERATION_SETTINGS) {
+                invalidOperationSettings.put(config, e);
+            }
+
+            throw new StorageException(e);
+        }
+
+        if (operationSettings.size() < MAX_OPERATION_SETTINGS) {
+            operationSettings.put(config, operation);
+        }
+
+        return operation;
+    }
+
+    /**
+     * Checks that the part size of an operation fits twice in the memory
+     * budget of the part buffers, since parts are never larger than half of
+     * the budget.
+     *
+     * @param multipartPolicy multipart policy of the operation
+     * @throws IllegalArgumentException when the part size is larger than the largest part
+     */
+    private void checkSplitSize(final MultipartPolicy multipartPolicy) {
+        if (multipartPolicy.isEnabled() && multipartPolicy.getSplitSize() > maxPartSize) {
+            throw new IllegalArgumentException(String.format("splitSize of %d bytes is larger than the largest "
+                    + "part of %d bytes that multipart-memory-budget allows",
+                    multipartPolicy.getSplitSize(), maxPartSize));
+        }
+    }
+
+    /**
+     * Helper method for initializing cosbench.
+     *
+     * @param cosbenchConfig - The cosbench config.
+     * @param context - The manta config context.
+     * @throws IOException when there is a problem in initializing the manta client
+     * @throws MantaClientHttpResponseException if buckets unsupported in Manta
+     * @throws StorageException if test path setup fails
+     */
+    private void initializeClient(final CosbenchMantaConfigContext cosbenchConfig,
+                                  final ChainedConfigContext context) throws IOException {
+        if ("buckets".equals(testType)) {
+            final String bucketsPath = context.getMantaBucketsDirectory();
+            try {
+                client.options(bucketsPath);
+            } catch (MantaClientHttpResponseException e) {
+                if (MantaErrorCode.RESOURCE_NOT_FOUND_ERROR.equals(e.getServerCode())) {
+                    logger.error("Buckets not supported in current Manta",
+                            e.getStatusMessage());
+                    throw new StorageException(e);
+                }
+            }
+            currentTestDirOrBucket = String.format("%s%s%s",
+                    context.getMantaHomeDirectory(), MantaClient.SEPARATOR,
+                    DEFAULT_COSBENCH_BUCKETS_PATH);
+        } else {
+            final String baseDir = Objects.toString(cosbenchConfig.getBaseDirectory(),
+                    DEFAULT_COSBENCH_BASE_DIR);
+            currentTestDirOrBucket = String.format("%s%s%s",
+                    context.getMantaHomeDirectory(), MantaClient.SEPARATOR, baseDir);
+            client.putDirectory(currentTestDirOrBucket, true);
+            if (!client.existsAndIsAccessible(currentTestDirOrBucket)) {
+                String msg = "Unable to create base test directory";
+                throw new StorageException(msg);
+            }
+        }
+
+        pathResolver = new MantaPathResolver(currentTestDirOrBucket, "buckets".equals(testType));
+    }
+
+    @Override
+    public void createContainer(final String container, final Config config) {
+        final long start = System.nanoTime();
+        Throwable failure = null;
+
+        try {
+            makeContainer(container);
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            recordLatency(MantaOperation.CREATE_CONTAINER, UNKNOWN_SIZE, failure, start);
+        }
+    }
+
+    @Override
     public void deleteContainer(final String container, final Config config) {
+        final long start = System.nanoTime();
+        Throwable failure = null;
+
+        try {
+            removeContainer(container);
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            recordLatency(MantaOperation.DELETE_CONTAINER, UNKNOWN_SIZE, failure, start);
+        }
+    }
+
+    @Override
+    public void createObject(final String container,
+            final String object,
+            final InputStream data,
+            final long length,
+            final Config config) {
+        awaitThrottle(length);
+
+        final OperationSettings operation = settingsFor(config);
+        final int partSize = choosePartSize(operation.getMultipartPolicy(), length);
+
+        if (openLoop == null) {
+            uploadObject(container, object, contentOf(container, object, data, length), length, operation,
+                    partSize, System.nanoTime());
+        } else if (length >= 0L) {
+            // COSBench closes its stream when this returns, so the upload
+            // streams content that doesn't depend on it.
+            final InputStream content = detachedContentOf(container, object, data, length);
+
+            try {
+                openLoop.execute(start -> uploadObject(container, object, content, length, operation,
+                        partSize, start));
+            } catch (InterruptedIOException e) {
+                throw new StorageException(e);
+            }
+        } else {
+            try {
+                openLoop.call(start -> {
+                    uploadObject(container, object, contentOf(container, object, data, length), length,
+                            operation, partSize, start);
+                    return null;
+                });
+            } catch (InterruptedIOException e) {
+                throw new StorageException(e);
+            }
+        }
+    }
+
+    /**
+     * Uploads an object and records its latency.
+     *
+     * @param container container name
+     * @param object object name
+     * @param content object content
+     * @param length number of bytes in the object or -1 if unknown
+     * @param operation settings of the upload
+     * @param partSize size in bytes of each part or {@link MultipartPolicy#SINGLE_PUT} for a single PUT
+     * @param start value of {@link System#nanoTime()} when the upload was intended to start
+     */
+    private void uploadObject(final String container,
+                              final String object,
+                              final InputStream content,
+                              final long length,
+                              final OperationSettings operation,
+                              final int partSize,
+                              final long start) {
+        Throwable failure = null;
+
+        ThrottledInputStream metered = null;
+        if (throttle != null) {
+            metered = throttle.meterPut(content);
+        }
+
+        InputStream upload = content;
+        if (metered != null) {
+            upload = metered;
+        }
+
+        try {
+            putObject(container, object, upload, length, operation, partSize);
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            // Time spent waiting for the throttle is recorded apart from the upload
+            long throttledNanos = 0L;
+            if (metered != null) {
+                throttledNanos = metered.getWaitNanos();
+                recordThrottleWait(MantaOperation.THROTTLE_PUT_BYTES, length, throttledNanos);
+            }
+
+            if (partSize != MultipartPolicy.SINGLE_PUT) {
+                recordLatency(MantaOperation.MULTIPART_PUT, length, failure, start + throttledNanos);
+            } else {
+                recordLatency(MantaOperation.PUT, length, failure, start + throttledNanos);
+            }
+        }
+    }
+
+    @Override
+    public void deleteObject(final String container, final String object,
+                             final Config config) {
+        awaitThrottle(knownObjectSize(container, object));
+
+        if (openLoop == null) {
+            deleteObjectAt(container, object, System.nanoTime());
+            return;
+        }
+
+        try {
+            openLoop.execute(start -> deleteObjectAt(container, object, start));
+        } catch (InterruptedIOException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    /**
+     * Deletes an object and records its latency.
+     *
+     * @param container container name
+     * @param object object name
+     * @param start value of {@link System#nanoTime()} when the delete was intended to start
+     */
+    private void deleteObjectAt(final String container, final String object, final long start) {
+        final long size = knownObjectSize(container, object);
+        Throwable failure = null;
+
+        try {
+            removeObject(container, object);
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            recordLatency(MantaOperation.DELETE, size, failure, start);
+        }
+    }
+
+    @Override
+    public InputStream getObject(final String container, final String object, final Config config) {
+        awaitThrottle(knownObjectSize(container, object));
+
+        final OperationSettings operation = settingsFor(config);
+
+        if (openLoop == null) {
+            return downloadObject(container, object, operation, System.nanoTime());
+        }
+
+        try {
+            return openLoop.call(start -> downloadObject(container, object, operation, start));
+        } catch (InterruptedIOException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    /**
+     * Opens the content of an object and records its latency.
+     *
+     * @param container container name
+     * @param object object name
+     * @param operation settings of the download
+     * @param start value of {@link System#nanoTime()} when the download was intended to start
+     * @return stream of the object content
+     */
+    private InputStream downloadObject(final String container, final String object,
+                                       final OperationSettings operation, final long start) {
+        final InputStream opened;
+
+        try {
+            opened = openObject(container, object, operation);
+        } catch (RuntimeException | Error e) {
+            if (operation.isRanged()) {
+                recordLatency(MantaOperation.RANGE_GET, knownObjectSize(container, object), e, start);
+            } else {
+                recordLatency(MantaOperation.GET, knownObjectSize(container, object), e, start);
+            }
+            throw e;
+        }
+
+        // Content is checked beneath the timing so that a mismatch is
+        // recorded as the outcome of the transfer.
+        InputStream objectStream = opened;
+        if (verification != null) {
+            objectStream = new VerifyingInputStream(opened,
+                    PayloadGenerator.objectSeed(payloadSeed, container, object),
+                    pathOfObject(container, object), expectedLength(opened), verification);
+        }
+
+        ThrottledInputStream metered = null;
+        if (throttle != null) {
+            metered = throttle.meterGet(objectStream);
+        }
+
+        if (metered != null) {
+            objectStream = metered;
+        }
+
+        if (latencyHistograms == null) {
+            return objectStream;
+        }
+
+        final long size = knownObjectSize(container, object);
+
+        if (opened instanceof RangeJoiningInputStream) {
+            recordLatency(MantaOperation.RANGE_GET, size, null, start);
+            return timeTransfer(objectStream, start, size,
+                    MantaOperation.RANGE_GET_FIRST_BYTE, MantaOperation.RANGE_GET_TRANSFER, metered);
+        } else {
+            recordLatency(MantaOperation.GET, size, null, start);
+            return timeTransfer(objectStream, start, size,
+                    MantaOperation.GET_FIRST_BYTE, MantaOperation.GET_TRANSFER, metered);
+        }
+    }
+
+    /**
+     * Finds the number of bytes that a download should return, from the
+     * object size that the ranges were split from or from the Content-Length
+     * of the response.
+     *
+     * @param opened stream of the object content
+     * @return number of bytes in the object or {@link #UNKNOWN_SIZE}
+     */
+    private static long expectedLength(final InputStream opened) {
+        if (opened instanceof RangeJoiningInputStream) {
+            return ((RangeJoiningInputStream)opened).getSize();
+        }
+
+        if (opened instanceof MantaObjectInputStream) {
+            final Long contentLength = ((MantaObjectInputStream)opened).getContentLength();
+
+            if (contentLength != null) {
+                return contentLength;
+            }
+        }
+
+        return UNKNOWN_SIZE;
+    }
+
+    /**
+     * Wraps the stream of an object being downloaded so that the time until
+     * its first byte and the time spent transferring the rest of it are
+     * recorded separately once COSBench has drained or closed it.
+     *
+     * @param objectStream stream of the object content
+     * @param start value of {@link System#nanoTime()} when the download was issued
+     * @param size object size in bytes or {@link #UNKNOWN_SIZE}
+     * @param firstByte operation type the time until the first byte is recorded as
+     * @param transfer operation type the transfer time is recorded as
+     * @param metered throttled stream beneath the timing, whose waits are
+     *                recorded apart from the transfer, or null
+     * @return timed stream
+     */
+    private InputStream timeTransfer(final InputStream objectStream,
+                                     final long start,
+                                     final long size,
+                                     final MantaOperation firstByte,
+                                     final MantaOperation transfer,
+                                     final ThrottledInputStream metered) {
+        final LatencyHistograms histograms = latencyHistograms;
+
+        return new TimingInputStream(objectStream, start,
+                (firstByteNanos, transferNanos, bytes, endOfStream, failure) -> {
+                    long sizeOfObject = size;
+                    if (sizeOfObject == UNKNOWN_SIZE && endOfStream) {
+                        sizeOfObject = bytes;
+                    }
+
+                    final String outcome;
+                    if (failure != null) {
+                        outcome = LatencyHistograms.outcomeOf(failure);
+                    } else if (endOfStream) {
+                        outcome = LatencyHistograms.SUCCESS;
+                    } else {
+                        outcome = CLOSED_BEFORE_END;
+                    }
+
+                    long throttledNanos = 0L;
+                    if (metered != null) {
+                        throttledNanos = metered.getWaitNanos();
+                        histograms.recordOutcome(MantaOperation.THROTTLE_GET_BYTES, sizeOfObject,
+                                LatencyHistograms.SUCCESS, throttledNanos);
+                    }
+
+                    if (firstByteNanos < 0) {
+                        histograms.recordOutcome(firstByte, sizeOfObject, outcome, transferNanos - throttledNanos);
+                    } else {
+                        histograms.recordOutcome(firstByte, sizeOfObject, LatencyHistograms.SUCCESS,
+                                firstByteNanos);
+                        histograms.recordOutcome(transfer, sizeOfObject, outcome, transferNanos - throttledNanos);
+                    }
+                });
+    }
+
+    @Override
+    protected void createMetadata(final String container,
+            final String object,
+            final Map<String, String> map,
+            final Config config) {
+        awaitThrottle(knownObjectSize(container, object));
+
+        if (openLoop == null) {
+            createMetadataAt(container, object, map, System.nanoTime());
+            return;
+        }
+
+        final Map<String, String> copy = new HashMap<>(map);
+
+        try {
+            openLoop.execute(start -> createMetadataAt(container, object, copy, start));
+        } catch (InterruptedIOException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    /**
+     * Replaces the metadata of an object and records its latency.
+     *
+     * @param container container name
+     * @param object object name
+     * @param map metadata to set, without the m- prefix
+     * @param start value of {@link System#nanoTime()} when the update was intended to start
+     */
+    private void createMetadataAt(final String container,
+                                  final String object,
+                                  final Map<String, String> map,
+                                  final long start) {
+        Throwable failure = null;
+
+        try {
+            updateMetadata(container, object, map);
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            recordLatency(MantaOperation.PUT_METADATA, knownObjectSize(container, object), failure, start);
+        }
+    }
+
+    @Override
+    protected Map<String, String> getMetadata(final String container,
+                                              final String object, final Config config) {
+        awaitThrottle(knownObjectSize(container, object));
+
+        if (openLoop == null) {
+            return getMetadataAt(container, object, System.nanoTime());
+        }
+
+        try {
+            return openLoop.call(start -> getMetadataAt(container, object, start));
+        } catch (InterruptedIOException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    /**
+     * Reads the metadata of an object and records its latency.
+     *
+     * @param container container name
+     * @param object object name
+     * @param start value of {@link System#nanoTime()} when the lookup was intended to start
+     * @return object metadata
+     */
+    private Map<String, String> getMetadataAt(final String container, final String object, final long start) {
+        Throwable failure = null;
+
+        try {
+            return headMetadata(container, object);
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            recordLatency(MantaOperation.HEAD, knownObjectSize(container, object), failure, start);
+        }
+    }
+
+    @Override
+    public InputStream getList(final String container, final String object, final Config config) {
+        awaitThrottle(UNKNOWN_SIZE);
+
+        final ListingPolicy policy = settingsFor(config).getListingPolicy();
+
+        if (openLoop == null) {
+            listContainerAt(container, policy, System.nanoTime());
+        } else {
+            try {
+                openLoop.call(start -> listContainerAt(container, policy, start));
+            } catch (InterruptedIOException e) {
+                throw new StorageException(e);
+            }
+        }
+
+        // Entries are counted and dropped as they are read, so there is
+        // nothing left for COSBench to read
+        return new NullInputStream(0L);
+    }
+
+    /**
+     * Reads the listing of a container and records its latency.
+     *
+     * @param container container name
+     * @param policy decides which entries of the listing are read
+     * @param start value of {@link System#nanoTime()} when the listing was intended to start
+     * @return number of entries counted
+     */
+    private long listContainerAt(final String container, final ListingPolicy policy, final long start) {
+        Throwable failure = null;
+
+        try {
+            final long entries = listContainer(container, policy);
+            listings.incrementAndGet();
+            listedEntries.addAndGet(entries);
+            return entries;
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            listingNanos.addAndGet(System.nanoTime() - start);
+            recordLatency(MantaOperation.LIST, UNKNOWN_SIZE, failure, start);
+        }
+    }
+
+    /**
+     * Streams the listing of the directory or bucket of a container a page
+     * at a time, recording the time spent on each page.
+     *
+     * @param container container name
+     * @param policy decides which entries of the listing are read
+     * @return number of entries counted
+     * @throws StorageException when the listing can't be read
+     */
+    private long listContainer(final String container, final ListingPolicy policy) {
+        final LatencyHistograms histograms = latencyHistograms;
+        final ListingPolicy.PageListener pages = (entries, nanos) -> {
+            listedPages.incrementAndGet();
+            if (histograms != null) {
+                histograms.record(MantaOperation.LIST_PAGE, UNKNOWN_SIZE, null, nanos);
+            }
+        };
+
+        try {
+            return drainListing(container, policy, pages);
+        } catch (IOException | RuntimeException e) {
+            if (logging) {
+                logger.error("Error listing container", e);
+            }
+            throw new StorageException(e);
+        }
+    }
+
+    /**
+     * Opens the listing of the directory or bucket of a container and reads it.
+     *
+     * @param container container name
+     * @param policy decides which entries of the listing are read
+     * @param pages receiver of the time spent reading each page
+     * @return number of entries counted
+     * @throws IOException when the listing can't be read
+     */
+    private long drainListing(final String container, final ListingPolicy policy,
+                              final ListingPolicy.PageListener pages) throws IOException {
+        if ("buckets".equals(testType)) {
+            final String bucketIteratorPath = pathOfBaseContainer(container) + MantaClient.SEPARATOR
+                    + DEFAULT_BUCKETS_OBJECT;
+
+            try (MantaBucketListingIterator itr = client.streamingBucketIterator(bucketIteratorPath)) {
+                return policy.drain(itr, pages);
+            }
+        }
+
+        try (MantaDirectoryListingIterator itr = client.streamingIterator(pathOfBaseContainer(container))) {
+            return policy.drain(itr, pages);
+        }
+    }
+
+    /**
+     * Records the latency of an operation when latency histograms are enabled.
+     *
+     * @param operation type of operation
+     * @param size object size in bytes or {@link #UNKNOWN_SIZE}
+     * @param failure exception thrown by the operation or null when it succeeded
+     * @param start value of {@link System#nanoTime()} when the operation started
+     */
+    private void recordLatency(final MantaOperation operation, final long size,
+                               final Throwable failure, final long start) {
+        final LatencyHistograms histograms = latencyHistograms;
+
+        if (histograms != null) {
+            histograms.record(operation, size, failure, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Waits until the driver-wide throttle lets another operation start,
+     * recording the wait apart from the latency of the operation.
+     *
+     * @param size object size in bytes or {@link #UNKNOWN_SIZE}
+     */
+    private void awaitThrottle(final long size) {
+        if (throttle == null || throttle.getOperations() == null) {
+            return;
+        }
+
+        final long waited;
+        try {
+            waited = throttle.awaitOperation();
+        } catch (InterruptedIOException e) {
+            throw new StorageException(e);
+        }
+
+        recordThrottleWait(MantaOperation.THROTTLE_OPERATION, size, waited);
+    }
+
+    /**
+     * Records the time spent waiting for the driver-wide throttle if latency
+     * histograms are enabled.
+     *
+     * @param operation type of throttle wait
+     * @param size object size in bytes or {@link #UNKNOWN_SIZE}
+     * @param nanos nanoseconds spent waiting
+     */
+    private void recordThrottleWait(final MantaOperation operation, final long size, final long nanos) {
+        final LatencyHistograms histograms = latencyHistograms;
+
+        if (histograms != null) {
+            histograms.recordOutcome(operation, size, LatencyHistograms.SUCCESS, nanos);
+        }
+    }
+
+    /**
+     * Finds the size of an object without making any requests, for breaking
+     * down latency by object size. Nothing is looked up when latency
+     * histograms are disabled.
+     *
+     * @param container container name
+     * @param object object name
+     * @return object size in bytes or {@link #UNKNOWN_SIZE}
+     */
+    private long knownObjectSize(final String container, final String object) {
+        if (latencyHistograms == null) {
+            return UNKNOWN_SIZE;
+        }
+
+        if (objectSize != null) {
+            return objectSize;
+        }
+
+        return objectSizeCache.get(pathOfObject(container, object));
+    }
+
+    /**
+     * Creates the directory or bucket of a container.
+     *
+     * @param container container name
+     * @throws StorageException when the bucket can't be created
+     */
+    private void makeContainer(final String container) {
+        if (logging) {
+            if ("buckets".equals(testType)) {
+                logger.info("Performing CREATE bucket at /{}", container);
+            } else {
+                logger.info("Performing PUT dir at /{}", container);
+            }
+        }
+        try {
+            if ("buckets".equals(testType)) {
+                final String bucketPath = pathOfBaseContainer(container);
+                client.createBucket(bucketPath);
+                if (!client.existsAndIsAccessible(bucketPath)) {
+                    String msg = "Unable to create test bucket";
+                    throw new StorageException(msg);
+                }
+            } else {
+                client.putDirectory(pathOfBaseContainer(container));
+            }
+        } catch (Exception e) {
+            if (logging) {
+                logger.error("Error creating container", e);
+            }
+        }
+    }
+
+    /**
+     * Deletes the directory or bucket of a container and everything in it.
+     *
+     * @param container container name
+     * @throws StorageException when the container can't be deleted
+     */
+    private void removeContainer(final String container) {
         if (logging) {
             if ("buckets".equals(testType)) {
                 logger.info("Performing DELETE bucket at /{}", container);
@@ -288,33 +1446,25 @@ public class MantaStorage extends NoneStorage {
             if ("buckets".equals(testType)) {
                 client.deleteBucket(pathOfBaseContainer(container));
             } else {
-                client.deleteRecursive(pathOfBaseContainer(container));
+                deleteDirectoryTree(container);
             }
         } catch (MantaClientHttpResponseException e) {
-            if (!e.getServerCode().equals(MantaErrorCode.RESOURCE_NOT_FOUND_ERROR)
-                    || !e.getServerCode().equals(MantaErrorCode.BUCKET_NOT_FOUND_ERROR)) {
-
-                if (e.getServerCode().equals(MantaErrorCode.BUCKET_NOT_EMPTY_ERROR)) {
-                    try {
-                        deleteObjectsInBucket(container);
-                        client.deleteBucket(pathOfBaseContainer(container));
-                    } catch (MantaClientHttpResponseException me) {
-                        if (!me.getServerCode().equals(MantaErrorCode.BUCKET_NOT_FOUND_ERROR)) {
-                            if (logging) {
-                                logger.error("Error in deleting container", me);
-                            }
-                            throw new StorageException(me);
-                        }
-                    } catch (IOException ie) {
-                        throw new StorageException(ie);
-                    }
-                } else {
-                    if (logging) {
-                        logger.error("Error deleting container", e);
-                    }
-                }
-                throw new StorageException(e);
+            final MantaErrorCode code = e.getServerCode();
+
+            if (MantaErrorCode.RESOURCE_NOT_FOUND_ERROR.equals(code)
+                    || MantaErrorCode.BUCKET_NOT_FOUND_ERROR.equals(code)) {
+                return;
+            }
+
+            if (MantaErrorCode.BUCKET_NOT_EMPTY_ERROR.equals(code)) {
+                emptyAndRemoveBucket(container);
+                return;
+            }
+
+            if (logging) {
+                logger.error("Error deleting container", e);
             }
+            throw new StorageException(e);
         } catch (Exception e) {
             if (logging) {
                 logger.error("Error deleting container", e);
@@ -323,12 +1473,153 @@ public class MantaStorage extends NoneStorage {
         }
     }
 
-    @Override
-    public void createObject(final String container,
-            final String object,
-            final InputStream data,
-            final long length,
-            final Config config) {
+    /**
+     * Deletes every object in a bucket and then the bucket itself. A bucket
+     * that is already gone by the time it is deleted counts as deleted.
+     *
+     * @param container container name
+     * @throws StorageException when the objects or the bucket can't be deleted
+     */
+    private void emptyAndRemoveBucket(final String container) {
+        try {
+            deleteObjectsInBucket(container);
+            client.deleteBucket(pathOfBaseContainer(container));
+        } catch (MantaClientHttpResponseException e) {
+            if (!MantaErrorCode.BUCKET_NOT_FOUND_ERROR.equals(e.getServerCode())) {
+                if (logging) {
+                    logger.error("Error in deleting container", e);
+                }
+                throw new StorageException(e);
+            }
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    /**
+     * Chooses the content of an upload: deterministic content when content is
+     * verified, a slice of the payload pool when it is enabled and the length
+     * of the object is known, or else the data generated by COSBench.
+     *
+     * @param container container name
+     * @param object object name
+     * @param data data generated by COSBench
+     * @param length number of bytes in the object or -1 if unknown
+     * @return content to upload
+     */
+    private InputStream contentOf(final String container, final String object,
+                                  final InputStream data, final long length) {
+        if (verification != null) {
+            return new PayloadInputStream(data, PayloadGenerator.objectSeed(payloadSeed, container, object));
+        }
+
+        if (payloadPool != null && length >= 0L) {
+            return payloadPool.open(PayloadGenerator.objectSeed(payloadSeed, container, object), length, data);
+        }
+
+        return data;
+    }
+
+    /**
+     * Chooses the content of an upload that outlives the call that supplied
+     * its data. The data generated by COSBench is read to its end right away,
+     * so that COSBench counts its bytes, and the upload streams the same
+     * deterministic content as it would otherwise.
+     *
+     * @param container container name
+     * @param object object name
+     * @param data data generated by COSBench
+     * @param length number of bytes in the object
+     * @return content to upload
+     */
+    private InputStream detachedContentOf(final String container, final String object,
+                                          final InputStream data, final long length) {
+        try {
+            drain(data);
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
+
+        final long objectSeed = PayloadGenerator.objectSeed(payloadSeed, container, object);
+
+        if (payloadPool != null) {
+            return payloadPool.open(objectSeed, length, new NullInputStream(length));
+        }
+
+        return new PayloadInputStream(new NullInputStream(length), objectSeed);
+    }
+
+    /**
+     * Reads a stream to its end, skipping its bytes where the stream allows.
+     *
+     * @param in stream to read
+     * @throws IOException when the stream can't be read
+     */
+    private static void drain(final InputStream in) throws IOException {
+        boolean more = true;
+
+        while (more) {
+            more = in.skip(Long.MAX_VALUE) > 0L || in.read() != EOF;
+        }
+    }
+
+    /**
+     * Chooses how an object is uploaded, counting the objects on each side
+     * of a multipart threshold. Parts are never larger than half of the
+     * memory budget of the part buffers, and an object that would need more
+     * than the maximum number of parts of that size is rejected before
+     * anything is uploaded.
+     *
+     * @param multipartPolicy multipart policy of the upload
+     * @param length number of bytes in the object
+     * @return size in bytes of each part or {@link MultipartPolicy#SINGLE_PUT} for a single PUT
+     * @throws StorageException when the object doesn't fit in the maximum number of parts
+     */
+    private int choosePartSize(final MultipartPolicy multipartPolicy, final long length) {
+        final int partSize = multipartPolicy.partSizeFor(length, maxPartSize);
+
+        if (partSize != MultipartPolicy.SINGLE_PUT && length > 0L
+                && MultipartUploader.numberOfParts(length, partSize) > multipartPolicy.getMaxParts()) {
+            final String msg = String.format("Object of %d bytes needs %d parts of %d bytes, more than the "
+                    + "%d parts allowed by max-multipart-parts. Raise multipart-memory-budget to allow "
+                    + "larger parts.", length, MultipartUploader.numberOfParts(length, partSize), partSize,
+                    multipartPolicy.getMaxParts());
+
+            if (logging) {
+                logger.error(msg);
+            }
+
+            throw new StorageException(msg);
+        }
+
+        if (multipartPolicy.isAutomatic()) {
+            if (partSize == MultipartPolicy.SINGLE_PUT) {
+                thresholdSinglePuts.incrementAndGet();
+            } else {
+                thresholdMultipartPuts.incrementAndGet();
+            }
+        }
+
+        return partSize;
+    }
+
+    /**
+     * Uploads an object with a single PUT or as a multipart upload.
+     *
+     * @param container container name
+     * @param object object name
+     * @param data object content
+     * @param length number of bytes in the object
+     * @param operation settings of the upload
+     * @param partSize size in bytes of each part or {@link MultipartPolicy#SINGLE_PUT} for a single PUT
+     * @throws StorageException when the object can't be uploaded
+     */
+    private void putObject(final String container,
+                           final String object,
+                           final InputStream data,
+                           final long length,
+                           final OperationSettings operation,
+                           final int partSize) {
         if (logging) {
             if ("buckets".equals(testType)) {
                 logger.info("Performing PUT bucketobject at /{}/objects/{}",
@@ -341,22 +1632,21 @@ public class MantaStorage extends NoneStorage {
         final String path = pathOfObject(container, object);
         final long contentLength;
 
-        if (chunked) {
+        if (operation.isChunked()) {
             contentLength = -1L;
         } else {
             contentLength = length;
         }
-        MantaHttpHeaders headers = new MantaHttpHeaders();
+        final MantaHttpHeaders headers = requestTemplates.uploadHeaders(operation.getDurabilityLevel());
 
         try {
-            if (durabilityLevel != null) {
-                headers.setDurabilityLevel(durabilityLevel);
-            }
-            if (this.multipart) {
+            if (partSize != MultipartPolicy.SINGLE_PUT) {
+                final MultipartUploader uploader = multipartUploader(partSize);
+
                 if (client.getContext().isClientEncryptionEnabled()) {
-                    multipartUpload(data, path, encryptedMultipartManager);
+                    multipartUpload(uploader, data, length, path, encryptedMultipartManager);
                 } else {
-                    multipartUpload(data, path, serverMultipartManager);
+                    multipartUpload(uploader, data, length, path, serverMultipartManager);
                 }
             } else {
                 client.put(path, data, contentLength, headers, null);
@@ -390,48 +1680,30 @@ public class MantaStorage extends NoneStorage {
 
             throw new StorageException(e);
         }
+
+        objectSizeCache.put(path, length);
     }
 
     /**
      * Helper method for parsing out the streams and uploading in the multi-part way.
      *
+     * @param uploader - Uploader splitting the stream into parts.
      * @param data - Data stream.
+     * @param length - Number of bytes in the data stream.
      * @param path - The path that we are going to put the object into.
      * @param multipartManager - This will be EncryptedServerSideMultipartManager or ServerSideMultipartManager.
+     * @param <UPLOAD> - Type of multipart upload.
+     * @param <PART> - Type of multipart upload part.
+     * @throws StorageException when the upload can't be completed
      */
-    @SuppressWarnings("unchecked")
-    private void multipartUpload(final InputStream data,
+    private <UPLOAD extends MantaMultipartUpload, PART extends MantaMultipartUploadPart> void multipartUpload(
+            final MultipartUploader uploader,
+            final InputStream data,
+            final long length,
             final String path,
-            @SuppressWarnings("rawtypes") final MantaMultipartManager multipartManager) {
-        MantaMultipartUpload upload = null;
+            final MantaMultipartManager<UPLOAD, PART> multipartManager) {
         try {
-            upload = multipartManager.initiateUpload(path);
-            int splits = Math.floorDiv(data.available(), splitSize);
-            LinkedList<MantaMultipartUploadPart> parts = new LinkedList<MantaMultipartUploadPart>();
-            int partNumber = 1;
-            for (int i = 0; i < splits; i++) {
-                try (BoundedInputStream bis = new BoundedInputStream(data, splitSize)) {
-                    parts.add(multipartManager.uploadPart(upload, partNumber, bis));
-                    partNumber++;
-                } catch (Exception e) {
-                    if (logging) {
-                        logger.error("Error in putting together the MPU {}", e.getMessage());
-                    }
-                    throw new StorageException(e);
-                }
-            }
-            if ((data.available() % splitSize) != 0) {
-                try (BoundedInputStream bis = new BoundedInputStream(data, data.available() % splitSize)) {
-                    parts.add(multipartManager.uploadPart(upload, partNumber, bis));
-                    partNumber++;
-                } catch (Exception e) {
-                    if (logging) {
-                        logger.error("Error in putting together the MPU {}", e.getMessage());
-                    }
-                    throw new StorageException(e);
-                }
-            }
-            multipartManager.complete(upload, parts);
+            uploader.upload(data, length, path, multipartManager);
         } catch (IOException e) {
             if (logging) {
                 logger.error("Exception when uploading file {}", e);
@@ -440,9 +1712,14 @@ public class MantaStorage extends NoneStorage {
         }
     }
 
-    @Override
-    public void deleteObject(final String container, final String object,
-                             final Config config) {
+    /**
+     * Deletes an object.
+     *
+     * @param container container name
+     * @param object object name
+     * @throws StorageException when the object can't be deleted
+     */
+    private void removeObject(final String container, final String object) {
         if (logging) {
             if ("buckets".equals(testType)) {
                 logger.info("Performing DELETE bucketobject at /{}/objects/{}",
@@ -454,6 +1731,7 @@ public class MantaStorage extends NoneStorage {
 
         try {
             String path = pathOfObject(container, object);
+            objectSizeCache.remove(path);
             client.delete(path);
         } catch (MantaClientHttpResponseException e) {
             if (!e.getServerCode().equals(MantaErrorCode.RESOURCE_NOT_FOUND_ERROR)
@@ -471,14 +1749,38 @@ public class MantaStorage extends NoneStorage {
         }
     }
 
-    @Override
-    public InputStream getObject(final String container, final String object, final Config config) {
+    /**
+     * Opens the content of an object with a single GET or with HTTP range requests.
+     *
+     * @param container container name
+     * @param object object name
+     * @param operation settings of the download
+     * @return stream of the object content
+     * @throws StorageException when the object can't be opened
+     */
+    private InputStream openObject(final String container, final String object,
+                                   final OperationSettings operation) {
         final InputStream objectStream;
 
         try {
             final String path = pathOfObject(container, object);
+            final RangeSectionSizer rangeSectionSizer = operation.getRangeSectionSizer();
+            final int sections = operation.getSections();
+            final long size;
+            final int objectSections;
+
+            if (rangeSectionSizer != null) {
+                size = rangeObjectSize(path);
+                objectSections = rangeSectionSizer.sectionsFor(size);
+            } else if (sections == 1) {
+                size = 0L;
+                objectSections = 1;
+            } else {
+                size = rangeObjectSize(path);
+                objectSections = sections;
+            }
 
-            if (sections == 1) {
+            if (objectSections <= 1 || size < objectSections) {
                 if (logging) {
                     if ("buckets".equals(testType)) {
                         logger.info("Performing GET bucketobject at /{}/objects/{}",
@@ -488,36 +1790,82 @@ public class MantaStorage extends NoneStorage {
                     }
                 }
                 objectStream = client.getAsInputStream(path);
-            } else if (objectSize != null) {
+            } else {
                 if (logging) {
                     logger.info("Performing GET with HTTP byte range at /{}/{}", container, object);
                 }
 
-                int size = this.objectSize;
-                objectStream = new RangeJoiningInputStream(path, client, size, sections);
-            } else {
-                String msg = "[object-size] must be set when [no-of-http-range-sections] is set";
+                final RangeJoiningInputStream rangeStream = new RangeJoiningInputStream(path, client,
+                        size, objectSections, rangeExecutor, rangeParallelism, rangeBufferSize);
 
-                if (logging) {
-                    logger.error(msg);
+                if (rangeSectionSizer != null && rangeSectionSizer.isAdaptive()) {
+                    rangeStream.withSectionListener(rangeSectionSizer);
                 }
-                throw new StorageException(msg);
+
+                if (latencyHistograms != null) {
+                    rangeStream.withSectionListener(rangeLatencyListener);
+                }
+
+                if (rangeHedger != null) {
+                    rangeStream.withHedging(rangeHedger);
+                }
+
+                objectStream = rangeStream;
             }
         } catch (Exception e) {
             if (logging) {
                 logger.error("Error error getting object", e);
             }
+            objectSizeCache.remove(pathOfObject(container, object));
             throw new StorageException(e);
         }
 
         return objectStream;
     }
 
-    @Override
-    protected void createMetadata(final String container,
-            final String object,
-            final Map<String, String> map,
-            final Config config) {
+    /**
+     * Utility method that finds the size of an object for splitting it into
+     * HTTP range sections. A size set in the configuration always wins.
+     * Otherwise the size is looked up in the driver-wide cache, which is
+     * filled by objects written by this driver and by HEAD requests.
+     *
+     * @param path path of the object
+     * @return size of the object in bytes
+     * @throws IOException when the object can't be inspected
+     * @throws StorageException when Manta doesn't report the size of the object
+     */
+    private long rangeObjectSize(final String path) throws IOException {
+        if (objectSize != null) {
+            return objectSize;
+        }
+
+        long size = objectSizeCache.get(path);
+
+        if (size == ObjectSizeCache.NOT_FOUND) {
+            final Long contentLength = client.head(path).getContentLength();
+
+            if (contentLength == null) {
+                throw new StorageException("Unable to determine size of object at " + path);
+            }
+
+            size = contentLength;
+            objectSizeCache.put(path, size);
+        }
+
+        return size;
+    }
+
+    /**
+     * Replaces the metadata of an object.
+     *
+     * @param container container name
+     * @param object object name
+     * @param map metadata to set, without the m- prefix
+     * @throws StorageException when the metadata can't be updated
+     */
+    private void updateMetadata(final String container,
+                                final String object,
+                                final Map<String, String> map) {
         if (logging) {
             if ("buckets".equals(testType)) {
                 logger.info("Performing POST at /{}/objects/{}",
@@ -529,15 +1877,7 @@ public class MantaStorage extends NoneStorage {
 
         try {
             String path = pathOfObject(container, object);
-            Map<String, String> prefixedMap = new HashMap<>(map.size());
-            String format = "m-%s";
-
-            for (Map.Entry<String, String> entry : map.entrySet()) {
-                prefixedMap.put(String.format(format, entry.getKey()), entry.getValue());
-            }
-
-            MantaMetadata metadata = new MantaMetadata(prefixedMap);
-            client.putMetadata(path, metadata);
+            client.putMetadata(path, requestTemplates.metadataOf(map));
         } catch (Exception e) {
             if (logging) {
                 logger.error("Error error creating metadata", e);
@@ -546,9 +1886,15 @@ public class MantaStorage extends NoneStorage {
         }
     }
 
-    @Override
-    protected Map<String, String> getMetadata(final String container,
-                                              final String object, final Config config) {
+    /**
+     * Reads the metadata of an object.
+     *
+     * @param container container name
+     * @param object object name
+     * @return object metadata
+     * @throws StorageException when the metadata can't be read
+     */
+    private Map<String, String> headMetadata(final String container, final String object) {
         if (logging) {
             if ("buckets".equals(testType)) {
                 logger.info("Performing HEAD at /{}/objects/{}",
@@ -571,9 +1917,145 @@ public class MantaStorage extends NoneStorage {
 
     @Override
     public void dispose() {
+        // Background operations record their latency, so they finish first
+        disposeOpenLoop();
+        releaseThrottle();
+
+        if (latencyHistograms != null) {
+            try {
+                LatencyHistograms.publish(latencyHistograms, latencySummaryFile);
+            } catch (IOException e) {
+                if (logging) {
+                    logger.warn("Error when attempting to write latency summary", e);
+                }
+            }
+
+            latencyHistograms = null;
+        }
+
+        if (logging && verification != null) {
+            logger.info("Verified the content of {} objects ({} bytes checked in {} ms) with {} mismatches",
+                    new Object[] {verification.getVerifiedObjects(), verification.getVerifiedBytes(),
+                            TimeUnit.NANOSECONDS.toMillis(verification.getVerifyNanos()),
+                            verification.getMismatches()});
+        }
+
+        if (logging && rangeHedger != null) {
+            logger.info("Hedged {} of {} HTTP range requests with a last hedge delay of {} ms: "
+                    + "{} hedges and {} first requests answered first",
+                    new Object[] {rangeHedger.getHedges(), rangeHedger.getRanges(),
+                            TimeUnit.NANOSECONDS.toMillis(Math.max(0L, rangeHedger.getDelayNanos())),
+                            rangeHedger.getHedgeWins(), rangeHedger.getPrimaryWins()});
+        }
+
+        if (logging && thresholdSinglePuts.get() + thresholdMultipartPuts.get() > 0) {
+            logger.info("Multipart threshold sent {} objects with a single PUT and {} as multipart uploads",
+                    thresholdSinglePuts.get(), thresholdMultipartPuts.get());
+        }
+
+        if (logging && listings.get() > 0) {
+            final long millis = TimeUnit.NANOSECONDS.toMillis(listingNanos.get());
+            long entriesPerSecond = 0L;
+            if (millis > 0) {
+                entriesPerSecond = listedEntries.get() * TimeUnit.SECONDS.toMillis(1L) / millis;
+            }
+
+            logger.info("Listed {} entries from {} pages of {} listings in {} ms ({} entries per second)",
+                    new Object[] {listedEntries.get(), listedPages.get(), listings.get(), millis, entriesPerSecond});
+        }
+
+        if (multipartExecutor != null) {
+            multipartExecutor.shutdownNow();
+            multipartExecutor = null;
+        }
+
+        if (rangeExecutor != null) {
+            rangeExecutor.shutdownNow();
+            rangeExecutor = null;
+        }
+
+        releaseClient();
+    }
+
+    /**
+     * Waits for the background operations of the open-loop engine to finish
+     * before the client is released and logs how well the schedule was kept.
+     */
+    private void disposeOpenLoop() {
+        if (openLoop == null) {
+            return;
+        }
+
+        try {
+            if (!openLoop.shutdown(OPEN_LOOP_SHUTDOWN_SECONDS, TimeUnit.SECONDS) && logging) {
+                logger.warn("Open-loop operations were still running after {} seconds and were stopped",
+                        OPEN_LOOP_SHUTDOWN_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            openLoop.abort();
+        }
+
+        if (logging) {
+            logger.info("Open-loop load mode issued {} operations, {} of them late by up to {} ms, "
+                    + "and {} background operations failed",
+                    new Object[] {openLoop.getIssued(), openLoop.getLate(),
+                            TimeUnit.NANOSECONDS.toMillis(openLoop.getMaxLagNanos()), openLoop.getFailures()});
+
+            if (openLoop.getFirstFailure() != null) {
+                logger.warn("First failed open-loop operation", openLoop.getFirstFailure());
+            }
+        }
+
+        openLoop = null;
+    }
+
+    /**
+     * Releases the driver-wide throttle. The last worker using it logs how
+     * long operations and transfers of the whole driver waited for it.
+     */
+    private void releaseThrottle() {
+        if (throttle == null) {
+            return;
+        }
+
+        if (DriverThrottle.release(throttle) && logging) {
+            logThrottleWaits("operations", throttle.getOperations());
+            logThrottleWaits("uploaded bytes", throttle.getPutBytes());
+            logThrottleWaits("downloaded bytes", throttle.getGetBytes());
+        }
+
+        throttle = null;
+    }
+
+    /**
+     * Logs how long the driver waited for one of the limits of the throttle.
+     *
+     * @param name what the limit counts
+     * @param bucket bucket of the limit or null when it isn't limited
+     */
+    private void logThrottleWaits(final String name, final TokenBucket bucket) {
+        if (bucket == null) {
+            return;
+        }
+
+        logger.info("Driver throttle passed {} {} at {} per second and waited {} times for {} ms in total",
+                new Object[] {bucket.getTaken(), name, bucket.getSchedule(), bucket.getWaits(),
+                        TimeUnit.NANOSECONDS.toMillis(bucket.getWaitNanos())});
+    }
+
+    /**
+     * Returns a shared client to the registry or closes a client owned by
+     * this worker.
+     */
+    private void releaseClient() {
         try {
             if (client != null) {
-                client.close();
+                if (sharedClient) {
+                    MantaClientRegistry.shared().release(client);
+                } else {
+                    client.close();
+                }
             }
         } catch (Exception e) {
             if (logging) {
@@ -586,7 +2068,23 @@ public class MantaStorage extends NoneStorage {
 
     @Override
     public void abort() {
-        client.closeQuietly();
+        if (openLoop != null) {
+            openLoop.abort();
+        }
+
+        if (multipartExecutor != null) {
+            multipartExecutor.shutdownNow();
+        }
+
+        if (rangeExecutor != null) {
+            rangeExecutor.shutdownNow();
+        }
+
+        // A shared client is still in use by other workers, so it is left
+        // open and returned to the registry when this worker is disposed.
+        if (!sharedClient && client != null) {
+            client.closeQuietly();
+        }
     }
 
     /**
@@ -596,13 +2094,7 @@ public class MantaStorage extends NoneStorage {
      * @return path of the directory or bucket as string
      */
     private String pathOfBaseContainer(final String container) {
-        if ("buckets".equals(testType)) {
-            return String.format("%s%s", currentTestDirOrBucket,
-                    container.toLowerCase().replaceAll("[^a-zA-Z0-9]", ""));
-        } else {
-            return String.format("%s%s%s", currentTestDirOrBucket,
-                    MantaClient.SEPARATOR, container);
-        }
+        return pathResolver.containerPath(container);
     }
 
     /**
@@ -613,21 +2105,13 @@ public class MantaStorage extends NoneStorage {
      * @return full path to object as string
      */
     private String pathOfObject(final String container, final String object) {
-        if ("buckets".equals(testType)) {
-            String bucketPath = pathOfBaseContainer(container);
-            return String.format("%s%s%s%s", bucketPath,
-                    MantaClient.SEPARATOR,
-                    DEFAULT_BUCKETS_OBJECT,
-                    object.toLowerCase().replaceAll("[^a-zA-Z0-9]", ""));
-        } else {
-            String dir = pathOfBaseContainer(container);
-            return String.format("%s%s%s", dir, MantaClient.SEPARATOR, object);
-        }
+        return pathResolver.objectPath(container, object);
     }
 
     /**
      * Utility method that iterates through the contents of the bucket and deletes
-     * the objects in order to empty the bucket.
+     * the objects in order to empty the bucket. Objects are deleted by a pool of
+     * deleters while the listing is still being read.
      *
      * @param container container name
      * @throws IOException when object cannot be deleted
@@ -635,28 +2119,50 @@ public class MantaStorage extends NoneStorage {
     private void deleteObjectsInBucket(final String container) throws IOException {
         String bucketIteratorPath = String.format("%s%s%s", pathOfBaseContainer(container),
                 MantaClient.SEPARATOR, DEFAULT_BUCKETS_OBJECT);
-        MantaBucketListingIterator itr =
-                client.streamingBucketIterator(bucketIteratorPath);
-        while (itr.hasNext()) {
-            Map<String, Object> next = itr.next();
-            if ("bucketobject".equals(Objects.toString(next.get("type")))) {
-                String objectPath = pathOfObject(container,
-                        Objects.toString(next.get("name")));
-                try {
-                    client.delete(objectPath);
-                } catch (MantaClientHttpResponseException e) {
-                    if (!e.getServerCode().equals(MantaErrorCode.OBJECT_NOT_FOUND_ERROR)
-                    || !e.getServerCode().equals(MantaErrorCode.RESOURCE_NOT_FOUND_ERROR)) {
-                        if (logging) {
-                            String msg = String.format("Bucket /%s is not empty. "
-                                            + "Error in attempting to delete object at %s",
-                                    container, objectPath);
-                            logger.error(msg, e);
-                        }
-                        throw new StorageException(e);
-                    }
-                }
+        final Logger progressLogger;
+        if (logging) {
+            progressLogger = logger;
+        } else {
+            progressLogger = null;
+        }
+
+        final BucketEmptier emptier = new BucketEmptier(client::delete,
+                bucketDeleteParallelism, bucketDeleteRate, progressLogger);
+
+        try (MantaBucketListingIterator itr = client.streamingBucketIterator(bucketIteratorPath)) {
+            emptier.empty(container, itr, object -> pathOfObject(container, object));
+        } catch (IOException | RuntimeException e) {
+            if (logging) {
+                String msg = String.format("Bucket /%s is not empty. "
+                        + "Error in attempting to delete its objects", container);
+                logger.error(msg, e);
             }
+            throw e;
+        }
+    }
+
+    /**
+     * Utility method that deletes the directory of a container and everything
+     * below it. Directories are listed and entries deleted by a pool of
+     * threads, and each directory is deleted once it is empty.
+     *
+     * @param container container name
+     * @throws IOException when a directory cannot be listed or an entry cannot be deleted
+     */
+    private void deleteDirectoryTree(final String container) throws IOException {
+        final Logger progressLogger;
+        if (logging) {
+            progressLogger = logger;
+        } else {
+            progressLogger = null;
         }
+
+        final TreeDeleter deleter = new TreeDeleter((dir, visitor) -> {
+            try (Stream<MantaObject> children = client.listObjects(dir)) {
+                children.forEach(child -> visitor.visit(child.getPath(), child.isDirectory()));
+            }
+        }, client::delete, dirDeleteParallelism, dirDeleteRate, progressLogger);
+
+        deleter.delete(pathOfBaseContainer(container));
     }
 }
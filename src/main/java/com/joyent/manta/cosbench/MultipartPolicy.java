@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+/**
+ * Decides whether an object is uploaded with a single PUT or as a multipart
+ * upload, and the size of its parts. Without a threshold every upload uses
+ * the configured mode and part size. With a threshold the decision is made
+ * per object from its length: objects smaller than the threshold are sent
+ * with a single PUT, since a multipart upload costs at least three extra
+ * round trips, and larger objects are split into parts that start at the
+ * configured part size and are doubled until the object fits in the maximum
+ * number of parts. Doubling keeps the number of distinct part sizes small, so
+ * that part buffers are more often reused. Part sizes never exceed the
+ * largest part that the multipart memory budget can double buffer.
+ *
+ * <p>Instances are immutable.</p>
+ *
+ * @since 1.1.3
+ */
+final class MultipartPolicy {
+    /**
+     * Default maximum number of parts an object above the threshold is split
+     * into, which is the most parts Manta accepts in a multipart upload.
+     */
+    static final int DEFAULT_MAX_PARTS = 10000;
+
+    /**
+     * Largest part size chosen from the object length.
+     */
+    static final int MAX_PART_SIZE = 1 << 30;
+
+    /**
+     * Part size returned for uploads that use a single PUT.
+     */
+    static final int SINGLE_PUT = 0;
+
+    /**
+     * Flag indicating that every object is uploaded as a multipart upload
+     * when no threshold is set.
+     */
+    private final boolean multipart;
+
+    /**
+     * Size in bytes of each part, and the smallest part size when a threshold is set.
+     */
+    private final int splitSize;
+
+    /**
+     * Object size in bytes from which objects are uploaded as multipart
+     * uploads or null to always use the configured mode.
+     */
+    private final Long threshold;
+
+    /**
+     * Maximum number of parts an object above the threshold is split into.
+     */
+    private final int maxParts;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param multipart flag indicating that every object is uploaded as a multipart upload
+     * @param splitSize size in bytes of each part
+     * @param threshold object size from which objects are uploaded as multipart uploads or null
+     * @param maxParts maximum number of parts an object above the threshold is split into
+     */
+    MultipartPolicy(final boolean multipart,
+                    final int splitSize,
+                    final Long threshold,
+                    final int maxParts) {
+        if (splitSize <= 0) {
+            throw new IllegalArgumentException("Split size must be greater than zero");
+        }
+
+        if (maxParts <= 0) {
+            throw new IllegalArgumentException("Maximum number of parts must be greater than zero");
+        }
+
+        this.multipart = multipart;
+        this.splitSize = splitSize;
+        this.threshold = threshold;
+        this.maxParts = maxParts;
+    }
+
+    /**
+     * Chooses how an object is uploaded.
+     *
+     * @param length number of bytes in the object or -1 if unknown
+     * @param maxPartSize largest part size that the part buffers can hold
+     * @return size in bytes of each part or {@link #SINGLE_PUT} to upload with a single PUT
+     */
+    int partSizeFor(final long length, final int maxPartSize) {
+        final int largest = Math.min(maxPartSize, MAX_PART_SIZE);
+
+        if (threshold == null) {
+            if (multipart) {
+                return Math.min(splitSize, largest);
+            }
+
+            return SINGLE_PUT;
+        }
+
+        // Objects of unknown length can't be split by length, and a single
+        // PUT streams them as they are.
+        if (length < threshold) {
+            return SINGLE_PUT;
+        }
+
+        long partSize = Math.min(splitSize, largest);
+        while (partSize < largest && MultipartUploader.numberOfParts(length, (int)partSize) > maxParts) {
+            partSize = Math.min(partSize * 2L, largest);
+        }
+
+        return (int)partSize;
+    }
+
+    /**
+     * @return true when at least some objects may be uploaded as multipart uploads
+     */
+    boolean isEnabled() {
+        return multipart || threshold != null;
+    }
+
+    /**
+     * @return true when the upload mode is chosen per object from its length
+     */
+    boolean isAutomatic() {
+        return threshold != null;
+    }
+
+    /**
+     * @return size in bytes of each part, and the smallest part size when a threshold is set
+     */
+    int getSplitSize() {
+        return splitSize;
+    }
+
+    /**
+     * @return object size in bytes from which objects are uploaded as multipart uploads or null
+     */
+    Long getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @return maximum number of parts an object above the threshold is split into
+     */
+    int getMaxParts() {
+        return maxParts;
+    }
+
+    /**
+     * @return flag indicating that every object is uploaded as a multipart upload when no threshold is set
+     */
+    boolean isMultipart() {
+        return multipart;
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import com.joyent.manta.client.multipart.MantaMultipartManager;
+import com.joyent.manta.client.multipart.MantaMultipartUpload;
+import com.joyent.manta.client.multipart.MantaMultipartUploadPart;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Uploads an object as a multipart upload by reading the source stream into
+ * part buffers checked out of the worker's {@link PartBufferPool} and handing
+ * each filled buffer off to an {@link ExecutorService}. While parts are being
+ * sent, the next part is read into another buffer, so reading and uploading
+ * are overlapped. With a single upload thread parts are sent strictly in
+ * order, which is required for encrypted uploads; with more threads multiple
+ * parts are in flight at the same time. An upload never holds more than one
+ * buffer per upload thread plus the one being filled, and every upload of the
+ * worker shares the memory budget of the pool.
+ *
+ * <p>The number of parts is derived from the length of the object rather
+ * than from {@link InputStream#available()}, which is only a hint.</p>
+ *
+ * @since 1.1.3
+ */
+class MultipartUploader {
+    /**
+     * Thread pool used to upload parts.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Size in bytes of each part.
+     */
+    private final int splitSize;
+
+    /**
+     * Maximum number of part buffers a single upload holds at once.
+     */
+    private final int buffersPerUpload;
+
+    /**
+     * Pool of part buffers shared by every upload of the worker.
+     */
+    private final PartBufferPool buffers;
+
+    /**
+     * Buffer of a part that has been handed to the upload threads. The buffer
+     * is returned to the pool by whoever claims it first: the upload thread
+     * when the part starts, or the uploading thread when it is interrupted
+     * before the part started.
+     */
+    private static final class PartBuffer {
+        /**
+         * Buffer holding the part data.
+         */
+        private final byte[] buffer;
+
+        /**
+         * Flag indicating that the buffer has been claimed.
+         */
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+
+        /**
+         * Creates a new instance.
+         *
+         * @param buffer buffer holding the part data
+         */
+        PartBuffer(final byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Claims the buffer.
+         *
+         * @return true when the caller now owns the buffer and must release it
+         */
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param executor thread pool used to upload parts
+     * @param splitSize size in bytes of each part
+     * @param parallelism maximum number of parts to upload at the same time
+     * @param buffers pool of part buffers shared by every upload of the worker
+     */
+    MultipartUploader(final ExecutorService executor,
+                      final int splitSize,
+                      final int parallelism,
+                      final PartBufferPool buffers) {
+        Objects.requireNonNull(executor);
+        Objects.requireNonNull(buffers);
+
+        if (splitSize <= 0) {
+            throw new IllegalArgumentException("Split size must be greater than zero");
+        }
+
+        if (splitSize > buffers.getBudget()) {
+            throw new IllegalArgumentException("Split size must fit in the multipart memory budget");
+        }
+
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Multipart parallelism must be greater than zero");
+        }
+
+        this.executor = executor;
+        this.splitSize = splitSize;
+        this.buffersPerUpload = parallelism + 1;
+        this.buffers = buffers;
+    }
+
+    /**
+     * Determines the number of parts an object will be split into.
+     *
+     * @param length length of the object in bytes
+     * @param splitSize size in bytes of each part
+     * @return number of parts
+     */
+    static long numberOfParts(final long length, final int splitSize) {
+        return (length + splitSize - 1) / splitSize;
+    }
+
+    /**
+     * Uploads the source stream as a multipart upload. When the length is
+     * known, exactly that many bytes are read from the stream and a stream
+     * that ends early is reported as an error. When the length is negative,
+     * the stream is read until its end.
+     *
+     * @param data source stream
+     * @param length number of bytes in the source stream or -1 if unknown
+     * @param path path in Manta to upload the object to
+     * @param multipartManager multipart manager used to perform the upload
+     * @param <UPLOAD> type of multipart upload
+     * @param <PART> type of multipart upload part
+     * @throws IOException when the upload can't be completed
+     */
+    <UPLOAD extends MantaMultipartUpload, PART extends MantaMultipartUploadPart> void upload(
+            final InputStream data,
+            final long length,
+            final String path,
+            final MantaMultipartManager<UPLOAD, PART> multipartManager) throws IOException {
+        final UPLOAD upload = multipartManager.initiateUpload(path);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        final List<Future<PART>> futures = new ArrayList<>();
+        final List<PartBuffer> partBuffers = new ArrayList<>();
+        final PartBufferPool pool = this.buffers;
+        final Semaphore uploadBuffers = new Semaphore(buffersPerUpload);
+
+        try {
+            long remaining = length;
+            int partNumber = 1;
+
+            while (remaining != 0 && !failed.get()) {
+                uploadBuffers.acquire();
+                final byte[] buffer = pool.acquire(splitSize);
+                final int partLength;
+
+                try {
+                    partLength = fill(data, buffer, remaining);
+                } catch (IOException | RuntimeException e) {
+                    pool.release(buffer);
+                    throw e;
+                }
+
+                if (partLength == 0) {
+                    pool.release(buffer);
+                    break;
+                }
+
+                final int number = partNumber++;
+                final PartBuffer partBuffer = new PartBuffer(buffer);
+                partBuffers.add(partBuffer);
+
+                futures.add(executor.submit(() -> {
+                    if (!partBuffer.claim()) {
+                        return null;
+                    }
+
+                    try {
+                        if (failed.get()) {
+                            return null;
+                        }
+
+                        return multipartManager.uploadPart(upload, number, partLength,
+                                new ByteArrayInputStream(buffer, 0, partLength));
+                    } catch (IOException | RuntimeException e) {
+                        failed.set(true);
+                        throw e;
+                    } finally {
+                        pool.release(buffer);
+                        uploadBuffers.release();
+                    }
+                }));
+
+                if (remaining > 0) {
+                    remaining -= partLength;
+                } else if (partLength < splitSize) {
+                    break;
+                }
+            }
+
+            final List<PART> parts = new ArrayList<>(futures.size());
+
+            for (Future<PART> future : futures) {
+                parts.add(future.get());
+            }
+
+            multipartManager.complete(upload, parts);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            for (Future<PART> future : futures) {
+                future.cancel(true);
+            }
+
+            releaseUnstarted(partBuffers, pool);
+            abort(upload, multipartManager);
+
+            throw new InterruptedIOException("Interrupted while uploading parts to " + path);
+        } catch (ExecutionException e) {
+            awaitQuietly(futures);
+            abort(upload, multipartManager);
+
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            }
+
+            throw new IOException("Error uploading part to " + path, e.getCause());
+        } catch (IOException | RuntimeException e) {
+            failed.set(true);
+            awaitQuietly(futures);
+            releaseUnstarted(partBuffers, pool);
+            abort(upload, multipartManager);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the buffers of parts that never started to the pool. Parts
+     * cancelled before they started never run, so nothing else returns their
+     * buffers, while parts that already started return their own.
+     *
+     * @param partBuffers buffers of every part handed to the upload threads
+     * @param pool pool the buffers were checked out of
+     */
+    private static void releaseUnstarted(final List<PartBuffer> partBuffers, final PartBufferPool pool) {
+        for (PartBuffer partBuffer : partBuffers) {
+            if (partBuffer.claim()) {
+                pool.release(partBuffer.buffer);
+            }
+        }
+    }
+
+    /**
+     * Fills a part buffer from the source stream.
+     *
+     * @param data source stream
+     * @param buffer part buffer
+     * @param remaining number of bytes left in the object or a negative value if unknown
+     * @return number of bytes in the part
+     * @throws IOException when the stream can't be read or ends before the expected length
+     */
+    private int fill(final InputStream data, final byte[] buffer, final long remaining) throws IOException {
+        if (remaining < 0) {
+            return IOUtils.read(data, buffer, 0, splitSize);
+        }
+
+        final int partLength = (int)Math.min(splitSize, remaining);
+        IOUtils.readFully(data, buffer, 0, partLength);
+
+        return partLength;
+    }
+
+    /**
+     * Waits for all part uploads to finish, ignoring their outcome.
+     *
+     * @param futures part uploads
+     * @param <PART> type of multipart upload part
+     * @throws InterruptedIOException when interrupted while waiting
+     */
+    private static <PART> void awaitQuietly(final List<Future<PART>> futures) throws InterruptedIOException {
+        for (Future<PART> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                // Only the first failure is reported to the caller
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for parts to finish");
+            }
+        }
+    }
+
+    /**
+     * Aborts a multipart upload, ignoring any error because the failure that
+     * caused the abort is more useful to the caller.
+     *
+     * @param upload upload to abort
+     * @param multipartManager multipart manager used to perform the upload
+     * @param <UPLOAD> type of multipart upload
+     * @param <PART> type of multipart upload part
+     */
+    private static <UPLOAD extends MantaMultipartUpload, PART extends MantaMultipartUploadPart> void abort(
+            final UPLOAD upload,
+            final MantaMultipartManager<UPLOAD, PART> multipartManager) {
+        try {
+            multipartManager.abort(upload);
+        } catch (IOException | RuntimeException e) {
+            // The original failure is more useful to the caller than this one
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size cache of object sizes keyed by object path and shared by every
+ * {@link MantaStorage} instance in the driver. Paths are reduced to a 64-bit
+ * hash and each entry occupies two longs, so the cache costs sixteen bytes
+ * per entry no matter how long paths are. Entries are direct mapped: a new
+ * entry replaces whatever entry previously occupied its slot.
+ *
+ * <p>Lookups are lock free. Each slot is written by storing an empty key,
+ * then the size, then the key, and readers check the key before and after
+ * reading the size. Writers to the same slot are serialized by a stripe of
+ * locks so that a reader never pairs a key with another key's size.</p>
+ *
+ * @since 1.1.3
+ */
+final class ObjectSizeCache {
+    /**
+     * Value returned when a path isn't in the cache.
+     */
+    static final long NOT_FOUND = -1L;
+
+    /**
+     * Default number of entries in the shared cache.
+     */
+    static final int DEFAULT_CAPACITY = 262144;
+
+    /**
+     * Key value that marks an empty or in-progress slot.
+     */
+    private static final long EMPTY = 0L;
+
+    /**
+     * Number of locks used to serialize writers.
+     */
+    private static final int WRITE_STRIPES = 64;
+
+    /**
+     * FNV-1a 64-bit offset basis.
+     */
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    /**
+     * FNV-1a 64-bit prime.
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Shift used to mix the high bits of the hash into the slot index.
+     */
+    private static final int MIX_SHIFT = 32;
+
+    /**
+     * Cache shared by all storage instances in the driver.
+     */
+    private static ObjectSizeCache shared;
+
+    /**
+     * Interleaved keys and sizes; the key of slot i is at 2i and its size at 2i + 1.
+     */
+    private final AtomicLongArray table;
+
+    /**
+     * Mask applied to a hash to find its slot.
+     */
+    private final int mask;
+
+    /**
+     * Locks used to serialize writers to the same slot.
+     */
+    private final Object[] writeLocks = new Object[WRITE_STRIPES];
+
+    /**
+     * Creates a new cache.
+     *
+     * @param capacity minimum number of entries, rounded up to a power of two
+     * @throws IllegalArgumentException when capacity isn't positive
+     */
+    ObjectSizeCache(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Object size cache capacity must be greater than zero");
+        }
+
+        final int slots = slotsFor(capacity);
+        this.table = new AtomicLongArray(slots * 2);
+        this.mask = slots - 1;
+
+        for (int i = 0; i < writeLocks.length; i++) {
+            writeLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Returns the cache shared by the driver, creating it with the specified
+     * capacity on first use. Later callers get the existing cache whatever
+     * capacity they ask for, so that every worker sees the same sizes.
+     *
+     * @param capacity number of entries to use if the cache doesn't exist yet
+     * @return shared cache
+     */
+    static synchronized ObjectSizeCache shared(final int capacity) {
+        if (shared == null) {
+            shared = new ObjectSizeCache(capacity);
+        }
+
+        return shared;
+    }
+
+    /**
+     * Finds the number of entries of a cache created with a capacity.
+     *
+     * @param capacity minimum number of entries
+     * @return capacity rounded up to a power of two
+     */
+    static int slotsFor(final int capacity) {
+        return Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    }
+
+    /**
+     * @return number of entries the cache can hold
+     */
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Looks up the size of an object.
+     *
+     * @param path path of the object
+     * @return size in bytes or {@link #NOT_FOUND} if not cached
+     */
+    long get(final String path) {
+        final long key = hash(path);
+        final int keyIndex = slot(key) * 2;
+
+        final long before = table.get(keyIndex);
+        if (before != key) {
+            return NOT_FOUND;
+        }
+
+        final long size = table.get(keyIndex + 1);
+
+        if (table.get(keyIndex) != key) {
+            return NOT_FOUND;
+        }
+
+        return size;
+    }
+
+    /**
+     * Stores the size of an object, replacing any entry in its slot.
+     *
+     * @param path path of the object
+     * @param size size in bytes
+     */
+    void put(final String path, final long size) {
+        if (size < 0) {
+            return;
+        }
+
+        final long key = hash(path);
+        final int slot = slot(key);
+        final int keyIndex = slot * 2;
+
+        synchronized (writeLocks[slot % WRITE_STRIPES]) {
+            table.set(keyIndex, EMPTY);
+            table.set(keyIndex + 1, size);
+            table.set(keyIndex, key);
+        }
+    }
+
+    /**
+     * Removes the size of an object if it is cached.
+     *
+     * @param path path of the object
+     */
+    void remove(final String path) {
+        final long key = hash(path);
+        final int slot = slot(key);
+        final int keyIndex = slot * 2;
+
+        synchronized (writeLocks[slot % WRITE_STRIPES]) {
+            if (table.get(keyIndex) == key) {
+                table.set(keyIndex, EMPTY);
+            }
+        }
+    }
+
+    /**
+     * Finds the slot of a hashed key.
+     *
+     * @param key hashed key
+     * @return slot index
+     */
+    private int slot(final long key) {
+        return (int)(key ^ (key >>> MIX_SHIFT)) & mask;
+    }
+
+    /**
+     * Computes a 64-bit FNV-1a hash of a path. Zero is reserved for empty
+     * slots and is never returned.
+     *
+     * @param path path to hash
+     * @return non-zero hash
+     */
+    static long hash(final String path) {
+        long hash = FNV_OFFSET_BASIS;
+
+        for (int i = 0; i < path.length(); i++) {
+            hash ^= path.charAt(i);
+            hash *= FNV_PRIME;
+        }
+
+        if (hash == EMPTY) {
+            return 1L;
+        }
+
+        return hash;
+    }
+}
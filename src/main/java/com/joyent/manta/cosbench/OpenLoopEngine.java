@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+
+/**
+ * Issues the operations of a worker on a fixed schedule instead of one after
+ * another. Operation k is intended to start at {@code k / rate} seconds
+ * after the first one, whether or not the operations before it have
+ * finished, and its latency is measured from that intended start. When
+ * Manta slows down, operations fall behind the schedule and the time they
+ * spent waiting for it shows up in their latency, instead of the load
+ * quietly dropping as it does when every operation waits for the previous
+ * one (coordinated omission).
+ *
+ * <p>Operations that return nothing to COSBench are run in the background so
+ * that a worker can have more than one request outstanding. Operations whose
+ * result COSBench reads are run on the worker thread. Either way, no more
+ * than a fixed number of operations of a worker are outstanding; an operation
+ * that finds every slot taken waits for one, and that wait is part of its
+ * latency. Background operations can't fail the COSBench operation, so their
+ * failures are counted instead.</p>
+ *
+ * @since 1.1.3
+ */
+final class OpenLoopEngine {
+    /**
+     * Default maximum number of outstanding operations of a worker.
+     */
+    static final int DEFAULT_MAX_OUTSTANDING = 16;
+
+    /**
+     * Value of the next intended start before the first operation arrives.
+     */
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    /**
+     * Lag after which an operation is counted as late. Sleeping until the
+     * intended start alone overshoots it by a little.
+     */
+    private static final long LATE_AFTER_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    /**
+     * Nanoseconds between the intended starts of two operations.
+     */
+    private final long intervalNanos;
+
+    /**
+     * Maximum number of outstanding operations.
+     */
+    private final int maxOutstanding;
+
+    /**
+     * Slots of outstanding operations.
+     */
+    private final Semaphore slots;
+
+    /**
+     * Threads that background operations run on.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Value of {@link System#nanoTime()} at which the next operation is intended to start.
+     */
+    private final AtomicLong nextStart = new AtomicLong(NOT_STARTED);
+
+    /**
+     * Number of operations issued.
+     */
+    private final AtomicLong issued = new AtomicLong();
+
+    /**
+     * Number of operations that started more than a millisecond after their intended start.
+     */
+    private final AtomicLong late = new AtomicLong();
+
+    /**
+     * Largest number of nanoseconds an operation started after its intended start.
+     */
+    private final AtomicLong maxLagNanos = new AtomicLong();
+
+    /**
+     * Number of background operations that failed.
+     */
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * First failure of a background operation.
+     */
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param operationsPerSecond number of operations intended to start per second
+     * @param maxOutstanding maximum number of outstanding operations
+     * @throws IllegalArgumentException when the rate or the maximum isn't positive
+     */
+    OpenLoopEngine(final int operationsPerSecond, final int maxOutstanding) {
+        if (operationsPerSecond <= 0) {
+            throw new IllegalArgumentException("Open-loop rate must be greater than zero");
+        }
+
+        if (maxOutstanding <= 0) {
+            throw new IllegalArgumentException("Maximum outstanding operations must be greater than zero");
+        }
+
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1L) / operationsPerSecond;
+        this.maxOutstanding = maxOutstanding;
+        this.slots = new Semaphore(maxOutstanding);
+        this.executor = Executors.newFixedThreadPool(maxOutstanding);
+    }
+
+    /**
+     * Runs an operation on the calling thread at its intended start.
+     *
+     * @param operation operation, given the value of {@link System#nanoTime()} at its intended start
+     * @param <T> type of the result
+     * @return result of the operation
+     * @throws InterruptedIOException when interrupted while waiting for the intended start or a slot
+     */
+    <T> T call(final LongFunction<T> operation) throws InterruptedIOException {
+        final long intendedStart = arrive();
+
+        try {
+            return operation.apply(intendedStart);
+        } finally {
+            slots.release();
+        }
+    }
+
+    /**
+     * Runs an operation in the background at its intended start. Returns once
+     * the operation has started.
+     *
+     * @param operation operation, given the value of {@link System#nanoTime()} at its intended start
+     * @throws InterruptedIOException when interrupted while waiting for the intended start or a slot
+     */
+    void execute(final LongConsumer operation) throws InterruptedIOException {
+        final long intendedStart = arrive();
+
+        try {
+            executor.execute(() -> {
+                try {
+                    operation.accept(intendedStart);
+                } catch (RuntimeException | Error e) {
+                    failures.incrementAndGet();
+                    firstFailure.compareAndSet(null, e);
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits until the intended start of the next operation and for a free
+     * slot, and counts the operation as late when it starts more than a
+     * millisecond after its intended start.
+     *
+     * @return value of {@link System#nanoTime()} at the intended start
+     * @throws InterruptedIOException when interrupted while waiting
+     */
+    private long arrive() throws InterruptedIOException {
+        nextStart.compareAndSet(NOT_STARTED, System.nanoTime());
+        final long intendedStart = nextStart.getAndAdd(intervalNanos);
+
+        try {
+            final long waitNanos = intendedStart - System.nanoTime();
+            if (waitNanos > 0L) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the next operation to start");
+        }
+
+        issued.incrementAndGet();
+
+        final long lagNanos = System.nanoTime() - intendedStart;
+        maxLagNanos.accumulateAndGet(lagNanos, Math::max);
+        if (lagNanos > LATE_AFTER_NANOS) {
+            late.incrementAndGet();
+        }
+
+        return intendedStart;
+    }
+
+    /**
+     * Waits for outstanding background operations to finish and stops the
+     * background threads.
+     *
+     * @param timeout maximum time to wait
+     * @param unit unit of the timeout
+     * @return true when every background operation finished in time
+     * @throws InterruptedException when interrupted while waiting
+     */
+    boolean shutdown(final long timeout, final TimeUnit unit) throws InterruptedException {
+        executor.shutdown();
+
+        if (executor.awaitTermination(timeout, unit)) {
+            return true;
+        }
+
+        executor.shutdownNow();
+        return false;
+    }
+
+    /**
+     * Stops the background threads without waiting for outstanding operations.
+     */
+    void abort() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return number of operations intended to start per second
+     */
+    long getOperationsPerSecond() {
+        return TimeUnit.SECONDS.toNanos(1L) / intervalNanos;
+    }
+
+    /**
+     * @return maximum number of outstanding operations
+     */
+    int getMaxOutstanding() {
+        return maxOutstanding;
+    }
+
+    /**
+     * @return number of operations currently outstanding
+     */
+    int getOutstanding() {
+        return maxOutstanding - slots.availablePermits();
+    }
+
+    /**
+     * @return number of operations issued
+     */
+    long getIssued() {
+        return issued.get();
+    }
+
+    /**
+     * @return number of operations that started more than a millisecond after their intended start
+     */
+    long getLate() {
+        return late.get();
+    }
+
+    /**
+     * @return largest number of nanoseconds an operation started after its intended start
+     */
+    long getMaxLagNanos() {
+        return maxLagNanos.get();
+    }
+
+    /**
+     * @return number of background operations that failed
+     */
+    long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return first failure of a background operation or null when none failed
+     */
+    Throwable getFirstFailure() {
+        return firstFailure.get();
+    }
+}
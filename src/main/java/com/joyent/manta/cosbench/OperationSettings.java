@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import com.joyent.manta.cosbench.config.CosbenchMantaConfigContext;
+
+/**
+ * Settings of the adaptor that can differ from one operation to the next.
+ * The settings of a worker come from the storage config, and each operation
+ * config can override any of them, so that a single work stage can mix, for
+ * example, small single PUTs with large multipart PUTs. Instances are
+ * immutable and are resolved once per distinct operation config.
+ *
+ * @since 1.1.3
+ */
+final class OperationSettings {
+    /**
+     * Flag that toggles chunked transfer encoding.
+     */
+    private final boolean chunked;
+
+    /**
+     * Number of copies of object to store or null for the Manta default.
+     */
+    private final Integer durabilityLevel;
+
+    /**
+     * Decides which objects are uploaded as multipart uploads and the size of their parts.
+     */
+    private final MultipartPolicy multipartPolicy;
+
+    /**
+     * Number of sections in which to download objects when no range section
+     * size is set.
+     */
+    private final int sections;
+
+    /**
+     * Configured target size in bytes of each HTTP range request or null
+     * when a fixed number of sections is used.
+     */
+    private final Long rangeSectionSize;
+
+    /**
+     * Chooses the number of sections per object from the range section size.
+     * Null when a fixed number of sections is used.
+     */
+    private final RangeSectionSizer rangeSectionSizer;
+
+    /**
+     * Decides which entries of a container listing are read.
+     */
+    private final ListingPolicy listingPolicy;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param chunked flag that toggles chunked transfer encoding
+     * @param durabilityLevel number of copies of object to store or null for the Manta default
+     * @param multipartPolicy decides which objects are uploaded as multipart uploads
+     * @param sections number of sections in which to download objects
+     * @param rangeSectionSize configured target size in bytes of each HTTP range request or null
+     * @param rangeSectionSizer chooser of the number of sections per object or null
+     * @param listingPolicy decides which entries of a container listing are read
+     */
+    private OperationSettings(final boolean chunked,
+                              final Integer durabilityLevel,
+                              final MultipartPolicy multipartPolicy,
+                              final int sections,
+                              final Long rangeSectionSize,
+                              final RangeSectionSizer rangeSectionSizer,
+                              final ListingPolicy listingPolicy) {
+        this.chunked = chunked;
+        this.durabilityLevel = durabilityLevel;
+        this.multipartPolicy = multipartPolicy;
+        this.sections = sections;
+        this.rangeSectionSize = rangeSectionSize;
+        this.rangeSectionSizer = rangeSectionSizer;
+        this.listingPolicy = listingPolicy;
+    }
+
+    /**
+     * Resolves the settings of a worker from its storage config.
+     *
+     * @param config storage config
+     * @param defaultSplitSize part size used when the config doesn't set one
+     * @return settings of the worker
+     */
+    static OperationSettings of(final CosbenchMantaConfigContext config, final int defaultSplitSize) {
+        Integer splitSize = config.getSplitSize();
+        if (splitSize == null) {
+            splitSize = defaultSplitSize;
+        }
+
+        Integer maxParts = config.getMaxMultipartParts();
+        if (maxParts == null) {
+            maxParts = MultipartPolicy.DEFAULT_MAX_PARTS;
+        }
+
+        Integer minRangeSections = config.getMinRangeSections();
+        if (minRangeSections == null) {
+            minRangeSections = 1;
+        }
+
+        Integer maxRangeSections = config.getMaxRangeSections();
+        if (maxRangeSections == null) {
+            maxRangeSections = Math.max(minRangeSections, RangeSectionSizer.DEFAULT_MAX_SECTIONS);
+        }
+
+        return new OperationSettings(Boolean.TRUE.equals(config.chunked()),
+                config.getDurabilityLevel(),
+                new MultipartPolicy(config.isMultipart(), splitSize, config.getMultipartThreshold(), maxParts),
+                config.getNumberOfSections(),
+                config.getRangeSectionSize(),
+                sizer(config.getRangeSectionSize(), minRangeSections, maxRangeSections,
+                        config.isAdaptiveRangeSectionSize()),
+                new ListingPolicy(config.getListPrefix(), config.getListLimit()));
+    }
+
+    /**
+     * Resolves the settings of an operation by overriding these settings with
+     * the ones set in the operation config.
+     *
+     * @param overrides operation config
+     * @return settings of the operation, which are these settings when the
+     *         operation config doesn't override any of them
+     */
+    OperationSettings withOverrides(final CosbenchMantaConfigContext overrides) {
+        boolean overridden = false;
+
+        boolean opChunked = chunked;
+        if (overrides.isConfigured("chunked")) {
+            opChunked = Boolean.TRUE.equals(overrides.chunked());
+            overridden = true;
+        }
+
+        Integer opDurabilityLevel = durabilityLevel;
+        if (overrides.isConfigured("durability-level")) {
+            opDurabilityLevel = overrides.getDurabilityLevel();
+            overridden = true;
+        }
+
+        MultipartPolicy opMultipartPolicy = multipartPolicy;
+        if (overrides.isConfigured("multipart")
+                || overrides.isConfigured("splitSize")
+                || overrides.isConfigured("multipart-threshold")
+                || overrides.isConfigured("max-multipart-parts")) {
+            opMultipartPolicy = multipartOverrides(overrides);
+            overridden = true;
+        }
+
+        int opSections = sections;
+        if (overrides.isConfigured("no-of-http-range-sections")) {
+            opSections = overrides.getNumberOfSections();
+            overridden = true;
+        }
+
+        Long opRangeSectionSize = rangeSectionSize;
+        RangeSectionSizer opRangeSectionSizer = rangeSectionSizer;
+        if (overrides.isConfigured("range-section-size")
+                || overrides.isConfigured("min-range-sections")
+                || overrides.isConfigured("max-range-sections")
+                || overrides.isConfigured("adaptive-range-section-size")) {
+            opRangeSectionSize = overrides.getRangeSectionSize();
+            if (!overrides.isConfigured("range-section-size")) {
+                opRangeSectionSize = rangeSectionSize;
+            }
+
+            int minRangeSections = 1;
+            int maxRangeSections = RangeSectionSizer.DEFAULT_MAX_SECTIONS;
+            boolean adaptive = false;
+            if (rangeSectionSizer != null) {
+                minRangeSections = rangeSectionSizer.getMinSections();
+                maxRangeSections = rangeSectionSizer.getMaxSections();
+                adaptive = rangeSectionSizer.isAdaptive();
+            }
+
+            if (overrides.isConfigured("min-range-sections")) {
+                minRangeSections = overrides.getMinRangeSections();
+                maxRangeSections = Math.max(minRangeSections, maxRangeSections);
+            }
+
+            if (overrides.isConfigured("max-range-sections")) {
+                maxRangeSections = overrides.getMaxRangeSections();
+            }
+
+            if (overrides.isConfigured("adaptive-range-section-size")) {
+                adaptive = overrides.isAdaptiveRangeSectionSize();
+            }
+
+            opRangeSectionSizer = sizer(opRangeSectionSize, minRangeSections, maxRangeSections, adaptive);
+            overridden = true;
+        }
+
+        ListingPolicy opListingPolicy = listingPolicy;
+        if (overrides.isConfigured("list-prefix") || overrides.isConfigured("list-limit")) {
+            String listPrefix = listingPolicy.getPrefix();
+            if (overrides.isConfigured("list-prefix")) {
+                listPrefix = overrides.getListPrefix();
+            }
+
+            Long listLimit = listingPolicy.getLimit();
+            if (overrides.isConfigured("list-limit")) {
+                listLimit = overrides.getListLimit();
+            }
+
+            opListingPolicy = new ListingPolicy(listPrefix, listLimit);
+            overridden = true;
+        }
+
+        if (!overridden) {
+            return this;
+        }
+
+        return new OperationSettings(opChunked, opDurabilityLevel, opMultipartPolicy,
+                opSections, opRangeSectionSize, opRangeSectionSizer, opListingPolicy);
+    }
+
+    /**
+     * @return true when chunked transfer encoding is used
+     */
+    boolean isChunked() {
+        return chunked;
+    }
+
+    /**
+     * @return number of copies of object to store or null for the Manta default
+     */
+    Integer getDurabilityLevel() {
+        return durabilityLevel;
+    }
+
+    /**
+     * @return decides which objects are uploaded as multipart uploads and the size of their parts
+     */
+    MultipartPolicy getMultipartPolicy() {
+        return multipartPolicy;
+    }
+
+    /**
+     * @return number of sections in which to download objects when no range section size is set
+     */
+    int getSections() {
+        return sections;
+    }
+
+    /**
+     * @return chooser of the number of sections per object or null when a fixed number of sections is used
+     */
+    RangeSectionSizer getRangeSectionSizer() {
+        return rangeSectionSizer;
+    }
+
+    /**
+     * @return decides which entries of a container listing are read
+     */
+    ListingPolicy getListingPolicy() {
+        return listingPolicy;
+    }
+
+    /**
+     * @return true when objects may be downloaded with HTTP range requests
+     */
+    boolean isRanged() {
+        return sections > 1 || rangeSectionSizer != null;
+    }
+
+    /**
+     * Overrides the multipart settings that are set in the operation config.
+     *
+     * @param overrides operation config
+     * @return multipart policy of the operation
+     */
+    private MultipartPolicy multipartOverrides(final CosbenchMantaConfigContext overrides) {
+        boolean opMultipart = multipartPolicy.isMultipart();
+        if (overrides.isConfigured("multipart")) {
+            opMultipart = overrides.isMultipart();
+        }
+
+        int opSplitSize = multipartPolicy.getSplitSize();
+        if (overrides.isConfigured("splitSize")) {
+            opSplitSize = overrides.getSplitSize();
+        }
+
+        Long opThreshold = multipartPolicy.getThreshold();
+        if (overrides.isConfigured("multipart-threshold")) {
+            opThreshold = overrides.getMultipartThreshold();
+        }
+
+        int opMaxParts = multipartPolicy.getMaxParts();
+        if (overrides.isConfigured("max-multipart-parts")) {
+            opMaxParts = overrides.getMaxMultipartParts();
+        }
+
+        return new MultipartPolicy(opMultipart, opSplitSize, opThreshold, opMaxParts);
+    }
+
+    /**
+     * Creates the chooser of the number of sections per object.
+     *
+     * @param rangeSectionSize target size in bytes of each HTTP range request or null
+     * @param minRangeSections minimum number of sections an object is split into
+     * @param maxRangeSections maximum number of sections an object is split into
+     * @param adaptive true to tune the target from measured throughput
+     * @return chooser or null when no range section size is set
+     */
+    private static RangeSectionSizer sizer(final Long rangeSectionSize,
+                                           final int minRangeSections,
+                                           final int maxRangeSections,
+                                           final boolean adaptive) {
+        if (rangeSectionSize == null) {
+            return null;
+        }
+
+        return new RangeSectionSizer(rangeSectionSize, minRangeSections, maxRangeSections, adaptive);
+    }
+}
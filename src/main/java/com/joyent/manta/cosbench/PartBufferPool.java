@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of multipart part buffers shared by every multipart upload of a
+ * worker, whatever their part size. Every buffer allocated by the pool counts
+ * against a single memory budget, whether it is checked out or waiting to be
+ * reused. Checking out a buffer waits while the buffers checked out leave no
+ * room for it.
+ *
+ * <p>Returned buffers are reused by parts of the same size. When a part of
+ * another size needs room, the free buffers returned longest ago are dropped
+ * to make it. Free buffers that aren't reused for {@link #IDLE_SECONDS} are
+ * dropped the next time a buffer is checked out or returned, so part sizes
+ * that are no longer uploaded don't hold on to memory.</p>
+ *
+ * @since 1.1.3
+ */
+final class PartBufferPool {
+    /**
+     * Number of seconds after which a free buffer that hasn't been reused is dropped.
+     */
+    static final long IDLE_SECONDS = 30L;
+
+    /**
+     * Number of nanoseconds after which a free buffer that hasn't been reused is dropped.
+     */
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(IDLE_SECONDS);
+
+    /**
+     * Buffer waiting to be reused.
+     */
+    private static final class FreeBuffer {
+        /**
+         * Buffer that was returned.
+         */
+        private final byte[] buffer;
+
+        /**
+         * Value of {@link System#nanoTime()} when the buffer was returned.
+         */
+        private final long returnedAt;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param buffer buffer that was returned
+         * @param returnedAt value of {@link System#nanoTime()} when the buffer was returned
+         */
+        FreeBuffer(final byte[] buffer, final long returnedAt) {
+            this.buffer = buffer;
+            this.returnedAt = returnedAt;
+        }
+    }
+
+    /**
+     * Maximum number of bytes of buffers allocated at once.
+     */
+    private final long budget;
+
+    /**
+     * Free buffers ordered from the one returned longest ago to the one
+     * returned last. Guarded by this.
+     */
+    private final Deque<FreeBuffer> free = new ArrayDeque<>();
+
+    /**
+     * Number of bytes of buffers allocated, checked out or free. Guarded by this.
+     */
+    private long allocated;
+
+    /**
+     * Number of bytes of buffers checked out. Guarded by this.
+     */
+    private long checkedOut;
+
+    /**
+     * Creates a new pool.
+     *
+     * @param budget maximum number of bytes of buffers allocated at once
+     */
+    PartBufferPool(final long budget) {
+        if (budget <= 0L) {
+            throw new IllegalArgumentException("Multipart memory budget must be greater than zero");
+        }
+
+        this.budget = budget;
+    }
+
+    /**
+     * Checks out a buffer, waiting until the budget has room for it.
+     *
+     * @param size size in bytes of the buffer
+     * @return buffer that is exclusively owned by the caller until released
+     * @throws InterruptedException when interrupted while waiting
+     */
+    byte[] acquire(final int size) throws InterruptedException {
+        if (size > budget) {
+            throw new IllegalArgumentException(String.format("Part size of %d bytes doesn't fit in the "
+                    + "multipart memory budget of %d bytes", size, budget));
+        }
+
+        final byte[] reused = reserve(size);
+
+        if (reused != null) {
+            return reused;
+        }
+
+        // Allocated outside of the lock, since zeroing a large array takes a while
+        return new byte[size];
+    }
+
+    /**
+     * Reserves room for a buffer, reusing a free buffer of the same size
+     * when there is one.
+     *
+     * @param size size in bytes of the buffer
+     * @return free buffer of the size or null when a new buffer has to be allocated
+     * @throws InterruptedException when interrupted while waiting
+     */
+    private synchronized byte[] reserve(final int size) throws InterruptedException {
+        while (true) {
+            dropIdle(System.nanoTime());
+
+            final byte[] reused = takeFree(size);
+            if (reused != null) {
+                checkedOut += size;
+                return reused;
+            }
+
+            if (allocated + size <= budget) {
+                allocated += size;
+                checkedOut += size;
+                return null;
+            }
+
+            if (free.isEmpty()) {
+                wait();
+            } else {
+                allocated -= free.removeFirst().buffer.length;
+            }
+        }
+    }
+
+    /**
+     * Returns a buffer to the pool.
+     *
+     * @param buffer buffer previously checked out with {@link #acquire(int)}
+     */
+    synchronized void release(final byte[] buffer) {
+        final long now = System.nanoTime();
+
+        checkedOut -= buffer.length;
+        free.addLast(new FreeBuffer(buffer, now));
+        dropIdle(now);
+        notifyAll();
+    }
+
+    /**
+     * Removes the free buffer of a size that was returned last.
+     *
+     * @param size size in bytes of the buffer
+     * @return free buffer or null if there is no free buffer of the size
+     */
+    private byte[] takeFree(final int size) {
+        final Iterator<FreeBuffer> newestFirst = free.descendingIterator();
+
+        while (newestFirst.hasNext()) {
+            final byte[] buffer = newestFirst.next().buffer;
+
+            if (buffer.length == size) {
+                newestFirst.remove();
+                return buffer;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Drops free buffers that haven't been reused for {@link #IDLE_SECONDS}.
+     *
+     * @param now current value of {@link System#nanoTime()}
+     */
+    private void dropIdle(final long now) {
+        while (!free.isEmpty() && now - free.peekFirst().returnedAt > IDLE_NANOS) {
+            allocated -= free.removeFirst().buffer.length;
+        }
+    }
+
+    /**
+     * @return maximum number of bytes of buffers allocated at once
+     */
+    long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return number of bytes of buffers allocated, checked out or free
+     */
+    synchronized long getAllocated() {
+        return allocated;
+    }
+
+    /**
+     * @return number of bytes of buffers checked out
+     */
+    synchronized long getCheckedOut() {
+        return checkedOut;
+    }
+}
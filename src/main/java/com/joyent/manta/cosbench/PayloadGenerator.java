@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Deterministic model of the content of benchmark objects. The content of an
+ * object is derived from a seed and the names of its container and object,
+ * and any byte of it can be computed from its position alone, so content can
+ * be generated and checked as it streams through, in any chunk size, without
+ * buffering the object.
+ *
+ * <p>Content is generated eight bytes at a time with the SplitMix64 mixing
+ * function, which is cheap enough that generating or checking it costs far
+ * less than the network transfer of the same bytes.</p>
+ *
+ * @since 1.1.3
+ */
+final class PayloadGenerator {
+    /**
+     * View of byte arrays as little endian longs.
+     */
+    private static final VarHandle LONGS =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Number of bytes generated from each word.
+     */
+    private static final int WORD_BYTES = Long.BYTES;
+
+    /**
+     * Mask of the position of a byte within its word.
+     */
+    private static final long WORD_MASK = WORD_BYTES - 1;
+
+    /**
+     * Shift turning the position of a byte into the index of its word.
+     */
+    private static final int WORD_SHIFT = 3;
+
+    /**
+     * Increment of the SplitMix64 sequence.
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * First shift of the SplitMix64 finalizer.
+     */
+    private static final int MIX_SHIFT_1 = 30;
+
+    /**
+     * First multiplier of the SplitMix64 finalizer.
+     */
+    private static final long MIX_MULTIPLIER_1 = 0xBF58476D1CE4E5B9L;
+
+    /**
+     * Second shift of the SplitMix64 finalizer.
+     */
+    private static final int MIX_SHIFT_2 = 27;
+
+    /**
+     * Second multiplier of the SplitMix64 finalizer.
+     */
+    private static final long MIX_MULTIPLIER_2 = 0x94D049BB133111EBL;
+
+    /**
+     * Final shift of the SplitMix64 finalizer.
+     */
+    private static final int MIX_SHIFT_3 = 31;
+
+    /**
+     * Offset basis of the 64-bit FNV-1a hash used for names.
+     */
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+
+    /**
+     * Prime of the 64-bit FNV-1a hash used for names.
+     */
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    /**
+     * This class only has static methods.
+     */
+    private PayloadGenerator() {
+    }
+
+    /**
+     * Derives the seed of the content of a single object.
+     *
+     * @param seed seed of the whole benchmark
+     * @param container container name
+     * @param object object name
+     * @return seed of the object content
+     */
+    static long objectSeed(final long seed, final String container, final String object) {
+        return mix(mix(seed ^ hash(container)) ^ hash(object));
+    }
+
+    /**
+     * Fills part of an array with the content of an object.
+     *
+     * @param objectSeed seed of the object content
+     * @param position position in the object of the first byte to fill
+     * @param buffer array to fill
+     * @param offset offset in the array of the first byte to fill
+     * @param length number of bytes to fill
+     */
+    static void fill(final long objectSeed, final long position,
+                     final byte[] buffer, final int offset, final int length) {
+        final int end = offset + length;
+        long pos = position;
+        int i = offset;
+
+        while (i < end && (pos & WORD_MASK) != 0) {
+            buffer[i++] = byteAt(objectSeed, pos++);
+        }
+
+        while (end - i >= WORD_BYTES) {
+            LONGS.set(buffer, i, word(objectSeed, pos >>> WORD_SHIFT));
+            i += WORD_BYTES;
+            pos += WORD_BYTES;
+        }
+
+        while (i < end) {
+            buffer[i++] = byteAt(objectSeed, pos++);
+        }
+    }
+
+    /**
+     * Finds the first byte of part of an array that differs from the content
+     * of an object.
+     *
+     * @param objectSeed seed of the object content
+     * @param position position in the object of the first byte to check
+     * @param buffer array to check
+     * @param offset offset in the array of the first byte to check
+     * @param length number of bytes to check
+     * @return index relative to the offset of the first differing byte or -1 when every byte matches
+     */
+    static int mismatch(final long objectSeed, final long position,
+                        final byte[] buffer, final int offset, final int length) {
+        final int end = offset + length;
+        long pos = position;
+        int i = offset;
+
+        while (i < end && (pos & WORD_MASK) != 0) {
+            if (buffer[i] != byteAt(objectSeed, pos)) {
+                return i - offset;
+            }
+
+            i++;
+            pos++;
+        }
+
+        while (end - i >= WORD_BYTES) {
+            final long difference = (long)LONGS.get(buffer, i) ^ word(objectSeed, pos >>> WORD_SHIFT);
+
+            if (difference != 0L) {
+                return i - offset + Long.numberOfTrailingZeros(difference) / Byte.SIZE;
+            }
+
+            i += WORD_BYTES;
+            pos += WORD_BYTES;
+        }
+
+        while (i < end) {
+            if (buffer[i] != byteAt(objectSeed, pos)) {
+                return i - offset;
+            }
+
+            i++;
+            pos++;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Computes a single byte of the content of an object.
+     *
+     * @param objectSeed seed of the object content
+     * @param position position of the byte in the object
+     * @return byte at the position
+     */
+    static byte byteAt(final long objectSeed, final long position) {
+        return (byte)(word(objectSeed, position >>> WORD_SHIFT) >>> ((position & WORD_MASK) * Byte.SIZE));
+    }
+
+    /**
+     * Computes a word of the content of an object.
+     *
+     * @param objectSeed seed of the object content
+     * @param index index of the word in the object
+     * @return word at the index
+     */
+    private static long word(final long objectSeed, final long index) {
+        return mix(objectSeed + (index + 1L) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * SplitMix64 finalizer, which spreads every input bit across the output.
+     *
+     * @param value value to mix
+     * @return mixed value
+     */
+    private static long mix(final long value) {
+        long z = value;
+        z = (z ^ (z >>> MIX_SHIFT_1)) * MIX_MULTIPLIER_1;
+        z = (z ^ (z >>> MIX_SHIFT_2)) * MIX_MULTIPLIER_2;
+        return z ^ (z >>> MIX_SHIFT_3);
+    }
+
+    /**
+     * Hashes a name with 64-bit FNV-1a over its characters.
+     *
+     * @param name name to hash
+     * @return hash of the name
+     */
+    private static long hash(final String name) {
+        long hash = FNV_OFFSET_BASIS;
+
+        for (int i = 0; i < name.length(); i++) {
+            hash = (hash ^ name.charAt(i)) * FNV_PRIME;
+        }
+
+        return hash;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.apache.commons.io.input.ProxyInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stream wrapper that replaces the bytes of the data COSBench generated for
+ * an upload with the content of the object in the {@link PayloadGenerator}
+ * model. The source stream is still read, so the length of the object and
+ * the byte counts COSBench keeps of its own stream are unchanged; each chunk
+ * read from it is overwritten in place before it is returned.
+ *
+ * <p>Marking is not supported, since the content depends on the position of
+ * each byte in the object.</p>
+ *
+ * @since 1.1.3
+ */
+final class PayloadInputStream extends ProxyInputStream {
+    /**
+     * End of file code returned by streams.
+     */
+    private static final int EOF = -1;
+
+    /**
+     * Mask of the bits of a byte.
+     */
+    private static final int BYTE_MASK = 0xFF;
+
+    /**
+     * Seed of the object content.
+     */
+    private final long objectSeed;
+
+    /**
+     * Position in the object of the next byte read.
+     */
+    private long position = 0L;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param in data generated by COSBench
+     * @param objectSeed seed of the object content
+     */
+    PayloadInputStream(final InputStream in, final long objectSeed) {
+        super(in);
+        this.objectSeed = objectSeed;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = super.read();
+
+        if (b == EOF) {
+            return EOF;
+        }
+
+        return PayloadGenerator.byteAt(objectSeed, position++) & BYTE_MASK;
+    }
+
+    @Override
+    public int read(final byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        final int n = super.read(b, off, len);
+
+        if (n > 0) {
+            PayloadGenerator.fill(objectSeed, position, b, off, n);
+            position += n;
+        }
+
+        return n;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final long skipped = super.skip(n);
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(final int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("Mark and reset are not supported");
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+/**
+ * Pool of random bytes held in off-heap slabs that uploads stream their
+ * content from instead of generating it. The pool is generated once per
+ * driver, and each object streams a slice of it that starts at an offset
+ * derived from the object name and wraps around the end of the pool, so the
+ * content of one object differs from the next while reading it costs no more
+ * than copying memory.
+ *
+ * <p>The stream COSBench supplied for an object is skipped as the slice is
+ * read, which keeps the byte counts COSBench takes from its own stream right
+ * without paying for generating its bytes.</p>
+ *
+ * @since 1.1.3
+ */
+final class PayloadSlabPool {
+    /**
+     * Default number of bytes in the pool.
+     */
+    static final long DEFAULT_SIZE = 67108864L;
+
+    /**
+     * Number of bytes in each slab.
+     */
+    static final int SLAB_SIZE = 4194304;
+
+    /**
+     * End of file code returned by streams.
+     */
+    private static final int EOF = -1;
+
+    /**
+     * Mask of the bits of a byte.
+     */
+    private static final int BYTE_MASK = 0xFF;
+
+    /**
+     * Pool shared by all storage instances in the driver.
+     */
+    private static PayloadSlabPool shared;
+
+    /**
+     * Read-only views of the slabs, in order.
+     */
+    private final ByteBuffer[] slabs;
+
+    /**
+     * Number of bytes in the pool.
+     */
+    private final long size;
+
+    /**
+     * Seed that the content of the pool was generated from.
+     */
+    private final long seed;
+
+    /**
+     * Creates a new pool, generating its content.
+     *
+     * @param size minimum number of bytes in the pool, rounded up to whole slabs
+     * @param seed seed that the content of the pool is generated from
+     */
+    PayloadSlabPool(final long size, final long seed) {
+        if (size <= 0L) {
+            throw new IllegalArgumentException("Payload pool size must be greater than zero");
+        }
+
+        final long slabCount = sizeFor(size) / SLAB_SIZE;
+        if (slabCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Payload pool size is too large: " + size);
+        }
+
+        final SplittableRandom random = new SplittableRandom(seed);
+        final byte[] content = new byte[SLAB_SIZE];
+        final ByteBuffer words = ByteBuffer.wrap(content);
+
+        this.slabs = new ByteBuffer[(int)slabCount];
+        this.size = slabCount * SLAB_SIZE;
+        this.seed = seed;
+
+        for (int i = 0; i < slabs.length; i++) {
+            words.clear();
+            while (words.hasRemaining()) {
+                words.putLong(random.nextLong());
+            }
+
+            final ByteBuffer slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+            slab.put(content);
+            slab.flip();
+            slabs[i] = slab.asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Returns the pool shared by the driver, creating it on first use. Later
+     * callers get the existing pool whatever size and seed they ask for, so
+     * that the driver holds a single pool.
+     *
+     * @param size minimum number of bytes in the pool if it doesn't exist yet
+     * @param seed seed that the content of the pool is generated from if it doesn't exist yet
+     * @return shared pool
+     */
+    static synchronized PayloadSlabPool shared(final long size, final long seed) {
+        if (shared == null) {
+            shared = new PayloadSlabPool(size, seed);
+        }
+
+        return shared;
+    }
+
+    /**
+     * Finds the number of bytes of a pool created with a size.
+     *
+     * @param size minimum number of bytes in the pool
+     * @return size rounded up to whole slabs
+     */
+    static long sizeFor(final long size) {
+        return (size + SLAB_SIZE - 1) / SLAB_SIZE * SLAB_SIZE;
+    }
+
+    /**
+     * @return number of bytes in the pool
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * @return seed that the content of the pool was generated from
+     */
+    long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Opens a stream of the content of an object.
+     *
+     * @param objectSeed seed of the object content, which chooses where in the pool its content starts
+     * @param length number of bytes in the object
+     * @param source stream supplied by COSBench, which is skipped as the content is read
+     * @return stream of the object content
+     */
+    InputStream open(final long objectSeed, final long length, final InputStream source) {
+        return new SliceInputStream(Math.floorMod(objectSeed, size), length, source);
+    }
+
+    /**
+     * Stream of a slice of the pool that wraps around its end.
+     */
+    private final class SliceInputStream extends InputStream {
+        /**
+         * Stream supplied by COSBench.
+         */
+        private final InputStream source;
+
+        /**
+         * Position in the pool of the next byte read.
+         */
+        private long position;
+
+        /**
+         * Number of bytes left to read.
+         */
+        private long remaining;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param start position in the pool of the first byte
+         * @param length number of bytes in the stream
+         * @param source stream supplied by COSBench
+         */
+        private SliceInputStream(final long start, final long length, final InputStream source) {
+            this.position = start;
+            this.remaining = length;
+            this.source = source;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining == 0L) {
+                return EOF;
+            }
+
+            final int b = slabs[(int)(position / SLAB_SIZE)].get((int)(position % SLAB_SIZE)) & BYTE_MASK;
+            advance(1);
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            if (remaining == 0L) {
+                return EOF;
+            }
+
+            final int n = (int)Math.min(len, remaining);
+            int copied = 0;
+
+            while (copied < n) {
+                final int within = (int)(position % SLAB_SIZE);
+                final int chunk = Math.min(n - copied, SLAB_SIZE - within);
+                final ByteBuffer slab = slabs[(int)(position / SLAB_SIZE)].duplicate();
+
+                slab.position(within);
+                slab.get(b, off + copied, chunk);
+                copied += chunk;
+                advance(chunk);
+            }
+
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = Math.max(0L, Math.min(n, remaining));
+            advance(skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int)Math.min(remaining, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+
+        /**
+         * Moves the slice and the COSBench stream forward.
+         *
+         * @param n number of bytes to move forward
+         * @throws IOException when the COSBench stream can't be skipped
+         */
+        private void advance(final long n) throws IOException {
+            position = (position + n) % size;
+            remaining -= n;
+
+            long left = n;
+            while (left > 0L) {
+                final long skipped = source.skip(left);
+
+                if (skipped > 0L) {
+                    left -= skipped;
+                } else if (source.read() == EOF) {
+                    return;
+                } else {
+                    left--;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,538 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Opens HTTP range sections with hedged requests to cut the tail latency of
+ * downloads split into ranges. Each range is requested once, and when it
+ * hasn't returned its first byte within a percentile of the time to first
+ * byte of recent ranges, the same range is requested again. Whichever
+ * request returns its first byte first is read and the other one is closed.
+ *
+ * <p>The delay is recomputed from a window of the most recent first requests
+ * after every batch of ranges, and no range is hedged until the first batch
+ * has been measured. First requests that lose to their hedge are measured up
+ * to the moment they are cancelled, so hedging doesn't pull the delay down
+ * and hedge more and more ranges. A request that fails before the delay
+ * fails the range without being hedged, as it would without hedging.</p>
+ *
+ * @since 1.1.3
+ */
+final class RangeHedger {
+    /**
+     * Number of the most recent first requests the delay is computed from.
+     */
+    static final int WINDOW_SIZE = 256;
+
+    /**
+     * Number of first requests measured before the delay is recomputed.
+     */
+    static final int SAMPLES_PER_UPDATE = 32;
+
+    /**
+     * Delay reported before enough first requests have been measured.
+     */
+    static final long NOT_READY = -1L;
+
+    /**
+     * End of file code returned by streams.
+     */
+    private static final int EOF = -1;
+
+    /**
+     * Largest valid percentile, exclusive.
+     */
+    private static final double MAX_PERCENTILE = 100.0;
+
+    /**
+     * Index of the first request of a range.
+     */
+    private static final int PRIMARY = 0;
+
+    /**
+     * Index of the duplicate request of a range.
+     */
+    private static final int HEDGE = 1;
+
+    /**
+     * Number of requests that can be made for a range.
+     */
+    private static final int ATTEMPTS = 2;
+
+    /**
+     * Percentile of the time to first byte after which a range is hedged.
+     */
+    private final double percentile;
+
+    /**
+     * Smallest delay in nanoseconds before a range is hedged.
+     */
+    private final long minDelayNanos;
+
+    /**
+     * Thread pool that requests are made on.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Ring of the most recent times to first byte of first requests.
+     */
+    private final long[] window = new long[WINDOW_SIZE];
+
+    /**
+     * Number of first requests measured so far.
+     */
+    private long samples = 0L;
+
+    /**
+     * Number of first requests measured since the delay was last computed.
+     */
+    private int samplesSinceUpdate = 0;
+
+    /**
+     * Nanoseconds a range waits for its first byte before it is hedged or
+     * {@link #NOT_READY} when no range is hedged yet.
+     */
+    private volatile long delayNanos = NOT_READY;
+
+    /**
+     * Number of ranges opened.
+     */
+    private final AtomicLong ranges = new AtomicLong();
+
+    /**
+     * Number of duplicate requests made.
+     */
+    private final AtomicLong hedges = new AtomicLong();
+
+    /**
+     * Number of hedged ranges whose duplicate request answered first.
+     */
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    /**
+     * Number of hedged ranges whose first request answered first.
+     */
+    private final AtomicLong primaryWins = new AtomicLong();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param percentile percentile of the time to first byte after which a range is hedged
+     * @param minDelayNanos smallest delay in nanoseconds before a range is hedged
+     * @param executor thread pool that requests are made on
+     * @throws IllegalArgumentException when the percentile isn't between 0 and 100 or the delay is negative
+     */
+    RangeHedger(final double percentile, final long minDelayNanos, final ExecutorService executor) {
+        if (!(percentile > 0.0 && percentile < MAX_PERCENTILE)) {
+            throw new IllegalArgumentException("Hedge percentile must be between 0 and 100");
+        }
+
+        if (minDelayNanos < 0L) {
+            throw new IllegalArgumentException("Minimum hedge delay must be zero or greater");
+        }
+
+        Objects.requireNonNull(executor);
+
+        this.percentile = percentile;
+        this.minDelayNanos = minDelayNanos;
+        this.executor = executor;
+    }
+
+    /**
+     * Opens a range, hedging it when it is slow to return its first byte.
+     *
+     * @param section range to open
+     * @param opener function that makes a single request for a range
+     * @return stream of the bytes in the range from the request that answered first
+     * @throws UncheckedIOException when every request for the range failed
+     */
+    InputStream open(final RangeJoiningInputStream.Range section,
+                     final Function<RangeJoiningInputStream.Range, InputStream> opener) {
+        ranges.incrementAndGet();
+
+        final Race race = new Race(section, opener);
+        race.start(PRIMARY);
+
+        try {
+            final long delay = delayNanos;
+
+            if (delay != NOT_READY) {
+                final InputStream answer = race.await(delay);
+
+                if (answer != null) {
+                    return answer;
+                }
+
+                if (race.start(HEDGE)) {
+                    hedges.incrementAndGet();
+                }
+            }
+
+            return race.await(Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+            race.abandon();
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for " + section));
+        } catch (RuntimeException e) {
+            race.abandon();
+            throw e;
+        }
+    }
+
+    /**
+     * Records the time to first byte of a first request and recomputes the
+     * delay after every {@link #SAMPLES_PER_UPDATE} requests.
+     *
+     * @param nanos nanoseconds from making the request until its first byte
+     */
+    synchronized void record(final long nanos) {
+        window[(int)(samples % WINDOW_SIZE)] = nanos;
+        samples++;
+        samplesSinceUpdate++;
+
+        if (samplesSinceUpdate < SAMPLES_PER_UPDATE) {
+            return;
+        }
+
+        samplesSinceUpdate = 0;
+
+        final long[] sorted = Arrays.copyOf(window, (int)Math.min(samples, WINDOW_SIZE));
+        Arrays.sort(sorted);
+
+        final int rank = (int)Math.ceil(percentile / MAX_PERCENTILE * sorted.length);
+        delayNanos = Math.max(minDelayNanos, sorted[Math.max(0, rank - 1)]);
+    }
+
+    /**
+     * @return nanoseconds a range waits for its first byte before it is hedged or {@link #NOT_READY}
+     */
+    long getDelayNanos() {
+        return delayNanos;
+    }
+
+    /**
+     * @return percentile of the time to first byte after which a range is hedged
+     */
+    double getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * @return number of ranges opened
+     */
+    long getRanges() {
+        return ranges.get();
+    }
+
+    /**
+     * @return number of duplicate requests made
+     */
+    long getHedges() {
+        return hedges.get();
+    }
+
+    /**
+     * @return number of hedged ranges whose duplicate request answered first
+     */
+    long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    /**
+     * @return number of hedged ranges whose first request answered first
+     */
+    long getPrimaryWins() {
+        return primaryWins.get();
+    }
+
+    /**
+     * Closes a stream, ignoring any error since its content is no longer wanted.
+     *
+     * @param in stream to close or null
+     */
+    private static void closeQuietly(final InputStream in) {
+        if (in == null) {
+            return;
+        }
+
+        try {
+            in.close();
+        } catch (IOException | RuntimeException e) {
+            // The request lost the race, so how it ends doesn't matter
+        }
+    }
+
+    /**
+     * Requests made for a single range and the one that answered first.
+     */
+    private final class Race {
+        /**
+         * Range being requested.
+         */
+        private final RangeJoiningInputStream.Range section;
+
+        /**
+         * Function that makes a single request for the range.
+         */
+        private final Function<RangeJoiningInputStream.Range, InputStream> opener;
+
+        /**
+         * Values of {@link System#nanoTime()} when each request was made.
+         */
+        private final long[] starts = new long[ATTEMPTS];
+
+        /**
+         * Streams of requests that have been answered but haven't returned a
+         * byte yet, indexed by request.
+         */
+        private final InputStream[] opened = new InputStream[ATTEMPTS];
+
+        /**
+         * Number of requests made.
+         */
+        private int started = 0;
+
+        /**
+         * Number of requests that failed.
+         */
+        private int failed = 0;
+
+        /**
+         * Failure of the first request that failed.
+         */
+        private IOException failure;
+
+        /**
+         * Stream of the request that returned a byte first.
+         */
+        private InputStream winner;
+
+        /**
+         * Flag indicating that a request won or that the reader gave up on the range.
+         */
+        private boolean settled = false;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param section range being requested
+         * @param opener function that makes a single request for the range
+         */
+        private Race(final RangeJoiningInputStream.Range section,
+                     final Function<RangeJoiningInputStream.Range, InputStream> opener) {
+            this.section = section;
+            this.opener = opener;
+        }
+
+        /**
+         * Makes a request for the range in the background unless a request
+         * has already won.
+         *
+         * @param attempt index of the request
+         * @return true when the request was made
+         */
+        private boolean start(final int attempt) {
+            synchronized (this) {
+                if (settled) {
+                    return false;
+                }
+
+                starts[attempt] = System.nanoTime();
+                started++;
+            }
+
+            try {
+                executor.execute(() -> run(attempt));
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    started--;
+                }
+
+                throw e;
+            }
+
+            return true;
+        }
+
+        /**
+         * Makes a request and reads its first byte.
+         *
+         * @param attempt index of the request
+         */
+        private void run(final int attempt) {
+            try {
+                final InputStream in = opener.apply(section);
+
+                if (!answered(attempt, in)) {
+                    in.close();
+                    return;
+                }
+
+                final PushbackInputStream answer = new PushbackInputStream(in, 1);
+                final int first = answer.read();
+
+                if (first != EOF) {
+                    answer.unread(first);
+                }
+
+                if (!won(attempt, answer)) {
+                    answer.close();
+                }
+            } catch (UncheckedIOException e) {
+                failed(attempt, e.getCause());
+            } catch (IOException e) {
+                failed(attempt, e);
+            } catch (RuntimeException e) {
+                failed(attempt, new IOException("Unable to read section " + section, e));
+            }
+        }
+
+        /**
+         * Keeps the stream of a request that has been answered so that it
+         * can be closed if the other request wins.
+         *
+         * @param attempt index of the request
+         * @param in stream of the request
+         * @return false when a request has already won
+         */
+        private synchronized boolean answered(final int attempt, final InputStream in) {
+            if (settled) {
+                return false;
+            }
+
+            opened[attempt] = in;
+            return true;
+        }
+
+        /**
+         * Makes a request that returned a byte the winner, if no request has
+         * won yet, and closes the other request.
+         *
+         * @param attempt index of the request
+         * @param answer stream of the request
+         * @return false when a request has already won
+         */
+        private boolean won(final int attempt, final InputStream answer) {
+            final InputStream loser;
+            final long primaryNanos;
+            final boolean hedged;
+
+            synchronized (this) {
+                if (settled) {
+                    return false;
+                }
+
+                settled = true;
+                winner = answer;
+                loser = opened[ATTEMPTS - 1 - attempt];
+                primaryNanos = System.nanoTime() - starts[PRIMARY];
+                hedged = started > 1;
+                notifyAll();
+            }
+
+            // A first request that lost is measured until it was cancelled.
+            record(primaryNanos);
+
+            if (hedged && attempt == HEDGE) {
+                hedgeWins.incrementAndGet();
+            } else if (hedged) {
+                primaryWins.incrementAndGet();
+            }
+
+            closeQuietly(loser);
+            return true;
+        }
+
+        /**
+         * Records a failed request.
+         *
+         * @param attempt index of the request
+         * @param e failure
+         */
+        private void failed(final int attempt, final IOException e) {
+            final InputStream in;
+
+            synchronized (this) {
+                failed++;
+
+                if (failure == null) {
+                    failure = e;
+                }
+
+                in = opened[attempt];
+                opened[attempt] = null;
+                notifyAll();
+            }
+
+            closeQuietly(in);
+        }
+
+        /**
+         * Waits for a request to return a byte.
+         *
+         * @param timeoutNanos nanoseconds to wait
+         * @return stream of the winning request or null when none won in time
+         * @throws InterruptedException when interrupted while waiting
+         * @throws UncheckedIOException when every request made failed
+         */
+        private synchronized InputStream await(final long timeoutNanos) throws InterruptedException {
+            final long begin = System.nanoTime();
+
+            while (winner == null && failed < started) {
+                final long remaining = timeoutNanos - (System.nanoTime() - begin);
+
+                if (remaining <= 0L) {
+                    return null;
+                }
+
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+
+            if (winner == null) {
+                throw new UncheckedIOException(failure);
+            }
+
+            return winner;
+        }
+
+        /**
+         * Gives up on the range and closes every request that has been
+         * answered, including a winner that the reader never received.
+         */
+        private void abandon() {
+            final InputStream[] abandoned;
+            final InputStream unclaimed;
+
+            synchronized (this) {
+                settled = true;
+                abandoned = opened.clone();
+                Arrays.fill(opened, null);
+                unclaimed = winner;
+            }
+
+            for (InputStream in : abandoned) {
+                closeQuietly(in);
+            }
+
+            closeQuietly(unclaimed);
+        }
+    }
+}
@@ -9,20 +9,30 @@ package com.joyent.manta.cosbench;
 
 import com.joyent.manta.client.MantaClient;
 import com.joyent.manta.http.MantaHttpHeaders;
-import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.input.ProxyInputStream;
 
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
  * {@link java.io.InputStream} implementation that joins multiple HTTP
  * range requests together in order to produce a single {@link java.io.InputStream}.
  *
+ * <p>Reads move from one section to the next without recursion and bulk
+ * reads fill the caller's buffer across section boundaries. Skipping jumps
+ * over whole sections without requesting them.</p>
+ *
  * @author <a href="https://github.com/dekobon">Elijah Zupancic</a>
  * @since 1.1.0
  */
@@ -32,6 +42,28 @@ public class RangeJoiningInputStream extends InputStream {
      */
     private static final int EOF = -1;
 
+    /**
+     * Mask used to convert a signed byte into an unsigned int.
+     */
+    private static final int BYTE_MASK = 0xFF;
+
+    /**
+     * Maximum size in bytes of the buffer of each section read from a file.
+     */
+    private static final int FILE_BUFFER_SIZE = 65536;
+
+    /**
+     * Size in bytes of the buffers used by {@link #transferTo(OutputStream)}.
+     */
+    private static final int TRANSFER_BUFFER_SIZE = 131072;
+
+    /**
+     * Per-thread buffer reused by every {@link #transferTo(OutputStream)} call
+     * made on the thread.
+     */
+    private static final ThreadLocal<byte[]> TRANSFER_BUFFERS =
+            ThreadLocal.withInitial(() -> new byte[TRANSFER_BUFFER_SIZE]);
+
     /**
      * Path of object in Manta.
      */
@@ -47,10 +79,15 @@ public class RangeJoiningInputStream extends InputStream {
      */
     private final Range[] sections;
 
+    /**
+     * Function that opens the stream of input for a single section of the file.
+     */
+    private final Function<Range, InputStream> sectionOpener;
+
     /**
      * Supplier for each stream of input for each section of the file.
      */
-    private final Supplier<InputStream> streamSupplier;
+    private final SectionStreamSupplier streamSupplier;
 
     /**
      * Counter of the current section.
@@ -68,10 +105,68 @@ public class RangeJoiningInputStream extends InputStream {
     private long size;
 
     /**
-     * The {@link InputStream} for the current section.
+     * The {@link InputStream} for the current section, or null when the next
+     * section hasn't been opened yet.
      */
     private InputStream backingStream;
 
+    /**
+     * Listener notified when a section returns its first byte and when it
+     * has been read to its end.
+     */
+    private volatile SectionListener sectionListener;
+
+    /**
+     * Hedger that makes a duplicate request for sections that are slow to
+     * return their first byte, or null when each section is requested once.
+     */
+    private volatile RangeHedger hedger;
+
+    /**
+     * Callback interface for measuring how long each section takes.
+     */
+    interface SectionListener {
+        /**
+         * Called when the first byte of a section has been read.
+         *
+         * @param bytes number of bytes in the section
+         * @param nanos nanoseconds from opening the section until its first byte
+         */
+        default void sectionFirstByte(long bytes, long nanos) {
+        }
+
+        /**
+         * Called when a section has been read to its end.
+         *
+         * @param bytes number of bytes in the section
+         * @param nanos nanoseconds from opening the section until its end
+         */
+        void sectionCompleted(long bytes, long nanos);
+    }
+
+    /**
+     * Supplier of the stream of each section in order.
+     */
+    private interface SectionStreamSupplier extends Supplier<InputStream> {
+        /**
+         * Moves past the next section without opening it.
+         */
+        void skipSection();
+
+        /**
+         * Stops fetching sections ahead of the reader.
+         */
+        default void cancel() {
+        }
+
+        /**
+         * @return number of read ahead buffers still referenced by the supplier
+         */
+        default int getLiveBuffers() {
+            return 0;
+        }
+    }
+
     /**
      * Class representing the start and end ranges of a section.
      */
@@ -126,13 +221,12 @@ public class RangeJoiningInputStream extends InputStream {
     }
 
     /**
-     * Supplier class that supplies section streams via Manta.
+     * Function that opens a section stream via Manta.
      */
-    private class MantaObjectInputStreamSupplier implements Supplier<InputStream> {
+    private class MantaSectionStreamOpener implements Function<Range, InputStream> {
         @Override
-        public InputStream get() {
+        public InputStream apply(final Range section) {
             MantaHttpHeaders headers = new MantaHttpHeaders();
-            Range section = sections[currentSection++];
 
             try {
                 return client.getAsInputStream(path, headers,
@@ -145,44 +239,349 @@ public class RangeJoiningInputStream extends InputStream {
     }
 
     /**
-     * Supplier class that supplies section streams via a file.
+     * Function that opens a section stream via a file. Every section reads
+     * from one shared {@link FileChannel} at its own position, so opening a
+     * section neither reopens the file nor skips through it.
      */
-    private class FileSectionStreamSupplier implements Supplier<InputStream> {
+    private static class FileSectionStreamOpener implements Function<Range, InputStream>, Closeable {
         /**
          * Source file to read data from.
          */
         private final File file;
 
+        /**
+         * Channel shared by every section, opened with the first section.
+         */
+        private FileChannel channel;
+
         /**
          * Creates a new instance based on the specified file.
          *
          * @param file file to use for sectional input
          */
-        FileSectionStreamSupplier(final File file) {
+        FileSectionStreamOpener(final File file) {
             this.file = file;
         }
 
+        @Override
+        public InputStream apply(final Range section) {
+            try {
+                return new FileChannelSectionInputStream(channel(), section);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to create file InputStream",
+                        e);
+            }
+        }
+
+        /**
+         * @return the channel shared by every section
+         * @throws IOException when the file can't be opened
+         */
+        private synchronized FileChannel channel() throws IOException {
+            if (channel == null) {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            }
+
+            return channel;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Stream of a section of a file read with positional reads from a
+     * shared channel. Small reads are served from a buffer filled by bulk
+     * reads and reads at least as large as the buffer go straight to the
+     * channel. The buffer is only allocated by the first small read, so
+     * sections read in bulk never pay for zeroing it. Closing the stream
+     * leaves the channel open.
+     */
+    private static class FileChannelSectionInputStream extends InputStream {
+        /**
+         * Channel of the file.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Position after the last byte of the section.
+         */
+        private final long endExclusive;
+
+        /**
+         * Buffer of bytes read from the channel but not by the reader yet,
+         * empty until the first read smaller than {@link #bufferSize}.
+         */
+        private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+        /**
+         * Capacity of the buffer once it is allocated.
+         */
+        private final int bufferSize;
+
+        /**
+         * Position in the file of the next byte read from the channel.
+         */
+        private long position;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param channel channel of the file
+         * @param section section of the file to read
+         */
+        FileChannelSectionInputStream(final FileChannel channel, final Range section) {
+            this.channel = channel;
+            this.position = section.getStartInclusive();
+            this.endExclusive = section.getEndInclusive() + 1;
+            this.bufferSize = (int)Math.min(section.getSize(), FILE_BUFFER_SIZE);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!buffer.hasRemaining() && fill() == EOF) {
+                return EOF;
+            }
+
+            return buffer.get() & BYTE_MASK;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+            Objects.checkFromIndexSize(offset, length, bytes.length);
+
+            if (length == 0) {
+                return 0;
+            }
+
+            if (buffer.hasRemaining()) {
+                final int read = Math.min(length, buffer.remaining());
+                buffer.get(bytes, offset, read);
+                return read;
+            }
+
+            if (length < bufferSize) {
+                if (fill() == EOF) {
+                    return EOF;
+                }
+
+                return read(bytes, offset, length);
+            }
+
+            return readFromChannel(ByteBuffer.wrap(bytes, offset, length));
+        }
+
+        @Override
+        public long skip(final long n) {
+            if (n <= 0) {
+                return 0;
+            }
+
+            final long fromBuffer = Math.min(n, buffer.remaining());
+            buffer.position(buffer.position() + (int)fromBuffer);
+
+            final long fromChannel = Math.min(n - fromBuffer, endExclusive - position);
+            position += fromChannel;
+
+            return fromBuffer + fromChannel;
+        }
+
+        @Override
+        public int available() {
+            return (int)Math.min(buffer.remaining() + endExclusive - position, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Refills the empty buffer from the channel.
+         *
+         * @return number of bytes read into the buffer or EOF at the end of the section
+         * @throws IOException when the file can't be read
+         */
+        private int fill() throws IOException {
+            if (buffer.capacity() == 0) {
+                buffer = ByteBuffer.allocate(bufferSize);
+            }
+
+            buffer.clear();
+            final int read = readFromChannel(buffer);
+            buffer.flip();
+
+            return read;
+        }
+
+        /**
+         * Reads from the channel at the current position, up to the end of the section.
+         *
+         * @param destination buffer to read into
+         * @return number of bytes read or EOF at the end of the section
+         * @throws IOException when the file can't be read
+         */
+        private int readFromChannel(final ByteBuffer destination) throws IOException {
+            if (position >= endExclusive) {
+                return EOF;
+            }
+
+            if (destination.remaining() > endExclusive - position) {
+                destination.limit(destination.position() + (int)(endExclusive - position));
+            }
+
+            final int read = channel.read(destination, position);
+
+            if (read > 0) {
+                position += read;
+            }
+
+            return read;
+        }
+    }
+
+    /**
+     * Supplier class that opens each section only when it is needed.
+     */
+    private class SerialSectionStreamSupplier implements SectionStreamSupplier {
         @Override
         public InputStream get() {
-            Range section = sections[currentSection++];
+            return openSection(sections[currentSection++]);
+        }
 
-            try {
-                FileInputStream fs = new FileInputStream(file);
-                long toSkip = section.getStartInclusive();
+        @Override
+        public void skipSection() {
+            currentSection++;
+        }
+    }
+
+    /**
+     * Supplier class that opens up to a fixed number of sections ahead of the
+     * section being read and copies them into bounded buffers in the
+     * background.
+     */
+    private class ReadAheadSectionStreamSupplier implements SectionStreamSupplier {
+        /**
+         * Thread pool used to fetch sections in the background.
+         */
+        private final ExecutorService executor;
+
+        /**
+         * Maximum number of sections fetched at the same time.
+         */
+        private final int parallelism;
+
+        /**
+         * Size in bytes of the buffer for each section.
+         */
+        private final int bufferSize;
+
+        /**
+         * Buffers for each section that has been scheduled and not yet
+         * consumed or skipped. Buffers of sections behind the reader are
+         * cleared, so no more than {@link #parallelism} buffers are held.
+         */
+        private final ReadAheadBuffer[] buffers = new ReadAheadBuffer[sections.length];
 
-                if (toSkip > 0) {
-                    long skipped = fs.skip(toSkip);
+        /**
+         * Index of the next section to schedule.
+         */
+        private int nextToSchedule = 0;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param executor thread pool used to fetch sections in the background
+         * @param parallelism maximum number of sections fetched at the same time
+         * @param bufferSize size in bytes of the buffer for each section
+         */
+        ReadAheadSectionStreamSupplier(final ExecutorService executor,
+                                       final int parallelism,
+                                       final int bufferSize) {
+            this.executor = executor;
+            this.parallelism = parallelism;
+            this.bufferSize = bufferSize;
+        }
+
+        @Override
+        public InputStream get() {
+            final int section = currentSection++;
+
+            // The previous section has been read to its end
+            if (section > 0) {
+                buffers[section - 1] = null;
+            }
+
+            while (nextToSchedule < sections.length && nextToSchedule < section + parallelism) {
+                schedule(nextToSchedule++);
+            }
+
+            return buffers[section].inputStream();
+        }
+
+        @Override
+        public void skipSection() {
+            final int section = currentSection++;
+
+            if (section > 0) {
+                buffers[section - 1] = null;
+            }
+
+            if (buffers[section] != null) {
+                buffers[section].cancel();
+                buffers[section] = null;
+            }
+
+            nextToSchedule = Math.max(nextToSchedule, section + 1);
+        }
 
-                    if (skipped != toSkip) {
-                        throw new AssertionError("To skip value should be equal to actual bytes skipped");
-                    }
+        @Override
+        public int getLiveBuffers() {
+            int live = 0;
+
+            for (ReadAheadBuffer buffer : buffers) {
+                if (buffer != null) {
+                    live++;
                 }
+            }
 
+            return live;
+        }
 
-                return new BoundedInputStream(fs, section.getSize());
-            } catch (IOException e) {
-                throw new UncheckedIOException("Unable to create file InputStream",
-                        e);
+        /**
+         * Starts fetching a section in the background.
+         *
+         * @param section index of the section to fetch
+         */
+        private void schedule(final int section) {
+            final ReadAheadBuffer buffer = new ReadAheadBuffer(bufferSize);
+            buffers[section] = buffer;
+
+            executor.execute(() -> {
+                if (buffer.isCancelled()) {
+                    return;
+                }
+
+                try (InputStream in = openSection(sections[section])) {
+                    buffer.fillFrom(in);
+                } catch (UncheckedIOException e) {
+                    buffer.fail(e.getCause());
+                } catch (IOException e) {
+                    buffer.fail(e);
+                } catch (RuntimeException e) {
+                    buffer.fail(new IOException("Unable to read section " + sections[section], e));
+                }
+            });
+        }
+
+        /**
+         * Stops all background fetches and discards their buffered data.
+         */
+        @Override
+        public void cancel() {
+            for (ReadAheadBuffer buffer : buffers) {
+                if (buffer != null) {
+                    buffer.cancel();
+                }
             }
         }
     }
@@ -200,23 +599,39 @@ public class RangeJoiningInputStream extends InputStream {
                             final MantaClient client,
                             final long size,
                             final int noOfSections) {
+        this(path, client, size, noOfSections, null, 1, 0);
+    }
+
+    /**
+     * Creates a new instance that uses multiple HTTP range requests to get
+     * a single file and glue it all together as a single {@link InputStream}.
+     * When parallelism is greater than one, up to that many range requests
+     * are made at the same time and buffered in the background.
+     *
+     * @param path path to object in Manta
+     * @param client reference to an open Manta client
+     * @param size size of the object
+     * @param noOfSections number of sections to split object into
+     * @param executor thread pool used to fetch sections in the background
+     * @param parallelism maximum number of sections to fetch at the same time
+     * @param bufferSize size in bytes of the read ahead buffer for each section
+     */
+    RangeJoiningInputStream(final String path,
+                            final MantaClient client,
+                            final long size,
+                            final int noOfSections,
+                            final ExecutorService executor,
+                            final int parallelism,
+                            final int bufferSize) {
         Objects.requireNonNull(path);
         Objects.requireNonNull(client);
 
-        if (size <= 0) {
-            throw new IllegalArgumentException("Size of test object must be greater than zero");
-        }
-
-        if (noOfSections <= 1) {
-            throw new IllegalArgumentException("Number of sections for test object must be greater than one");
-        }
-
         this.path = path;
         this.client = client;
         this.size = size;
-        this.sections = splitIntoSections(size, noOfSections);
-        this.streamSupplier = new MantaObjectInputStreamSupplier();
-
+        this.sections = splitIntoSections(validateSize(size), validateNoOfSections(noOfSections));
+        this.sectionOpener = new MantaSectionStreamOpener();
+        this.streamSupplier = buildStreamSupplier(executor, parallelism, bufferSize);
     }
 
     /**
@@ -230,21 +645,206 @@ public class RangeJoiningInputStream extends InputStream {
     RangeJoiningInputStream(final long size,
                             final int noOfSections,
                             final File file) {
+        this(size, noOfSections, file, null, 1, 0);
+    }
+
+    /**
+     * Test only constructor used for constructing an instance of the stream
+     * that is based on a file input instead of a remote stream and reads
+     * sections ahead in the background.
+     *
+     * @param size size of file
+     * @param noOfSections number of sections to split file into
+     * @param file reference to the file
+     * @param executor thread pool used to fetch sections in the background
+     * @param parallelism maximum number of sections to fetch at the same time
+     * @param bufferSize size in bytes of the read ahead buffer for each section
+     */
+    RangeJoiningInputStream(final long size,
+                            final int noOfSections,
+                            final File file,
+                            final ExecutorService executor,
+                            final int parallelism,
+                            final int bufferSize) {
         Objects.requireNonNull(file);
 
+        this.path = null;
+        this.client = null;
+        this.size = size;
+        this.sections = splitIntoSections(validateSize(size), validateNoOfSections(noOfSections));
+        this.sectionOpener = new FileSectionStreamOpener(file);
+        this.streamSupplier = buildStreamSupplier(executor, parallelism, bufferSize);
+    }
+
+    /**
+     * @return size of the object in bytes
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * @return number of read ahead buffers held for sections that haven't been read or skipped
+     */
+    int getReadAheadBuffers() {
+        return streamSupplier.getLiveBuffers();
+    }
+
+    /**
+     * Adds a listener notified when each section returns its first byte and
+     * when it has been read to its end. Must be called before the stream is
+     * read.
+     *
+     * @param listener listener to notify
+     * @return this instance
+     */
+    RangeJoiningInputStream withSectionListener(final SectionListener listener) {
+        final SectionListener existing = this.sectionListener;
+
+        if (existing == null) {
+            this.sectionListener = listener;
+        } else {
+            this.sectionListener = new SectionListener() {
+                @Override
+                public void sectionFirstByte(final long bytes, final long nanos) {
+                    existing.sectionFirstByte(bytes, nanos);
+                    listener.sectionFirstByte(bytes, nanos);
+                }
+
+                @Override
+                public void sectionCompleted(final long bytes, final long nanos) {
+                    existing.sectionCompleted(bytes, nanos);
+                    listener.sectionCompleted(bytes, nanos);
+                }
+            };
+        }
+
+        return this;
+    }
+
+    /**
+     * Hedges the request of each section that is slow to return its first
+     * byte. Must be called before the stream is read.
+     *
+     * @param rangeHedger hedger that decides when a duplicate request is made
+     * @return this instance
+     */
+    RangeJoiningInputStream withHedging(final RangeHedger rangeHedger) {
+        this.hedger = rangeHedger;
+        return this;
+    }
+
+    /**
+     * Opens the stream for a section, timing it when a listener is set. The
+     * time covers both requests of a hedged section.
+     *
+     * @param section section to open
+     * @return stream of the bytes in the section
+     */
+    private InputStream openSection(final Range section) {
+        final SectionListener listener = this.sectionListener;
+
+        if (listener == null) {
+            return requestSection(section);
+        }
+
+        final long start = System.nanoTime();
+
+        return new ProxyInputStream(requestSection(section)) {
+            /**
+             * Flag indicating that the first byte of the section has been reported.
+             */
+            private boolean firstByteReported = false;
+
+            /**
+             * Flag indicating that the end of the section has been reported.
+             */
+            private boolean reported = false;
+
+            @Override
+            protected void afterRead(final int n) {
+                if (n > 0 && !firstByteReported) {
+                    firstByteReported = true;
+                    listener.sectionFirstByte(section.getSize(), System.nanoTime() - start);
+                }
+
+                if (n == EOF && !reported) {
+                    reported = true;
+                    listener.sectionCompleted(section.getSize(), System.nanoTime() - start);
+                }
+            }
+        };
+    }
+
+    /**
+     * Requests a section, with a hedged request when a hedger is set.
+     *
+     * @param section section to request
+     * @return stream of the bytes in the section
+     */
+    private InputStream requestSection(final Range section) {
+        final RangeHedger rangeHedger = this.hedger;
+
+        if (rangeHedger == null) {
+            return sectionOpener.apply(section);
+        }
+
+        return rangeHedger.open(section, sectionOpener);
+    }
+
+    /**
+     * Validates the size of the object.
+     *
+     * @param size size of the object
+     * @return the size
+     * @throws IllegalArgumentException when the size isn't positive
+     */
+    private static long validateSize(final long size) {
         if (size <= 0) {
             throw new IllegalArgumentException("Size of test object must be greater than zero");
         }
 
+        return size;
+    }
+
+    /**
+     * Validates the number of sections.
+     *
+     * @param noOfSections number of sections to split object into
+     * @return the number of sections
+     * @throws IllegalArgumentException when there are fewer than two sections
+     */
+    private static int validateNoOfSections(final int noOfSections) {
         if (noOfSections <= 1) {
             throw new IllegalArgumentException("Number of sections for test object must be greater than one");
         }
 
-        this.path = null;
-        this.client = null;
-        this.size = size;
-        this.sections = splitIntoSections(size, noOfSections);
-        this.streamSupplier = new FileSectionStreamSupplier(file);
+        return noOfSections;
+    }
+
+    /**
+     * Creates the supplier of section streams, reading sections ahead in the
+     * background when parallelism is greater than one.
+     *
+     * @param executor thread pool used to fetch sections in the background
+     * @param parallelism maximum number of sections to fetch at the same time
+     * @param bufferSize size in bytes of the read ahead buffer for each section
+     * @return supplier of section streams
+     */
+    private SectionStreamSupplier buildStreamSupplier(final ExecutorService executor,
+                                                final int parallelism,
+                                                final int bufferSize) {
+        if (parallelism <= 1) {
+            return new SerialSectionStreamSupplier();
+        }
+
+        Objects.requireNonNull(executor);
+
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Read ahead buffer size must be greater than zero");
+        }
+
+        return new ReadAheadSectionStreamSupplier(executor, parallelism, bufferSize);
     }
 
     @Override
@@ -260,77 +860,163 @@ public class RangeJoiningInputStream extends InputStream {
 
     @Override
     public void close() throws IOException {
-        backingStream.close();
+        streamSupplier.cancel();
+
+        try {
+            if (backingStream != null) {
+                backingStream.close();
+            }
+        } finally {
+            if (sectionOpener instanceof Closeable) {
+                ((Closeable)sectionOpener).close();
+            }
+        }
     }
 
     @Override
     public int read() throws IOException {
-        if (backingStream == null) {
-            backingStream = streamSupplier.get();
-        }
+        InputStream in;
 
-        final int read = backingStream.read();
+        while ((in = currentStream()) != null) {
+            final int read = in.read();
 
-        if (read > EOF) {
-            bytesRead++;
-        }
+            if (read != EOF) {
+                bytesRead++;
+                return read;
+            }
 
-        if (read <= EOF && currentSection < sections.length) {
-            backingStream.close();
-            backingStream = streamSupplier.get();
-            return read();
+            finishSection();
         }
 
-        return read;
+        return EOF;
     }
 
     @Override
     public int read(final byte[] buffer) throws IOException {
-        if (backingStream == null) {
-            backingStream = streamSupplier.get();
-        }
+        return read(buffer, 0, buffer.length);
+    }
 
-        final int read = backingStream.read(buffer);
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+        Objects.checkFromIndexSize(offset, length, buffer.length);
 
-        if (read > EOF) {
-            bytesRead += read;
-            return read;
+        if (length == 0) {
+            return 0;
         }
 
-        if (currentSection < sections.length) {
-            backingStream.close();
-            backingStream = streamSupplier.get();
+        int total = 0;
+        InputStream in;
+
+        while (total < length && (in = currentStream()) != null) {
+            final int read = in.read(buffer, offset + total, length - total);
 
-            return backingStream.read(buffer);
+            if (read == EOF) {
+                finishSection();
+            } else {
+                total += read;
+                bytesRead += read;
+            }
         }
 
-        return EOF;
+        if (total == 0) {
+            return EOF;
+        }
+
+        return total;
     }
 
     @Override
-    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
-        if (backingStream == null) {
-            backingStream = streamSupplier.get();
+    public long transferTo(final OutputStream out) throws IOException {
+        Objects.requireNonNull(out);
+
+        final byte[] buffer = TRANSFER_BUFFERS.get();
+        long transferred = 0;
+        InputStream in;
+
+        while ((in = currentStream()) != null) {
+            final int read = in.read(buffer, 0, buffer.length);
+
+            if (read == EOF) {
+                finishSection();
+            } else {
+                out.write(buffer, 0, read);
+                transferred += read;
+                bytesRead += read;
+            }
         }
 
-        final int read = backingStream.read(buffer, offset, length);
+        return transferred;
+    }
+
+    /**
+     * Skips bytes by jumping over whole sections that haven't been opened
+     * yet without requesting them and skipping within the open section.
+     *
+     * @param n number of bytes to skip
+     * @return number of bytes skipped
+     * @throws IOException when the open section can't be skipped
+     */
+    @Override
+    public long skip(final long n) throws IOException {
+        long remaining = n;
+
+        while (remaining > 0) {
+            if (backingStream == null) {
+                if (currentSection >= sections.length) {
+                    break;
+                }
+
+                final long sectionSize = sections[currentSection].getSize();
+
+                if (remaining >= sectionSize) {
+                    streamSupplier.skipSection();
+                    bytesRead += sectionSize;
+                    remaining -= sectionSize;
+                    continue;
+                }
+
+                backingStream = streamSupplier.get();
+            }
 
-        if (read > EOF) {
-            bytesRead += read;
+            final long skipped = backingStream.skip(remaining);
+
+            if (skipped > 0) {
+                bytesRead += skipped;
+                remaining -= skipped;
+            } else if (backingStream.read() == EOF) {
+                // Streams may skip nothing without being at their end, so a read tells them apart
+                finishSection();
+            } else {
+                bytesRead++;
+                remaining--;
+            }
         }
 
-        if (read <= EOF && currentSection < sections.length) {
-            backingStream.close();
+        return n - remaining;
+    }
+
+    /**
+     * Opens the next section if no section is open.
+     *
+     * @return stream of the open section or null when every section has been read
+     */
+    private InputStream currentStream() {
+        if (backingStream == null && currentSection < sections.length) {
             backingStream = streamSupplier.get();
-            return read(buffer, offset, length);
         }
 
-        return read;
+        return backingStream;
     }
 
-    @Override
-    public long skip(final long n) throws IOException {
-        throw new UnsupportedOperationException("Not supported");
+    /**
+     * Closes the open section once it has been read to its end.
+     *
+     * @throws IOException when the section can't be closed
+     */
+    private void finishSection() throws IOException {
+        final InputStream finished = backingStream;
+        backingStream = null;
+        finished.close();
     }
 
     @Override
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+/**
+ * Chooses the number of HTTP range sections for an object so that each range
+ * is close to a target size in bytes, within minimum and maximum section
+ * counts.
+ *
+ * <p>When adaptive, the target is tuned by hill climbing on the measured
+ * throughput of individual ranges. After each batch of completed ranges, the
+ * target keeps moving in the same direction (doubling or halving) as long as
+ * per-range throughput improves noticeably, and reverses direction when it
+ * doesn't. This settles around the smallest range size that still gets most
+ * of the achievable per-range throughput, where smaller ranges would mostly
+ * pay request overhead.</p>
+ *
+ * @since 1.1.3
+ */
+class RangeSectionSizer implements RangeJoiningInputStream.SectionListener {
+    /**
+     * Default maximum number of sections an object is split into.
+     */
+    static final int DEFAULT_MAX_SECTIONS = 64;
+
+    /**
+     * Smallest target the adaptive mode will tune down to (64 KiB).
+     */
+    static final long MIN_ADAPTIVE_TARGET = 65536L;
+
+    /**
+     * Largest target the adaptive mode will tune up to (1 GiB).
+     */
+    static final long MAX_ADAPTIVE_TARGET = 1073741824L;
+
+    /**
+     * Number of completed ranges measured before the target is adjusted.
+     */
+    static final int SAMPLES_PER_ADJUSTMENT = 32;
+
+    /**
+     * Relative throughput gain required to keep moving the target in the same direction.
+     */
+    private static final double IMPROVEMENT_THRESHOLD = 0.05;
+
+    /**
+     * Minimum number of sections an object is split into.
+     */
+    private final int minSections;
+
+    /**
+     * Maximum number of sections an object is split into.
+     */
+    private final int maxSections;
+
+    /**
+     * Flag indicating that the target is tuned from measured throughput.
+     */
+    private final boolean adaptive;
+
+    /**
+     * Current target size in bytes of each range.
+     */
+    private volatile long targetSectionSize;
+
+    /**
+     * Bytes transferred by ranges measured since the last adjustment.
+     */
+    private long sampleBytes = 0L;
+
+    /**
+     * Nanoseconds spent by ranges measured since the last adjustment.
+     */
+    private long sampleNanos = 0L;
+
+    /**
+     * Number of ranges measured since the last adjustment.
+     */
+    private int samples = 0;
+
+    /**
+     * Throughput in bytes per nanosecond measured before the last adjustment.
+     */
+    private double previousThroughput = 0.0;
+
+    /**
+     * True when the target is currently being increased.
+     */
+    private boolean increasing = true;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param targetSectionSize target size in bytes of each range
+     * @param minSections minimum number of sections an object is split into
+     * @param maxSections maximum number of sections an object is split into
+     * @param adaptive true to tune the target from measured throughput
+     * @throws IllegalArgumentException when the target or section bounds are invalid
+     */
+    RangeSectionSizer(final long targetSectionSize,
+                      final int minSections,
+                      final int maxSections,
+                      final boolean adaptive) {
+        if (targetSectionSize <= 0) {
+            throw new IllegalArgumentException("Range section size must be greater than zero");
+        }
+
+        if (minSections <= 0 || maxSections < minSections) {
+            throw new IllegalArgumentException("Range section bounds must satisfy 0 < min <= max");
+        }
+
+        this.targetSectionSize = targetSectionSize;
+        this.minSections = minSections;
+        this.maxSections = maxSections;
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * @return current target size in bytes of each range
+     */
+    long getTargetSectionSize() {
+        return targetSectionSize;
+    }
+
+    /**
+     * @return true when the target is tuned from measured throughput
+     */
+    boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * @return minimum number of sections an object is split into
+     */
+    int getMinSections() {
+        return minSections;
+    }
+
+    /**
+     * @return maximum number of sections an object is split into
+     */
+    int getMaxSections() {
+        return maxSections;
+    }
+
+    /**
+     * Determines the number of sections to split an object into. The result
+     * is never larger than the object itself so that no section is empty.
+     *
+     * @param size size of the object in bytes
+     * @return number of sections, one meaning that no range requests should be made
+     */
+    int sectionsFor(final long size) {
+        final long target = targetSectionSize;
+        final long byTarget = (size + target - 1) / target;
+        final long bounded = Math.max(minSections, Math.min(maxSections, byTarget));
+
+        return (int)Math.max(1L, Math.min(bounded, size));
+    }
+
+    @Override
+    public void sectionCompleted(final long bytes, final long nanos) {
+        if (!adaptive || nanos <= 0) {
+            return;
+        }
+
+        synchronized (this) {
+            sampleBytes += bytes;
+            sampleNanos += nanos;
+            samples++;
+
+            if (samples < SAMPLES_PER_ADJUSTMENT) {
+                return;
+            }
+
+            final double throughput = (double)sampleBytes / sampleNanos;
+
+            if (previousThroughput > 0.0
+                    && throughput < previousThroughput * (1.0 + IMPROVEMENT_THRESHOLD)) {
+                increasing = !increasing;
+            }
+
+            previousThroughput = throughput;
+            sampleBytes = 0L;
+            sampleNanos = 0L;
+            samples = 0;
+
+            if (increasing) {
+                targetSectionSize = Math.min(MAX_ADAPTIVE_TARGET, targetSectionSize * 2);
+            } else {
+                targetSectionSize = Math.max(MIN_ADAPTIVE_TARGET, targetSectionSize / 2);
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * Bounded ring buffer of bytes that is filled by a single background writer
+ * and drained by a single reader. The writer blocks when the buffer is full
+ * and the reader blocks when it is empty, so the amount of memory used to
+ * read ahead is fixed regardless of how large the source is. The writer
+ * reads the source straight into the free part of the ring, so the ring is
+ * the only memory a buffer holds.
+ *
+ * @since 1.1.3
+ */
+final class ReadAheadBuffer {
+    /**
+     * End of file code returned by streams.
+     */
+    private static final int EOF = -1;
+
+    /**
+     * Mask used to convert a signed byte into an unsigned int.
+     */
+    private static final int BYTE_MASK = 0xFF;
+
+    /**
+     * Backing storage for buffered bytes.
+     */
+    private final byte[] ring;
+
+    /**
+     * Position of the next byte to read.
+     */
+    private int head = 0;
+
+    /**
+     * Number of bytes currently buffered.
+     */
+    private int count = 0;
+
+    /**
+     * Flag indicating that the writer has written all of its bytes.
+     */
+    private boolean finished = false;
+
+    /**
+     * Flag indicating that the reader is no longer interested in any bytes.
+     */
+    private boolean cancelled = false;
+
+    /**
+     * Error encountered by the writer, to be rethrown to the reader.
+     */
+    private IOException failure;
+
+    /**
+     * Creates a new buffer.
+     *
+     * @param capacity maximum number of bytes to buffer
+     * @throws IllegalArgumentException when capacity isn't positive
+     */
+    ReadAheadBuffer(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Read ahead buffer capacity must be greater than zero");
+        }
+
+        this.ring = new byte[capacity];
+    }
+
+    /**
+     * Copies the source stream into the buffer until the source ends, then
+     * marks the buffer as finished. Any error is recorded so that the reader
+     * sees it in order. Bytes are read from the source straight into the
+     * free contiguous part of the ring, outside of the lock, which is safe
+     * because the reader never touches the free part.
+     *
+     * @param source stream to copy from
+     */
+    void fillFrom(final InputStream source) {
+        try {
+            int tail;
+            while ((tail = awaitFree()) != EOF) {
+                final int read = source.read(ring, tail, freeContiguous(tail));
+
+                if (read == EOF) {
+                    break;
+                }
+
+                commit(read);
+            }
+
+            finish();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * @return true when the reader has given up on the buffer
+     */
+    synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Waits until the ring has free space.
+     *
+     * @return position in the ring of the first free byte
+     * @throws IOException when the reader has cancelled or the writer is interrupted
+     */
+    private synchronized int awaitFree() throws IOException {
+        while (count == ring.length && !cancelled) {
+            awaitChange();
+        }
+
+        if (cancelled) {
+            throw new IOException("Read ahead was cancelled");
+        }
+
+        return (head + count) % ring.length;
+    }
+
+    /**
+     * Finds how many free bytes follow a position without wrapping around
+     * the end of the ring. Only the writer changes the free part of the
+     * ring, and the reader can only make it larger, so the result stays free
+     * until the writer commits.
+     *
+     * @param tail position in the ring of the first free byte
+     * @return number of contiguous free bytes
+     */
+    private synchronized int freeContiguous(final int tail) {
+        return Math.min(ring.length - count, ring.length - tail);
+    }
+
+    /**
+     * Makes bytes the writer has read into the free part of the ring
+     * available to the reader.
+     *
+     * @param length number of bytes read into the ring
+     * @throws IOException when the reader has cancelled
+     */
+    private synchronized void commit(final int length) throws IOException {
+        if (cancelled) {
+            throw new IOException("Read ahead was cancelled");
+        }
+
+        count += length;
+        notifyAll();
+    }
+
+    /**
+     * Marks the buffer as having received all bytes from the writer.
+     */
+    synchronized void finish() {
+        finished = true;
+        notifyAll();
+    }
+
+    /**
+     * Records a writer failure that will be thrown to the reader once it has
+     * drained the bytes buffered before the failure.
+     *
+     * @param e failure
+     */
+    synchronized void fail(final IOException e) {
+        failure = e;
+        finished = true;
+        notifyAll();
+    }
+
+    /**
+     * Discards buffered bytes and signals the writer to stop.
+     */
+    synchronized void cancel() {
+        cancelled = true;
+        count = 0;
+        notifyAll();
+    }
+
+    /**
+     * Reads bytes from the buffer, blocking while it is empty.
+     *
+     * @param bytes destination array
+     * @param offset offset in the destination array
+     * @param length maximum number of bytes to read
+     * @return number of bytes read or -1 when the writer has finished and the buffer is drained
+     * @throws IOException when the writer failed or the reader is interrupted
+     */
+    synchronized int read(final byte[] bytes, final int offset, final int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        while (count == 0 && !finished && !cancelled) {
+            awaitChange();
+        }
+
+        if (count == 0) {
+            if (failure != null) {
+                throw failure;
+            }
+
+            return EOF;
+        }
+
+        final int contiguous = Math.min(count, ring.length - head);
+        final int toCopy = Math.min(contiguous, length);
+
+        System.arraycopy(ring, head, bytes, offset, toCopy);
+        head = (head + toCopy) % ring.length;
+        count -= toCopy;
+        notifyAll();
+
+        return toCopy;
+    }
+
+    /**
+     * Waits for the other side of the buffer to change its state.
+     *
+     * @throws InterruptedIOException when interrupted while waiting
+     */
+    private void awaitChange() throws InterruptedIOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting on read ahead buffer");
+        }
+    }
+
+    /**
+     * @return a stream view of the reading side of this buffer; closing it cancels the buffer
+     */
+    InputStream inputStream() {
+        return new InputStream() {
+            /**
+             * Reusable array for single byte reads.
+             */
+            private final byte[] single = new byte[1];
+
+            @Override
+            public int read() throws IOException {
+                final int read = ReadAheadBuffer.this.read(single, 0, 1);
+
+                if (read == EOF) {
+                    return EOF;
+                }
+
+                return single[0] & BYTE_MASK;
+            }
+
+            @Override
+            public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+                return ReadAheadBuffer.this.read(bytes, offset, length);
+            }
+
+            @Override
+            public void close() {
+                cancel();
+            }
+        };
+    }
+}
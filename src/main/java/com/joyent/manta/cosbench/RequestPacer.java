@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spaces out requests made from any number of threads so that no more than
+ * a maximum number start per second. Each caller reserves the next free
+ * start time with a single atomic update and sleeps until it arrives, so
+ * time spent idle isn't banked for a later burst.
+ *
+ * @since 1.1.3
+ */
+class RequestPacer {
+    /**
+     * Minimum number of nanoseconds between the start of two requests, or
+     * zero when requests aren't paced.
+     */
+    private final long intervalNanos;
+
+    /**
+     * Value of {@link System#nanoTime()} at which the next request may start.
+     */
+    private final AtomicLong nextStartAt = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Creates a new instance.
+     *
+     * @param requestsPerSecond maximum number of requests started per second or zero for no limit
+     * @throws IllegalArgumentException when the rate is negative
+     */
+    RequestPacer(final int requestsPerSecond) {
+        if (requestsPerSecond < 0) {
+            throw new IllegalArgumentException("Request rate must not be negative");
+        }
+
+        if (requestsPerSecond == 0) {
+            this.intervalNanos = 0L;
+        } else {
+            this.intervalNanos = TimeUnit.SECONDS.toNanos(1L) / requestsPerSecond;
+        }
+    }
+
+    /**
+     * Waits until the next request may start.
+     *
+     * @throws InterruptedException when interrupted while waiting
+     */
+    void await() throws InterruptedException {
+        if (intervalNanos == 0L) {
+            return;
+        }
+
+        final long now = System.nanoTime();
+        final long startAt = nextStartAt.getAndUpdate(previous -> Math.max(previous, now) + intervalNanos);
+        final long waitNanos = Math.max(startAt, now) - now;
+
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import com.joyent.manta.client.MantaMetadata;
+import com.joyent.manta.http.MantaHttpHeaders;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Parts of requests that are the same from one request to the next, worked
+ * out once per worker instead of once per request. Uploads start from a copy
+ * of the headers for their durability level, which are built the first time
+ * the level is used, and metadata keys are prefixed once and reused. The
+ * templates themselves are never handed out, since the client may add to
+ * the headers of a request.
+ *
+ * @since 1.1.3
+ */
+final class RequestTemplates {
+    /**
+     * Prefix of user metadata keys in Manta.
+     */
+    static final String METADATA_PREFIX = "m-";
+
+    /**
+     * Largest number of prefixed metadata keys kept, so that workloads with
+     * unbounded key names don't grow the cache without limit.
+     */
+    static final int MAX_METADATA_KEYS = 1024;
+
+    /**
+     * Upload headers for each durability level used so far.
+     */
+    private final ConcurrentMap<Integer, MantaHttpHeaders> durabilityHeaders = new ConcurrentHashMap<>();
+
+    /**
+     * Prefixed metadata keys by COSBench metadata key.
+     */
+    private final ConcurrentMap<String, String> metadataKeys = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param durabilityLevel durability level of the storage config or null for the Manta default
+     */
+    RequestTemplates(final Integer durabilityLevel) {
+        if (durabilityLevel != null) {
+            durabilityHeaders.put(durabilityLevel, headersWithDurability(durabilityLevel));
+        }
+    }
+
+    /**
+     * Builds the upload headers for a durability level.
+     *
+     * @param durabilityLevel number of copies of the object to store
+     * @return headers
+     */
+    private static MantaHttpHeaders headersWithDurability(final int durabilityLevel) {
+        final MantaHttpHeaders headers = new MantaHttpHeaders();
+        headers.setDurabilityLevel(durabilityLevel);
+        return headers;
+    }
+
+    /**
+     * Creates the headers of an upload.
+     *
+     * @param durabilityLevel number of copies of the object to store or null for the Manta default
+     * @return headers that the caller may change
+     */
+    MantaHttpHeaders uploadHeaders(final Integer durabilityLevel) {
+        if (durabilityLevel == null) {
+            return new MantaHttpHeaders();
+        }
+
+        MantaHttpHeaders template = durabilityHeaders.get(durabilityLevel);
+        if (template == null) {
+            template = headersWithDurability(durabilityLevel);
+            durabilityHeaders.putIfAbsent(durabilityLevel, template);
+        }
+
+        return new MantaHttpHeaders(template);
+    }
+
+    /**
+     * Converts COSBench metadata into Manta metadata by prefixing each key
+     * with the Manta user metadata prefix.
+     *
+     * @param map COSBench metadata
+     * @return Manta metadata
+     */
+    MantaMetadata metadataOf(final Map<String, String> map) {
+        final MantaMetadata metadata = new MantaMetadata();
+
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            metadata.put(metadataKey(entry.getKey()), entry.getValue());
+        }
+
+        return metadata;
+    }
+
+    /**
+     * Finds the Manta metadata key of a COSBench metadata key.
+     *
+     * @param key COSBench metadata key
+     * @return key with the user metadata prefix
+     */
+    String metadataKey(final String key) {
+        final String cached = metadataKeys.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final String prefixed = METADATA_PREFIX.concat(key);
+
+        if (metadataKeys.size() < MAX_METADATA_KEYS) {
+            final String raced = metadataKeys.putIfAbsent(key, prefixed);
+            if (raced != null) {
+                return raced;
+            }
+        }
+
+        return prefixed;
+    }
+
+    /**
+     * @return number of prefixed metadata keys kept
+     */
+    int getMetadataKeys() {
+        return metadataKeys.size();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.apache.commons.io.input.ProxyInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * Stream wrapper that takes a token from a {@link TokenBucket} for every
+ * byte read, so that the bytes read through every wrapper sharing the bucket
+ * are limited to its rate. The bytes of each read are paid for before the
+ * next read or when the stream is closed, so the first byte is never held
+ * back and every wait falls between the first byte and the end of the
+ * stream. The time spent waiting is kept so that it can be reported apart
+ * from the time spent transferring.
+ *
+ * @since 1.1.3
+ */
+class ThrottledInputStream extends ProxyInputStream {
+    /**
+     * Bucket that bytes are taken from.
+     */
+    private final TokenBucket bucket;
+
+    /**
+     * Number of bytes read and not yet paid for.
+     */
+    private long owed = 0L;
+
+    /**
+     * Nanoseconds spent waiting for the bucket.
+     */
+    private long waitNanos = 0L;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param in stream to limit
+     * @param bucket bucket that bytes are taken from
+     */
+    ThrottledInputStream(final InputStream in, final TokenBucket bucket) {
+        super(in);
+        this.bucket = bucket;
+    }
+
+    @Override
+    protected void beforeRead(final int n) throws InterruptedIOException {
+        pay();
+    }
+
+    @Override
+    protected void afterRead(final int n) {
+        if (n > 0) {
+            owed += n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            pay();
+        } finally {
+            super.close();
+        }
+    }
+
+    /**
+     * Takes the tokens for the bytes read so far from the bucket.
+     *
+     * @throws InterruptedIOException when interrupted while waiting
+     */
+    private void pay() throws InterruptedIOException {
+        if (owed > 0L) {
+            final long tokens = owed;
+            owed = 0L;
+            waitNanos += bucket.acquire(tokens);
+        }
+    }
+
+    /**
+     * @return nanoseconds spent waiting for the bucket
+     */
+    long getWaitNanos() {
+        return waitNanos;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.apache.commons.io.input.ProxyInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stream wrapper that splits the latency of a download into the time until
+ * its first byte and the time spent transferring the rest of it. Timestamps
+ * are taken with {@link System#nanoTime()} on the first read that returns
+ * data and when the stream reaches its end, fails or is closed, whichever
+ * happens first; the listener is notified exactly once.
+ *
+ * @since 1.1.3
+ */
+class TimingInputStream extends ProxyInputStream {
+    /**
+     * End of file code returned by streams.
+     */
+    private static final int EOF = -1;
+
+    /**
+     * Value of {@link System#nanoTime()} when the request was issued.
+     */
+    private final long issuedAt;
+
+    /**
+     * Listener notified when the stream completes.
+     */
+    private final Listener listener;
+
+    /**
+     * Value of {@link System#nanoTime()} when the first byte was read.
+     */
+    private long firstByteAt;
+
+    /**
+     * Flag indicating that at least one byte has been read.
+     */
+    private boolean firstByteRead = false;
+
+    /**
+     * Number of bytes read so far.
+     */
+    private long bytesRead = 0L;
+
+    /**
+     * Flag indicating that the listener has been notified.
+     */
+    private boolean completed = false;
+
+    /**
+     * Callback interface for receiving the timing of a download.
+     */
+    interface Listener {
+        /**
+         * Called once when the stream reaches its end, fails or is closed.
+         *
+         * @param firstByteNanos nanoseconds from issuing the request until its
+         *                       first byte, or -1 if no byte was read
+         * @param transferNanos nanoseconds from the first byte (or from issuing
+         *                      the request if no byte was read) until completion
+         * @param bytes number of bytes read
+         * @param endOfStream true when the stream was read to its end
+         * @param failure exception thrown while reading or null
+         */
+        void streamCompleted(long firstByteNanos, long transferNanos, long bytes,
+                             boolean endOfStream, IOException failure);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param in stream to time
+     * @param issuedAt value of {@link System#nanoTime()} when the request was issued
+     * @param listener listener notified when the stream completes
+     */
+    TimingInputStream(final InputStream in, final long issuedAt, final Listener listener) {
+        super(in);
+        this.issuedAt = issuedAt;
+        this.listener = listener;
+    }
+
+    @Override
+    protected void afterRead(final int n) {
+        if (n > 0) {
+            if (!firstByteRead) {
+                firstByteRead = true;
+                firstByteAt = System.nanoTime();
+            }
+
+            bytesRead += n;
+        } else if (n == EOF) {
+            complete(true, null);
+        }
+    }
+
+    @Override
+    protected void handleIOException(final IOException e) throws IOException {
+        complete(false, e);
+        throw e;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            complete(false, null);
+        }
+    }
+
+    /**
+     * Notifies the listener if it hasn't been notified yet.
+     *
+     * @param endOfStream true when the stream was read to its end
+     * @param failure exception thrown while reading or null
+     */
+    private void complete(final boolean endOfStream, final IOException failure) {
+        if (completed) {
+            return;
+        }
+
+        completed = true;
+
+        final long completedAt = System.nanoTime();
+
+        if (!firstByteRead) {
+            listener.streamCompleted(EOF, completedAt - issuedAt, bytesRead, endOfStream, failure);
+        } else {
+            listener.streamCompleted(firstByteAt - issuedAt, completedAt - firstByteAt,
+                    bytesRead, endOfStream, failure);
+        }
+    }
+}
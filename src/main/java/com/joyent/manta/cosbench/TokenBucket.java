@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import com.joyent.manta.cosbench.config.RateSchedule;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free token bucket that limits how many tokens any number of threads
+ * take per second. The bucket keeps the time at which its tokens run out;
+ * each caller moves that time forward by the cost of its tokens with a single
+ * atomic update and sleeps until its share starts, so tokens left unused
+ * while idle are only banked for a short burst.
+ *
+ * <p>To keep threads from all updating that time for every few bytes, the
+ * bucket is striped: a caller that has to go to the bucket takes a
+ * millisecond's worth of extra tokens and leaves them on its stripe, where
+ * later calls from threads on the same stripe take them with a
+ * compare-and-set without touching the shared time.</p>
+ *
+ * <p>The rate follows a {@link RateSchedule} that starts when the first
+ * token is taken.</p>
+ *
+ * @since 1.1.3
+ */
+final class TokenBucket {
+    /**
+     * Nanoseconds of unused tokens that the bucket banks while idle.
+     */
+    static final long BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(10L);
+
+    /**
+     * Nanoseconds of extra tokens that a caller leaves on its stripe.
+     */
+    static final long BATCH_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    /**
+     * Largest number of stripes.
+     */
+    private static final int MAX_STRIPES = 64;
+
+    /**
+     * Number of nanoseconds in a second.
+     */
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1L);
+
+    /**
+     * Value of the start of the schedule before the first token is taken.
+     */
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    /**
+     * Rate of tokens per second over time.
+     */
+    private final RateSchedule schedule;
+
+    /**
+     * Tokens already paid for and not yet taken on each stripe.
+     */
+    private final AtomicLong[] stripes;
+
+    /**
+     * Mask that maps a thread to its stripe.
+     */
+    private final int stripeMask;
+
+    /**
+     * Value of {@link System#nanoTime()} when the schedule started.
+     */
+    private final AtomicLong startedAt = new AtomicLong(NOT_STARTED);
+
+    /**
+     * Value of {@link System#nanoTime()} at which the tokens paid for so far run out.
+     */
+    private final AtomicLong paidUntil = new AtomicLong(NOT_STARTED);
+
+    /**
+     * Number of tokens taken.
+     */
+    private final LongAdder taken = new LongAdder();
+
+    /**
+     * Number of calls that had to wait.
+     */
+    private final LongAdder waits = new LongAdder();
+
+    /**
+     * Nanoseconds spent waiting for tokens.
+     */
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * Creates a new instance with a stripe per processor.
+     *
+     * @param schedule rate of tokens per second over time
+     */
+    TokenBucket(final RateSchedule schedule) {
+        this(schedule, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param schedule rate of tokens per second over time
+     * @param concurrency expected number of threads taking tokens at the same time
+     */
+    TokenBucket(final RateSchedule schedule, final int concurrency) {
+        this.schedule = schedule;
+
+        int stripeCount = 1;
+        while (stripeCount < concurrency && stripeCount < MAX_STRIPES) {
+            stripeCount <<= 1;
+        }
+
+        this.stripes = new AtomicLong[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new AtomicLong();
+        }
+
+        this.stripeMask = stripeCount - 1;
+    }
+
+    /**
+     * Takes tokens, waiting until they are available.
+     *
+     * @param tokens number of tokens to take
+     * @return nanoseconds spent waiting
+     * @throws InterruptedIOException when interrupted while waiting
+     */
+    long acquire(final long tokens) throws InterruptedIOException {
+        if (tokens <= 0L) {
+            return 0L;
+        }
+
+        taken.add(tokens);
+
+        final AtomicLong stripe = stripes[(int)Thread.currentThread().getId() & stripeMask];
+
+        long banked = stripe.get();
+        while (banked >= tokens) {
+            if (stripe.compareAndSet(banked, banked - tokens)) {
+                return 0L;
+            }
+
+            banked = stripe.get();
+        }
+
+        final long now = System.nanoTime();
+        startedAt.compareAndSet(NOT_STARTED, now);
+
+        final long rate = schedule.rateAt(now - startedAt.get());
+        final long batch = (long)(rate * (BATCH_NANOS / NANOS_PER_SECOND));
+        final long cost = nanosFor(tokens + batch, rate);
+        final long earliest = now - BURST_NANOS;
+        final long startsAt = Math.max(earliest,
+                paidUntil.getAndUpdate(previous -> Math.max(previous, earliest) + cost));
+        final long waitedNanos = startsAt - now;
+
+        if (waitedNanos > 0L) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitedNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the throttle");
+            }
+
+            waits.increment();
+            waitNanos.add(waitedNanos);
+        }
+
+        if (batch > 0L) {
+            stripe.addAndGet(batch);
+        }
+
+        return Math.max(0L, waitedNanos);
+    }
+
+    /**
+     * Finds the time it takes to earn a number of tokens.
+     *
+     * @param tokens number of tokens
+     * @param rate tokens per second
+     * @return nanoseconds
+     */
+    private static long nanosFor(final long tokens, final long rate) {
+        return (long)(tokens * NANOS_PER_SECOND / rate);
+    }
+
+    /**
+     * @return rate of tokens per second over time
+     */
+    RateSchedule getSchedule() {
+        return schedule;
+    }
+
+    /**
+     * @return number of stripes
+     */
+    int getStripes() {
+        return stripes.length;
+    }
+
+    /**
+     * @return number of tokens taken
+     */
+    long getTaken() {
+        return taken.sum();
+    }
+
+    /**
+     * @return number of calls that had to wait
+     */
+    long getWaits() {
+        return waits.sum();
+    }
+
+    /**
+     * @return nanoseconds spent waiting for tokens
+     */
+    long getWaitNanos() {
+        return waitNanos.sum();
+    }
+}
@@ -0,0 +1,454 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import com.intel.cosbench.log.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Deletes a directory and everything below it with a pool of threads.
+ * Directories are listed concurrently, objects are deleted as soon as they
+ * are listed and each directory is deleted once everything listed in it is
+ * gone, so the tree is removed bottom-up. Work is queued on a bounded queue
+ * and runs on the thread that lists it when the queue is full, which keeps
+ * memory use flat for directories of any size. Deletes can be limited to a
+ * maximum rate, and entries that are already gone when they are listed or
+ * deleted are counted rather than treated as failures.
+ *
+ * <p>The first failure stops all listing and deleting, and is thrown to the
+ * caller.</p>
+ *
+ * @since 1.1.3
+ */
+class TreeDeleter {
+    /**
+     * Default number of directories listed and entries deleted at the same time.
+     */
+    static final int DEFAULT_PARALLELISM = 16;
+
+    /**
+     * Number of queued listings and deletes per thread.
+     */
+    private static final int QUEUE_CAPACITY_PER_THREAD = 64;
+
+    /**
+     * Number of deleted objects between progress messages.
+     */
+    private static final long PROGRESS_INTERVAL = 10000L;
+
+    /**
+     * Receives the entries of a directory listing.
+     */
+    @FunctionalInterface
+    interface EntryVisitor {
+        /**
+         * Visits an entry of a directory.
+         *
+         * @param path path of the entry
+         * @param directory true when the entry is a directory
+         */
+        void visit(String path, boolean directory);
+    }
+
+    /**
+     * Function that lists the entries of a single directory.
+     */
+    @FunctionalInterface
+    interface DirectoryLister {
+        /**
+         * Lists a directory.
+         *
+         * @param path path of the directory
+         * @param visitor visitor called for each entry of the directory
+         * @throws IOException when the directory can't be listed
+         */
+        void list(String path, EntryVisitor visitor) throws IOException;
+    }
+
+    /**
+     * Directory being deleted along with the number of its listings and
+     * entries that are still outstanding.
+     */
+    private static final class Node {
+        /**
+         * Path of the directory.
+         */
+        private final String path;
+
+        /**
+         * Directory containing this one or null for the top of the tree.
+         */
+        private final Node parent;
+
+        /**
+         * Number of entries still to be deleted, plus one while the
+         * directory is being listed.
+         */
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        /**
+         * Creates a new instance.
+         *
+         * @param path path of the directory
+         * @param parent directory containing this one or null for the top of the tree
+         */
+        private Node(final String path, final Node parent) {
+            this.path = path;
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * Function that lists each directory.
+     */
+    private final DirectoryLister lister;
+
+    /**
+     * Function that deletes each object and, once empty, each directory.
+     */
+    private final BucketEmptier.ObjectDeleter deleter;
+
+    /**
+     * Maximum number of directories listed and entries deleted at the same time.
+     */
+    private final int parallelism;
+
+    /**
+     * Paces deletes to the configured rate.
+     */
+    private final RequestPacer pacer;
+
+    /**
+     * Logger for progress messages or null when logging is disabled.
+     */
+    private final Logger logger;
+
+    /**
+     * Number of directories listed so far.
+     */
+    private final AtomicLong listed = new AtomicLong();
+
+    /**
+     * Number of objects deleted so far.
+     */
+    private final AtomicLong deletedObjects = new AtomicLong();
+
+    /**
+     * Number of directories deleted so far.
+     */
+    private final AtomicLong deletedDirectories = new AtomicLong();
+
+    /**
+     * Number of entries that were already gone when listed or deleted.
+     */
+    private final AtomicLong missing = new AtomicLong();
+
+    /**
+     * First failure of a listing or of a delete.
+     */
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    /**
+     * Released once the whole tree is deleted or anything has failed.
+     */
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    /**
+     * Creates a new instance.
+     *
+     * @param lister function that lists each directory
+     * @param deleter function that deletes each object and empty directory
+     * @param parallelism maximum number of directories listed and entries deleted at the same time
+     * @param deletesPerSecond maximum number of deletes started per second or zero for no limit
+     * @param logger logger for progress messages or null when logging is disabled
+     */
+    TreeDeleter(final DirectoryLister lister,
+                final BucketEmptier.ObjectDeleter deleter,
+                final int parallelism,
+                final int deletesPerSecond,
+                final Logger logger) {
+        Objects.requireNonNull(lister);
+        Objects.requireNonNull(deleter);
+
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Directory delete parallelism must be greater than zero");
+        }
+
+        this.lister = lister;
+        this.deleter = deleter;
+        this.parallelism = parallelism;
+        this.pacer = new RequestPacer(deletesPerSecond);
+        this.logger = logger;
+    }
+
+    /**
+     * Deletes a directory and everything below it.
+     *
+     * @param path path of the directory
+     * @throws IOException when a directory can't be listed or an entry can't be deleted
+     */
+    void delete(final String path) throws IOException {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(parallelism * QUEUE_CAPACITY_PER_THREAD),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        try {
+            final Node root = new Node(path, null);
+            submit(executor, () -> list(executor, root));
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while deleting directory " + path);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (logger != null) {
+            logger.info("Deleted directory {}: {} directories listed, {} objects deleted, "
+                            + "{} directories deleted, {} already gone",
+                    new Object[] {path, listed.get(), deletedObjects.get(),
+                            deletedDirectories.get(), missing.get()});
+        }
+
+        rethrowFailure();
+    }
+
+    /**
+     * @return number of directories listed so far
+     */
+    long getListed() {
+        return listed.get();
+    }
+
+    /**
+     * @return number of objects deleted so far
+     */
+    long getDeletedObjects() {
+        return deletedObjects.get();
+    }
+
+    /**
+     * @return number of directories deleted so far
+     */
+    long getDeletedDirectories() {
+        return deletedDirectories.get();
+    }
+
+    /**
+     * @return number of entries that were already gone when listed or deleted
+     */
+    long getMissing() {
+        return missing.get();
+    }
+
+    /**
+     * Queues a listing or delete, making sure that anything it throws stops
+     * the whole delete rather than leaving the caller waiting.
+     *
+     * @param executor pool running the listings and deletes
+     * @param task listing or delete to run
+     */
+    private void submit(final ThreadPoolExecutor executor, final Runnable task) {
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException | Error e) {
+                fail(e);
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Lists a directory, queueing a listing for each subdirectory and a
+     * delete for each object, then releases the directory's listing.
+     *
+     * @param executor pool running the listings and deletes
+     * @param node directory to list
+     */
+    private void list(final ThreadPoolExecutor executor, final Node node) {
+        if (failure.get() != null) {
+            return;
+        }
+
+        try {
+            lister.list(node.path, (entryPath, directory) -> {
+                if (failure.get() != null) {
+                    return;
+                }
+
+                node.pending.incrementAndGet();
+
+                if (directory) {
+                    final Node child = new Node(entryPath, node);
+                    submit(executor, () -> list(executor, child));
+                } else {
+                    submit(executor, () -> deleteObject(node, entryPath));
+                }
+            });
+            listed.incrementAndGet();
+        } catch (UncheckedIOException e) {
+            if (!handle(e.getCause())) {
+                return;
+            }
+        } catch (IOException e) {
+            if (!handle(e)) {
+                return;
+            }
+        } catch (RuntimeException e) {
+            fail(e);
+            return;
+        }
+
+        release(node);
+    }
+
+    /**
+     * Deletes an object and releases the directory containing it.
+     *
+     * @param parent directory containing the object
+     * @param path path of the object
+     */
+    private void deleteObject(final Node parent, final String path) {
+        if (failure.get() != null) {
+            return;
+        }
+
+        if (remove(path)) {
+            reportProgress(deletedObjects.incrementAndGet());
+        } else if (failure.get() != null) {
+            return;
+        }
+
+        release(parent);
+    }
+
+    /**
+     * Marks one listing or entry of a directory as done, deleting the
+     * directory once nothing in it is outstanding and releasing its parent in
+     * turn.
+     *
+     * @param node directory to release
+     */
+    private void release(final Node node) {
+        Node current = node;
+
+        while (current != null && current.pending.decrementAndGet() == 0) {
+            if (failure.get() != null) {
+                return;
+            }
+
+            if (remove(current.path)) {
+                deletedDirectories.incrementAndGet();
+            } else if (failure.get() != null) {
+                return;
+            }
+
+            if (current.parent == null) {
+                done.countDown();
+            }
+
+            current = current.parent;
+        }
+    }
+
+    /**
+     * Deletes an object or empty directory at the configured rate.
+     *
+     * @param path path of the object or directory
+     * @return true when it was deleted, false when it was already gone or the delete failed
+     */
+    private boolean remove(final String path) {
+        try {
+            pacer.await();
+            deleter.delete(path);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(new InterruptedIOException("Interrupted while deleting " + path));
+        } catch (IOException e) {
+            handle(e);
+        } catch (RuntimeException e) {
+            fail(e);
+        }
+
+        return false;
+    }
+
+    /**
+     * Counts entries that are already gone and records any other failure.
+     *
+     * @param e exception thrown by a listing or delete
+     * @return true when the entry was already gone
+     */
+    private boolean handle(final IOException e) {
+        if (BucketEmptier.isMissing(e)) {
+            missing.incrementAndGet();
+            return true;
+        }
+
+        fail(e);
+        return false;
+    }
+
+    /**
+     * Records the first failure and wakes up the caller.
+     *
+     * @param e failure
+     */
+    private void fail(final Throwable e) {
+        failure.compareAndSet(null, e);
+        done.countDown();
+    }
+
+    /**
+     * Logs the progress of deleting the tree at regular intervals.
+     *
+     * @param deletedSoFar number of objects deleted so far
+     */
+    private void reportProgress(final long deletedSoFar) {
+        if (logger != null && deletedSoFar % PROGRESS_INTERVAL == 0) {
+            logger.info("Deleting directory: {} directories listed, {} objects deleted, "
+                            + "{} directories deleted, {} already gone",
+                    new Object[] {listed.get(), deletedSoFar, deletedDirectories.get(), missing.get()});
+        }
+    }
+
+    /**
+     * Throws the first failure, if any.
+     *
+     * @throws IOException when the failure was an I/O failure
+     */
+    private void rethrowFailure() throws IOException {
+        final Throwable e = failure.get();
+
+        if (e instanceof IOException) {
+            throw (IOException)e;
+        }
+
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException)e;
+        }
+
+        if (e instanceof Error) {
+            throw (Error)e;
+        }
+    }
+}
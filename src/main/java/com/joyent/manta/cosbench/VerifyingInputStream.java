@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.apache.commons.io.input.ProxyInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stream wrapper that checks the content of a download against the
+ * {@link PayloadGenerator} model as COSBench reads it. Each chunk is compared
+ * in place with the expected content at its position, so nothing is buffered
+ * and the object is only read once. Skipped bytes aren't checked. When the
+ * length of the object is known, a stream that ends before or after it is a
+ * mismatch too.
+ *
+ * <p>The first byte that differs fails the read with a
+ * {@link ContentMismatchException}, and later reads pass through unchecked.
+ * The bytes checked and the time spent checking them are added to the
+ * worker's {@link Stats} once the stream ends, fails or is closed.</p>
+ *
+ * @since 1.1.3
+ */
+final class VerifyingInputStream extends ProxyInputStream {
+    /**
+     * End of file code returned by streams.
+     */
+    private static final int EOF = -1;
+
+    /**
+     * Seed of the object content.
+     */
+    private final long objectSeed;
+
+    /**
+     * Path of the object, used in the message of a mismatch.
+     */
+    private final String path;
+
+    /**
+     * Number of bytes the object should have or -1 if unknown.
+     */
+    private final long expectedLength;
+
+    /**
+     * Totals that the outcome of the stream is added to.
+     */
+    private final Stats stats;
+
+    /**
+     * Position in the object of the next byte read.
+     */
+    private long position = 0L;
+
+    /**
+     * Number of bytes checked so far.
+     */
+    private long verifiedBytes = 0L;
+
+    /**
+     * Nanoseconds spent checking bytes so far.
+     */
+    private long verifyNanos = 0L;
+
+    /**
+     * Flag indicating that a byte differed from the expected content.
+     */
+    private boolean mismatched = false;
+
+    /**
+     * Flag indicating that the outcome has been added to the totals.
+     */
+    private boolean completed = false;
+
+    /**
+     * Totals of content verification across the downloads of a worker.
+     */
+    static final class Stats {
+        /**
+         * Number of objects read to their end without a mismatch.
+         */
+        private final AtomicLong verifiedObjects = new AtomicLong();
+
+        /**
+         * Number of bytes checked.
+         */
+        private final AtomicLong verifiedBytes = new AtomicLong();
+
+        /**
+         * Number of objects with content that differed from the expected content.
+         */
+        private final AtomicLong mismatches = new AtomicLong();
+
+        /**
+         * Nanoseconds spent checking bytes.
+         */
+        private final AtomicLong verifyNanos = new AtomicLong();
+
+        /**
+         * @return number of objects read to their end without a mismatch
+         */
+        long getVerifiedObjects() {
+            return verifiedObjects.get();
+        }
+
+        /**
+         * @return number of bytes checked
+         */
+        long getVerifiedBytes() {
+            return verifiedBytes.get();
+        }
+
+        /**
+         * @return number of objects with content that differed from the expected content
+         */
+        long getMismatches() {
+            return mismatches.get();
+        }
+
+        /**
+         * @return nanoseconds spent checking bytes
+         */
+        long getVerifyNanos() {
+            return verifyNanos.get();
+        }
+    }
+
+    /**
+     * Thrown when the content of a download differs from the expected content.
+     */
+    static final class ContentMismatchException extends IOException {
+        /**
+         * Serialization version.
+         */
+        private static final long serialVersionUID = 4517983360734781612L;
+
+        /**
+         * Position in the object of the first byte that differed.
+         */
+        private final long position;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param path path of the object
+         * @param position position in the object of the first byte that differed
+         */
+        ContentMismatchException(final String path, final long position) {
+            super("Content of " + path + " differs from the expected content at byte " + position);
+            this.position = position;
+        }
+
+        /**
+         * Creates a new instance for an object that ended at the wrong position.
+         *
+         * @param path path of the object
+         * @param position position in the object where it ended
+         * @param expectedLength number of bytes the object should have
+         */
+        ContentMismatchException(final String path, final long position, final long expectedLength) {
+            super("Content of " + path + " ended at byte " + position + " instead of " + expectedLength);
+            this.position = position;
+        }
+
+        /**
+         * @return position in the object of the first byte that differed
+         */
+        long getPosition() {
+            return position;
+        }
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param in stream of the object content
+     * @param objectSeed seed of the expected object content
+     * @param path path of the object
+     * @param expectedLength number of bytes the object should have or -1 if unknown
+     * @param stats totals that the outcome of the stream is added to
+     */
+    VerifyingInputStream(final InputStream in,
+                         final long objectSeed,
+                         final String path,
+                         final long expectedLength,
+                         final Stats stats) {
+        super(in);
+        this.objectSeed = objectSeed;
+        this.path = path;
+        this.expectedLength = expectedLength;
+        this.stats = stats;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = super.read();
+
+        if (b == EOF) {
+            endOfStream();
+        } else if (!mismatched) {
+            // Timing a single byte would cost more than checking it.
+            if ((byte)b != PayloadGenerator.byteAt(objectSeed, position)) {
+                throw mismatch(position);
+            }
+
+            verifiedBytes++;
+            position++;
+        }
+
+        return b;
+    }
+
+    @Override
+    public int read(final byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        final int n = super.read(b, off, len);
+
+        if (n == EOF) {
+            endOfStream();
+        } else if (n > 0 && !mismatched) {
+            final long start = System.nanoTime();
+            final int index = PayloadGenerator.mismatch(objectSeed, position, b, off, n);
+            verifyNanos += System.nanoTime() - start;
+
+            if (index >= 0) {
+                verifiedBytes += index;
+                throw mismatch(position + index);
+            }
+
+            verifiedBytes += n;
+            position += n;
+        }
+
+        return n;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final long skipped = super.skip(n);
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(final int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("Mark and reset are not supported");
+    }
+
+    @Override
+    protected void handleIOException(final IOException e) throws IOException {
+        complete(false);
+        throw e;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            complete(false);
+        }
+    }
+
+    /**
+     * Checks that the stream ended at the expected length and adds its
+     * outcome to the totals.
+     *
+     * @throws ContentMismatchException when the stream ended before or after the expected length
+     */
+    private void endOfStream() throws ContentMismatchException {
+        if (!mismatched && expectedLength >= 0L && position != expectedLength) {
+            mismatched = true;
+            complete(false);
+            throw new ContentMismatchException(path, position, expectedLength);
+        }
+
+        complete(true);
+    }
+
+    /**
+     * Records a mismatch and creates the exception reporting it.
+     *
+     * @param at position in the object of the first byte that differed
+     * @return exception to throw
+     */
+    private ContentMismatchException mismatch(final long at) {
+        mismatched = true;
+        complete(false);
+        return new ContentMismatchException(path, at);
+    }
+
+    /**
+     * Adds the outcome of the stream to the totals if it hasn't been added yet.
+     *
+     * @param endOfStream true when the stream was read to its end
+     */
+    private void complete(final boolean endOfStream) {
+        if (completed) {
+            return;
+        }
+
+        completed = true;
+
+        if (mismatched) {
+            stats.mismatches.incrementAndGet();
+        } else if (endOfStream) {
+            stats.verifiedObjects.incrementAndGet();
+        }
+
+        stats.verifiedBytes.addAndGet(verifiedBytes);
+        stats.verifyNanos.addAndGet(verifyNanos);
+    }
+}
@@ -17,10 +17,21 @@ import com.joyent.manta.config.MapConfigContext;
 import com.joyent.manta.config.MetricReporterMode;
 import org.bouncycastle.util.encoders.Base64;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 /**
  * Cosbench specific implementation of {@link ConfigContext} that allows us to
  * connect Cosbench config seamlessly.
  *
+ * <p>The Cosbench config is read and validated once when an instance is
+ * created, and every setting is kept as an immutable typed value, so the
+ * getters never parse anything. Every invalid setting is reported together
+ * in a single exception.</p>
+ *
  * @author <a href="https://github.com/dekobon">Elijah Zupancic</a>
  *
  * @author <a href="https://github.com/1010sachin">Sachin Gupta</a>
@@ -32,421 +43,1148 @@ public class CosbenchMantaConfigContext implements ConfigContext {
     private static Logger logger = LogFactory.getSystemLogger();
 
     /**
-     * Embedded Cosbench config reference.
+     * Default test_type.
      */
-    private final Config config;
+    private static final String DEFAULT_TEST_TYPE = "dir";
 
     /**
-     * Default test_type.
+     * Size in bytes of multipart upload parts when splitSize isn't set.
      */
-    private static final String DEFAULT_TEST_TYPE = "dir";
+    public static final int DEFAULT_SPLIT_SIZE = 5242880;
+
+    /**
+     * Largest valid percentile, exclusive.
+     */
+    private static final double MAX_PERCENTILE = 100.0;
+
+    // ========================================================================
+    // java-manta Settings
+    // ========================================================================
+
+    /**
+     * Manta service endpoint.
+     */
+    private final String mantaURL;
+
+    /**
+     * Account name used to access the Manta service.
+     */
+    private final String mantaUser;
+
+    /**
+     * Fingerprint of the RSA key used to sign requests.
+     */
+    private final String mantaKeyId;
+
+    /**
+     * Path on the filesystem to the private RSA key used to sign requests.
+     */
+    private final String mantaKeyPath;
+
+    /**
+     * Private key content used to sign requests.
+     */
+    private final String privateKeyContent;
+
+    /**
+     * Password of the private key.
+     */
+    private final String password;
+
+    /**
+     * Request timeout in milliseconds.
+     */
+    private final Integer timeout;
+
+    /**
+     * Number of times to retry failed requests.
+     */
+    private final Integer retries;
+
+    /**
+     * Maximum number of open HTTP connections to the Manta API.
+     */
+    private final Integer maximumConnections;
+
+    /**
+     * Size of the buffer used when reading HTTP responses.
+     */
+    private final Integer httpBufferSize;
+
+    /**
+     * Comma delimited list of supported TLS protocols.
+     */
+    private final String httpsProtocols;
+
+    /**
+     * Comma delimited list of supported TLS ciphers.
+     */
+    private final String httpsCipherSuites;
+
+    /**
+     * Flag disabling the signing of requests.
+     */
+    private final Boolean noAuth;
+
+    /**
+     * Flag disabling native code to generate request signatures.
+     */
+    private final Boolean disableNativeSignatures;
+
+    /**
+     * Time in milliseconds to wait for data on an open socket.
+     */
+    private final Integer tcpSocketTimeout;
+
+    /**
+     * Time in milliseconds to wait for a connection from the pool.
+     */
+    private final Integer connectionRequestTimeout;
+
+    /**
+     * Time in milliseconds to wait for a 100-continue response.
+     */
+    private final Integer expectContinueTimeout;
+
+    /**
+     * Flag enabling the verification of the checksum of uploads.
+     */
+    private final Boolean verifyUploads;
+
+    /**
+     * Number of bytes buffered when uploading a stream of unknown size.
+     */
+    private final Integer uploadBufferSize;
+
+    /**
+     * Number of directories assumed to exist when creating directories recursively.
+     */
+    private final Integer skipDirectoryDepth;
+
+    /**
+     * Number of times a failed download is resumed.
+     */
+    private final Integer downloadContinuations;
+
+    /**
+     * Method used to report client metrics.
+     */
+    private final MetricReporterMode metricReporterMode;
+
+    /**
+     * Interval in seconds between client metric reports.
+     */
+    private final Integer metricReporterOutputInterval;
+
+    /**
+     * Flag enabling client-side encryption.
+     */
+    private final Boolean clientEncryptionEnabled;
+
+    /**
+     * Flag allowing unencrypted objects to be downloaded when client-side encryption is enabled.
+     */
+    private final Boolean permitUnencryptedDownloads;
+
+    /**
+     * Identifier of the client-side encryption key.
+     */
+    private final String encryptionKeyId;
+
+    /**
+     * Client-side encryption algorithm.
+     */
+    private final String encryptionAlgorithm;
+
+    /**
+     * Authentication mode of client-side encrypted downloads.
+     */
+    private final EncryptionAuthenticationMode encryptionAuthenticationMode;
+
+    /**
+     * Path to the client-side encryption key.
+     */
+    private final String encryptionPrivateKeyPath;
+
+    /**
+     * Decoded client-side encryption key.
+     */
+    private final byte[] encryptionPrivateKeyBytes;
+
+    /**
+     * Flag disabling the verification of TLS certificates.
+     */
+    private final Boolean tlsInsecure;
+
+    /**
+     * Flag enabling the detection of the content type of uploads.
+     */
+    private final Boolean contentTypeDetectionEnabled;
+
+    /**
+     * Number of empty parent directories removed when an object is deleted.
+     */
+    private final Integer pruneEmptyParentDepth;
+
+    /**
+     * Home directory of the account.
+     */
+    private final String mantaHomeDirectory;
+
+    /**
+     * Buckets directory of the account.
+     */
+    private final String mantaBucketsDirectory;
+
+    // ========================================================================
+    // COSBench Settings
+    // ========================================================================
+
+    /**
+     * Flag enabling logging.
+     */
+    private final boolean logging;
+
+    /**
+     * Number of copies to store of an object.
+     */
+    private final Integer durabilityLevel;
+
+    /**
+     * Flag enabling chunk encoding.
+     */
+    private final Boolean chunked;
+
+    /**
+     * Base directory under the home directory to write test data.
+     */
+    private final String baseDirectory;
+
+    /**
+     * Flag enabling multipart uploads.
+     */
+    private final boolean multipart;
+
+    /**
+     * Override of the default size of multipart upload parts.
+     */
+    private final Integer splitSize;
+
+    /**
+     * Object size in bytes from which uploads switch from a single PUT to a
+     * multipart upload.
+     */
+    private final Long multipartThreshold;
+
+    /**
+     * Maximum number of parts an upload switched to multipart is split into.
+     */
+    private final Integer maxMultipartParts;
+
+    /**
+     * Number of multipart upload parts uploaded at the same time.
+     */
+    private final int multipartParallelism;
+
+    /**
+     * Maximum number of bytes of part data held in memory by a worker.
+     */
+    private final Long multipartMemoryBudget;
+
+    /**
+     * Number of HTTP Range requests an object is downloaded with.
+     */
+    private final int numberOfSections;
+
+    /**
+     * Target number of bytes of each HTTP Range request.
+     */
+    private final Long rangeSectionSize;
+
+    /**
+     * Minimum number of sections an object is split into.
+     */
+    private final Integer minRangeSections;
+
+    /**
+     * Maximum number of sections an object is split into.
+     */
+    private final Integer maxRangeSections;
+
+    /**
+     * Flag enabling the tuning of the range section size from measured throughput.
+     */
+    private final boolean adaptiveRangeSectionSize;
+
+    /**
+     * Flag making workers with the same configuration share one client.
+     */
+    private final boolean sharedClient;
+
+    /**
+     * Number of connections opened and validated when a worker is initialized.
+     */
+    private final Integer warmUpConnections;
+
+    /**
+     * Number of HTTP Range requests made at the same time.
+     */
+    private final int rangeParallelism;
+
+    /**
+     * Number of bytes buffered ahead for each section.
+     */
+    private final Integer rangeBufferSize;
+
+    /**
+     * Percentile of the time to first byte after which an HTTP Range request is hedged.
+     */
+    private final Double rangeHedgePercentile;
+
+    /**
+     * Smallest delay in milliseconds before an HTTP Range request is hedged.
+     */
+    private final Integer rangeHedgeMinDelay;
+
+    /**
+     * Size of the objects being benchmarked.
+     */
+    private final Integer objectSize;
+
+    /**
+     * Number of object sizes kept in the driver-wide cache.
+     */
+    private final Integer objectSizeCacheCapacity;
+
+    /**
+     * Number of objects deleted at the same time when emptying a bucket.
+     */
+    private final Integer bucketDeleteParallelism;
 
     /**
-     * Default constructor that wraps a Cosbench config instance.
+     * Maximum number of objects deleted per second when emptying a bucket.
+     */
+    private final Integer bucketDeleteRate;
+
+    /**
+     * Number of directories listed and entries deleted at the same time when deleting a directory.
+     */
+    private final Integer dirDeleteParallelism;
+
+    /**
+     * Maximum number of entries deleted per second when deleting a directory.
+     */
+    private final Integer dirDeleteRate;
+
+    /**
+     * File that latency histograms are summarized into.
+     */
+    private final String latencySummaryFile;
+
+    /**
+     * Flag enabling deterministic upload content and its verification on download.
+     */
+    private final boolean verifyContent;
+
+    /**
+     * Seed that the content of every object is derived from.
+     */
+    private final Long payloadSeed;
+
+    /**
+     * Flag making uploads stream their content from a pool of off-heap slabs.
+     */
+    private final boolean payloadPool;
+
+    /**
+     * Number of bytes in the pool of off-heap slabs.
+     */
+    private final Long payloadPoolSize;
+
+    /**
+     * Flag making operations start at a fixed rate instead of one after another.
+     */
+    private final boolean openLoop;
+
+    /**
+     * Number of operations a worker starts per second in open-loop mode.
+     */
+    private final Integer openLoopRate;
+
+    /**
+     * Maximum number of outstanding operations of a worker in open-loop mode.
+     */
+    private final Integer openLoopMaxOutstanding;
+
+    /**
+     * Operations per second shared by every worker in the driver.
+     */
+    private final RateSchedule throttleOpsRate;
+
+    /**
+     * Uploaded bytes per second shared by every worker in the driver.
+     */
+    private final RateSchedule throttlePutBandwidth;
+
+    /**
+     * Downloaded bytes per second shared by every worker in the driver.
+     */
+    private final RateSchedule throttleGetBandwidth;
+
+    /**
+     * Prefix that listed entry names must start with.
+     */
+    private final String listPrefix;
+
+    /**
+     * Maximum number of entries read by each listing.
+     */
+    private final Long listLimit;
+
+    /**
+     * Test strategy being benchmarked.
+     */
+    private final String testType;
+
+    /**
+     * Keys that are set in the Cosbench config.
+     */
+    private final Set<String> configuredKeys;
+
+    /**
+     * Default constructor that reads and validates a Cosbench config instance.
      *
      * @param config cosbench config instance
+     * @throws IllegalArgumentException when any setting is invalid, listing every invalid setting
      */
     public CosbenchMantaConfigContext(final Config config) {
-        this.config = config;
+        final Reader reader = new Reader(config);
+
+        this.mantaURL = reader.string(MapConfigContext.MANTA_URL_KEY);
+        this.mantaUser = reader.string(MapConfigContext.MANTA_USER_KEY);
+        this.mantaKeyId = reader.string(MapConfigContext.MANTA_KEY_ID_KEY);
+        this.mantaKeyPath = reader.string(MapConfigContext.MANTA_KEY_PATH_KEY);
+        this.privateKeyContent = reader.string(MapConfigContext.MANTA_PRIVATE_KEY_CONTENT_KEY);
+        this.password = reader.string(MapConfigContext.MANTA_PASSWORD_KEY);
+        this.timeout = reader.integer(MapConfigContext.MANTA_TIMEOUT_KEY);
+        this.retries = reader.integer(MapConfigContext.MANTA_RETRIES_KEY);
+        this.maximumConnections = reader.integer(MapConfigContext.MANTA_MAX_CONNS_KEY);
+        this.httpBufferSize = reader.integer(MapConfigContext.MANTA_HTTP_BUFFER_SIZE_KEY);
+        this.httpsProtocols = reader.string(MapConfigContext.MANTA_HTTPS_PROTOCOLS_KEY);
+        this.httpsCipherSuites = reader.string(MapConfigContext.MANTA_HTTPS_CIPHERS_KEY);
+        this.noAuth = reader.bool(MapConfigContext.MANTA_NO_AUTH_KEY);
+        this.disableNativeSignatures = reader.bool(MapConfigContext.MANTA_NO_NATIVE_SIGS_KEY);
+        this.tcpSocketTimeout = reader.integer(MapConfigContext.MANTA_TCP_SOCKET_TIMEOUT_KEY);
+        this.connectionRequestTimeout = reader.integer(MapConfigContext.MANTA_CONNECTION_REQUEST_TIMEOUT_KEY);
+        this.expectContinueTimeout = reader.integer(MapConfigContext.MANTA_CONNECTION_REQUEST_TIMEOUT_KEY);
+        this.verifyUploads = reader.bool(MapConfigContext.MANTA_VERIFY_UPLOADS_KEY);
+        this.uploadBufferSize = reader.integer(MapConfigContext.MANTA_UPLOAD_BUFFER_SIZE_KEY);
+        this.skipDirectoryDepth = reader.integer(MapConfigContext.MANTA_SKIP_DIRECTORY_DEPTH_KEY);
+        this.downloadContinuations = reader.integer(MapConfigContext.MANTA_DOWNLOAD_CONTINUATIONS_KEY);
+        this.metricReporterMode = reader.enumValue(MapConfigContext.MANTA_METRIC_REPORTER_MODE_KEY,
+                MetricReporterMode.class);
+        this.metricReporterOutputInterval =
+                reader.integer(MapConfigContext.MANTA_METRIC_REPORTER_OUTPUT_INTERVAL_KEY);
+        this.clientEncryptionEnabled = reader.bool(MapConfigContext.MANTA_CLIENT_ENCRYPTION_ENABLED_KEY);
+        this.permitUnencryptedDownloads = reader.bool(MapConfigContext.MANTA_PERMIT_UNENCRYPTED_DOWNLOADS_KEY);
+        this.encryptionKeyId = reader.string(MapConfigContext.MANTA_ENCRYPTION_KEY_ID_KEY);
+        this.encryptionAlgorithm = reader.string(MapConfigContext.MANTA_ENCRYPTION_ALGORITHM_KEY);
+        this.encryptionAuthenticationMode = reader.enumValue(
+                MapConfigContext.MANTA_ENCRYPTION_AUTHENTICATION_MODE_KEY, EncryptionAuthenticationMode.class);
+        this.encryptionPrivateKeyPath = reader.string(MapConfigContext.MANTA_ENCRYPTION_PRIVATE_KEY_PATH_KEY);
+        this.encryptionPrivateKeyBytes = reader.base64(MapConfigContext.MANTA_ENCRYPTION_PRIVATE_KEY_BYTES_BASE64_KEY);
+        this.tlsInsecure = reader.bool(MapConfigContext.MANTA_TLS_INSECURE_KEY);
+        this.contentTypeDetectionEnabled = reader.bool(MapConfigContext.MANTA_CONTENT_TYPE_DETECTION_ENABLED_KEY);
+        this.pruneEmptyParentDepth = reader.integer(MapConfigContext.MANTA_PRUNE_EMPTY_PARENT_DEPTH_KEY);
+
+        if (mantaUser == null) {
+            this.mantaHomeDirectory = null;
+            this.mantaBucketsDirectory = null;
+        } else {
+            this.mantaHomeDirectory = ConfigContext.deriveHomeDirectoryFromUser(mantaUser);
+            this.mantaBucketsDirectory = mantaHomeDirectory + MantaClient.SEPARATOR + "buckets";
+        }
+
+        this.logging = reader.bool("logging", true);
+        this.durabilityLevel = reader.integer("durability-level");
+        this.chunked = reader.bool("chunked");
+        this.baseDirectory = reader.string("manta-directory");
+        this.multipart = reader.bool("multipart", false);
+        this.splitSize = reader.integer("splitSize");
+        this.multipartThreshold = reader.longAtLeast("multipart-threshold", 1L,
+                "Multipart threshold should be set to one or greater");
+        this.maxMultipartParts = reader.atLeast("max-multipart-parts", 1,
+                "Maximum multipart parts should be set to one or greater");
+        this.multipartParallelism = reader.atLeastOne("multipart-parallelism", 1,
+                "Multipart parallelism should be set to one or greater");
+        this.multipartMemoryBudget = reader.longValue("multipart-memory-budget");
+        if (multipartMemoryBudget != null) {
+            long partSize = DEFAULT_SPLIT_SIZE;
+            if (splitSize != null) {
+                partSize = splitSize;
+            }
+
+            // Reading the next part while the previous one uploads takes two buffers
+            if (multipartMemoryBudget < 2L * partSize) {
+                reader.problems.add(String.format("multipart-memory-budget should be at least twice the part "
+                        + "size of %d bytes but was '%d'", partSize, multipartMemoryBudget));
+            }
+        }
+        this.numberOfSections = reader.atLeastOne("no-of-http-range-sections", 1,
+                "Sections should be set to one or greater");
+        this.rangeSectionSize = reader.longAtLeast("range-section-size", 1L,
+                "Range section size should be set to one or greater");
+        this.minRangeSections = reader.atLeast("min-range-sections", 1,
+                "Minimum range sections should be set to one or greater");
+        this.maxRangeSections = reader.atLeast("max-range-sections", 1,
+                "Maximum range sections should be set to one or greater");
+        if (minRangeSections != null && maxRangeSections != null && minRangeSections > maxRangeSections) {
+            reader.problems.add(String.format("min-range-sections should be no greater than max-range-sections "
+                    + "but was '%d' and '%d'", minRangeSections, maxRangeSections));
+        }
+        this.adaptiveRangeSectionSize = reader.bool("adaptive-range-section-size", false);
+        this.sharedClient = reader.bool("shared-client", false);
+        this.warmUpConnections = reader.atLeast("warm-up-connections", 0,
+                "Warm-up connections should be set to zero or greater");
+        this.rangeParallelism = reader.atLeastOne("range-parallelism", 1,
+                "Range parallelism should be set to one or greater");
+        this.rangeBufferSize = reader.atLeast("range-buffer-size", 1,
+                "Range buffer size should be set to one or greater");
+        this.rangeHedgePercentile = reader.percentile("range-hedge-percentile");
+        this.rangeHedgeMinDelay = reader.atLeast("range-hedge-min-delay", 0,
+                "Range hedge minimum delay should be set to zero or greater");
+        this.objectSize = reader.integer("object-size");
+        this.objectSizeCacheCapacity = reader.atLeast("object-size-cache-capacity", 1,
+                "Object size cache capacity should be set to one or greater");
+        this.bucketDeleteParallelism = reader.atLeast("bucket-delete-parallelism", 1,
+                "Bucket delete parallelism should be set to one or greater");
+        this.bucketDeleteRate = reader.atLeast("bucket-delete-rate", 1,
+                "Bucket delete rate should be set to one or greater");
+        this.dirDeleteParallelism = reader.atLeast("dir-delete-parallelism", 1,
+                "Directory delete parallelism should be set to one or greater");
+        this.dirDeleteRate = reader.atLeast("dir-delete-rate", 1,
+                "Directory delete rate should be set to one or greater");
+        this.latencySummaryFile = reader.string("latency-summary-file");
+        this.verifyContent = reader.bool("verify-content", false);
+        this.payloadSeed = reader.longValue("payload-seed");
+        this.payloadPool = reader.bool("payload-pool", false);
+        this.payloadPoolSize = reader.longAtLeast("payload-pool-size", 1L,
+                "Payload pool size should be set to one or greater");
+
+        this.openLoop = "open".equals(reader.oneOf("load-mode", "closed", "open"));
+        this.openLoopRate = reader.atLeast("open-loop-rate", 1,
+                "Open-loop rate should be set to one or greater");
+        this.openLoopMaxOutstanding = reader.atLeast("open-loop-max-outstanding", 1,
+                "Open-loop maximum outstanding operations should be set to one or greater");
+        if (openLoop && !reader.keys.contains("open-loop-rate")) {
+            reader.problems.add("Open-loop load mode requires open-loop-rate to be set");
+        }
+
+        // COSBench measures operations from when they actually started, so
+        // the latency from the intended start is only in the latency summary
+        if (openLoop && latencySummaryFile == null) {
+            reader.problems.add("Open-loop load mode requires latency-summary-file to be set");
+        }
+
+        this.throttleOpsRate = reader.rateSchedule("throttle-ops-rate");
+        this.throttlePutBandwidth = reader.rateSchedule("throttle-put-bandwidth");
+        this.throttleGetBandwidth = reader.rateSchedule("throttle-get-bandwidth");
+        this.listPrefix = reader.string("list-prefix");
+        this.listLimit = reader.longAtLeast("list-limit", 1L,
+                "List limit should be set to one or greater");
+
+        final String configuredTestType = reader.string("test_type");
+        if (configuredTestType == null) {
+            this.testType = DEFAULT_TEST_TYPE;
+        } else {
+            this.testType = configuredTestType;
+        }
+
+        this.configuredKeys = Collections.unmodifiableSet(reader.keys);
+
+        reader.throwProblems();
+    }
+
+    /**
+     * Determines if a setting is set in the Cosbench config rather than left
+     * to its default, so that per-operation configs only override the
+     * settings they actually set.
+     *
+     * @param key key of the setting
+     * @return true when the setting is set
+     */
+    public boolean isConfigured(final String key) {
+        return configuredKeys.contains(key);
     }
 
     @Override
     public String getMantaURL() {
-        return safeGetString(MapConfigContext.MANTA_URL_KEY, "Couldn't get url from COSBench config");
+        return mantaURL;
     }
 
     @Override
     public String getMantaUser() {
-        return safeGetString(MapConfigContext.MANTA_USER_KEY, "Couldn't get username from COSBench config");
+        return mantaUser;
     }
 
     @Override
     public String getMantaKeyId() {
-        return safeGetString(MapConfigContext.MANTA_KEY_ID_KEY, "Couldn't get fingerprint from COSBench config");
+        return mantaKeyId;
     }
 
     @Override
     public String getMantaKeyPath() {
-        return safeGetString(MapConfigContext.MANTA_KEY_PATH_KEY, "Couldn't get key_path from COSBench config");
+        return mantaKeyPath;
     }
 
     @Override
     public String getPrivateKeyContent() {
-        return safeGetString(MapConfigContext.MANTA_PRIVATE_KEY_CONTENT_KEY,
-                "Couldn't get private_key from COSBench config");
+        return privateKeyContent;
     }
 
     @Override
     public String getPassword() {
-        return safeGetString(MapConfigContext.MANTA_PASSWORD_KEY, "Couldn't get password from COSBench config");
+        return password;
     }
 
     @Override
     public Integer getTimeout() {
-        return safeGetInteger(MapConfigContext.MANTA_TIMEOUT_KEY, "Couldn't get timeout from COSBench config");
+        return timeout;
     }
 
     @Override
     public Integer getRetries() {
-        return safeGetInteger(MapConfigContext.MANTA_RETRIES_KEY, "Couldn't get retries from COSBench config");
+        return retries;
     }
 
     @Override
     public Integer getMaximumConnections() {
-        return safeGetInteger(MapConfigContext.MANTA_MAX_CONNS_KEY,
-                "Couldn't get maximum connections from COSBench config");
+        return maximumConnections;
     }
 
     @Override
     public Integer getHttpBufferSize() {
-        return safeGetInteger(MapConfigContext.MANTA_HTTP_BUFFER_SIZE_KEY,
-                "Couldn't get http buffer size from COSBench config");
+        return httpBufferSize;
     }
 
     @Override
     public String getHttpsProtocols() {
-        return safeGetString(MapConfigContext.MANTA_HTTPS_PROTOCOLS_KEY,
-                "Couldn't get http protocols from COSBench config");
+        return httpsProtocols;
     }
 
     @Override
     public String getHttpsCipherSuites() {
-        return safeGetString(MapConfigContext.MANTA_HTTPS_CIPHERS_KEY,
-                "Couldn't get http ciphers from COSBench config");
+        return httpsCipherSuites;
     }
 
     @Override
     public Boolean noAuth() {
-        return safeGetBoolean(MapConfigContext.MANTA_NO_AUTH_KEY, "Couldn't get no auth setting from COSBench config");
+        return noAuth;
     }
 
     @Override
     public Boolean disableNativeSignatures() {
-        return safeGetBoolean(MapConfigContext.MANTA_NO_NATIVE_SIGS_KEY,
-                "Couldn't get disable native signature generation setting from COSBench config");
+        return disableNativeSignatures;
     }
 
     @Override
     public Integer getTcpSocketTimeout() {
-        return safeGetInteger(MapConfigContext.MANTA_TCP_SOCKET_TIMEOUT_KEY,
-                "Couldn't get TCP socket timeout from COSBench config");
+        return tcpSocketTimeout;
     }
 
     @Override
     public Integer getConnectionRequestTimeout() {
-        return safeGetInteger(MapConfigContext.MANTA_CONNECTION_REQUEST_TIMEOUT_KEY,
-                "Couldn't get connection request timeout from COSBench config");
+        return connectionRequestTimeout;
     }
 
     @Override
     public Integer getExpectContinueTimeout() {
-        return safeGetInteger(MapConfigContext.MANTA_CONNECTION_REQUEST_TIMEOUT_KEY,
-                "Couldn't get expect continue timeout from COSBench config");
+        return expectContinueTimeout;
     }
 
     @Override
     public Boolean verifyUploads() {
-        return safeGetBoolean(MapConfigContext.MANTA_VERIFY_UPLOADS_KEY,
-                "Couldn't get verify uploads flag from COSBench config");
+        return verifyUploads;
     }
 
     @Override
     public Integer getUploadBufferSize() {
-        return safeGetInteger(MapConfigContext.MANTA_UPLOAD_BUFFER_SIZE_KEY,
-                "Couldn't get upload buffer size from COSBench config");
+        return uploadBufferSize;
     }
 
     @Override
     public Integer getSkipDirectoryDepth() {
-        return safeGetInteger(MapConfigContext.MANTA_SKIP_DIRECTORY_DEPTH_KEY,
-                "Couldn't get skip directory depth from COSBench config");
+        return skipDirectoryDepth;
+    }
+
+    @Override
+    public Integer downloadContinuations() {
+        return downloadContinuations;
+    }
+
+    @Override
+    public MetricReporterMode getMetricReporterMode() {
+        return metricReporterMode;
+    }
+
+    @Override
+    public Integer getMetricReporterOutputInterval() {
+        return metricReporterOutputInterval;
+    }
+
+    @Override
+    public Boolean isClientEncryptionEnabled() {
+        return clientEncryptionEnabled;
+    }
+
+    @Override
+    public Boolean permitUnencryptedDownloads() {
+        return permitUnencryptedDownloads;
+    }
+
+    @Override
+    public String getEncryptionKeyId() {
+        return encryptionKeyId;
+    }
+
+    @Override
+    public String getEncryptionAlgorithm() {
+        return encryptionAlgorithm;
+    }
+
+    @Override
+    public EncryptionAuthenticationMode getEncryptionAuthenticationMode() {
+        return encryptionAuthenticationMode;
+    }
+
+    @Override
+    public String getEncryptionPrivateKeyPath() {
+        return encryptionPrivateKeyPath;
+    }
+
+    @Override
+    public byte[] getEncryptionPrivateKeyBytes() {
+        if (encryptionPrivateKeyBytes != null) {
+            return encryptionPrivateKeyBytes.clone();
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public Boolean tlsInsecure() {
+        return tlsInsecure;
+    }
+
+    // ========================================================================
+    // COSBench Parameters
+    // ========================================================================
+
+    /**
+     * @return true when logging is enabled (default is true)
+     */
+    public boolean logging() {
+        return logging;
+    }
+
+    /**
+     * @return the number of copies to store of an object
+     */
+    public Integer getDurabilityLevel() {
+        return durabilityLevel;
+    }
+
+    /**
+     * @return when true chunk encoding is enabled
+     */
+    public Boolean chunked() {
+        return chunked;
+    }
+
+    /**
+     * @return the base directory under the home directory in Manta to write
+     *         test data
+     */
+    public String getBaseDirectory() {
+        return baseDirectory;
+    }
+
+    /**
+     * @return Flag indicating if multipart part upload mode is enabled
+     */
+    public boolean isMultipart() {
+        return multipart;
+    }
+
+    /**
+     * @return - An override of the default split size.
+     */
+    public Integer getSplitSize() {
+        return splitSize;
+    }
+
+    /**
+     * Finds the object size from which uploads switch from a single PUT to a
+     * multipart upload. When set, objects smaller than the threshold are
+     * uploaded with a single PUT whether or not multipart mode is enabled.
+     *
+     * @return the threshold in bytes or null if not set
+     */
+    public Long getMultipartThreshold() {
+        return multipartThreshold;
+    }
+
+    /**
+     * Finds the maximum number of parts that an upload switched to multipart
+     * by the multipart threshold is split into.
+     *
+     * @return the maximum number of parts or null if not set
+     */
+    public Integer getMaxMultipartParts() {
+        return maxMultipartParts;
+    }
+
+    /**
+     * Determines the number of parts of a multipart upload to upload at the
+     * same time. By default this returns 1 which means that parts are
+     * uploaded one after another.
+     *
+     * @return the number of parts uploaded concurrently
+     */
+    public int getMultipartParallelism() {
+        return multipartParallelism;
+    }
+
+    /**
+     * Finds the maximum number of bytes of part data that a single worker may
+     * hold in memory while uploading parts concurrently.
+     *
+     * @return the memory budget in bytes or null if not set
+     */
+    public Long getMultipartMemoryBudget() {
+        return multipartMemoryBudget;
+    }
+
+    /**
+     * Determines the number of HTTP Range requests needed to download the
+     * object. By default this returns 1 which means do not do range requests
+     * and download the file normally.
+     *
+     * @return the number of sections a file is broken into
+     */
+    public int getNumberOfSections() {
+        return numberOfSections;
     }
 
-    @Override
-    public Integer downloadContinuations() {
-        return safeGetInteger(MapConfigContext.MANTA_DOWNLOAD_CONTINUATIONS_KEY,
-                              "Couldn't get download continuation count");
+    /**
+     * Finds the target number of bytes for each HTTP Range request. When set,
+     * the number of sections is chosen per object instead of using a fixed
+     * number of sections.
+     *
+     * @return the target range size in bytes or null if not set
+     */
+    public Long getRangeSectionSize() {
+        return rangeSectionSize;
     }
 
-    @Override
-    public MetricReporterMode getMetricReporterMode() {
-        return safeGetEnum(MapConfigContext.MANTA_METRIC_REPORTER_MODE_KEY,
-                           "Couldn't get metric reporter mode",
-                           MetricReporterMode.class);
+    /**
+     * @return the minimum number of sections an object is split into when a range section size is set
+     */
+    public Integer getMinRangeSections() {
+        return minRangeSections;
     }
 
-    @Override
-    public Integer getMetricReporterOutputInterval() {
-        return safeGetInteger(MapConfigContext.MANTA_METRIC_REPORTER_OUTPUT_INTERVAL_KEY,
-                              "Couldn't get metric reporter output interval");
+    /**
+     * @return the maximum number of sections an object is split into when a range section size is set
+     */
+    public Integer getMaxRangeSections() {
+        return maxRangeSections;
     }
 
-    @Override
-    public Boolean isClientEncryptionEnabled() {
-        return safeGetBoolean(MapConfigContext.MANTA_CLIENT_ENCRYPTION_ENABLED_KEY,
-                "Couldn't get encryption enabled boolean flag");
+    /**
+     * @return true when the range section size is tuned from measured throughput (default is false)
+     */
+    public boolean isAdaptiveRangeSectionSize() {
+        return adaptiveRangeSectionSize;
     }
 
-    @Override
-    public Boolean permitUnencryptedDownloads() {
-        return safeGetBoolean(MapConfigContext.MANTA_PERMIT_UNENCRYPTED_DOWNLOADS_KEY,
-                "Couldn't get permit unencrypted downloads boolean flag");
+    /**
+     * @return true when workers with the same configuration share one Manta client (default is false)
+     */
+    public boolean isSharedClient() {
+        return sharedClient;
     }
 
-    @Override
-    public String getEncryptionKeyId() {
-        return safeGetString(MapConfigContext.MANTA_ENCRYPTION_KEY_ID_KEY, "Couldn't get encryption key id");
+    /**
+     * Determines the number of connections opened and validated when a
+     * worker is initialized, before the benchmark starts.
+     *
+     * @return the number of warm-up connections or null if not set
+     */
+    public Integer getWarmUpConnections() {
+        return warmUpConnections;
     }
 
-    @Override
-    public String getEncryptionAlgorithm() {
-        return safeGetString(MapConfigContext.MANTA_ENCRYPTION_ALGORITHM_KEY, "Could'nt get encryption algorithm");
+    /**
+     * Determines the number of HTTP Range requests to make at the same time
+     * when downloading an object in sections. By default this returns 1 which
+     * means that sections are downloaded one after another.
+     *
+     * @return the number of sections downloaded concurrently
+     */
+    public int getRangeParallelism() {
+        return rangeParallelism;
     }
 
-    @Override
-    public EncryptionAuthenticationMode getEncryptionAuthenticationMode() {
-        EncryptionAuthenticationMode mode = safeGetEnum(MapConfigContext.MANTA_ENCRYPTION_AUTHENTICATION_MODE_KEY,
-                "Couldn't get object authentication mode", EncryptionAuthenticationMode.class);
-
-        return mode;
+    /**
+     * Finds the number of bytes buffered for each section being downloaded
+     * ahead of the section being read.
+     *
+     * @return the read ahead buffer size in bytes or null if not set
+     */
+    public Integer getRangeBufferSize() {
+        return rangeBufferSize;
     }
 
-    @Override
-    public String getEncryptionPrivateKeyPath() {
-        return safeGetString(MapConfigContext.MANTA_ENCRYPTION_PRIVATE_KEY_PATH_KEY,
-                "Couldn't get client-side encryption private key path");
+    /**
+     * Finds the percentile of the time to first byte of recent HTTP Range
+     * requests after which a duplicate request is made for a range that
+     * hasn't returned its first byte. Ranges are only hedged when it is set.
+     *
+     * @return the hedge percentile or null if not set
+     */
+    public Double getRangeHedgePercentile() {
+        return rangeHedgePercentile;
     }
 
-    @Override
-    public byte[] getEncryptionPrivateKeyBytes() {
-        String base64 = safeGetString(MapConfigContext.MANTA_ENCRYPTION_PRIVATE_KEY_BYTES_BASE64_KEY,
-                "Couldn't get client-side encryption private key base64 data");
-
-        if (base64 != null) {
-            return Base64.decode(base64);
-        } else {
-            return null;
-        }
+    /**
+     * Finds the smallest delay before a duplicate HTTP Range request is made,
+     * which keeps very fast ranges from being hedged.
+     *
+     * @return the minimum hedge delay in milliseconds or null if not set
+     */
+    public Integer getRangeHedgeMinDelay() {
+        return rangeHedgeMinDelay;
     }
 
-    @Override
-    public Boolean tlsInsecure() {
-        return safeGetBoolean(MapConfigContext.MANTA_TLS_INSECURE_KEY,
-                "Couldn't get tlsInsecure boolean flag");
+    /**
+     * Finds the set size of the objects being benchmarked. This option doesn't
+     * work with random object sizes and is only used when number of sections
+     * is greater than 1. When it isn't set, the size of each object is
+     * discovered and cached instead.
+     *
+     * @return the number in bytes of the size of files being benchmarked
+     */
+    public Integer getObjectSize() {
+        return objectSize;
     }
 
-    // ========================================================================
-    // COSBench Parameters
-    // ========================================================================
-
     /**
-     * @return true when logging is enabled (default is true)
+     * Finds the number of object sizes to keep in the driver-wide cache used
+     * when the object size isn't set for HTTP range requests.
+     *
+     * @return the number of cached object sizes or null if not set
      */
-    public boolean logging() {
-        Boolean enabled = safeGetBoolean("logging", "Couldn't get logging setting from COSBench config");
-
-        if (enabled == null) {
-            return true;
-        } else {
-            return enabled;
-        }
+    public Integer getObjectSizeCacheCapacity() {
+        return objectSizeCacheCapacity;
     }
 
     /**
-     * @return the number of copies to store of an object
+     * Determines the number of objects deleted at the same time when a bucket
+     * has to be emptied before it can be deleted.
+     *
+     * @return the number of concurrent deletes or null if not set
      */
-    public Integer getDurabilityLevel() {
-        return safeGetInteger("durability-level", "Couldn't get durability level setting from COSBench config");
+    public Integer getBucketDeleteParallelism() {
+        return bucketDeleteParallelism;
     }
 
     /**
-     * @return when true chunk encoding is enabled
+     * Determines the maximum number of objects deleted per second when a
+     * bucket has to be emptied before it can be deleted.
+     *
+     * @return the maximum deletes per second or null if not limited
      */
-    public Boolean chunked() {
-        return safeGetBoolean("chunked", "Couldn't get chunked setting from COSBench config");
+    public Integer getBucketDeleteRate() {
+        return bucketDeleteRate;
     }
 
     /**
-     * @return the base directory under the home directory in Manta to write
-     *         test data
+     * Determines the number of directories listed and entries deleted at the
+     * same time when a directory container is deleted.
+     *
+     * @return the number of concurrent listings and deletes or null if not set
      */
-    public String getBaseDirectory() {
-        return safeGetString("manta-directory", "Couldn't get Manta directory setting from COSBench config");
+    public Integer getDirDeleteParallelism() {
+        return dirDeleteParallelism;
     }
 
     /**
-     * @return Flag indicating if multipart part upload mode is enabled
+     * Determines the maximum number of objects and directories deleted per
+     * second when a directory container is deleted.
+     *
+     * @return the maximum deletes per second or null if not limited
      */
-    public boolean isMultipart() {
-        Boolean enabled = safeGetBoolean("multipart", "Couldn't get multipart setting from COSBench config");
-        if (enabled == null) {
-            return false;
-        } else {
-            return enabled;
-        }
+    public Integer getDirDeleteRate() {
+        return dirDeleteRate;
     }
 
     /**
-     * @return - An override of the default split size.
+     * Finds the file that latency histograms are summarized into. Latency
+     * histograms are only recorded when it is set.
+     *
+     * @return the path of the latency summary file or null if not set
      */
-    public Integer getSplitSize() {
-        return this.safeGetInteger("splitSize", "Couldn't get splitSize setting from COSBench config");
-
+    public String getLatencySummaryFile() {
+        return latencySummaryFile;
     }
 
     /**
-     * Reads the configuration and determines the number of HTTP Range requests
-     * needed to download the object. By default this returns 1 which means do
-     * not do range requests and download the file normally.
+     * Determines if uploads write deterministic content derived from the
+     * payload seed and the object name, and if downloads check that content
+     * as it is read.
      *
-     * @return the number of sections a file is broken into
+     * @return true when content is verified
      */
-    public int getNumberOfSections() {
-        Integer sections = safeGetInteger("no-of-http-range-sections",
-                "Couldn't get number of http byte range sections from COSBench config");
-
-        if (sections == null) {
-            return 1;
-        }
-
-        if (sections <= 0) {
-            throw new IllegalArgumentException("Sections should be set to one or greater");
-        }
-
-        return sections;
+    public boolean isVerifyContent() {
+        return verifyContent;
     }
 
     /**
-     * Reads the configuration and finds the set size of the objects being
-     * benchmarked. This option doesn't work with random object sizes and is
-     * only used when number of sections is greater than 1.
+     * Finds the seed that the content of every object is derived from when
+     * content is verified. Writers and readers must use the same seed.
      *
-     * @return the number in bytes of the size of files being benchmarked
+     * @return the payload seed or null if not set
      */
-    public Integer getObjectSize() {
-        return safeGetInteger("object-size", "Couldn't get object size from COSBench config");
+    public Long getPayloadSeed() {
+        return payloadSeed;
     }
 
     /**
-     * Reads the configuration and finds the test strategy being benchmarked.
+     * Determines if uploads stream their content from a driver-wide pool of
+     * pre-generated off-heap slabs instead of the data generated by COSBench.
      *
-     * @return the flag indicating buckets
+     * @return true when the payload pool is used
      */
-    public String testType() {
-        String testType = safeGetString("test_type",
-                "Couldn't get test_type setting from COSBench config");
+    public boolean isPayloadPool() {
+        return payloadPool;
+    }
 
-        if (testType == null) {
-            return DEFAULT_TEST_TYPE;
-        }
+    /**
+     * Finds the number of bytes in the driver-wide pool of off-heap slabs.
+     *
+     * @return the pool size in bytes or null if not set
+     */
+    public Long getPayloadPoolSize() {
+        return payloadPoolSize;
+    }
 
-        return testType;
+    /**
+     * Determines if the operations of each worker start at a fixed rate,
+     * with their latency measured from the intended start, instead of each
+     * operation starting when the previous one finishes.
+     *
+     * @return true when load-mode is open (default is closed)
+     */
+    public boolean isOpenLoop() {
+        return openLoop;
     }
 
     /**
-     * Utility method that checks for the presence of Integer values in the
-     * COSBench configuration and then returns the value if found.
+     * Finds the number of operations each worker starts per second in
+     * open-loop mode.
      *
-     * @param key key to check for
-     * @param message message to display when value isn't present
-     * @return null if not found, otherwise configuration value
+     * @return the open-loop rate or null if not set
      */
-    private Integer safeGetInteger(final String key, final String message) {
-        try {
-            int configValue = config.getInt(key, Integer.MIN_VALUE);
+    public Integer getOpenLoopRate() {
+        return openLoopRate;
+    }
 
-            if (configValue != Integer.MIN_VALUE) {
-                return configValue;
-            } else {
-                return null;
-            }
+    /**
+     * Finds the maximum number of outstanding operations of each worker in
+     * open-loop mode.
+     *
+     * @return the maximum outstanding operations or null if not set
+     */
+    public Integer getOpenLoopMaxOutstanding() {
+        return openLoopMaxOutstanding;
+    }
 
-        } catch (RuntimeException e) {
-            logger.trace(message, e);
-            return null;
-        }
+    /**
+     * Finds the number of operations per second that every worker in the
+     * driver shares.
+     *
+     * @return the operation rate or null if not set
+     */
+    public RateSchedule getThrottleOpsRate() {
+        return throttleOpsRate;
     }
 
     /**
-     * Utility method that checks for the presence of String values in the
-     * COSBench configuration and then returns the value if found.
+     * Finds the number of uploaded bytes per second that every worker in the
+     * driver shares.
      *
-     * @param key key to check for
-     * @param message message to display when value isn't present
-     * @return null if not found, otherwise configuration value
+     * @return the upload bandwidth or null if not set
      */
-    private String safeGetString(final String key, final String message) {
-        try {
-            return config.get(key);
-        } catch (RuntimeException e) {
-            logger.trace(message, e);
-            return null;
-        }
+    public RateSchedule getThrottlePutBandwidth() {
+        return throttlePutBandwidth;
     }
 
     /**
-     * Utility method that checks for the presence of Boolean values in the
-     * COSBench configuration and then returns the value if found.
+     * Finds the number of downloaded bytes per second that every worker in
+     * the driver shares.
      *
-     * @param key key to check for
-     * @param message message to display when value isn't present
-     * @return null if not found, otherwise configuration value
+     * @return the download bandwidth or null if not set
      */
-    private Boolean safeGetBoolean(final String key, final String message) {
-        try {
-            return Boolean.parseBoolean(config.get(key));
-        } catch (RuntimeException e) {
-            logger.trace(message, e);
-            return null;
-        }
+    public RateSchedule getThrottleGetBandwidth() {
+        return throttleGetBandwidth;
     }
 
     /**
-     * Utility method to checks for the presence of an Enum value in the
-     * COSBench configuration and then returns the value if found.
+     * Finds the prefix that the names of listed entries must start with.
      *
-     * @param key key to check for
-     * @param message message to display when value isn't present
-     * @param enumClass enum class to parse as
-     * @param <T> enum type
-     * @return enum instance matching the value of the key
+     * @return the list prefix or null if not set
      */
-    private <T extends Enum<T>> T safeGetEnum(final String key, final String message, final Class<T> enumClass) {
-        try {
-            String value = config.get(key);
+    public String getListPrefix() {
+        return listPrefix;
+    }
 
-            if (value == null) {
-                return null;
-            }
+    /**
+     * Finds the maximum number of entries read by each listing.
+     *
+     * @return the list limit or null if not set
+     */
+    public Long getListLimit() {
+        return listLimit;
+    }
 
-            return Enum.valueOf(enumClass, value);
-        } catch (RuntimeException e) {
-            logger.trace(message, e);
-            return null;
-        }
+    /**
+     * Finds the test strategy being benchmarked.
+     *
+     * @return the flag indicating buckets
+     */
+    public String testType() {
+        return testType;
     }
 
     @Override
     public String getMantaHomeDirectory() {
-        return ConfigContext.deriveHomeDirectoryFromUser(getMantaUser());
+        return mantaHomeDirectory;
     }
 
     @Override
     public String getMantaBucketsDirectory() {
-        return ConfigContext.deriveHomeDirectoryFromUser(getMantaUser())
-                + MantaClient.SEPARATOR + "buckets";
+        return mantaBucketsDirectory;
     }
 
     @Override
     public Boolean isContentTypeDetectionEnabled() {
-        return safeGetBoolean(MapConfigContext.MANTA_CONTENT_TYPE_DETECTION_ENABLED_KEY,
-                "Couldn't get content type detection boolean flag");
+        return contentTypeDetectionEnabled;
     }
 
     @Override
     public Integer getPruneEmptyParentDepth() {
-        return safeGetInteger(MapConfigContext.MANTA_PRUNE_EMPTY_PARENT_DEPTH_KEY,
-                "Couldn't get prune empty parent depth value from config");
+        return pruneEmptyParentDepth;
     }
 
     @Override
@@ -470,14 +1208,406 @@ public class CosbenchMantaConfigContext implements ConfigContext {
         sb.append(this.isMultipart());
         sb.append("getSplitSize='");
         sb.append(this.getSplitSize());
+        sb.append("getMultipartThreshold='");
+        sb.append(this.getMultipartThreshold());
+        sb.append("getMaxMultipartParts='");
+        sb.append(this.getMaxMultipartParts());
+        sb.append("getMultipartParallelism='");
+        sb.append(this.getMultipartParallelism());
+        sb.append("getMultipartMemoryBudget='");
+        sb.append(this.getMultipartMemoryBudget());
         sb.append("getNumberOfSections='");
         sb.append(this.getNumberOfSections());
+        sb.append("getRangeSectionSize='");
+        sb.append(this.getRangeSectionSize());
+        sb.append("getMinRangeSections='");
+        sb.append(this.getMinRangeSections());
+        sb.append("getMaxRangeSections='");
+        sb.append(this.getMaxRangeSections());
+        sb.append("isAdaptiveRangeSectionSize='");
+        sb.append(this.isAdaptiveRangeSectionSize());
+        sb.append("getRangeParallelism='");
+        sb.append(this.getRangeParallelism());
+        sb.append("getRangeBufferSize='");
+        sb.append(this.getRangeBufferSize());
+        sb.append("getRangeHedgePercentile='");
+        sb.append(this.getRangeHedgePercentile());
+        sb.append("getRangeHedgeMinDelay='");
+        sb.append(this.getRangeHedgeMinDelay());
         sb.append("getObjectSize='");
         sb.append(this.getObjectSize());
+        sb.append("getObjectSizeCacheCapacity='");
+        sb.append(this.getObjectSizeCacheCapacity());
+        sb.append("isSharedClient='");
+        sb.append(this.isSharedClient());
+        sb.append("getWarmUpConnections='");
+        sb.append(this.getWarmUpConnections());
+        sb.append("getLatencySummaryFile='");
+        sb.append(this.getLatencySummaryFile());
+        sb.append("isVerifyContent='");
+        sb.append(this.isVerifyContent());
+        sb.append("getPayloadSeed='");
+        sb.append(this.getPayloadSeed());
+        sb.append("isPayloadPool='");
+        sb.append(this.isPayloadPool());
+        sb.append("getPayloadPoolSize='");
+        sb.append(this.getPayloadPoolSize());
+        sb.append("isOpenLoop='");
+        sb.append(this.isOpenLoop());
+        sb.append("getOpenLoopRate='");
+        sb.append(this.getOpenLoopRate());
+        sb.append("getOpenLoopMaxOutstanding='");
+        sb.append(this.getOpenLoopMaxOutstanding());
+        sb.append("getThrottleOpsRate='");
+        sb.append(this.getThrottleOpsRate());
+        sb.append("getThrottlePutBandwidth='");
+        sb.append(this.getThrottlePutBandwidth());
+        sb.append("getThrottleGetBandwidth='");
+        sb.append(this.getThrottleGetBandwidth());
+        sb.append("getListPrefix='");
+        sb.append(this.getListPrefix());
+        sb.append("getListLimit='");
+        sb.append(this.getListLimit());
+        sb.append("getBucketDeleteParallelism='");
+        sb.append(this.getBucketDeleteParallelism());
+        sb.append("getBucketDeleteRate='");
+        sb.append(this.getBucketDeleteRate());
+        sb.append("getDirDeleteParallelism='");
+        sb.append(this.getDirDeleteParallelism());
+        sb.append("getDirDeleteRate='");
+        sb.append(this.getDirDeleteRate());
         sb.append("testType='");
         sb.append(this.testType());
         sb.append("}");
 
         return sb.toString();
     }
+
+    /**
+     * Reads typed values from a COSBench configuration, collecting a problem
+     * for every value that can't be parsed or is out of range instead of
+     * failing on the first one.
+     */
+    private static final class Reader {
+        /**
+         * Configuration being read.
+         */
+        private final Config config;
+
+        /**
+         * Description of every invalid value found so far.
+         */
+        private final List<String> problems = new ArrayList<>();
+
+        /**
+         * Keys read so far that are set.
+         */
+        private final Set<String> keys = new HashSet<>();
+
+        /**
+         * Creates a new instance.
+         *
+         * @param config configuration to read
+         */
+        private Reader(final Config config) {
+            this.config = config;
+        }
+
+        /**
+         * Reads a string value.
+         *
+         * @param key key to read
+         * @return null if not set, otherwise configuration value
+         */
+        private String string(final String key) {
+            try {
+                final String value = config.get(key, null);
+
+                if (value != null) {
+                    keys.add(key);
+                }
+
+                return value;
+            } catch (RuntimeException e) {
+                logger.trace("Couldn't get " + key + " from COSBench config", e);
+                return null;
+            }
+        }
+
+        /**
+         * Reads an Integer value.
+         *
+         * @param key key to read
+         * @return null if not set or invalid, otherwise configuration value
+         */
+        private Integer integer(final String key) {
+            final String value = string(key);
+
+            if (value == null) {
+                return null;
+            }
+
+            try {
+                return Integer.valueOf(value.trim());
+            } catch (NumberFormatException e) {
+                problems.add(String.format("%s should be an integer but was '%s'", key, value));
+                return null;
+            }
+        }
+
+        /**
+         * Reads a Long value.
+         *
+         * @param key key to read
+         * @return null if not set or invalid, otherwise configuration value
+         */
+        private Long longValue(final String key) {
+            final String value = string(key);
+
+            if (value == null) {
+                return null;
+            }
+
+            try {
+                return Long.valueOf(value.trim());
+            } catch (NumberFormatException e) {
+                problems.add(String.format("%s should be an integer but was '%s'", key, value));
+                return null;
+            }
+        }
+
+        /**
+         * Reads a rate that may change over time in steps.
+         *
+         * @param key key to read
+         * @return null if not set or invalid, otherwise configuration value
+         */
+        private RateSchedule rateSchedule(final String key) {
+            final String value = string(key);
+
+            if (value == null) {
+                return null;
+            }
+
+            try {
+                return RateSchedule.parse(value);
+            } catch (IllegalArgumentException e) {
+                problems.add(String.format("%s should be a rate or comma separated rate:seconds steps "
+                        + "but was '%s' (%s)", key, value, e.getMessage()));
+                return null;
+            }
+        }
+
+        /**
+         * Reads a percentile, which must be greater than 0 and less than 100.
+         *
+         * @param key key to read
+         * @return null if not set or invalid, otherwise configuration value
+         */
+        private Double percentile(final String key) {
+            final String value = string(key);
+
+            if (value == null) {
+                return null;
+            }
+
+            final double parsed;
+
+            try {
+                parsed = Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                problems.add(String.format("%s should be a number but was '%s'", key, value));
+                return null;
+            }
+
+            if (!(parsed > 0.0 && parsed < MAX_PERCENTILE)) {
+                problems.add(String.format("%s should be between 0 and 100 but was '%s'", key, value));
+                return null;
+            }
+
+            return parsed;
+        }
+
+        /**
+         * Reads a Boolean value.
+         *
+         * @param key key to read
+         * @return null if not set or invalid, otherwise configuration value
+         */
+        private Boolean bool(final String key) {
+            final String value = string(key);
+
+            if (value == null) {
+                return null;
+            }
+
+            final String trimmed = value.trim();
+
+            if ("true".equalsIgnoreCase(trimmed)) {
+                return Boolean.TRUE;
+            } else if ("false".equalsIgnoreCase(trimmed)) {
+                return Boolean.FALSE;
+            }
+
+            problems.add(String.format("%s should be true or false but was '%s'", key, value));
+            return null;
+        }
+
+        /**
+         * Reads a boolean value that has a default.
+         *
+         * @param key key to read
+         * @param defaultValue value used when the key isn't set or is invalid
+         * @return configuration value or the default
+         */
+        private boolean bool(final String key, final boolean defaultValue) {
+            final Boolean value = bool(key);
+
+            if (value == null) {
+                return defaultValue;
+            } else {
+                return value;
+            }
+        }
+
+        /**
+         * Reads an enum value.
+         *
+         * @param key key to read
+         * @param enumClass enum class to parse as
+         * @param <T> enum type
+         * @return null if not set or invalid, otherwise enum instance matching the value of the key
+         */
+        private <T extends Enum<T>> T enumValue(final String key, final Class<T> enumClass) {
+            final String value = string(key);
+
+            if (value == null) {
+                return null;
+            }
+
+            try {
+                return Enum.valueOf(enumClass, value);
+            } catch (IllegalArgumentException e) {
+                problems.add(String.format("%s should be a %s but was '%s'",
+                        key, enumClass.getSimpleName(), value));
+                return null;
+            }
+        }
+
+        /**
+         * Reads a string value that must be one of a fixed set of values.
+         *
+         * @param key key to read
+         * @param allowed valid values
+         * @return null if not set or invalid, otherwise configuration value
+         */
+        private String oneOf(final String key, final String... allowed) {
+            final String value = string(key);
+
+            if (value == null) {
+                return null;
+            }
+
+            final String trimmed = value.trim();
+
+            for (String candidate : allowed) {
+                if (candidate.equalsIgnoreCase(trimmed)) {
+                    return candidate;
+                }
+            }
+
+            problems.add(String.format("%s should be one of %s but was '%s'",
+                    key, String.join(", ", allowed), value));
+            return null;
+        }
+
+        /**
+         * Reads and decodes a base64 value.
+         *
+         * @param key key to read
+         * @return null if not set or invalid, otherwise decoded configuration value
+         */
+        private byte[] base64(final String key) {
+            final String value = string(key);
+
+            if (value == null) {
+                return null;
+            }
+
+            try {
+                return Base64.decode(value);
+            } catch (RuntimeException e) {
+                problems.add(String.format("%s should be base64 encoded", key));
+                return null;
+            }
+        }
+
+        /**
+         * Reads an Integer value that has a lower bound when it is set.
+         *
+         * @param key key to read
+         * @param minimum smallest valid value
+         * @param message problem reported when the value is below the minimum
+         * @return null if not set or invalid, otherwise configuration value
+         */
+        private Integer atLeast(final String key, final int minimum, final String message) {
+            final Integer value = integer(key);
+
+            if (value != null && value < minimum) {
+                problems.add(message);
+                return null;
+            }
+
+            return value;
+        }
+
+        /**
+         * Reads a Long value that has a lower bound when it is set.
+         *
+         * @param key key to read
+         * @param minimum smallest valid value
+         * @param message problem reported when the value is below the minimum
+         * @return null if not set or invalid, otherwise configuration value
+         */
+        private Long longAtLeast(final String key, final long minimum, final String message) {
+            final Long value = longValue(key);
+
+            if (value != null && value < minimum) {
+                problems.add(message);
+                return null;
+            }
+
+            return value;
+        }
+
+        /**
+         * Reads an int value that has a default and must be one or greater.
+         *
+         * @param key key to read
+         * @param defaultValue value used when the key isn't set or is invalid
+         * @param message problem reported when the value is below one
+         * @return configuration value or the default
+         */
+        private int atLeastOne(final String key, final int defaultValue, final String message) {
+            final Integer value = atLeast(key, 1, message);
+
+            if (value == null) {
+                return defaultValue;
+            } else {
+                return value;
+            }
+        }
+
+        /**
+         * Reports every problem found while reading.
+         *
+         * @throws IllegalArgumentException when any value was invalid
+         */
+        private void throwProblems() {
+            if (!problems.isEmpty()) {
+                throw new IllegalArgumentException("Invalid COSBench Manta configuration: "
+                        + String.join("; ", problems));
+            }
+        }
+    }
 }
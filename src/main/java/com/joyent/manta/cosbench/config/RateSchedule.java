@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench.config;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate that changes over time in steps, read from a setting such as
+ * {@code 1000:60,2000:60,5000}: 1000 per second for the first 60 seconds,
+ * 2000 per second for the next 60 seconds and 5000 per second from then on.
+ * A single number is a rate that never changes. Every step but the last
+ * must have a duration, and the last rate holds once the schedule ends.
+ *
+ * @since 1.1.3
+ */
+public final class RateSchedule {
+    /**
+     * Separator between steps.
+     */
+    private static final String STEP_SEPARATOR = ",";
+
+    /**
+     * Separator between the rate and the duration of a step.
+     */
+    private static final String DURATION_SEPARATOR = ":";
+
+    /**
+     * Rate of each step, per second.
+     */
+    private final long[] rates;
+
+    /**
+     * Duration of each step in seconds, or zero for the last step when it has none.
+     */
+    private final long[] seconds;
+
+    /**
+     * Elapsed nanoseconds at which each step ends.
+     */
+    private final long[] endsAtNanos;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param rates rate of each step, per second
+     * @param seconds duration of each step in seconds
+     */
+    private RateSchedule(final long[] rates, final long[] seconds) {
+        this.rates = rates;
+        this.seconds = seconds;
+        this.endsAtNanos = new long[rates.length];
+
+        long endsAt = 0L;
+        for (int i = 0; i < rates.length; i++) {
+            endsAt += TimeUnit.SECONDS.toNanos(seconds[i]);
+            endsAtNanos[i] = endsAt;
+        }
+
+        endsAtNanos[rates.length - 1] = Long.MAX_VALUE;
+    }
+
+    /**
+     * Parses a schedule.
+     *
+     * @param value rate, or comma separated steps of rate and seconds
+     * @return schedule
+     * @throws IllegalArgumentException when the schedule is invalid
+     */
+    public static RateSchedule parse(final String value) {
+        final String[] steps = value.split(STEP_SEPARATOR);
+        final long[] rates = new long[steps.length];
+        final long[] seconds = new long[steps.length];
+
+        for (int i = 0; i < steps.length; i++) {
+            final String[] parts = steps[i].trim().split(DURATION_SEPARATOR, -1);
+
+            if (parts.length > 2) {
+                throw new IllegalArgumentException("Step has more than a rate and a duration: " + steps[i]);
+            }
+
+            rates[i] = positive(parts[0], "Rate");
+
+            if (parts.length == 2) {
+                seconds[i] = positive(parts[1], "Duration");
+            } else if (i < steps.length - 1) {
+                throw new IllegalArgumentException("Every step but the last needs a duration: " + steps[i]);
+            }
+        }
+
+        return new RateSchedule(rates, seconds);
+    }
+
+    /**
+     * Parses a number that must be greater than zero.
+     *
+     * @param value value to parse
+     * @param name name of the value in error messages
+     * @return parsed value
+     * @throws IllegalArgumentException when the value isn't a positive integer
+     */
+    private static long positive(final String value, final String name) {
+        final long parsed;
+
+        try {
+            parsed = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " should be an integer: " + value, e);
+        }
+
+        if (parsed <= 0L) {
+            throw new IllegalArgumentException(name + " should be greater than zero: " + value);
+        }
+
+        return parsed;
+    }
+
+    /**
+     * Finds the rate at a point in the schedule.
+     *
+     * @param elapsedNanos nanoseconds since the schedule started
+     * @return rate per second
+     */
+    public long rateAt(final long elapsedNanos) {
+        for (int i = 0; i < rates.length - 1; i++) {
+            if (elapsedNanos < endsAtNanos[i]) {
+                return rates[i];
+            }
+        }
+
+        return rates[rates.length - 1];
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        final RateSchedule that = (RateSchedule)o;
+        return Arrays.equals(rates, that.rates) && Arrays.equals(seconds, that.seconds);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(Arrays.hashCode(rates), Arrays.hashCode(seconds));
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < rates.length; i++) {
+            if (i > 0) {
+                sb.append(STEP_SEPARATOR);
+            }
+
+            sb.append(rates[i]);
+
+            if (seconds[i] > 0L) {
+                sb.append(DURATION_SEPARATOR).append(seconds[i]);
+            }
+        }
+
+        return sb.toString();
+    }
+}
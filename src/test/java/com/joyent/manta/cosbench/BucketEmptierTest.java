@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Test
+public class BucketEmptierTest {
+    public void deletesEveryListedObjectConcurrently() throws IOException {
+        final Set<String> deleted = ConcurrentHashMap.newKeySet();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        final BucketEmptier emptier = new BucketEmptier(path -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+            try {
+                Thread.sleep(1L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            inFlight.decrementAndGet();
+            Assert.assertTrue(deleted.add(path), "Objects should be deleted once");
+        }, 8, 0, null);
+
+        emptier.empty("bucket", listing(2000).iterator(), name -> "/user/buckets/bucket/objects/" + name);
+
+        final Set<String> expected = new HashSet<>();
+        for (int i = 0; i < 2000; i++) {
+            expected.add("/user/buckets/bucket/objects/o" + i);
+        }
+
+        Assert.assertEquals(deleted, expected);
+        Assert.assertEquals(emptier.getListed(), 2000L);
+        Assert.assertEquals(emptier.getDeleted(), 2000L);
+        Assert.assertTrue(maxInFlight.get() > 1, "Objects should be deleted concurrently");
+        Assert.assertTrue(maxInFlight.get() <= 8, "No more than the configured deleters should run");
+    }
+
+    public void entriesThatAreNotObjectsAreSkipped() throws IOException {
+        final List<Map<String, Object>> entries = listing(3);
+        final Map<String, Object> group = new HashMap<>();
+        group.put("type", "group");
+        group.put("name", "prefix");
+        entries.add(1, group);
+
+        final Set<String> deleted = ConcurrentHashMap.newKeySet();
+        final BucketEmptier emptier = new BucketEmptier(deleted::add, 2, 0, null);
+        emptier.empty("bucket", entries.iterator(), name -> name);
+
+        Assert.assertEquals(deleted, new HashSet<>(List.of("o0", "o1", "o2")));
+    }
+
+    public void firstFailureStopsTheListingAndIsThrown() {
+        final IOException failure = new IOException("boom");
+        final AtomicInteger attempts = new AtomicInteger();
+
+        final BucketEmptier emptier = new BucketEmptier(path -> {
+            attempts.incrementAndGet();
+            throw failure;
+        }, 4, 0, null);
+
+        try {
+            emptier.empty("bucket", listing(100000).iterator(), name -> name);
+            Assert.fail("The delete failure should be thrown");
+        } catch (IOException e) {
+            Assert.assertSame(e, failure);
+        }
+
+        Assert.assertTrue(emptier.getListed() < 100000L, "Listing should stop after a failure");
+        Assert.assertTrue(attempts.get() < 100000, "Deleters should stop after a failure");
+    }
+
+    public void deletesAreRateLimited() throws IOException {
+        final BucketEmptier emptier = new BucketEmptier(path -> { }, 4, 100, null);
+        final long start = System.nanoTime();
+
+        emptier.empty("bucket", listing(21).iterator(), name -> name);
+
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.assertTrue(elapsedMillis >= 190L,
+                "21 deletes at 100 per second should take at least 200ms but took " + elapsedMillis);
+    }
+
+    private static List<Map<String, Object>> listing(final int objects) {
+        final List<Map<String, Object>> entries = new ArrayList<>(objects);
+
+        for (int i = 0; i < objects; i++) {
+            final Map<String, Object> entry = new HashMap<>();
+            entry.put("type", "bucketobject");
+            entry.put("name", "o" + i);
+            entries.add(entry);
+        }
+
+        return entries;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Test
+public class ConnectionWarmerTest {
+    public void requestsOfEachRoundAreSentAtTheSameTime() throws IOException {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final AtomicInteger sent = new AtomicInteger();
+
+        final ConnectionWarmer warmer = new ConnectionWarmer(() -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+            try {
+                Thread.sleep(20L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            inFlight.decrementAndGet();
+            sent.incrementAndGet();
+        }, 8, null);
+
+        warmer.warmUp();
+
+        Assert.assertEquals(sent.get(), 16, "Each connection should be opened and then reused");
+        Assert.assertEquals(maxInFlight.get(), 8, "Every request of a round should be in flight at once");
+        Assert.assertEquals(warmer.getFailures(), 0);
+        Assert.assertTrue(warmer.getAverageColdNanos() > 0L);
+        Assert.assertTrue(warmer.getAverageWarmNanos() > 0L);
+        Assert.assertTrue(warmer.getElapsedNanos() >= warmer.getAverageColdNanos());
+    }
+
+    public void failedRequestsAreCountedAndRecorded() throws IOException {
+        final AtomicInteger sent = new AtomicInteger();
+        final LatencyHistograms histograms = new LatencyHistograms();
+
+        final ConnectionWarmer warmer = new ConnectionWarmer(() -> {
+            if (sent.incrementAndGet() % 2 == 0) {
+                throw new IOException("boom");
+            }
+        }, 4, histograms);
+
+        warmer.warmUp();
+
+        Assert.assertEquals(warmer.getFailures(), 4);
+        Assert.assertEquals(histograms.histogram(MantaOperation.WARM_UP,
+                LatencyHistograms.UNKNOWN_SIZE, LatencyHistograms.SUCCESS).getTotalCount(), 4L);
+    }
+}
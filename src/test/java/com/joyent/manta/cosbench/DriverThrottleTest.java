@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import com.joyent.manta.cosbench.config.RateSchedule;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+
+@Test
+public class DriverThrottleTest {
+    public void workersWithTheSameLimitsShareAThrottle() {
+        final DriverThrottle first = DriverThrottle.acquire(RateSchedule.parse("5000"), null, null);
+        final DriverThrottle second = DriverThrottle.acquire(RateSchedule.parse("5000"), null, null);
+        final DriverThrottle other = DriverThrottle.acquire(RateSchedule.parse("6000"), null, null);
+
+        try {
+            Assert.assertSame(first, second);
+            Assert.assertNotSame(first, other);
+        } finally {
+            Assert.assertFalse(DriverThrottle.release(first));
+            Assert.assertTrue(DriverThrottle.release(second));
+            Assert.assertTrue(DriverThrottle.release(other));
+        }
+
+        final DriverThrottle later = DriverThrottle.acquire(RateSchedule.parse("5000"), null, null);
+        Assert.assertNotSame(later, first, "A later stage should start its schedules over");
+        Assert.assertTrue(DriverThrottle.release(later));
+    }
+
+    public void onlyLimitedDirectionsAreMetered() throws Exception {
+        final DriverThrottle throttle = DriverThrottle.acquire(null, RateSchedule.parse("1048576"), null);
+
+        try {
+            Assert.assertNull(throttle.getOperations());
+            Assert.assertEquals(throttle.awaitOperation(), 0L);
+            Assert.assertNotNull(throttle.meterPut(new ByteArrayInputStream(new byte[1])));
+            Assert.assertNull(throttle.meterGet(new ByteArrayInputStream(new byte[1])));
+        } finally {
+            DriverThrottle.release(throttle);
+        }
+    }
+}
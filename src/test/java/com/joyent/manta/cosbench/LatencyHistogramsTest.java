@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.HdrHistogram.Histogram;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+@Test
+public class LatencyHistogramsTest {
+    public void sizeClassesHaveInclusiveUpperBounds() {
+        Assert.assertEquals(LatencyHistograms.sizeClass(0L), 0);
+        Assert.assertEquals(LatencyHistograms.sizeClass(4096L), 0);
+        Assert.assertEquals(LatencyHistograms.sizeClass(4097L), 1);
+        Assert.assertEquals(LatencyHistograms.sizeClass(1073741824L), 5);
+        Assert.assertEquals(LatencyHistograms.sizeClass(-1L), 6);
+    }
+
+    public void failuresAreRecordedByRootCause() {
+        final LatencyHistograms histograms = new LatencyHistograms();
+        final Exception failure = new RuntimeException(new IOException(new SocketTimeoutException()));
+
+        histograms.record(MantaOperation.GET, 100L, null, 1000L);
+        histograms.record(MantaOperation.GET, 100L, failure, 2000L);
+
+        final Histogram success = histograms.histogram(MantaOperation.GET, "0-4KiB", LatencyHistograms.SUCCESS);
+        final Histogram timeout = histograms.histogram(MantaOperation.GET, "0-4KiB", "SocketTimeoutException");
+
+        Assert.assertEquals(success.getTotalCount(), 1L);
+        Assert.assertEquals(timeout.getTotalCount(), 1L);
+        Assert.assertNull(histograms.histogram(MantaOperation.PUT, "0-4KiB", LatencyHistograms.SUCCESS));
+    }
+
+    public void mergedHistogramsAreSummarized() throws IOException {
+        final LatencyHistograms first = new LatencyHistograms();
+        final LatencyHistograms second = new LatencyHistograms();
+
+        for (long i = 1; i <= 1000; i++) {
+            first.record(MantaOperation.PUT, 1048576L, null, i * 1000L);
+            second.record(MantaOperation.PUT, 1048576L, null, i * 1000L);
+        }
+
+        final LatencyHistograms totals = new LatencyHistograms();
+        totals.add(first);
+        totals.add(second);
+
+        final StringWriter summary = new StringWriter();
+        totals.writeSummary(summary);
+        final String[] lines = summary.toString().split("\n");
+
+        Assert.assertEquals(lines.length, 2);
+        Assert.assertTrue(lines[0].contains("p99.9_us,max_us"));
+        Assert.assertTrue(lines[1].startsWith("PUT,64KiB-1MiB,OK,2000,"), lines[1]);
+        Assert.assertTrue(lines[1].endsWith(",1000.4"), lines[1]);
+    }
+
+    public void totalsStartOverOnceEveryWorkerHasPublished() throws IOException {
+        final Path directory = Files.createTempDirectory("latency");
+        final Path summary = directory.resolve("summary.csv");
+        final Path other = directory.resolve("other.csv");
+
+        try {
+            LatencyHistograms.acquire(summary);
+            LatencyHistograms.acquire(summary);
+            LatencyHistograms.acquire(other);
+
+            LatencyHistograms.publish(worker(10), summary);
+            Assert.assertEquals(countOf(summary), "10");
+            LatencyHistograms.publish(worker(20), other);
+            Assert.assertEquals(countOf(other), "20", "Every summary file should have its own totals");
+            LatencyHistograms.publish(worker(30), summary);
+            Assert.assertEquals(countOf(summary), "40");
+
+            // A later stage writing to the same file
+            LatencyHistograms.acquire(summary);
+            LatencyHistograms.publish(worker(5), summary);
+            Assert.assertEquals(countOf(summary), "5", "The totals of the previous stage should be forgotten");
+        } finally {
+            Files.deleteIfExists(summary);
+            Files.deleteIfExists(other);
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * @param operations number of operations recorded
+     * @return histograms of a worker that recorded that many PUTs
+     */
+    private static LatencyHistograms worker(final int operations) {
+        final LatencyHistograms histograms = new LatencyHistograms();
+
+        for (int i = 1; i <= operations; i++) {
+            histograms.record(MantaOperation.PUT, 1024L, null, i * 1000L);
+        }
+
+        return histograms;
+    }
+
+    /**
+     * @param summary path of a summary file
+     * @return count of the PUTs in the summary
+     * @throws IOException when the summary can't be read
+     */
+    private static String countOf(final Path summary) throws IOException {
+        final List<String> lines = Files.readAllLines(summary, StandardCharsets.UTF_8);
+        Assert.assertEquals(lines.size(), 2, lines.toString());
+
+        return lines.get(1).split(",")[3];
+    }
+}
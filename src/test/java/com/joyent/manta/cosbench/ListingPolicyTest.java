@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+@Test
+public class ListingPolicyTest {
+    public void everyEntryIsCountedInPages() {
+        final List<Integer> pages = new ArrayList<>();
+        final Listing listing = new Listing(ListingPolicy.PAGE_SIZE * 2 + 10);
+
+        final long counted = ListingPolicy.ALL.drain(listing, (entries, nanos) -> pages.add(entries));
+
+        Assert.assertEquals(counted, ListingPolicy.PAGE_SIZE * 2 + 10);
+        Assert.assertEquals(pages, Arrays.asList(ListingPolicy.PAGE_SIZE, ListingPolicy.PAGE_SIZE, 10));
+    }
+
+    public void emptyListingIsOnePage() {
+        final List<Integer> pages = new ArrayList<>();
+
+        Assert.assertEquals(ListingPolicy.ALL.drain(new Listing(0), (entries, nanos) -> pages.add(entries)), 0L);
+        Assert.assertEquals(pages, Collections.singletonList(0));
+    }
+
+    public void listingEndingOnAPageBoundaryCountsTheLastRequest() {
+        final List<Integer> pages = new ArrayList<>();
+
+        ListingPolicy.ALL.drain(new Listing(ListingPolicy.PAGE_SIZE), (entries, nanos) -> pages.add(entries));
+
+        Assert.assertEquals(pages, Arrays.asList(ListingPolicy.PAGE_SIZE, 0));
+    }
+
+    public void onlyEntriesWithThePrefixAreCounted() {
+        final List<Integer> pages = new ArrayList<>();
+        final Listing listing = new Listing(100);
+
+        // object1 and object10 to object19
+        Assert.assertEquals(new ListingPolicy("object1", null).drain(listing, (entries, nanos) -> pages.add(entries)),
+                11L);
+        Assert.assertEquals(listing.read, 100);
+        Assert.assertEquals(pages, Collections.singletonList(100), "Skipped entries are still read");
+    }
+
+    public void readingStopsAtTheLimit() {
+        final List<Integer> pages = new ArrayList<>();
+        final Listing listing = new Listing(ListingPolicy.PAGE_SIZE * 10);
+
+        final long counted = new ListingPolicy(null, 1500L).drain(listing, (entries, nanos) -> pages.add(entries));
+
+        Assert.assertEquals(counted, 1500L);
+        Assert.assertEquals(listing.read, 1500, "No entries should be read past the limit");
+        Assert.assertEquals(pages, Arrays.asList(ListingPolicy.PAGE_SIZE, 1500 - ListingPolicy.PAGE_SIZE));
+    }
+
+    public void limitMustBePositive() {
+        try {
+            new ListingPolicy(null, 0L);
+            Assert.fail("A limit of zero should be rejected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("limit"), e.getMessage());
+        }
+    }
+
+    /**
+     * Listing of generated entries named object0, object1 and so on, which
+     * never holds more than one entry.
+     */
+    private static final class Listing implements Iterator<Map<String, Object>> {
+        private final int size;
+        private int read;
+
+        private Listing(final int size) {
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return read < size;
+        }
+
+        @Override
+        public Map<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return Collections.singletonMap("name", "object" + read++);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import com.joyent.manta.client.MantaClient;
+import com.joyent.manta.config.ConfigContext;
+import com.joyent.manta.config.DefaultsConfigContext;
+import com.joyent.manta.config.StandardConfigContext;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class MantaClientRegistryTest {
+    public void equalConfigurationsHaveEqualKeys() {
+        final StandardConfigContext first = new StandardConfigContext();
+        first.setMantaURL("https://manta.example.com");
+        first.setMaximumConnections(16);
+
+        final StandardConfigContext second = new StandardConfigContext();
+        second.setMantaURL("https://manta.example.com");
+        second.setMaximumConnections(16);
+
+        Assert.assertEquals(MantaClientRegistry.keyOf(first), MantaClientRegistry.keyOf(second));
+    }
+
+    public void differentConfigurationsHaveDifferentKeys() {
+        final StandardConfigContext first = new StandardConfigContext();
+        first.setMantaURL("https://manta.example.com");
+        first.setMaximumConnections(16);
+
+        final StandardConfigContext second = new StandardConfigContext();
+        second.setMantaURL("https://manta.example.com");
+        second.setMaximumConnections(32);
+
+        Assert.assertNotEquals(MantaClientRegistry.keyOf(first), MantaClientRegistry.keyOf(second));
+    }
+
+    public void workersWithEqualConfigurationsShareOneClient() {
+        final MantaClientRegistry registry = new MantaClientRegistry(ClosingCountingClient::new);
+
+        final MantaClient first = registry.acquire(context("http://first.example.com"));
+        final MantaClient second = registry.acquire(context("http://first.example.com"));
+        final MantaClient other = registry.acquire(context("http://second.example.com"));
+
+        Assert.assertSame(second, first);
+        Assert.assertNotSame(other, first);
+        Assert.assertEquals(registry.size(), 2);
+
+        registry.closeAll();
+    }
+
+    public void clientIsClosedWhenTheLastWorkerReleasesIt() {
+        final MantaClientRegistry registry = new MantaClientRegistry(ClosingCountingClient::new);
+        final ClosingCountingClient client =
+                (ClosingCountingClient)registry.acquire(context("http://first.example.com"));
+        registry.acquire(context("http://first.example.com"));
+
+        registry.release(client);
+
+        Assert.assertEquals(client.closes, 0, "The client is still used by another worker");
+        Assert.assertEquals(registry.size(), 1);
+
+        registry.release(client);
+
+        Assert.assertEquals(client.closes, 1);
+        Assert.assertEquals(registry.size(), 0);
+        Assert.assertNotSame(registry.acquire(context("http://first.example.com")), client,
+                "A closed client should never be handed out again");
+
+        registry.closeAll();
+    }
+
+    public void releasingAnUnknownClientIsIgnored() {
+        final MantaClientRegistry registry = new MantaClientRegistry(ClosingCountingClient::new);
+        final ClosingCountingClient registered =
+                (ClosingCountingClient)registry.acquire(context("http://first.example.com"));
+        final ClosingCountingClient unknown = new ClosingCountingClient(context("http://first.example.com"));
+
+        registry.release(unknown);
+
+        Assert.assertEquals(unknown.closes, 0);
+        Assert.assertEquals(registered.closes, 0);
+        Assert.assertEquals(registry.size(), 1);
+
+        registry.closeAll();
+        unknown.closeQuietly();
+    }
+
+    public void warmUpIsClaimedOncePerClient() {
+        final MantaClientRegistry registry = new MantaClientRegistry(ClosingCountingClient::new);
+        final MantaClient first = registry.acquire(context("http://first.example.com"));
+        final MantaClient shared = registry.acquire(context("http://first.example.com"));
+        final MantaClient other = registry.acquire(context("http://second.example.com"));
+
+        Assert.assertTrue(registry.claimWarmUp(first));
+        Assert.assertFalse(registry.claimWarmUp(shared), "Workers sharing a client should warm it up once");
+        Assert.assertTrue(registry.claimWarmUp(other));
+
+        registry.closeAll();
+
+        Assert.assertFalse(registry.claimWarmUp(first), "An unregistered client shouldn't be warmed up");
+    }
+
+    public void closeAllClosesClientsThatAreStillInUse() {
+        final MantaClientRegistry registry = new MantaClientRegistry(ClosingCountingClient::new);
+        final ClosingCountingClient first =
+                (ClosingCountingClient)registry.acquire(context("http://first.example.com"));
+        registry.acquire(context("http://first.example.com"));
+        final ClosingCountingClient other =
+                (ClosingCountingClient)registry.acquire(context("http://second.example.com"));
+
+        registry.closeAll();
+
+        Assert.assertEquals(first.closes, 1);
+        Assert.assertEquals(other.closes, 1);
+        Assert.assertEquals(registry.size(), 0);
+
+        registry.release(first);
+
+        Assert.assertEquals(first.closes, 1, "Releasing after closeAll shouldn't close the client again");
+    }
+
+    private static ConfigContext context(final String url) {
+        final StandardConfigContext context = new StandardConfigContext();
+        context.overwriteWithContext(new DefaultsConfigContext());
+        context.setMantaURL(url);
+        context.setMantaUser("tester");
+        context.setNoAuth(true);
+        return context;
+    }
+
+    /**
+     * Client that counts how many times it has been closed.
+     */
+    private static final class ClosingCountingClient extends MantaClient {
+        private int closes = 0;
+
+        ClosingCountingClient(final ConfigContext context) {
+            super(context);
+        }
+
+        @Override
+        public void closeQuietly() {
+            closes++;
+            super.closeQuietly();
+        }
+    }
+}
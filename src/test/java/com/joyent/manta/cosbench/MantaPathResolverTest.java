@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Locale;
+
+@Test
+public class MantaPathResolverTest {
+    private static final String BASE = "/user/stor/cosbench";
+
+    private static final String[] NAMES = {
+            "mycontainers1", "MyObjects_42", "obj.1-2 3", "", "İstanbul", "Kelvin", "über-Object"
+    };
+
+    public void directoryPathsMatchFormattedPaths() {
+        final MantaPathResolver resolver = new MantaPathResolver(BASE, false);
+
+        for (String container : NAMES) {
+            for (String object : NAMES) {
+                final String containerPath = String.format("%s%s%s", BASE, "/", container);
+
+                Assert.assertEquals(resolver.containerPath(container), containerPath);
+                Assert.assertEquals(resolver.objectPath(container, object),
+                        String.format("%s%s%s", containerPath, "/", object));
+            }
+        }
+    }
+
+    public void bucketPathsMatchSanitizedPaths() {
+        assertBucketPathsMatch();
+    }
+
+    public void bucketPathsMatchSanitizedPathsInTurkishLocale() {
+        final Locale locale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+
+        try {
+            assertBucketPathsMatch();
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    private static void assertBucketPathsMatch() {
+        final String base = BASE + "/buckets/";
+        final MantaPathResolver resolver = new MantaPathResolver(base, true);
+
+        for (String container : NAMES) {
+            for (String object : NAMES) {
+                final String containerPath = String.format("%s%s", base,
+                        container.toLowerCase().replaceAll("[^a-zA-Z0-9]", ""));
+
+                Assert.assertEquals(resolver.containerPath(container), containerPath);
+                Assert.assertEquals(resolver.objectPath(container, object),
+                        String.format("%s%s%s%s", containerPath, "/", "objects/",
+                                object.toLowerCase().replaceAll("[^a-zA-Z0-9]", "")));
+            }
+        }
+    }
+}
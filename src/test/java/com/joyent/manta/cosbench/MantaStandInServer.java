@@ -0,0 +1,1166 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for the subset of the Manta API used by the adaptor:
+ * directories, objects with HTTP range requests, metadata updates, buckets
+ * and server-side multipart uploads. Everything is kept in memory and no
+ * authentication is performed, so clients must be configured with
+ * {@code manta.no_auth=true}.
+ *
+ * <p>A fixed latency can be added before every response and request and
+ * response bodies can be limited to a bandwidth, so that the overhead of the
+ * adaptor can be measured without a network or a Manta deployment. Run
+ * {@link #main(String[])} to start a server that a COSBench driver can be
+ * pointed at.</p>
+ *
+ * @since 1.1.3
+ */
+public class MantaStandInServer implements AutoCloseable {
+    /**
+     * Content type of directories.
+     */
+    static final String DIRECTORY_TYPE = "application/json; type=directory";
+
+    /**
+     * Content type of directory and bucket listings.
+     */
+    private static final String LISTING_TYPE = "application/x-json-stream; type=directory";
+
+    /**
+     * Content type of objects uploaded without one.
+     */
+    private static final String DEFAULT_OBJECT_TYPE = "application/octet-stream";
+
+    /**
+     * Durability level of objects uploaded without one.
+     */
+    private static final String DEFAULT_DURABILITY = "2";
+
+    /**
+     * Prefix of the headers that hold object metadata.
+     */
+    private static final String METADATA_PREFIX = "m-";
+
+    /**
+     * Size of the buffer used to copy request and response bodies.
+     */
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * HTTP status code for successful requests with a body.
+     */
+    private static final int OK = 200;
+
+    /**
+     * HTTP status code for created resources.
+     */
+    private static final int CREATED = 201;
+
+    /**
+     * HTTP status code for successful requests without a body.
+     */
+    private static final int NO_CONTENT = 204;
+
+    /**
+     * HTTP status code for range responses.
+     */
+    private static final int PARTIAL_CONTENT = 206;
+
+    /**
+     * HTTP status code for invalid requests.
+     */
+    private static final int BAD_REQUEST = 400;
+
+    /**
+     * HTTP status code for missing resources.
+     */
+    private static final int NOT_FOUND = 404;
+
+    /**
+     * HTTP status code for unsupported methods.
+     */
+    private static final int METHOD_NOT_ALLOWED = 405;
+
+    /**
+     * HTTP status code for conflicting requests.
+     */
+    private static final int CONFLICT = 409;
+
+    /**
+     * HTTP status code for unsatisfiable ranges.
+     */
+    private static final int RANGE_NOT_SATISFIABLE = 416;
+
+    /**
+     * Pattern of the byte ranges sent by clients.
+     */
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    /**
+     * Pattern of the object path in a multipart upload creation request.
+     */
+    private static final Pattern OBJECT_PATH = Pattern.compile("\"objectPath\"\\s*:\\s*\"([^\"]*)\"");
+
+    /**
+     * Pattern of the part etags in a multipart upload commit request.
+     */
+    private static final Pattern QUOTED = Pattern.compile("\"([^\"]*)\"");
+
+    /**
+     * Kinds of stored entries.
+     */
+    private enum Kind {
+        /**
+         * Plain object.
+         */
+        OBJECT,
+
+        /**
+         * Directory.
+         */
+        DIRECTORY,
+
+        /**
+         * Bucket.
+         */
+        BUCKET
+    }
+
+    /**
+     * Stored directory, bucket or object.
+     */
+    private static final class Entry {
+        /**
+         * Kind of entry.
+         */
+        private final Kind kind;
+
+        /**
+         * Object content, empty for directories and buckets.
+         */
+        private final byte[] content;
+
+        /**
+         * Content type.
+         */
+        private final String contentType;
+
+        /**
+         * Entity tag.
+         */
+        private final String etag;
+
+        /**
+         * Base64 encoded MD5 of the content.
+         */
+        private final String md5;
+
+        /**
+         * Time of the last modification.
+         */
+        private final ZonedDateTime modified;
+
+        /**
+         * Metadata headers including their m- prefix.
+         */
+        private final Map<String, String> metadata;
+
+        /**
+         * Number of copies of the object requested on upload.
+         */
+        private final String durability;
+
+        /**
+         * Creates a new entry.
+         *
+         * @param kind kind of entry
+         * @param content object content
+         * @param contentType content type
+         * @param metadata metadata headers
+         * @param durability number of copies of the object requested on upload
+         */
+        Entry(final Kind kind, final byte[] content, final String contentType,
+              final Map<String, String> metadata, final String durability) {
+            this.kind = kind;
+            this.content = content;
+            this.contentType = contentType;
+            this.etag = UUID.randomUUID().toString();
+            this.md5 = Base64.getEncoder().encodeToString(md5(content));
+            this.modified = ZonedDateTime.now(ZoneOffset.UTC);
+            this.metadata = metadata;
+            this.durability = durability;
+        }
+
+        /**
+         * Creates a copy of this entry with new metadata.
+         *
+         * @param newMetadata metadata headers
+         * @return updated entry
+         */
+        Entry withMetadata(final Map<String, String> newMetadata) {
+            return new Entry(kind, content, contentType, newMetadata, durability);
+        }
+    }
+
+    /**
+     * In-progress multipart upload.
+     */
+    private static final class Upload {
+        /**
+         * Path of the object being uploaded.
+         */
+        private final String objectPath;
+
+        /**
+         * Uploaded parts keyed by their etags.
+         */
+        private final ConcurrentMap<String, byte[]> parts = new ConcurrentHashMap<>();
+
+        /**
+         * Creates a new upload.
+         *
+         * @param objectPath path of the object being uploaded
+         */
+        Upload(final String objectPath) {
+            this.objectPath = objectPath;
+        }
+    }
+
+    /**
+     * Underlying HTTP server.
+     */
+    private final HttpServer server;
+
+    /**
+     * Threads handling requests.
+     */
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    /**
+     * Manta account name.
+     */
+    private final String user;
+
+    /**
+     * Stored entries keyed by path.
+     */
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Multipart uploads keyed by their parts directory.
+     */
+    private final ConcurrentMap<String, Upload> uploads = new ConcurrentHashMap<>();
+
+    /**
+     * Number of requests handled.
+     */
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * Milliseconds added before every response.
+     */
+    private volatile long latencyMillis = 0L;
+
+    /**
+     * Bandwidth of request and response bodies in bytes per second, or zero for unlimited.
+     */
+    private volatile long bytesPerSecond = 0L;
+
+    /**
+     * Starts a server on an ephemeral port of the loopback interface.
+     *
+     * @param user Manta account name
+     * @throws IOException when the server can't be started
+     */
+    public MantaStandInServer(final String user) throws IOException {
+        this(user, 0);
+    }
+
+    /**
+     * Starts a server on the loopback interface.
+     *
+     * @param user Manta account name
+     * @param port port to listen on or zero for an ephemeral port
+     * @throws IOException when the server can't be started
+     */
+    public MantaStandInServer(final String user, final int port) throws IOException {
+        this.user = user;
+
+        for (String dir : new String[] {"", "/stor", "/public", "/jobs", "/reports", "/uploads", "/buckets"}) {
+            entries.put("/" + user + dir, directory());
+        }
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    /**
+     * Runs a stand-alone server until the process is killed.
+     *
+     * @param args account name, port, latency in milliseconds and bandwidth in bytes per second
+     * @throws IOException when the server can't be started
+     */
+    public static void main(final String[] args) throws IOException {
+        final String user = argument(args, 0, "cosbench");
+        final int port = Integer.parseInt(argument(args, 1, "8080"));
+        final MantaStandInServer server = new MantaStandInServer(user, port);
+        server.setLatency(Long.parseLong(argument(args, 2, "0")), TimeUnit.MILLISECONDS);
+        server.setBandwidth(Long.parseLong(argument(args, 3, "0")));
+
+        System.out.printf("Manta stand-in listening at %s for user %s%n", server.getUrl(), user);
+    }
+
+    /**
+     * @param args command line arguments
+     * @param index index of the argument
+     * @param defaultValue value used when the argument is missing
+     * @return argument value
+     */
+    private static String argument(final String[] args, final int index, final String defaultValue) {
+        if (args.length > index) {
+            return args[index];
+        }
+
+        return defaultValue;
+    }
+
+    /**
+     * @return base URL to configure as {@code manta.url}
+     */
+    public String getUrl() {
+        return String.format("http://%s:%d", server.getAddress().getHostString(),
+                server.getAddress().getPort());
+    }
+
+    /**
+     * @return Manta account name to configure as {@code manta.user}
+     */
+    public String getUser() {
+        return user;
+    }
+
+    /**
+     * @return number of requests handled so far
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Sets the latency added before every response.
+     *
+     * @param latency latency
+     * @param unit unit of the latency
+     */
+    public void setLatency(final long latency, final TimeUnit unit) {
+        this.latencyMillis = unit.toMillis(latency);
+    }
+
+    /**
+     * Sets the bandwidth of each request and response body.
+     *
+     * @param bandwidth bytes per second, or zero for unlimited
+     */
+    public void setBandwidth(final long bandwidth) {
+        this.bytesPerSecond = bandwidth;
+    }
+
+    /**
+     * @param path path of an object, directory or bucket
+     * @return true when something exists at the path
+     */
+    public boolean exists(final String path) {
+        return entries.containsKey(path);
+    }
+
+    /**
+     * @param path path of an object
+     * @return content of the object or null when it doesn't exist
+     */
+    public byte[] content(final String path) {
+        final Entry entry = entries.get(path);
+
+        if (entry == null || entry.kind != Kind.OBJECT) {
+            return null;
+        }
+
+        return entry.content.clone();
+    }
+
+    /**
+     * @param path path of an object
+     * @return durability level the object was uploaded with or null when it doesn't exist
+     */
+    public String durability(final String path) {
+        final Entry entry = entries.get(path);
+
+        if (entry == null || entry.kind != Kind.OBJECT) {
+            return null;
+        }
+
+        return entry.durability;
+    }
+
+    /**
+     * @param path path of an object
+     * @return metadata headers of the object including their m- prefix or null when it doesn't exist
+     */
+    public Map<String, String> metadataOf(final String path) {
+        final Entry entry = entries.get(path);
+
+        if (entry == null) {
+            return null;
+        }
+
+        return new HashMap<>(entry.metadata);
+    }
+
+    /**
+     * @return number of multipart uploads that were neither committed nor aborted
+     */
+    public int getUploadsInProgress() {
+        return uploads.size();
+    }
+
+    /**
+     * @return paths of every stored entry, sorted
+     */
+    public List<String> paths() {
+        return new ArrayList<>(new TreeMap<>(entries).keySet());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Handles a single request.
+     *
+     * @param exchange request and response
+     * @throws IOException when the exchange fails
+     */
+    private void handle(final HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+
+        try {
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+
+            final String path = normalize(exchange.getRequestURI().getRawPath());
+            final String query = exchange.getRequestURI().getRawQuery();
+
+            switch (exchange.getRequestMethod()) {
+                case "GET":
+                    get(exchange, path);
+                    break;
+                case "HEAD":
+                    head(exchange, path);
+                    break;
+                case "PUT":
+                    put(exchange, path, query);
+                    break;
+                case "POST":
+                    post(exchange, path);
+                    break;
+                case "DELETE":
+                    delete(exchange, path);
+                    break;
+                case "OPTIONS":
+                    respond(exchange, NO_CONTENT);
+                    break;
+                default:
+                    error(exchange, METHOD_NOT_ALLOWED, "BadRequest", "Unsupported method");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Closing an exchange whose response body was never requested
+            // closes the connection, which clients would otherwise reuse.
+            // Closing the body itself would finish empty responses twice.
+            exchange.getResponseBody();
+            exchange.close();
+        }
+    }
+
+    /**
+     * Handles GET requests for objects, directory listings and bucket listings.
+     *
+     * @param exchange request and response
+     * @param path request path
+     * @throws IOException when the exchange fails
+     * @throws InterruptedException when interrupted while throttling
+     */
+    private void get(final HttpExchange exchange, final String path) throws IOException, InterruptedException {
+        if (isBucketListing(path)) {
+            final String bucket = parent(path);
+            if (!entries.containsKey(bucket)) {
+                error(exchange, NOT_FOUND, "BucketNotFound", bucket + " was not found");
+                return;
+            }
+
+            list(exchange, path, true);
+            return;
+        }
+
+        final Entry entry = entries.get(path);
+
+        if (entry == null) {
+            error(exchange, NOT_FOUND, "ResourceNotFound", path + " was not found");
+            return;
+        }
+
+        if (entry.kind != Kind.OBJECT) {
+            list(exchange, path, false);
+            return;
+        }
+
+        writeObjectHeaders(exchange.getResponseHeaders(), entry);
+
+        final String range = exchange.getRequestHeaders().getFirst("Range");
+        final long total = entry.content.length;
+        long start = 0L;
+        long end = total - 1;
+        int status = OK;
+
+        if (range != null) {
+            final Matcher matcher = RANGE.matcher(range.trim());
+
+            if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+                error(exchange, RANGE_NOT_SATISFIABLE, "RequestedRangeNotSatisfiable", "Invalid range " + range);
+                return;
+            }
+
+            if (matcher.group(1).isEmpty()) {
+                start = Math.max(0L, total - Long.parseLong(matcher.group(2)));
+            } else {
+                start = Long.parseLong(matcher.group(1));
+
+                if (!matcher.group(2).isEmpty()) {
+                    end = Math.min(end, Long.parseLong(matcher.group(2)));
+                }
+            }
+
+            if (start > end || start >= total) {
+                error(exchange, RANGE_NOT_SATISFIABLE, "RequestedRangeNotSatisfiable", "Invalid range " + range);
+                return;
+            }
+
+            status = PARTIAL_CONTENT;
+            exchange.getResponseHeaders().set("Content-Range", String.format("bytes %d-%d/%d", start, end, total));
+        }
+
+        final int length = (int)(end - start + 1);
+
+        if (length == 0) {
+            respond(exchange, status);
+            return;
+        }
+
+        exchange.sendResponseHeaders(status, length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            write(out, entry.content, (int)start, length);
+        }
+    }
+
+    /**
+     * Handles HEAD requests.
+     *
+     * @param exchange request and response
+     * @param path request path
+     * @throws IOException when the exchange fails
+     */
+    private void head(final HttpExchange exchange, final String path) throws IOException {
+        final Entry entry = entries.get(path);
+
+        if (entry == null) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            respond(exchange, NOT_FOUND);
+            return;
+        }
+
+        final Headers headers = exchange.getResponseHeaders();
+        writeObjectHeaders(headers, entry);
+
+        if (entry.kind != Kind.OBJECT) {
+            headers.set("Result-Set-Size", Integer.toString(children(path, false).size()));
+        }
+
+        respond(exchange, OK);
+    }
+
+    /**
+     * Handles PUT requests for objects, directories, buckets, metadata and multipart parts.
+     *
+     * @param exchange request and response
+     * @param path request path
+     * @param query raw query string
+     * @throws IOException when the exchange fails
+     * @throws InterruptedException when interrupted while throttling
+     */
+    private void put(final HttpExchange exchange, final String path, final String query)
+            throws IOException, InterruptedException {
+        final Headers request = exchange.getRequestHeaders();
+        final String contentType = request.getFirst("Content-Type");
+
+        if (query != null && query.contains("metadata=true")) {
+            final Entry entry = entries.get(path);
+
+            if (entry == null) {
+                error(exchange, NOT_FOUND, "ResourceNotFound", path + " was not found");
+                return;
+            }
+
+            entries.put(path, entry.withMetadata(metadata(request)));
+            exchange.getResponseHeaders().set("ETag", entries.get(path).etag);
+            respond(exchange, NO_CONTENT);
+            return;
+        }
+
+        final Upload upload = uploads.get(parent(path));
+        if (upload != null) {
+            final byte[] part = read(exchange.getRequestBody());
+            final String etag = UUID.randomUUID().toString();
+            upload.parts.put(etag, part);
+            exchange.getResponseHeaders().set("ETag", etag);
+            respond(exchange, NO_CONTENT);
+            return;
+        }
+
+        if (isBucket(path)) {
+            if (entries.putIfAbsent(path, new Entry(Kind.BUCKET, new byte[0], DIRECTORY_TYPE,
+                    new HashMap<>(), DEFAULT_DURABILITY)) != null) {
+                error(exchange, CONFLICT, "BucketAlreadyExists", path + " already exists");
+                return;
+            }
+
+            respond(exchange, NO_CONTENT);
+            return;
+        }
+
+        final String parent = parent(path);
+
+        if (isBucketObject(path)) {
+            if (!entries.containsKey(bucketOf(path))) {
+                error(exchange, NOT_FOUND, "BucketNotFound", bucketOf(path) + " was not found");
+                return;
+            }
+        } else {
+            final Entry parentEntry = entries.get(parent);
+
+            if (parentEntry == null || parentEntry.kind != Kind.DIRECTORY) {
+                error(exchange, NOT_FOUND, "DirectoryDoesNotExist", parent + " does not exist");
+                return;
+            }
+        }
+
+        if (DIRECTORY_TYPE.equals(contentType)) {
+            final Entry existing = entries.get(path);
+
+            if (existing != null && existing.kind != Kind.DIRECTORY) {
+                error(exchange, BAD_REQUEST, "ParentNotDirectory", path + " is an object");
+                return;
+            }
+
+            entries.putIfAbsent(path, directory());
+            respond(exchange, NO_CONTENT);
+            return;
+        }
+
+        final byte[] content = read(exchange.getRequestBody());
+        String type = contentType;
+        if (type == null) {
+            type = DEFAULT_OBJECT_TYPE;
+        }
+
+        String durability = request.getFirst("Durability-Level");
+        if (durability == null) {
+            durability = DEFAULT_DURABILITY;
+        }
+
+        final Entry entry = new Entry(Kind.OBJECT, content, type, metadata(request), durability);
+        entries.put(path, entry);
+
+        final Headers response = exchange.getResponseHeaders();
+        response.set("ETag", entry.etag);
+        response.set("Last-Modified", entry.modified.format(DateTimeFormatter.RFC_1123_DATE_TIME));
+        response.set("Computed-MD5", entry.md5);
+        respond(exchange, NO_CONTENT);
+    }
+
+    /**
+     * Handles POST requests for creating, committing and aborting multipart uploads.
+     *
+     * @param exchange request and response
+     * @param path request path
+     * @throws IOException when the exchange fails
+     * @throws InterruptedException when interrupted while throttling
+     */
+    private void post(final HttpExchange exchange, final String path) throws IOException, InterruptedException {
+        final String body = new String(read(exchange.getRequestBody()), StandardCharsets.UTF_8);
+
+        if (path.equals("/" + user + "/uploads")) {
+            final Matcher matcher = OBJECT_PATH.matcher(body);
+
+            if (!matcher.find()) {
+                error(exchange, BAD_REQUEST, "InvalidArgument", "objectPath is required");
+                return;
+            }
+
+            final String id = UUID.randomUUID().toString();
+            final String partsDirectory = String.format("/%s/uploads/%s/%s", user, id.substring(0, 1), id);
+            uploads.put(partsDirectory, new Upload(matcher.group(1)));
+
+            final byte[] response = String.format("{\"id\":\"%s\",\"partsDirectory\":\"%s\"}",
+                    id, partsDirectory).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.getResponseHeaders().set("Location", partsDirectory);
+            exchange.sendResponseHeaders(CREATED, response.length);
+
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+            return;
+        }
+
+        final String partsDirectory = parent(path);
+        final Upload upload = uploads.get(partsDirectory);
+
+        if (upload == null) {
+            error(exchange, NOT_FOUND, "ResourceNotFound", partsDirectory + " was not found");
+            return;
+        }
+
+        if (path.endsWith("/abort")) {
+            uploads.remove(partsDirectory);
+            respond(exchange, NO_CONTENT);
+        } else if (path.endsWith("/commit")) {
+            final ByteArrayOutputStream content = new ByteArrayOutputStream();
+            final int partsStart = Math.max(0, body.indexOf("\"parts\""));
+            final Matcher etags = QUOTED.matcher(body.substring(partsStart + "\"parts\"".length()));
+
+            while (etags.find()) {
+                final byte[] part = upload.parts.get(etags.group(1));
+
+                if (part == null) {
+                    error(exchange, CONFLICT, "MultipartUploadInvalidArgument",
+                            "Unknown part " + etags.group(1));
+                    return;
+                }
+
+                content.write(part);
+            }
+
+            uploads.remove(partsDirectory);
+            entries.put(upload.objectPath, new Entry(Kind.OBJECT, content.toByteArray(),
+                    DEFAULT_OBJECT_TYPE, new HashMap<>(), DEFAULT_DURABILITY));
+            exchange.getResponseHeaders().set("Location", upload.objectPath);
+            respond(exchange, CREATED);
+        } else {
+            error(exchange, BAD_REQUEST, "BadRequest", "Unsupported upload action");
+        }
+    }
+
+    /**
+     * Handles DELETE requests for objects, directories and buckets.
+     *
+     * @param exchange request and response
+     * @param path request path
+     * @throws IOException when the exchange fails
+     */
+    private void delete(final HttpExchange exchange, final String path) throws IOException {
+        final Entry entry = entries.get(path);
+
+        if (entry == null) {
+            if (isBucket(path)) {
+                error(exchange, NOT_FOUND, "BucketNotFound", path + " was not found");
+            } else if (isBucketObject(path)) {
+                error(exchange, NOT_FOUND, "ObjectNotFound", path + " was not found");
+            } else {
+                error(exchange, NOT_FOUND, "ResourceNotFound", path + " was not found");
+            }
+            return;
+        }
+
+        if (entry.kind == Kind.BUCKET && !children(path + "/objects", true).isEmpty()) {
+            error(exchange, CONFLICT, "BucketNotEmpty", path + " is not empty");
+            return;
+        }
+
+        if (entry.kind == Kind.DIRECTORY && !children(path, false).isEmpty()) {
+            error(exchange, BAD_REQUEST, "DirectoryNotEmpty", path + " is not empty");
+            return;
+        }
+
+        entries.remove(path);
+        respond(exchange, NO_CONTENT);
+    }
+
+    /**
+     * Writes a listing of a directory or of the objects in a bucket as a
+     * stream of JSON records.
+     *
+     * @param exchange request and response
+     * @param path path of the directory or of the objects of a bucket
+     * @param bucket true when listing the objects of a bucket
+     * @throws IOException when the exchange fails
+     * @throws InterruptedException when interrupted while throttling
+     */
+    private void list(final HttpExchange exchange, final String path, final boolean bucket)
+            throws IOException, InterruptedException {
+        final Map<String, Entry> children = children(path, bucket);
+        final StringBuilder listing = new StringBuilder();
+
+        for (Map.Entry<String, Entry> child : children.entrySet()) {
+            final Entry entry = child.getValue();
+            final String mtime = entry.modified.format(DateTimeFormatter.ISO_INSTANT);
+
+            if (bucket) {
+                listing.append(String.format(Locale.ROOT,
+                        "{\"name\":\"%s\",\"etag\":\"%s\",\"size\":%d,\"contentType\":\"%s\","
+                                + "\"type\":\"bucketobject\",\"mtime\":\"%s\"}%n",
+                        child.getKey(), entry.etag, entry.content.length, entry.contentType, mtime));
+            } else if (entry.kind == Kind.OBJECT) {
+                listing.append(String.format(Locale.ROOT,
+                        "{\"name\":\"%s\",\"etag\":\"%s\",\"size\":%d,\"type\":\"object\",\"mtime\":\"%s\"}%n",
+                        child.getKey(), entry.etag, entry.content.length, mtime));
+            } else {
+                listing.append(String.format(Locale.ROOT,
+                        "{\"name\":\"%s\",\"type\":\"directory\",\"mtime\":\"%s\"}%n",
+                        child.getKey(), mtime));
+            }
+        }
+
+        final byte[] body = listing.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", LISTING_TYPE);
+        exchange.getResponseHeaders().set("Result-Set-Size", Integer.toString(children.size()));
+
+        if (body.length == 0) {
+            respond(exchange, OK);
+            return;
+        }
+
+        exchange.sendResponseHeaders(OK, body.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            write(out, body, 0, body.length);
+        }
+    }
+
+    /**
+     * Finds the direct children of a directory or the objects of a bucket.
+     *
+     * @param path path of the directory or of the objects of a bucket
+     * @param bucket true when listing the objects of a bucket
+     * @return children keyed and sorted by name
+     */
+    private Map<String, Entry> children(final String path, final boolean bucket) {
+        final String prefix = path + "/";
+        final Map<String, Entry> children = new TreeMap<>();
+
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            final String key = entry.getKey();
+
+            if (!key.startsWith(prefix) || key.length() == prefix.length()) {
+                continue;
+            }
+
+            final String name = key.substring(prefix.length());
+
+            if (bucket || name.indexOf('/') < 0) {
+                children.put(name, entry.getValue());
+            }
+        }
+
+        return children;
+    }
+
+    /**
+     * Sets the headers describing an entry.
+     *
+     * @param headers response headers
+     * @param entry entry being described
+     */
+    private static void writeObjectHeaders(final Headers headers, final Entry entry) {
+        headers.set("Content-Type", entry.contentType);
+        headers.set("ETag", entry.etag);
+        headers.set("Last-Modified", entry.modified.format(DateTimeFormatter.RFC_1123_DATE_TIME));
+
+        if (entry.kind == Kind.OBJECT) {
+            headers.set("Content-Length", Integer.toString(entry.content.length));
+            headers.set("Content-MD5", entry.md5);
+            headers.set("Accept-Ranges", "bytes");
+            headers.set("Durability-Level", entry.durability);
+        }
+
+        for (Map.Entry<String, String> metadata : entry.metadata.entrySet()) {
+            headers.set(metadata.getKey(), metadata.getValue());
+        }
+    }
+
+    /**
+     * Collects the metadata headers of a request.
+     *
+     * @param headers request headers
+     * @return metadata headers including their m- prefix
+     */
+    private static Map<String, String> metadata(final Headers headers) {
+        final Map<String, String> metadata = new HashMap<>();
+
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            final String name = header.getKey().toLowerCase(Locale.ROOT);
+
+            if (name.startsWith(METADATA_PREFIX) && !header.getValue().isEmpty()) {
+                metadata.put(name, header.getValue().get(0));
+            }
+        }
+
+        return metadata;
+    }
+
+    /**
+     * Sends a response without a body. The request body is drained first
+     * because the server finishes responses without a body as soon as their
+     * headers are sent and closes the connection if the request body hasn't
+     * been read to its end by then.
+     *
+     * @param exchange request and response
+     * @param status HTTP status code
+     * @throws IOException when the exchange fails
+     */
+    private static void respond(final HttpExchange exchange, final int status) throws IOException {
+        exchange.getRequestBody().close();
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    /**
+     * Sends a Manta error response.
+     *
+     * @param exchange request and response
+     * @param status HTTP status code
+     * @param code Manta error code
+     * @param message error message
+     * @throws IOException when the exchange fails
+     */
+    private static void error(final HttpExchange exchange, final int status, final String code,
+                              final String message) throws IOException {
+        final byte[] body = String.format("{\"code\":\"%s\",\"message\":\"%s\"}", code, message)
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            respond(exchange, status);
+            return;
+        }
+
+        exchange.sendResponseHeaders(status, body.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Reads a request body at the configured bandwidth.
+     *
+     * @param in request body
+     * @return bytes of the body
+     * @throws IOException when the body can't be read
+     * @throws InterruptedException when interrupted while throttling
+     */
+    private byte[] read(final InputStream in) throws IOException, InterruptedException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        final long start = System.nanoTime();
+        long total = 0L;
+        int read;
+
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            total += read;
+            throttle(start, total);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes a response body at the configured bandwidth.
+     *
+     * @param out response body
+     * @param bytes source array
+     * @param offset offset of the first byte to write
+     * @param length number of bytes to write
+     * @throws IOException when the body can't be written
+     * @throws InterruptedException when interrupted while throttling
+     */
+    private void write(final OutputStream out, final byte[] bytes, final int offset, final int length)
+            throws IOException, InterruptedException {
+        final long start = System.nanoTime();
+        int written = 0;
+
+        while (written < length) {
+            final int chunk = Math.min(BUFFER_SIZE, length - written);
+            out.write(bytes, offset + written, chunk);
+            written += chunk;
+            throttle(start, written);
+        }
+    }
+
+    /**
+     * Sleeps until transferring the specified number of bytes has taken as
+     * long as it would at the configured bandwidth.
+     *
+     * @param start value of {@link System#nanoTime()} when the transfer started
+     * @param transferred number of bytes transferred so far
+     * @throws InterruptedException when interrupted while sleeping
+     */
+    private void throttle(final long start, final long transferred) throws InterruptedException {
+        final long bandwidth = bytesPerSecond;
+
+        if (bandwidth <= 0) {
+            return;
+        }
+
+        final long due = start + TimeUnit.SECONDS.toNanos(transferred) / bandwidth;
+        final long wait = due - System.nanoTime();
+
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * @param rawPath raw request path
+     * @return decoded path without a trailing slash
+     */
+    private static String normalize(final String rawPath) {
+        String path = URLDecoder.decode(rawPath.replace("+", "%2B"), StandardCharsets.UTF_8);
+
+        while (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+
+        return path;
+    }
+
+    /**
+     * @param path path
+     * @return path of the parent
+     */
+    private static String parent(final String path) {
+        final int slash = path.lastIndexOf('/');
+
+        if (slash <= 0) {
+            return "/";
+        }
+
+        return path.substring(0, slash);
+    }
+
+    /**
+     * @param path path
+     * @return true when the path is a bucket
+     */
+    private boolean isBucket(final String path) {
+        final String buckets = "/" + user + "/buckets/";
+        return path.startsWith(buckets) && path.indexOf('/', buckets.length()) < 0;
+    }
+
+    /**
+     * @param path path
+     * @return true when the path is the listing of the objects of a bucket
+     */
+    private boolean isBucketListing(final String path) {
+        return path.endsWith("/objects") && isBucket(parent(path));
+    }
+
+    /**
+     * @param path path
+     * @return true when the path is an object in a bucket
+     */
+    private boolean isBucketObject(final String path) {
+        final String buckets = "/" + user + "/buckets/";
+
+        if (!path.startsWith(buckets)) {
+            return false;
+        }
+
+        final int slash = path.indexOf('/', buckets.length());
+        return slash > 0 && path.startsWith("/objects/", slash);
+    }
+
+    /**
+     * @param path path of an object in a bucket
+     * @return path of the bucket
+     */
+    private String bucketOf(final String path) {
+        final String buckets = "/" + user + "/buckets/";
+        return path.substring(0, path.indexOf('/', buckets.length()));
+    }
+
+    /**
+     * @return new empty directory entry
+     */
+    private static Entry directory() {
+        return new Entry(Kind.DIRECTORY, new byte[0], DIRECTORY_TYPE, new HashMap<>(), DEFAULT_DURABILITY);
+    }
+
+    /**
+     * @param content bytes to digest
+     * @return MD5 digest of the bytes
+     */
+    private static byte[] md5(final byte[] content) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.apache.commons.io.IOUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Test
+public class MantaStandInServerTest {
+    private MantaStandInServer server;
+
+    @BeforeMethod
+    public void start() throws IOException {
+        server = new MantaStandInServer("tester");
+    }
+
+    @AfterMethod
+    public void stop() {
+        server.close();
+    }
+
+    public void objectsSupportRangesHeadAndMetadata() throws IOException {
+        final byte[] content = new byte[1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte)i;
+        }
+
+        Assert.assertEquals(request("PUT", "/tester/stor/dir", MantaStandInServer.DIRECTORY_TYPE, null, null)
+                .getResponseCode(), 204);
+        Assert.assertEquals(request("PUT", "/tester/stor/dir/obj", null, null, content).getResponseCode(), 204);
+
+        final HttpURLConnection range = request("GET", "/tester/stor/dir/obj", null, "bytes=100-199", null);
+        Assert.assertEquals(range.getResponseCode(), 206);
+        Assert.assertEquals(range.getHeaderField("Content-Range"), "bytes 100-199/1000");
+        Assert.assertEquals(body(range), Arrays.copyOfRange(content, 100, 200));
+
+        final HttpURLConnection metadata = (HttpURLConnection)new URL(server.getUrl()
+                + "/tester/stor/dir/obj?metadata=true").openConnection();
+        metadata.setRequestMethod("PUT");
+        metadata.setRequestProperty("m-color", "blue");
+        metadata.setFixedLengthStreamingMode(0);
+        metadata.setDoOutput(true);
+        metadata.getOutputStream().close();
+        Assert.assertEquals(metadata.getResponseCode(), 204);
+
+        final HttpURLConnection head = request("HEAD", "/tester/stor/dir/obj", null, null, null);
+        Assert.assertEquals(head.getResponseCode(), 200);
+        Assert.assertEquals(head.getHeaderField("Content-Length"), "1000");
+        Assert.assertEquals(head.getHeaderField("m-color"), "blue");
+        Assert.assertEquals(head.getHeaderField("Durability-Level"), "2");
+        Assert.assertEquals(server.content("/tester/stor/dir/obj"), content);
+        Assert.assertEquals(server.metadataOf("/tester/stor/dir/obj").get("m-color"), "blue");
+        Assert.assertEquals(server.durability("/tester/stor/dir/obj"), "2");
+    }
+
+    public void missingParentsAndNonEmptyDirectoriesAreRejected() throws IOException {
+        final HttpURLConnection orphan = request("PUT", "/tester/stor/missing/obj", null, null, new byte[1]);
+        Assert.assertEquals(orphan.getResponseCode(), 404);
+        Assert.assertTrue(error(orphan).contains("DirectoryDoesNotExist"));
+
+        request("PUT", "/tester/stor/dir", MantaStandInServer.DIRECTORY_TYPE, null, null).getResponseCode();
+        request("PUT", "/tester/stor/dir/obj", null, null, new byte[1]).getResponseCode();
+
+        final HttpURLConnection delete = request("DELETE", "/tester/stor/dir", null, null, null);
+        Assert.assertEquals(delete.getResponseCode(), 400);
+        Assert.assertTrue(error(delete).contains("DirectoryNotEmpty"));
+
+        final HttpURLConnection listing = request("GET", "/tester/stor/dir", null, null, null);
+        Assert.assertEquals(listing.getHeaderField("Result-Set-Size"), "1");
+        Assert.assertTrue(new String(body(listing), StandardCharsets.UTF_8).contains("\"name\":\"obj\""));
+    }
+
+    public void bucketsCanBeListedAndMustBeEmptyToDelete() throws IOException {
+        Assert.assertEquals(request("PUT", "/tester/buckets/b1", null, null, null).getResponseCode(), 204);
+        Assert.assertEquals(request("PUT", "/tester/buckets/b1/objects/o1", null, null, new byte[10])
+                .getResponseCode(), 204);
+
+        final HttpURLConnection listing = request("GET", "/tester/buckets/b1/objects", null, null, null);
+        final String entries = new String(body(listing), StandardCharsets.UTF_8);
+        Assert.assertTrue(entries.contains("\"name\":\"o1\""), entries);
+        Assert.assertTrue(entries.contains("\"type\":\"bucketobject\""), entries);
+
+        final HttpURLConnection notEmpty = request("DELETE", "/tester/buckets/b1", null, null, null);
+        Assert.assertEquals(notEmpty.getResponseCode(), 409);
+        Assert.assertTrue(error(notEmpty).contains("BucketNotEmpty"));
+
+        Assert.assertEquals(request("DELETE", "/tester/buckets/b1/objects/o1", null, null, null)
+                .getResponseCode(), 204);
+        Assert.assertEquals(request("DELETE", "/tester/buckets/b1", null, null, null).getResponseCode(), 204);
+    }
+
+    public void multipartUploadsAreJoinedInCommitOrder() throws IOException {
+        final HttpURLConnection create = request("POST", "/tester/uploads", "application/json", null,
+                "{\"objectPath\":\"/tester/stor/mpu\"}".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(create.getResponseCode(), 201);
+
+        final Matcher matcher = Pattern.compile("\"partsDirectory\":\"([^\"]*)\"")
+                .matcher(new String(body(create), StandardCharsets.UTF_8));
+        Assert.assertTrue(matcher.find());
+        final String partsDirectory = matcher.group(1);
+
+        final HttpURLConnection second = request("PUT", partsDirectory + "/1", null, null, new byte[] {2, 2});
+        Assert.assertEquals(second.getResponseCode(), 204);
+        final HttpURLConnection first = request("PUT", partsDirectory + "/0", null, null, new byte[] {1});
+        Assert.assertEquals(first.getResponseCode(), 204);
+
+        final String commit = String.format("{\"parts\":[\"%s\",\"%s\"]}",
+                first.getHeaderField("ETag"), second.getHeaderField("ETag"));
+        Assert.assertEquals(request("POST", partsDirectory + "/commit", "application/json", null,
+                commit.getBytes(StandardCharsets.UTF_8)).getResponseCode(), 201);
+
+        Assert.assertEquals(server.content("/tester/stor/mpu"), new byte[] {1, 2, 2});
+    }
+
+    public void latencyAndBandwidthAreApplied() throws IOException {
+        request("PUT", "/tester/stor/big", null, null, new byte[200000]).getResponseCode();
+
+        server.setLatency(50L, TimeUnit.MILLISECONDS);
+        server.setBandwidth(1000000L);
+
+        final long start = System.nanoTime();
+        Assert.assertEquals(body(request("GET", "/tester/stor/big", null, null, null)).length, 200000);
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assert.assertTrue(elapsedMillis >= 200L, "Elapsed " + elapsedMillis + "ms");
+    }
+
+    private HttpURLConnection request(final String method, final String path, final String contentType,
+                                      final String range, final byte[] body) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection)new URL(server.getUrl() + path).openConnection();
+        connection.setRequestMethod(method);
+
+        if (contentType != null) {
+            connection.setRequestProperty("Content-Type", contentType);
+        }
+
+        if (range != null) {
+            connection.setRequestProperty("Range", range);
+        }
+
+        // Like the Manta client, always send a length with PUT and POST requests
+        byte[] content = body;
+        if (content == null && ("PUT".equals(method) || "POST".equals(method))) {
+            content = new byte[0];
+        }
+
+        if (content != null) {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(content.length);
+
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(content);
+            }
+        }
+
+        return connection;
+    }
+
+    private static byte[] body(final HttpURLConnection connection) throws IOException {
+        try (InputStream in = connection.getInputStream()) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    private static String error(final HttpURLConnection connection) throws IOException {
+        try (InputStream in = connection.getErrorStream()) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+}
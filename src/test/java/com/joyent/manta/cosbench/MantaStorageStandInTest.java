@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import com.intel.cosbench.api.storage.StorageException;
+import com.intel.cosbench.config.Config;
+import com.intel.cosbench.log.Logger;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+@Test
+public class MantaStorageStandInTest {
+    private MantaStandInServer server;
+
+    private MantaStorage storage;
+
+    @BeforeMethod
+    public void start() throws IOException {
+        server = new MantaStandInServer("tester");
+    }
+
+    @AfterMethod
+    public void stop() {
+        if (storage != null) {
+            storage.dispose();
+            storage = null;
+        }
+
+        server.close();
+    }
+
+    public void objectsRoundTripThroughDirectories() throws IOException {
+        storage = storage("dir", new HashMap<>());
+        final String path = "/tester/stor/cosbench/c1/o1";
+        final byte[] content = content(10000);
+
+        storage.createContainer("c1", null);
+        Assert.assertTrue(server.exists("/tester/stor/cosbench/c1"));
+
+        storage.createObject("c1", "o1", new ByteArrayInputStream(content), content.length,
+                new MapConfig(Collections.singletonMap("durability-level", "3")));
+        Assert.assertEquals(server.content(path), content);
+        Assert.assertEquals(server.durability(path), "3", "The durability level should be sent as a header");
+
+        try (InputStream in = storage.getObject("c1", "o1", null)) {
+            Assert.assertEquals(IOUtils.toByteArray(in), content);
+        }
+
+        // The object size isn't configured, so it is discovered with a HEAD
+        try (InputStream in = storage.getObject("c1", "o1",
+                new MapConfig(Collections.singletonMap("no-of-http-range-sections", "4")))) {
+            Assert.assertEquals(IOUtils.toByteArray(in), content);
+        }
+
+        storage.createMetadata("c1", "o1", Collections.singletonMap("color", "blue"), null);
+        Assert.assertEquals(server.metadataOf(path).get("m-color"), "blue");
+        Assert.assertEquals(storage.getMetadata("c1", "o1", null).get("m-color"), "blue");
+
+        final long requests = server.getRequestCount();
+        try (InputStream in = storage.getList("c1", "", null)) {
+            Assert.assertEquals(in.read(), -1, "Listed entries aren't handed to COSBench");
+        }
+        Assert.assertTrue(server.getRequestCount() > requests, "The directory should be listed");
+
+        storage.deleteObject("c1", "o1", null);
+        Assert.assertFalse(server.exists(path));
+
+        storage.deleteContainer("c1", null);
+        Assert.assertFalse(server.exists("/tester/stor/cosbench/c1"));
+    }
+
+    public void objectsRoundTripThroughBuckets() throws IOException {
+        storage = storage("buckets", new HashMap<>());
+        final String path = "/tester/buckets/c1/objects/o1";
+        final byte[] content = content(10000);
+
+        storage.createContainer("c1", null);
+        Assert.assertTrue(server.exists("/tester/buckets/c1"));
+
+        storage.createObject("c1", "o1", new ByteArrayInputStream(content), content.length, null);
+        Assert.assertEquals(server.content(path), content);
+
+        try (InputStream in = storage.getObject("c1", "o1",
+                new MapConfig(Collections.singletonMap("no-of-http-range-sections", "3")))) {
+            Assert.assertEquals(IOUtils.toByteArray(in), content);
+        }
+
+        Assert.assertNotNull(storage.getMetadata("c1", "o1", null));
+
+        final long requests = server.getRequestCount();
+        try (InputStream in = storage.getList("c1", "", null)) {
+            Assert.assertEquals(in.read(), -1, "Listed entries aren't handed to COSBench");
+        }
+        Assert.assertTrue(server.getRequestCount() > requests, "The bucket should be listed");
+
+        storage.deleteObject("c1", "o1", null);
+        Assert.assertFalse(server.exists(path));
+    }
+
+    public void multipartUploadsAreCommittedInOrder() throws IOException {
+        final Map<String, String> values = new HashMap<>();
+        values.put("multipart", "true");
+        values.put("splitSize", "1000");
+        values.put("multipart-parallelism", "4");
+        storage = storage("dir", values);
+        final byte[] content = content(10500);
+
+        storage.createContainer("c1", null);
+        final long requests = server.getRequestCount();
+        storage.createObject("c1", "o1", new ByteArrayInputStream(content), content.length, null);
+
+        Assert.assertEquals(server.content("/tester/stor/cosbench/c1/o1"), content);
+        Assert.assertEquals(server.getUploadsInProgress(), 0);
+        // Creating the upload, eleven parts and the commit
+        Assert.assertTrue(server.getRequestCount() - requests >= 13L,
+                String.valueOf(server.getRequestCount() - requests));
+
+        try (InputStream in = storage.getObject("c1", "o1", null)) {
+            Assert.assertEquals(IOUtils.toByteArray(in), content);
+        }
+    }
+
+    public void defaultBudgetLetsThresholdUploadsDoubleTheirParts() throws IOException {
+        final Map<String, String> values = new HashMap<>();
+        values.put("splitSize", "1000");
+        values.put("multipart-threshold", "1000");
+        values.put("max-multipart-parts", "4");
+        storage = storage("dir", values);
+        final byte[] content = content(10500);
+
+        storage.createContainer("c1", null);
+        storage.createObject("c1", "o1", new ByteArrayInputStream(content), content.length, null);
+
+        Assert.assertEquals(server.content("/tester/stor/cosbench/c1/o1"), content);
+        Assert.assertEquals(server.getUploadsInProgress(), 0);
+    }
+
+    public void objectNeedingTooManyPartsFailsBeforeUploading() {
+        final Map<String, String> values = new HashMap<>();
+        values.put("splitSize", "1000");
+        values.put("multipart-threshold", "1000");
+        values.put("max-multipart-parts", "4");
+        values.put("multipart-memory-budget", "4000");
+        storage = storage("dir", values);
+
+        storage.createContainer("c1", null);
+        final long requests = server.getRequestCount();
+
+        try {
+            storage.createObject("c1", "o1", new ByteArrayInputStream(content(10500)), 10500L, null);
+            Assert.fail("An object that doesn't fit in the maximum number of parts should fail");
+        } catch (StorageException e) {
+            Assert.assertTrue(e.getMessage().contains("max-multipart-parts"), e.getMessage());
+        }
+
+        Assert.assertEquals(server.getRequestCount(), requests, "Nothing should be uploaded");
+        Assert.assertFalse(server.exists("/tester/stor/cosbench/c1/o1"));
+    }
+
+    public void invalidOperationConfigFailsEveryOperationUsingIt() {
+        storage = storage("dir");
+        final Config operation = new MapConfig(Collections.singletonMap("no-of-http-range-sections", "0"));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                storage.createObject("c1", "o1", new ByteArrayInputStream(new byte[100]), 100L, operation);
+                Assert.fail("An invalid operation config should fail the operation");
+            } catch (StorageException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalArgumentException, String.valueOf(e.getCause()));
+                Assert.assertTrue(e.getCause().getMessage().contains("Sections"), e.getCause().getMessage());
+            }
+        }
+
+        Assert.assertFalse(server.exists("/tester/stor/cosbench/c1/o1"));
+    }
+
+    public void operationSplitSizeLargerThanTheBudgetAllowsIsRejected() {
+        final Map<String, String> values = new HashMap<>();
+        values.put("splitSize", "1000");
+        values.put("multipart-memory-budget", "4000");
+        storage = storage("dir", values);
+        final Map<String, String> overrides = new HashMap<>();
+        overrides.put("multipart", "true");
+        overrides.put("splitSize", "3000");
+        final Config operation = new MapConfig(overrides);
+
+        try {
+            storage.createObject("c1", "o1", new ByteArrayInputStream(new byte[100]), 100L, operation);
+            Assert.fail("A part size that doesn't fit twice in the budget should fail the operation");
+        } catch (StorageException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalArgumentException, String.valueOf(e.getCause()));
+            Assert.assertTrue(e.getCause().getMessage().contains("splitSize"), e.getCause().getMessage());
+        }
+
+        Assert.assertFalse(server.exists("/tester/stor/cosbench/c1/o1"));
+    }
+
+    public void nonEmptyBucketIsEmptiedAndDeleted() {
+        storage = storage("buckets");
+        storage.createContainer("c1", null);
+
+        for (int i = 0; i < 10; i++) {
+            storage.createObject("c1", "o" + i, new ByteArrayInputStream(new byte[100]), 100L, null);
+        }
+        Assert.assertTrue(server.exists("/tester/buckets/c1/objects/o9"));
+
+        storage.deleteContainer("c1", null);
+
+        Assert.assertFalse(server.exists("/tester/buckets/c1"), "The bucket should be deleted");
+        Assert.assertTrue(server.paths().stream().noneMatch(path -> path.startsWith("/tester/buckets/c1")),
+                server.paths().toString());
+    }
+
+    public void deletingAMissingBucketSucceeds() {
+        storage = storage("buckets");
+
+        storage.deleteContainer("missing", null);
+
+        Assert.assertFalse(server.exists("/tester/buckets/missing"));
+    }
+
+    private MantaStorage storage(final String testType) {
+        return storage(testType, new HashMap<>());
+    }
+
+    private MantaStorage storage(final String testType, final Map<String, String> values) {
+        values.put("manta.url", server.getUrl());
+        values.put("manta.user", server.getUser());
+        values.put("manta.no_auth", "true");
+        values.put("test_type", testType);
+
+        final MantaStorage created = new MantaStorage();
+        created.init(new MapConfig(values), logger());
+
+        return created;
+    }
+
+    /**
+     * @param length number of bytes
+     * @return content where each byte differs from the bytes around it
+     */
+    private static byte[] content(final int length) {
+        final byte[] content = new byte[length];
+
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte)(i % 251);
+        }
+
+        return content;
+    }
+
+    /**
+     * @return logger that drops every message
+     */
+    private static Logger logger() {
+        return (Logger)Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class<?>[] {Logger.class},
+                (proxy, method, args) -> {
+                    if (method.getReturnType() == boolean.class) {
+                        return false;
+                    }
+
+                    return null;
+                });
+    }
+}
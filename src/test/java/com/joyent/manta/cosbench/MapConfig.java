@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import com.intel.cosbench.config.Config;
+
+import java.util.Map;
+
+/**
+ * COSBench {@link Config} backed by a map, for tests that build storage or
+ * operation configurations from a few settings.
+ *
+ * @since 1.1.3
+ */
+public final class MapConfig implements Config {
+    /**
+     * Configured values keyed by setting name.
+     */
+    private final Map<String, String> values;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param values configured values keyed by setting name, read as they are when the config is used
+     */
+    public MapConfig(final Map<String, String> values) {
+        this.values = values;
+    }
+
+    @Override
+    public String get(final String key) {
+        return values.get(key);
+    }
+
+    @Override
+    public String get(final String key, final String value) {
+        return values.getOrDefault(key, value);
+    }
+
+    @Override
+    public int getInt(final String key) {
+        return Integer.parseInt(get(key));
+    }
+
+    @Override
+    public int getInt(final String key, final int value) {
+        return Integer.parseInt(get(key, String.valueOf(value)));
+    }
+
+    @Override
+    public long getLong(final String key) {
+        return Long.parseLong(get(key));
+    }
+
+    @Override
+    public long getLong(final String key, final long value) {
+        return Long.parseLong(get(key, String.valueOf(value)));
+    }
+
+    @Override
+    public double getDouble(final String key) {
+        return Double.parseDouble(get(key));
+    }
+
+    @Override
+    public double getDouble(final String key, final double value) {
+        return Double.parseDouble(get(key, String.valueOf(value)));
+    }
+
+    @Override
+    public boolean getBoolean(final String key) {
+        return Boolean.parseBoolean(get(key));
+    }
+
+    @Override
+    public boolean getBoolean(final String key, final boolean value) {
+        return Boolean.parseBoolean(get(key, String.valueOf(value)));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class MultipartPolicyTest {
+    private static final int MIB = 1048576;
+
+    public void withoutThresholdEveryObjectUsesTheConfiguredMode() {
+        final MultipartPolicy single = new MultipartPolicy(false, 5 * MIB, null, 64);
+        final MultipartPolicy multipart = new MultipartPolicy(true, 5 * MIB, null, 64);
+
+        Assert.assertEquals(single.partSizeFor(4096L, MultipartPolicy.MAX_PART_SIZE), MultipartPolicy.SINGLE_PUT);
+        Assert.assertEquals(single.partSizeFor(1024L * MIB, MultipartPolicy.MAX_PART_SIZE), MultipartPolicy.SINGLE_PUT);
+        Assert.assertEquals(multipart.partSizeFor(4096L, MultipartPolicy.MAX_PART_SIZE), 5 * MIB);
+        Assert.assertEquals(multipart.partSizeFor(1024L * MIB, MultipartPolicy.MAX_PART_SIZE), 5 * MIB, "Part size shouldn't depend on length");
+        Assert.assertFalse(single.isEnabled());
+        Assert.assertTrue(multipart.isEnabled());
+    }
+
+    public void objectsBelowTheThresholdUseASinglePut() {
+        final MultipartPolicy policy = new MultipartPolicy(true, 5 * MIB, 16L * MIB, 64);
+
+        Assert.assertTrue(policy.isEnabled());
+        Assert.assertTrue(policy.isAutomatic());
+        Assert.assertEquals(policy.partSizeFor(4096L, MultipartPolicy.MAX_PART_SIZE), MultipartPolicy.SINGLE_PUT);
+        Assert.assertEquals(policy.partSizeFor(16L * MIB - 1L, MultipartPolicy.MAX_PART_SIZE), MultipartPolicy.SINGLE_PUT);
+        Assert.assertEquals(policy.partSizeFor(-1L, MultipartPolicy.MAX_PART_SIZE), MultipartPolicy.SINGLE_PUT, "Unknown lengths can't be split");
+        Assert.assertEquals(policy.partSizeFor(16L * MIB, MultipartPolicy.MAX_PART_SIZE), 5 * MIB);
+    }
+
+    public void thresholdAppliesEvenWhenMultipartIsDisabled() {
+        final MultipartPolicy policy = new MultipartPolicy(false, 5 * MIB, 16L * MIB, 64);
+
+        Assert.assertTrue(policy.isEnabled());
+        Assert.assertEquals(policy.partSizeFor(32L * MIB, MultipartPolicy.MAX_PART_SIZE), 5 * MIB);
+    }
+
+    public void partSizeDoublesUntilTheObjectFitsInTheMaximumParts() {
+        final MultipartPolicy policy = new MultipartPolicy(false, 5 * MIB, 1L, 10);
+
+        Assert.assertEquals(policy.partSizeFor(50L * MIB, MultipartPolicy.MAX_PART_SIZE), 5 * MIB);
+        Assert.assertEquals(policy.partSizeFor(50L * MIB + 1L, MultipartPolicy.MAX_PART_SIZE), 10 * MIB);
+        Assert.assertEquals(policy.partSizeFor(400L * MIB, MultipartPolicy.MAX_PART_SIZE), 40 * MIB);
+
+        final long length = 10L * 1024L * MIB;
+        final int partSize = policy.partSizeFor(length, MultipartPolicy.MAX_PART_SIZE);
+
+        Assert.assertTrue(MultipartUploader.numberOfParts(length, partSize) <= 10);
+        Assert.assertTrue(MultipartUploader.numberOfParts(length, partSize / 2) > 10);
+    }
+
+    public void partSizeIsCappedForHugeObjects() {
+        final MultipartPolicy policy = new MultipartPolicy(false, 5 * MIB, 1L, 2);
+
+        Assert.assertEquals(policy.partSizeFor(Long.MAX_VALUE / 2, MultipartPolicy.MAX_PART_SIZE), MultipartPolicy.MAX_PART_SIZE);
+    }
+
+    public void partSizeIsCappedByTheLargestBufferedPart() {
+        final MultipartPolicy automatic = new MultipartPolicy(false, 5 * MIB, 1L, 10);
+        final MultipartPolicy fixed = new MultipartPolicy(true, 64 * MIB, null, 10);
+
+        Assert.assertEquals(automatic.partSizeFor(400L * MIB, 16 * MIB), 16 * MIB);
+        Assert.assertEquals(automatic.partSizeFor(40L * MIB, 16 * MIB), 5 * MIB);
+        Assert.assertEquals(fixed.partSizeFor(400L * MIB, 16 * MIB), 16 * MIB);
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import com.joyent.manta.client.MantaClient;
+import com.joyent.manta.client.multipart.MantaMultipartUploadPart;
+import com.joyent.manta.client.multipart.ServerSideMultipartManager;
+import com.joyent.manta.client.multipart.ServerSideMultipartUpload;
+import com.joyent.manta.config.ChainedConfigContext;
+import com.joyent.manta.config.DefaultsConfigContext;
+import com.joyent.manta.config.StandardConfigContext;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Test
+public class MultipartUploaderTest {
+    private static final int SPLIT = MantaStorage.DEFAULT_SPLIT;
+
+    /**
+     * Part size of the uploads sent to the stand-in, which doesn't enforce
+     * the minimum part size of Manta.
+     */
+    private static final int PART = 1000;
+
+    private MantaStandInServer server;
+
+    private MantaClient client;
+
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void start() throws IOException {
+        server = new MantaStandInServer("tester");
+        client = new MantaClient(new ChainedConfigContext(new DefaultsConfigContext(),
+                new StandardConfigContext()
+                        .setMantaURL(server.getUrl())
+                        .setMantaUser(server.getUser())
+                        .setNoAuth(true)));
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterMethod
+    public void stop() {
+        executor.shutdownNow();
+        client.closeQuietly();
+        server.close();
+    }
+
+    public void numberOfPartsIsDerivedFromLength() {
+        Assert.assertEquals(MultipartUploader.numberOfParts(0L, SPLIT), 0L);
+        Assert.assertEquals(MultipartUploader.numberOfParts(1L, SPLIT), 1L);
+        Assert.assertEquals(MultipartUploader.numberOfParts(SPLIT, SPLIT), 1L);
+        Assert.assertEquals(MultipartUploader.numberOfParts(SPLIT + 1L, SPLIT), 2L);
+        Assert.assertEquals(MultipartUploader.numberOfParts(1073741824L, SPLIT), 205L);
+    }
+
+    public void partSizeMustFitInTheMemoryBudget() {
+        try {
+            new MultipartUploader(executor, SPLIT, 1, new PartBufferPool(SPLIT - 1L));
+            Assert.fail("A part larger than the memory budget should be rejected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("memory budget"), e.getMessage());
+        }
+    }
+
+    public void uploadsOfDifferentPartSizesShareTheMemoryBudget() throws Exception {
+        final PartBufferPool pool = new PartBufferPool(4L * PART);
+        final MultipartUploader small = new MultipartUploader(executor, PART, 1, pool);
+        final MultipartUploader large = new MultipartUploader(executor, 2 * PART, 1, pool);
+        final byte[] content = content(10 * PART);
+
+        small.upload(new ByteArrayInputStream(content), content.length, "/tester/stor/small",
+                new ServerSideMultipartManager(client));
+        large.upload(new ByteArrayInputStream(content), content.length, "/tester/stor/large",
+                new ServerSideMultipartManager(client));
+
+        Assert.assertEquals(server.content("/tester/stor/small"), content);
+        Assert.assertEquals(server.content("/tester/stor/large"), content);
+        Assert.assertEquals(pool.getCheckedOut(), 0L);
+        Assert.assertTrue(pool.getAllocated() <= pool.getBudget(), String.valueOf(pool.getAllocated()));
+    }
+
+    public void partsAreUploadedConcurrentlyAndCommittedInOrder() throws Exception {
+        final ExecutorService threads = Executors.newFixedThreadPool(4);
+        final Set<Integer> partNumbers = ConcurrentHashMap.newKeySet();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final ServerSideMultipartManager recording = new ServerSideMultipartManager(client) {
+            @Override
+            public MantaMultipartUploadPart uploadPart(final ServerSideMultipartUpload upload,
+                                                       final int partNumber,
+                                                       final long contentLength,
+                                                       final InputStream inputStream) throws IOException {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+                try {
+                    Thread.sleep(5L);
+                    Assert.assertTrue(partNumbers.add(partNumber), "Parts should be uploaded once");
+                    return super.uploadPart(upload, partNumber, contentLength, inputStream);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        };
+
+        try {
+            final PartBufferPool pool = new PartBufferPool(5L * PART);
+            final MultipartUploader uploader = new MultipartUploader(threads, PART, 4, pool);
+            final byte[] content = content(20 * PART + PART / 2);
+
+            uploader.upload(new ByteArrayInputStream(content), content.length, "/tester/stor/known", recording);
+
+            Assert.assertEquals(server.content("/tester/stor/known"), content);
+            Assert.assertEquals(partNumbers.size(), 21);
+            Assert.assertTrue(partNumbers.contains(1) && partNumbers.contains(21), partNumbers.toString());
+            Assert.assertTrue(maxInFlight.get() > 1, "Parts should be uploaded concurrently");
+            Assert.assertTrue(maxInFlight.get() <= 4, "No more parts than the upload threads should be in flight");
+
+            // Without a length the stream is read until its end
+            partNumbers.clear();
+            uploader.upload(new ByteArrayInputStream(content), -1L, "/tester/stor/unknown", recording);
+
+            Assert.assertEquals(server.content("/tester/stor/unknown"), content);
+            Assert.assertEquals(partNumbers.size(), 21);
+            Assert.assertEquals(server.getUploadsInProgress(), 0);
+            Assert.assertEquals(pool.getCheckedOut(), 0L, "Every buffer should be returned");
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    public void streamEndingBeforeTheLengthFailsAndAbortsTheUpload() {
+        final PartBufferPool pool = new PartBufferPool(2L * PART);
+        final MultipartUploader uploader = new MultipartUploader(executor, PART, 1, pool);
+
+        try {
+            uploader.upload(new ByteArrayInputStream(content(3 * PART)), 5L * PART, "/tester/stor/short",
+                    new ServerSideMultipartManager(client));
+            Assert.fail("A stream shorter than its length should fail the upload");
+        } catch (IOException e) {
+            Assert.assertTrue(e instanceof EOFException, e.toString());
+        }
+
+        Assert.assertFalse(server.exists("/tester/stor/short"));
+        Assert.assertEquals(server.getUploadsInProgress(), 0, "The upload should be aborted");
+        Assert.assertEquals(pool.getCheckedOut(), 0L, "Every buffer should be returned");
+    }
+
+    public void failedPartAbortsTheUpload() throws Exception {
+        final ExecutorService threads = Executors.newFixedThreadPool(2);
+        final AtomicInteger attempted = new AtomicInteger();
+        final ServerSideMultipartManager failing = new ServerSideMultipartManager(client) {
+            @Override
+            public MantaMultipartUploadPart uploadPart(final ServerSideMultipartUpload upload,
+                                                       final int partNumber,
+                                                       final long contentLength,
+                                                       final InputStream inputStream) throws IOException {
+                attempted.incrementAndGet();
+
+                if (partNumber == 3) {
+                    throw new IOException("part 3 failed");
+                }
+
+                return super.uploadPart(upload, partNumber, contentLength, inputStream);
+            }
+        };
+
+        try {
+            final PartBufferPool pool = new PartBufferPool(3L * PART);
+            final MultipartUploader uploader = new MultipartUploader(threads, PART, 2, pool);
+
+            try {
+                uploader.upload(new ByteArrayInputStream(content(100 * PART)), 100L * PART, "/tester/stor/failed",
+                        failing);
+                Assert.fail("A failed part should fail the upload");
+            } catch (IOException e) {
+                Assert.assertEquals(e.getMessage(), "part 3 failed");
+            }
+
+            Assert.assertFalse(server.exists("/tester/stor/failed"));
+            Assert.assertEquals(server.getUploadsInProgress(), 0, "The upload should be aborted");
+            Assert.assertTrue(attempted.get() < 100, "No further parts should be read after a failure");
+            Assert.assertEquals(pool.getCheckedOut(), 0L, "Every buffer should be returned");
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    public void interruptedUploadReturnsTheBuffersOfPartsThatNeverStarted() throws Exception {
+        final PartBufferPool pool = new PartBufferPool(2L * PART);
+        final MultipartUploader uploader = new MultipartUploader(executor, PART, 1, pool);
+        final CountDownLatch firstPartStarted = new CountDownLatch(1);
+        final ServerSideMultipartManager blocking = new ServerSideMultipartManager(client) {
+            @Override
+            public MantaMultipartUploadPart uploadPart(final ServerSideMultipartUpload upload,
+                                                       final int partNumber,
+                                                       final long contentLength,
+                                                       final InputStream inputStream) throws IOException {
+                firstPartStarted.countDown();
+
+                try {
+                    Thread.sleep(Long.MAX_VALUE);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+
+                return super.uploadPart(upload, partNumber, contentLength, inputStream);
+            }
+        };
+
+        // The first part blocks the only upload thread, the second part is
+        // queued behind it and the uploading thread waits for a third buffer
+        final AtomicReference<Throwable> thrown = new AtomicReference<>();
+        final Thread uploading = new Thread(() -> {
+            try {
+                uploader.upload(new ByteArrayInputStream(content(5 * PART)), 5L * PART, "/tester/stor/interrupted",
+                        blocking);
+            } catch (IOException | RuntimeException e) {
+                thrown.set(e);
+            }
+        });
+        uploading.start();
+
+        Assert.assertTrue(firstPartStarted.await(10L, TimeUnit.SECONDS));
+        uploading.interrupt();
+        uploading.join(TimeUnit.SECONDS.toMillis(10L));
+
+        Assert.assertTrue(thrown.get() instanceof InterruptedIOException, String.valueOf(thrown.get()));
+        Assert.assertEquals(server.getUploadsInProgress(), 0, "The upload should be aborted");
+
+        // Waits for the interrupted first part to finish
+        executor.submit(() -> { }).get(10L, TimeUnit.SECONDS);
+        Assert.assertEquals(pool.getCheckedOut(), 0L, "Every buffer should be returned");
+
+        final byte[] content = content(3 * PART + 1);
+        final AtomicReference<Throwable> nextThrown = new AtomicReference<>();
+        final Thread next = new Thread(() -> {
+            try {
+                uploader.upload(new ByteArrayInputStream(content), content.length, "/tester/stor/next",
+                        new ServerSideMultipartManager(client));
+            } catch (IOException e) {
+                nextThrown.set(e);
+            }
+        });
+        next.start();
+        next.join(TimeUnit.SECONDS.toMillis(10L));
+
+        Assert.assertFalse(next.isAlive(), "The upload should not wait for buffers");
+        Assert.assertNull(nextThrown.get());
+        Assert.assertEquals(server.content("/tester/stor/next"), content);
+    }
+
+    /**
+     * @param length number of bytes
+     * @return content where each byte differs from the bytes of the parts around it
+     */
+    private static byte[] content(final int length) {
+        final byte[] content = new byte[length];
+
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte)(i % 251);
+        }
+
+        return content;
+    }
+}
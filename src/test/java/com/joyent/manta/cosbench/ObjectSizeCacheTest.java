@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class ObjectSizeCacheTest {
+    public void capacityIsRoundedUpToPowerOfTwo() {
+        Assert.assertEquals(new ObjectSizeCache(1).capacity(), 2);
+        Assert.assertEquals(new ObjectSizeCache(1000).capacity(), 1024);
+        Assert.assertEquals(new ObjectSizeCache(1024).capacity(), 1024);
+    }
+
+    public void sharedCacheKeepsTheCapacityOfItsFirstUse() {
+        final ObjectSizeCache cache = ObjectSizeCache.shared(1000);
+
+        Assert.assertSame(ObjectSizeCache.shared(1000), cache);
+        Assert.assertSame(ObjectSizeCache.shared(cache.capacity() * 2), cache);
+        Assert.assertEquals(cache.capacity(), ObjectSizeCache.slotsFor(cache.capacity()));
+        Assert.assertTrue(ObjectSizeCache.slotsFor(cache.capacity() * 2) != cache.capacity(),
+                "A different capacity should be detected so that it can be reported");
+    }
+
+    public void canStoreAndRemoveSizes() {
+        final ObjectSizeCache cache = new ObjectSizeCache(1024);
+        final String path = "/user/stor/cosbench/mycontainer/myobject1";
+
+        Assert.assertEquals(cache.get(path), ObjectSizeCache.NOT_FOUND);
+
+        cache.put(path, 65536L);
+        Assert.assertEquals(cache.get(path), 65536L);
+
+        cache.put(path, 0L);
+        Assert.assertEquals(cache.get(path), 0L);
+
+        cache.remove(path);
+        Assert.assertEquals(cache.get(path), ObjectSizeCache.NOT_FOUND);
+    }
+
+    public void sizesNeverLeakBetweenPaths() {
+        final ObjectSizeCache cache = new ObjectSizeCache(16);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put("/user/stor/cosbench/c/o" + i, i);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            final long size = cache.get("/user/stor/cosbench/c/o" + i);
+
+            if (size != ObjectSizeCache.NOT_FOUND) {
+                Assert.assertEquals(size, i);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Test
+public class OpenLoopEngineTest {
+    public void operationsStartOnTheSchedule() throws Exception {
+        final OpenLoopEngine engine = new OpenLoopEngine(100, 4);
+        final long[] starts = new long[5];
+
+        try {
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = engine.call(start -> start);
+            }
+        } finally {
+            engine.abort();
+        }
+
+        for (int i = 1; i < starts.length; i++) {
+            Assert.assertEquals(starts[i] - starts[i - 1], TimeUnit.MILLISECONDS.toNanos(10L));
+        }
+
+        Assert.assertEquals(engine.getIssued(), starts.length);
+        Assert.assertEquals(engine.getOutstanding(), 0);
+    }
+
+    public void latencyIncludesTimeBehindSchedule() throws Exception {
+        final OpenLoopEngine engine = new OpenLoopEngine(1000, 1);
+        final long slowNanos = TimeUnit.MILLISECONDS.toNanos(50L);
+
+        try {
+            engine.call(start -> {
+                sleep(50L);
+                return null;
+            });
+
+            // The second operation was due a millisecond after the first one
+            final long waited = engine.call(start -> System.nanoTime() - start);
+
+            Assert.assertTrue(waited >= slowNanos - TimeUnit.MILLISECONDS.toNanos(1L),
+                    "Latency should be measured from the intended start: " + waited);
+        } finally {
+            engine.abort();
+        }
+
+        Assert.assertEquals(engine.getLate(), 1L);
+        Assert.assertTrue(engine.getMaxLagNanos() >= slowNanos - TimeUnit.MILLISECONDS.toNanos(1L));
+    }
+
+    public void outstandingOperationsAreBounded() throws Exception {
+        final int maxOutstanding = 2;
+        final OpenLoopEngine engine = new OpenLoopEngine(1000, maxOutstanding);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger mostRunning = new AtomicInteger();
+
+        try {
+            final Thread worker = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 4; i++) {
+                        engine.execute(start -> {
+                            mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                            await(release);
+                            running.decrementAndGet();
+                        });
+                    }
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+            });
+            worker.start();
+
+            Thread.sleep(100L);
+            Assert.assertEquals(engine.getIssued(), maxOutstanding,
+                    "Operations beyond the limit should wait for a free slot");
+
+            release.countDown();
+            worker.join(TimeUnit.SECONDS.toMillis(5L));
+            Assert.assertTrue(engine.shutdown(5L, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            engine.abort();
+        }
+
+        Assert.assertEquals(engine.getIssued(), 4L);
+        Assert.assertTrue(mostRunning.get() <= maxOutstanding);
+        Assert.assertEquals(engine.getOutstanding(), 0);
+    }
+
+    public void backgroundFailuresAreCounted() throws Exception {
+        final OpenLoopEngine engine = new OpenLoopEngine(1000, 4);
+        final IllegalStateException failure = new IllegalStateException("shark unavailable");
+
+        try {
+            engine.execute(start -> {
+                throw failure;
+            });
+            engine.execute(start -> {
+                throw new IllegalStateException("another shark unavailable");
+            });
+            engine.execute(start -> { });
+
+            Assert.assertTrue(engine.shutdown(5L, TimeUnit.SECONDS));
+        } finally {
+            engine.abort();
+        }
+
+        Assert.assertEquals(engine.getFailures(), 2L);
+        Assert.assertSame(engine.getFirstFailure(), failure);
+    }
+
+    public void rateMustBePositive() {
+        try {
+            new OpenLoopEngine(0, 1);
+            Assert.fail("A rate of zero should be rejected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("rate"), e.getMessage());
+        }
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
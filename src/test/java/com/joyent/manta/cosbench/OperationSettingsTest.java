@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import com.joyent.manta.cosbench.config.CosbenchMantaConfigContext;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Test
+public class OperationSettingsTest {
+    public void storageConfigSetsTheDefaults() {
+        final Map<String, String> values = new HashMap<>();
+        values.put("chunked", "true");
+        values.put("durability-level", "3");
+        values.put("no-of-http-range-sections", "4");
+
+        final OperationSettings settings = OperationSettings.of(context(values), MantaStorage.DEFAULT_SPLIT);
+
+        Assert.assertTrue(settings.isChunked());
+        Assert.assertEquals(settings.getDurabilityLevel(), Integer.valueOf(3));
+        Assert.assertFalse(settings.getMultipartPolicy().isEnabled());
+        Assert.assertEquals(settings.getMultipartPolicy().getSplitSize(), MantaStorage.DEFAULT_SPLIT);
+        Assert.assertEquals(settings.getSections(), 4);
+        Assert.assertNull(settings.getRangeSectionSizer());
+        Assert.assertTrue(settings.isRanged());
+    }
+
+    public void operationWithoutOverridesUsesTheDefaults() {
+        final Map<String, String> values = new HashMap<>();
+        values.put("multipart", "true");
+
+        final OperationSettings settings = OperationSettings.of(context(values), MantaStorage.DEFAULT_SPLIT);
+
+        // Keys the adaptor doesn't know, like the ones of the COSBench
+        // operation itself, don't count as overrides.
+        final Map<String, String> operation = new HashMap<>();
+        operation.put("containers", "r(1,2)");
+        operation.put("objects", "r(1,100)");
+
+        Assert.assertSame(settings.withOverrides(context(operation)), settings);
+    }
+
+    public void operationConfigOverridesOnlyWhatItSets() {
+        final Map<String, String> values = new HashMap<>();
+        values.put("chunked", "true");
+        values.put("durability-level", "3");
+        values.put("multipart", "true");
+        values.put("splitSize", "1048576");
+
+        final OperationSettings settings = OperationSettings.of(context(values), MantaStorage.DEFAULT_SPLIT);
+
+        final Map<String, String> operation = new HashMap<>();
+        operation.put("multipart", "false");
+        operation.put("no-of-http-range-sections", "8");
+
+        final OperationSettings overridden = settings.withOverrides(context(operation));
+
+        Assert.assertTrue(overridden.isChunked());
+        Assert.assertEquals(overridden.getDurabilityLevel(), Integer.valueOf(3));
+        Assert.assertFalse(overridden.getMultipartPolicy().isMultipart());
+        Assert.assertEquals(overridden.getMultipartPolicy().getSplitSize(), 1048576);
+        Assert.assertEquals(overridden.getSections(), 8);
+        Assert.assertTrue(overridden.isRanged());
+        Assert.assertTrue(settings.getMultipartPolicy().isMultipart(), "The defaults should not change");
+    }
+
+    public void operationCanSetAMultipartThreshold() {
+        final Map<String, String> values = new HashMap<>();
+        values.put("splitSize", "8388608");
+
+        final OperationSettings settings = OperationSettings.of(context(values), MantaStorage.DEFAULT_SPLIT);
+
+        final Map<String, String> operation = new HashMap<>();
+        operation.put("multipart-threshold", "16777216");
+
+        final MultipartPolicy policy = settings.withOverrides(context(operation)).getMultipartPolicy();
+
+        Assert.assertTrue(policy.isAutomatic());
+        Assert.assertEquals(policy.getSplitSize(), 8388608);
+        Assert.assertEquals(policy.getMaxParts(), MultipartPolicy.DEFAULT_MAX_PARTS);
+        Assert.assertEquals(policy.partSizeFor(4096L, MultipartPolicy.MAX_PART_SIZE), MultipartPolicy.SINGLE_PUT);
+        Assert.assertEquals(policy.partSizeFor(16777216L, MultipartPolicy.MAX_PART_SIZE), 8388608);
+    }
+
+    public void rangeSettingsMergeWithTheDefaults() {
+        final Map<String, String> values = new HashMap<>();
+        values.put("range-section-size", "67108864");
+        values.put("min-range-sections", "2");
+        values.put("max-range-sections", "16");
+
+        final OperationSettings settings = OperationSettings.of(context(values), MantaStorage.DEFAULT_SPLIT);
+
+        final Map<String, String> operation = new HashMap<>();
+        operation.put("max-range-sections", "4");
+
+        final RangeSectionSizer sizer = settings.withOverrides(context(operation)).getRangeSectionSizer();
+
+        Assert.assertNotNull(sizer);
+        Assert.assertEquals(sizer.getMinSections(), 2);
+        Assert.assertEquals(sizer.getMaxSections(), 4);
+        Assert.assertFalse(sizer.isAdaptive());
+    }
+
+    public void operationCanEnableRangeRequests() {
+        final OperationSettings settings = OperationSettings.of(context(new HashMap<>()),
+                MantaStorage.DEFAULT_SPLIT);
+        Assert.assertFalse(settings.isRanged());
+
+        final Map<String, String> operation = new HashMap<>();
+        operation.put("range-section-size", "1048576");
+
+        final OperationSettings overridden = settings.withOverrides(context(operation));
+
+        Assert.assertTrue(overridden.isRanged());
+        Assert.assertEquals(overridden.getRangeSectionSizer().getMinSections(), 1);
+        Assert.assertEquals(overridden.getRangeSectionSizer().getMaxSections(),
+                RangeSectionSizer.DEFAULT_MAX_SECTIONS);
+    }
+
+    public void listSettingsMergeWithTheDefaults() {
+        final Map<String, String> values = new HashMap<>();
+        values.put("list-prefix", "obj");
+
+        final OperationSettings settings = OperationSettings.of(context(values), MantaStorage.DEFAULT_SPLIT);
+        Assert.assertEquals(settings.getListingPolicy().getPrefix(), "obj");
+        Assert.assertNull(settings.getListingPolicy().getLimit());
+
+        final Map<String, String> operation = new HashMap<>();
+        operation.put("list-limit", "5000");
+
+        final ListingPolicy overridden = settings.withOverrides(context(operation)).getListingPolicy();
+
+        Assert.assertEquals(overridden.getPrefix(), "obj");
+        Assert.assertEquals(overridden.getLimit(), Long.valueOf(5000L));
+    }
+
+    private static CosbenchMantaConfigContext context(final Map<String, String> values) {
+        return new CosbenchMantaConfigContext(new MapConfig(values));
+    }
+}
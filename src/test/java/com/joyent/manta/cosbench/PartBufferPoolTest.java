@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Test
+public class PartBufferPoolTest {
+    public void returnedBuffersAreReusedForTheSameSize() throws InterruptedException {
+        final PartBufferPool pool = new PartBufferPool(3000L);
+
+        final byte[] first = pool.acquire(1000);
+        pool.release(first);
+
+        Assert.assertSame(pool.acquire(1000), first);
+        Assert.assertEquals(pool.getAllocated(), 1000L);
+        Assert.assertEquals(pool.getCheckedOut(), 1000L);
+    }
+
+    public void freeBuffersOfOtherSizesAreDroppedToMakeRoom() throws InterruptedException {
+        final PartBufferPool pool = new PartBufferPool(3500L);
+
+        pool.release(pool.acquire(1000));
+        pool.release(pool.acquire(1500));
+        Assert.assertEquals(pool.getAllocated(), 2500L);
+
+        final byte[] large = pool.acquire(2000);
+
+        Assert.assertEquals(large.length, 2000);
+        Assert.assertEquals(pool.getAllocated(), 3500L, "Only the buffer returned first should be dropped");
+        Assert.assertEquals(pool.getCheckedOut(), 2000L);
+    }
+
+    public void checkingOutWaitsUntilABufferIsReturned() throws InterruptedException {
+        final PartBufferPool pool = new PartBufferPool(2000L);
+        final byte[] first = pool.acquire(1000);
+        pool.acquire(1000);
+
+        final CountDownLatch acquired = new CountDownLatch(1);
+        final AtomicReference<byte[]> third = new AtomicReference<>();
+        final Thread waiting = new Thread(() -> {
+            try {
+                third.set(pool.acquire(1000));
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiting.start();
+
+        Assert.assertFalse(acquired.await(100L, TimeUnit.MILLISECONDS), "The budget should be exhausted");
+
+        pool.release(first);
+
+        Assert.assertTrue(acquired.await(10L, TimeUnit.SECONDS));
+        Assert.assertSame(third.get(), first);
+        Assert.assertEquals(pool.getAllocated(), 2000L);
+    }
+
+    public void partsLargerThanTheBudgetAreRejected() throws InterruptedException {
+        final PartBufferPool pool = new PartBufferPool(1000L);
+
+        try {
+            pool.acquire(1001);
+            Assert.fail("A buffer larger than the budget should be rejected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("budget"), e.getMessage());
+        }
+
+        Assert.assertEquals(pool.getAllocated(), 0L);
+    }
+
+    public void budgetMustBePositive() {
+        try {
+            new PartBufferPool(0L);
+            Assert.fail("A budget of zero should be rejected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("budget"), e.getMessage());
+        }
+    }
+}
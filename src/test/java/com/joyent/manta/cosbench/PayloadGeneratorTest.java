@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+@Test
+public class PayloadGeneratorTest {
+    private static final long SEED = PayloadGenerator.objectSeed(42L, "container", "object");
+
+    public void contentDependsOnTheSeedAndNames() {
+        Assert.assertEquals(PayloadGenerator.objectSeed(42L, "container", "object"), SEED);
+        Assert.assertNotEquals(PayloadGenerator.objectSeed(43L, "container", "object"), SEED);
+        Assert.assertNotEquals(PayloadGenerator.objectSeed(42L, "container2", "object"), SEED);
+        Assert.assertNotEquals(PayloadGenerator.objectSeed(42L, "container", "object2"), SEED);
+        Assert.assertNotEquals(PayloadGenerator.objectSeed(42L, "containero", "bject"), SEED);
+    }
+
+    public void fillMatchesContentAtAnyPositionAndLength() {
+        final byte[] expected = new byte[1000];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = PayloadGenerator.byteAt(SEED, i);
+        }
+
+        for (int position = 0; position < 20; position++) {
+            for (int length = 0; length < 40; length++) {
+                final byte[] buffer = new byte[length + 6];
+                PayloadGenerator.fill(SEED, position, buffer, 3, length);
+
+                Assert.assertEquals(Arrays.copyOfRange(buffer, 3, 3 + length),
+                        Arrays.copyOfRange(expected, position, position + length));
+                Assert.assertEquals(PayloadGenerator.mismatch(SEED, position, buffer, 3, length), -1);
+            }
+        }
+    }
+
+    public void mismatchFindsTheFirstDifferingByte() {
+        final byte[] buffer = new byte[100];
+        PayloadGenerator.fill(SEED, 5L, buffer, 0, buffer.length);
+
+        for (int corrupt : new int[] {0, 2, 3, 10, 42, 99}) {
+            final byte[] copy = buffer.clone();
+            copy[corrupt] ^= 0x10;
+            copy[99] ^= 0x01;
+
+            Assert.assertEquals(PayloadGenerator.mismatch(SEED, 5L, copy, 0, copy.length), corrupt);
+        }
+
+        Assert.assertEquals(PayloadGenerator.mismatch(SEED + 1L, 5L, buffer, 0, buffer.length), 0);
+    }
+}
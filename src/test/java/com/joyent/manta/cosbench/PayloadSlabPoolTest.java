@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.input.NullInputStream;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+@Test
+public class PayloadSlabPoolTest {
+    private static final PayloadSlabPool POOL = new PayloadSlabPool(1L, 42L);
+
+    public void poolIsRoundedUpToWholeSlabs() {
+        Assert.assertEquals(POOL.getSize(), (long)PayloadSlabPool.SLAB_SIZE);
+        Assert.assertEquals(new PayloadSlabPool(PayloadSlabPool.SLAB_SIZE + 1L, 1L).getSize(),
+                2L * PayloadSlabPool.SLAB_SIZE);
+    }
+
+    public void sharedPoolKeepsTheSizeAndSeedOfItsFirstUse() {
+        final PayloadSlabPool pool = PayloadSlabPool.shared(1L, 42L);
+
+        Assert.assertSame(PayloadSlabPool.shared(pool.getSize() + 1L, pool.getSeed() + 1L), pool);
+        Assert.assertEquals(PayloadSlabPool.sizeFor(pool.getSize()), pool.getSize());
+        Assert.assertTrue(PayloadSlabPool.sizeFor(pool.getSize() + 1L) != pool.getSize(),
+                "A different size should be detected so that it can be reported");
+        Assert.assertEquals(POOL.getSeed(), 42L);
+    }
+
+    public void sliceHasTheObjectLengthAndSkipsTheSource() throws IOException {
+        final long length = 3L * PayloadSlabPool.SLAB_SIZE + 12345L;
+        final CountingInputStream source = new CountingInputStream(new NullInputStream(length));
+
+        try (InputStream in = POOL.open(7L, length, source)) {
+            final byte[] buffer = new byte[65537];
+            long total = 0L;
+            int n;
+
+            while ((n = in.read(buffer)) != -1) {
+                total += n;
+            }
+
+            Assert.assertEquals(total, length);
+        }
+
+        Assert.assertEquals(source.getByteCount(), length, "COSBench should count every byte");
+    }
+
+    public void sliceWrapsAroundTheEndOfThePool() throws IOException {
+        final int size = (int)POOL.getSize();
+        final byte[] whole = read(POOL.open(0L, size, new NullInputStream(size)));
+        final byte[] wrapped = read(POOL.open(size - 10L, 30L, new NullInputStream(30L)));
+
+        Assert.assertEquals(Arrays.copyOfRange(wrapped, 0, 10), Arrays.copyOfRange(whole, size - 10, size));
+        Assert.assertEquals(Arrays.copyOfRange(wrapped, 10, 30), Arrays.copyOfRange(whole, 0, 20));
+    }
+
+    public void singleByteReadsMatchBulkReads() throws IOException {
+        final byte[] bulk = read(POOL.open(99L, 100L, new NullInputStream(100L)));
+
+        try (InputStream in = POOL.open(99L, 100L, new NullInputStream(100L))) {
+            for (byte b : bulk) {
+                Assert.assertEquals(in.read(), b & 0xFF);
+            }
+
+            Assert.assertEquals(in.read(), -1);
+        }
+    }
+
+    public void objectsStartAtDifferentOffsets() throws IOException {
+        final long first = PayloadGenerator.objectSeed(0L, "c", "o1");
+        final long second = PayloadGenerator.objectSeed(0L, "c", "o2");
+
+        Assert.assertFalse(Arrays.equals(read(POOL.open(first, 4096L, new NullInputStream(4096L))),
+                read(POOL.open(second, 4096L, new NullInputStream(4096L)))));
+    }
+
+    public void contentIsIncompressible() throws IOException {
+        final byte[] content = read(POOL.open(0L, 1048576L, new NullInputStream(1048576L)));
+        final Deflater deflater = new Deflater();
+        final byte[] compressed = new byte[content.length + 1024];
+
+        deflater.setInput(content);
+        deflater.finish();
+        final int compressedLength = deflater.deflate(compressed);
+        deflater.end();
+
+        Assert.assertTrue(compressedLength >= content.length, "Compressed to " + compressedLength);
+    }
+
+    private static byte[] read(final InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            return IOUtils.toByteArray(stream);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.apache.commons.io.IOUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+@Test
+public class RangeHedgerTest {
+    private static final byte[] CONTENT = {1, 2, 3, 4, 5, 6, 7, 8};
+
+    private static final RangeJoiningInputStream.Range SECTION =
+            new RangeJoiningInputStream.Range(0L, CONTENT.length - 1);
+
+    public void noRangeIsHedgedBeforeTheFirstBatchIsMeasured() throws Exception {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+
+        try {
+            final RangeHedger hedger = new RangeHedger(95.0, 0L, executor);
+
+            for (int i = 0; i < RangeHedger.SAMPLES_PER_UPDATE - 1; i++) {
+                try (InputStream in = hedger.open(SECTION, section -> new ByteArrayInputStream(CONTENT))) {
+                    Assert.assertEquals(IOUtils.toByteArray(in), CONTENT);
+                }
+
+                Assert.assertEquals(hedger.getDelayNanos(), RangeHedger.NOT_READY);
+            }
+
+            Assert.assertEquals(hedger.getRanges(), RangeHedger.SAMPLES_PER_UPDATE - 1);
+            Assert.assertEquals(hedger.getHedges(), 0L);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void delayIsThePercentileOfRecentFirstRequests() {
+        final RangeHedger hedger = new RangeHedger(90.0, 0L, Executors.newSingleThreadExecutor());
+
+        for (int i = 1; i <= RangeHedger.WINDOW_SIZE; i++) {
+            hedger.record(i * 1000L);
+        }
+
+        Assert.assertEquals(hedger.getDelayNanos(), 231000L);
+
+        // Older samples fall out of the window
+        for (int i = 0; i < RangeHedger.WINDOW_SIZE; i++) {
+            hedger.record(5000L);
+        }
+
+        Assert.assertEquals(hedger.getDelayNanos(), 5000L);
+    }
+
+    public void delayIsNeverShorterThanTheMinimum() {
+        final RangeHedger hedger = new RangeHedger(50.0, 1000000L, Executors.newSingleThreadExecutor());
+
+        for (int i = 0; i < RangeHedger.SAMPLES_PER_UPDATE; i++) {
+            hedger.record(10L);
+        }
+
+        Assert.assertEquals(hedger.getDelayNanos(), 1000000L);
+    }
+
+    public void slowRangeIsHedgedAndTheSlowRequestIsClosed() throws Exception {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        final CountDownLatch slowClosed = new CountDownLatch(1);
+        final AtomicInteger requests = new AtomicInteger();
+
+        try {
+            final RangeHedger hedger = warmedUp(executor);
+            final Function<RangeJoiningInputStream.Range, InputStream> opener = section -> {
+                if (requests.getAndIncrement() == 0) {
+                    return new StalledInputStream(slowClosed);
+                }
+
+                return new ByteArrayInputStream(CONTENT);
+            };
+
+            try (InputStream in = hedger.open(SECTION, opener)) {
+                Assert.assertEquals(IOUtils.toByteArray(in), CONTENT);
+            }
+
+            Assert.assertTrue(slowClosed.await(5, TimeUnit.SECONDS), "Slow request should be closed");
+            Assert.assertEquals(requests.get(), 2);
+            Assert.assertEquals(hedger.getHedges(), 1L);
+            Assert.assertEquals(hedger.getHedgeWins(), 1L);
+            Assert.assertEquals(hedger.getPrimaryWins(), 0L);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void firstRequestCanStillWinAfterTheHedge() throws Exception {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        final CountDownLatch hedgeClosed = new CountDownLatch(1);
+        final AtomicInteger requests = new AtomicInteger();
+
+        try {
+            final RangeHedger hedger = warmedUp(executor);
+            final Function<RangeJoiningInputStream.Range, InputStream> opener = section -> {
+                if (requests.getAndIncrement() == 0) {
+                    sleep(50L);
+                    return new ByteArrayInputStream(CONTENT);
+                }
+
+                return new StalledInputStream(hedgeClosed);
+            };
+
+            try (InputStream in = hedger.open(SECTION, opener)) {
+                Assert.assertEquals(IOUtils.toByteArray(in), CONTENT);
+            }
+
+            Assert.assertTrue(hedgeClosed.await(5, TimeUnit.SECONDS), "Hedge should be closed");
+            Assert.assertEquals(hedger.getHedges(), 1L);
+            Assert.assertEquals(hedger.getHedgeWins(), 0L);
+            Assert.assertEquals(hedger.getPrimaryWins(), 1L);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void failureIsThrownWhenEveryRequestFails() {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+
+        try {
+            final RangeHedger hedger = warmedUp(executor);
+
+            try {
+                hedger.open(SECTION, section -> {
+                    throw new UncheckedIOException(new IOException("shark unavailable"));
+                });
+                Assert.fail("Failure should be thrown");
+            } catch (UncheckedIOException e) {
+                Assert.assertEquals(e.getCause().getMessage(), "shark unavailable");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static RangeHedger warmedUp(final ExecutorService executor) {
+        final RangeHedger hedger = new RangeHedger(50.0, 0L, executor);
+
+        for (int i = 0; i < RangeHedger.SAMPLES_PER_UPDATE; i++) {
+            hedger.record(TimeUnit.MILLISECONDS.toNanos(1L));
+        }
+
+        return hedger;
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stream that doesn't return a byte until it is closed.
+     */
+    private static final class StalledInputStream extends InputStream {
+        private final CountDownLatch closed;
+
+        private StalledInputStream(final CountDownLatch closed) {
+            this.closed = closed;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                closed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            throw new IOException("Stream closed");
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+}
@@ -17,6 +17,11 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Test
 public class RangeJoiningInputStreamTest {
@@ -54,6 +59,276 @@ public class RangeJoiningInputStreamTest {
         }
     }
 
+    public void canReadFileInChunksAsSingleStreamWithReadAhead() throws Exception {
+        final long size = 564531;
+        final int noOfSections = 33;
+        final int parallelism = 4;
+        final int bufferSize = 1000;
+        final Path path = Files.createTempFile("chunk-read-ahead", ".data");
+        final ExecutorService executor = Executors.newCachedThreadPool();
+
+        try (RandomInputStream ri = new RandomInputStream(size);
+             FileOutputStream os = new FileOutputStream(path.toFile())) {
+            IOUtils.copy(ri, os);
+
+            final byte[] expected = Files.readAllBytes(path);
+            final byte[] actual;
+
+            try (RangeJoiningInputStream rjis = new RangeJoiningInputStream(
+                    size, noOfSections, path.toFile(), executor, parallelism, bufferSize);
+                 ByteArrayOutputStream bout = new ByteArrayOutputStream()) {
+                IOUtils.copy(rjis, bout);
+
+                actual = bout.toByteArray();
+            }
+
+            AssertJUnit.assertArrayEquals("Bytes read with read ahead don't match bytes of source file",
+                    expected, actual);
+        } finally {
+            executor.shutdownNow();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    public void canReadFileInChunksWithHedgedSections() throws Exception {
+        final long size = 564531;
+        final int noOfSections = 33;
+        final Path path = Files.createTempFile("chunk-read-hedged", ".data");
+        final ExecutorService executor = Executors.newCachedThreadPool();
+
+        try (RandomInputStream ri = new RandomInputStream(size);
+             FileOutputStream os = new FileOutputStream(path.toFile())) {
+            IOUtils.copy(ri, os);
+
+            // A delay of one nanosecond hedges nearly every section
+            final RangeHedger hedger = new RangeHedger(50.0, 0L, executor);
+            for (int i = 0; i < RangeHedger.SAMPLES_PER_UPDATE; i++) {
+                hedger.record(1L);
+            }
+
+            final byte[] expected = Files.readAllBytes(path);
+            final byte[] actual;
+
+            try (RangeJoiningInputStream rjis = new RangeJoiningInputStream(
+                    size, noOfSections, path.toFile(), executor, 4, 1000).withHedging(hedger);
+                 ByteArrayOutputStream bout = new ByteArrayOutputStream()) {
+                IOUtils.copy(rjis, bout);
+
+                actual = bout.toByteArray();
+            }
+
+            AssertJUnit.assertArrayEquals("Bytes read with hedged sections don't match bytes of source file",
+                    expected, actual);
+            Assert.assertEquals(hedger.getRanges(), noOfSections);
+        } finally {
+            executor.shutdownNow();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    public void closingReadAheadStreamEarlyStopsBackgroundReads() throws Exception {
+        final long size = 564531;
+        final int noOfSections = 33;
+        final Path path = Files.createTempFile("chunk-read-ahead-close", ".data");
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try (RandomInputStream ri = new RandomInputStream(size);
+             FileOutputStream os = new FileOutputStream(path.toFile())) {
+            IOUtils.copy(ri, os);
+
+            try (RangeJoiningInputStream rjis = new RangeJoiningInputStream(
+                    size, noOfSections, path.toFile(), executor, 2, 16)) {
+                Assert.assertNotEquals(rjis.read(), -1);
+            }
+
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS),
+                    "Background section reads should stop once the stream is closed");
+        } finally {
+            executor.shutdownNow();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    public void bulkReadsFillBufferAcrossSections() throws Exception {
+        final long size = 10000;
+        final int noOfSections = 7;
+        final Path path = Files.createTempFile("chunk-read-fill", ".data");
+
+        try (RandomInputStream ri = new RandomInputStream(size);
+             FileOutputStream os = new FileOutputStream(path.toFile())) {
+            IOUtils.copy(ri, os);
+
+            final byte[] expected = Files.readAllBytes(path);
+            final byte[] actual = new byte[(int)size];
+
+            try (RangeJoiningInputStream rjis = new RangeJoiningInputStream(
+                    size, noOfSections, path.toFile())) {
+                Assert.assertEquals(rjis.read(actual, 0, 3000), 3000,
+                        "A bulk read should continue into the following sections");
+                actual[3000] = (byte)rjis.read();
+                Assert.assertEquals(rjis.read(actual, 3001, actual.length - 3001), actual.length - 3001);
+                Assert.assertEquals(rjis.read(actual), -1);
+                Assert.assertEquals(rjis.available(), 0);
+            }
+
+            AssertJUnit.assertArrayEquals(expected, actual);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    public void canTransferFileInChunksToOutputStream() throws Exception {
+        final long size = 564531;
+        final int noOfSections = 33;
+        final Path path = Files.createTempFile("chunk-transfer", ".data");
+
+        try (RandomInputStream ri = new RandomInputStream(size);
+             FileOutputStream os = new FileOutputStream(path.toFile())) {
+            IOUtils.copy(ri, os);
+
+            final byte[] expected = Files.readAllBytes(path);
+
+            try (RangeJoiningInputStream rjis = new RangeJoiningInputStream(
+                    size, noOfSections, path.toFile());
+                 ByteArrayOutputStream bout = new ByteArrayOutputStream()) {
+                Assert.assertEquals(rjis.transferTo(bout), size);
+                AssertJUnit.assertArrayEquals(expected, bout.toByteArray());
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    public void canSkipWithinAndAcrossSections() throws Exception {
+        final long size = 10000;
+        final int noOfSections = 10;
+        final Path path = Files.createTempFile("chunk-skip", ".data");
+
+        try (RandomInputStream ri = new RandomInputStream(size);
+             FileOutputStream os = new FileOutputStream(path.toFile())) {
+            IOUtils.copy(ri, os);
+
+            final byte[] expected = Files.readAllBytes(path);
+
+            try (RangeJoiningInputStream rjis = new RangeJoiningInputStream(
+                    size, noOfSections, path.toFile())) {
+                Assert.assertEquals(rjis.skip(10), 10);
+                Assert.assertEquals(rjis.read(), expected[10] & 0xFF);
+                Assert.assertEquals(rjis.skip(4489), 4489);
+                Assert.assertEquals(rjis.read(), expected[4500] & 0xFF);
+                Assert.assertEquals(rjis.skip(20000), size - 4501);
+                Assert.assertEquals(rjis.read(), -1);
+                Assert.assertEquals(rjis.skip(1), 0);
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    public void skippingWholeSectionsDoesNotOpenThem() throws Exception {
+        final long size = 10000;
+        final int noOfSections = 10;
+        final Path path = Files.createTempFile("chunk-skip-sections", ".data");
+        final AtomicInteger opened = new AtomicInteger();
+
+        try (RandomInputStream ri = new RandomInputStream(size);
+             FileOutputStream os = new FileOutputStream(path.toFile())) {
+            IOUtils.copy(ri, os);
+
+            final byte[] expected = Files.readAllBytes(path);
+
+            try (RangeJoiningInputStream rjis = new RangeJoiningInputStream(
+                    size, noOfSections, path.toFile())) {
+                rjis.withSectionListener(new RangeJoiningInputStream.SectionListener() {
+                    @Override
+                    public void sectionFirstByte(final long bytes, final long nanos) {
+                        opened.incrementAndGet();
+                    }
+
+                    @Override
+                    public void sectionCompleted(final long bytes, final long nanos) {
+                    }
+                });
+
+                Assert.assertEquals(rjis.skip(8000), 8000);
+                Assert.assertEquals(rjis.read(), expected[8000] & 0xFF);
+            }
+
+            Assert.assertEquals(opened.get(), 1, "Skipped sections shouldn't be read");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    public void readAheadHoldsNoMoreBuffersThanItsParallelism() throws Exception {
+        final long size = 564531;
+        final int noOfSections = 33;
+        final int parallelism = 4;
+        final Path path = Files.createTempFile("chunk-read-ahead-buffers", ".data");
+        final ExecutorService executor = Executors.newCachedThreadPool();
+
+        try (RandomInputStream ri = new RandomInputStream(size);
+             FileOutputStream os = new FileOutputStream(path.toFile())) {
+            IOUtils.copy(ri, os);
+
+            try (RangeJoiningInputStream rjis = new RangeJoiningInputStream(
+                    size, noOfSections, path.toFile(), executor, parallelism, 1000)) {
+                final byte[] buffer = new byte[997];
+                int maxBuffers = 0;
+                long total = 0;
+                int read;
+
+                while ((read = rjis.read(buffer)) != -1) {
+                    total += read;
+                    maxBuffers = Math.max(maxBuffers, rjis.getReadAheadBuffers());
+
+                    // Skipping whole sections must release their buffers too
+                    if (total > size / 2 && total < size / 2 + buffer.length) {
+                        total += rjis.skip(size / 4);
+                        maxBuffers = Math.max(maxBuffers, rjis.getReadAheadBuffers());
+                    }
+                }
+
+                Assert.assertEquals(total, size);
+                Assert.assertTrue(maxBuffers > 1, "Sections should be read ahead");
+                Assert.assertTrue(maxBuffers <= parallelism, "Buffers held: " + maxBuffers);
+            }
+        } finally {
+            executor.shutdownNow();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    public void canSkipSectionsWithReadAhead() throws Exception {
+        final long size = 564531;
+        final int noOfSections = 33;
+        final Path path = Files.createTempFile("chunk-skip-read-ahead", ".data");
+        final ExecutorService executor = Executors.newCachedThreadPool();
+
+        try (RandomInputStream ri = new RandomInputStream(size);
+             FileOutputStream os = new FileOutputStream(path.toFile())) {
+            IOUtils.copy(ri, os);
+
+            final byte[] expected = Files.readAllBytes(path);
+            final int skip = 300000;
+
+            try (RangeJoiningInputStream rjis = new RangeJoiningInputStream(
+                    size, noOfSections, path.toFile(), executor, 4, 1000);
+                 ByteArrayOutputStream bout = new ByteArrayOutputStream()) {
+                Assert.assertNotEquals(rjis.read(), -1);
+                Assert.assertEquals(rjis.skip(skip), skip);
+                IOUtils.copy(rjis, bout);
+
+                AssertJUnit.assertArrayEquals(
+                        Arrays.copyOfRange(expected, skip + 1, expected.length), bout.toByteArray());
+            }
+        } finally {
+            executor.shutdownNow();
+            Files.deleteIfExists(path);
+        }
+    }
+
     public void splitPartsAddUpToOriginalSize() {
         final long size = 345345324532L;
         final int noOfSections = 19;
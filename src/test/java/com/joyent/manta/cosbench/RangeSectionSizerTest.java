@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class RangeSectionSizerTest {
+    private static final long MB = 1048576L;
+
+    public void sectionsFollowTargetSize() {
+        final RangeSectionSizer sizer = new RangeSectionSizer(8 * MB, 1, 64, false);
+
+        Assert.assertEquals(sizer.sectionsFor(64 * 1024L), 1);
+        Assert.assertEquals(sizer.sectionsFor(8 * MB), 1);
+        Assert.assertEquals(sizer.sectionsFor(8 * MB + 1), 2);
+        Assert.assertEquals(sizer.sectionsFor(100 * MB), 13);
+    }
+
+    public void sectionsAreBoundedByMinAndMax() {
+        final RangeSectionSizer sizer = new RangeSectionSizer(8 * MB, 4, 16, false);
+
+        Assert.assertEquals(sizer.sectionsFor(MB), 4);
+        Assert.assertEquals(sizer.sectionsFor(10240 * MB), 16);
+    }
+
+    public void sectionsNeverExceedObjectSize() {
+        final RangeSectionSizer sizer = new RangeSectionSizer(8 * MB, 4, 16, false);
+
+        Assert.assertEquals(sizer.sectionsFor(3L), 3);
+        Assert.assertEquals(sizer.sectionsFor(0L), 1);
+    }
+
+    public void adaptiveTargetReversesWhenThroughputStopsImproving() {
+        final RangeSectionSizer sizer = new RangeSectionSizer(8 * MB, 1, 64, true);
+
+        recordBatch(sizer, 8 * MB, 100L);
+        Assert.assertEquals(sizer.getTargetSectionSize(), 16 * MB);
+
+        // Twice the throughput: keep growing
+        recordBatch(sizer, 16 * MB, 100L);
+        Assert.assertEquals(sizer.getTargetSectionSize(), 32 * MB);
+
+        // Same throughput: turn around
+        recordBatch(sizer, 32 * MB, 200L);
+        Assert.assertEquals(sizer.getTargetSectionSize(), 16 * MB);
+    }
+
+    public void nonAdaptiveTargetNeverChanges() {
+        final RangeSectionSizer sizer = new RangeSectionSizer(8 * MB, 1, 64, false);
+
+        recordBatch(sizer, 8 * MB, 100L);
+        Assert.assertEquals(sizer.getTargetSectionSize(), 8 * MB);
+    }
+
+    private static void recordBatch(final RangeSectionSizer sizer, final long bytes, final long nanos) {
+        for (int i = 0; i < RangeSectionSizer.SAMPLES_PER_ADJUSTMENT; i++) {
+            sizer.sectionCompleted(bytes, nanos);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import com.joyent.manta.client.MantaMetadata;
+import com.joyent.manta.http.MantaHttpHeaders;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Test
+public class RequestTemplatesTest {
+    public void metadataKeysArePrefixedOnce() {
+        final RequestTemplates templates = new RequestTemplates(null);
+        final Map<String, String> map = new HashMap<>();
+        map.put("color", "blue");
+        map.put("shape", "round");
+
+        final MantaMetadata metadata = templates.metadataOf(map);
+
+        Assert.assertEquals(metadata.get("m-color"), "blue");
+        Assert.assertEquals(metadata.get("m-shape"), "round");
+        Assert.assertSame(templates.metadataKey("color"), templates.metadataKey("color"));
+        Assert.assertEquals(templates.getMetadataKeys(), 2);
+    }
+
+    public void metadataKeyCacheIsBounded() {
+        final RequestTemplates templates = new RequestTemplates(null);
+
+        for (int i = 0; i < RequestTemplates.MAX_METADATA_KEYS + 10; i++) {
+            Assert.assertEquals(templates.metadataKey("key" + i), "m-key" + i);
+        }
+
+        Assert.assertEquals(templates.getMetadataKeys(), RequestTemplates.MAX_METADATA_KEYS);
+    }
+
+    public void uploadHeadersAreCopiesOfTheTemplate() {
+        final RequestTemplates templates = new RequestTemplates(2);
+
+        final MantaHttpHeaders first = templates.uploadHeaders(2);
+        first.put("x-test", "changed");
+        final MantaHttpHeaders second = templates.uploadHeaders(2);
+
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(second.getDurabilityLevel(), Integer.valueOf(2));
+        Assert.assertFalse(second.containsKey("x-test"), "Changes to a copy shouldn't reach the template");
+        Assert.assertEquals(templates.uploadHeaders(3).getDurabilityLevel(), Integer.valueOf(3));
+        Assert.assertNull(templates.uploadHeaders(null).getDurabilityLevel());
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.apache.commons.io.IOUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+@Test
+public class TimingInputStreamTest {
+    public void drainedStreamIsReportedOnceAtEnd() throws IOException {
+        final List<long[]> reports = new ArrayList<>();
+        final long issuedAt = System.nanoTime();
+
+        try (InputStream in = new TimingInputStream(new ByteArrayInputStream(new byte[1000]), issuedAt,
+                (firstByte, transfer, bytes, endOfStream, failure) -> {
+                    Assert.assertTrue(endOfStream);
+                    Assert.assertNull(failure);
+                    reports.add(new long[] {firstByte, transfer, bytes});
+                })) {
+            Assert.assertEquals(IOUtils.toByteArray(in).length, 1000);
+        }
+
+        Assert.assertEquals(reports.size(), 1);
+        Assert.assertTrue(reports.get(0)[0] >= 0L);
+        Assert.assertTrue(reports.get(0)[1] >= 0L);
+        Assert.assertEquals(reports.get(0)[2], 1000L);
+    }
+
+    public void closingEarlyIsReportedAsIncomplete() throws IOException {
+        final List<Boolean> endOfStreams = new ArrayList<>();
+
+        try (InputStream in = new TimingInputStream(new ByteArrayInputStream(new byte[1000]), System.nanoTime(),
+                (firstByte, transfer, bytes, endOfStream, failure) -> {
+                    Assert.assertEquals(bytes, 1L);
+                    endOfStreams.add(endOfStream);
+                })) {
+            Assert.assertEquals(in.read(), 0);
+        }
+
+        Assert.assertEquals(endOfStreams.size(), 1);
+        Assert.assertFalse(endOfStreams.get(0));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import com.joyent.manta.cosbench.config.RateSchedule;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@Test
+public class TokenBucketTest {
+    public void burstIsNotThrottled() throws Exception {
+        final TokenBucket bucket = new TokenBucket(RateSchedule.parse("1000"), 1);
+
+        // Ten milliseconds of tokens are banked while idle
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(bucket.acquire(1L), 0L);
+        }
+
+        Assert.assertEquals(bucket.getTaken(), 5L);
+        Assert.assertEquals(bucket.getWaits(), 0L);
+    }
+
+    public void tokensAreLimitedToTheRateAcrossThreads() throws Exception {
+        final int threads = 8;
+        final int perThread = 50;
+        final TokenBucket bucket = new TokenBucket(RateSchedule.parse("2000"), threads);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            final List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                tasks.add(() -> {
+                    for (int j = 0; j < perThread; j++) {
+                        bucket.acquire(1L);
+                    }
+                    return null;
+                });
+            }
+
+            final long startedAt = System.nanoTime();
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+            final long elapsed = System.nanoTime() - startedAt;
+
+            // 400 tokens at 2000 per second, less the burst and the tokens left on stripes
+            Assert.assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(150L),
+                    "Tokens were taken faster than the rate: " + elapsed);
+            Assert.assertEquals(bucket.getTaken(), threads * perThread);
+            Assert.assertTrue(bucket.getWaits() > 0L);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void rateFollowsTheSchedule() throws Exception {
+        final TokenBucket bucket = new TokenBucket(RateSchedule.parse("100000:1,1000"), 1);
+
+        Assert.assertEquals(bucket.acquire(1L), 0L);
+        Assert.assertTrue(bucket.acquire(50000L) < TimeUnit.SECONDS.toNanos(1L),
+                "The first step should allow 100000 tokens per second");
+
+        Thread.sleep(1500L);
+
+        // A second's worth of the second step costs a second
+        bucket.acquire(1000L);
+        final long waited = bucket.acquire(500L);
+        Assert.assertTrue(waited > TimeUnit.MILLISECONDS.toNanos(500L), "Waited " + waited);
+    }
+
+    public void stripesArePowersOfTwo() {
+        Assert.assertEquals(new TokenBucket(RateSchedule.parse("1"), 1).getStripes(), 1);
+        Assert.assertEquals(new TokenBucket(RateSchedule.parse("1"), 6).getStripes(), 8);
+        Assert.assertEquals(new TokenBucket(RateSchedule.parse("1"), 1000).getStripes(), 64);
+    }
+
+    public void throttledStreamPaysForEveryByte() throws Exception {
+        final byte[] content = new byte[64 * 1024];
+        final TokenBucket bucket = new TokenBucket(RateSchedule.parse("1048576"), 1);
+
+        try (ThrottledInputStream in = new ThrottledInputStream(new ByteArrayInputStream(content), bucket)) {
+            Assert.assertEquals(IOUtils.copy(in, NullOutputStream.NULL_OUTPUT_STREAM), content.length);
+            Assert.assertTrue(in.getWaitNanos() > 0L, "64 KiB at 1 MiB per second should wait");
+        }
+
+        Assert.assertEquals(bucket.getTaken(), content.length);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Test
+public class TreeDeleterTest {
+    public void deletesTheWholeTreeBottomUp() throws IOException {
+        final Map<String, Boolean> tree = tree("/user/stor/cosbench/c", 3, 4, 25);
+        final int entries = tree.size();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final AtomicInteger nonEmptyDirectories = new AtomicInteger();
+        final AtomicInteger repeatedDeletes = new AtomicInteger();
+
+        final TreeDeleter deleter = new TreeDeleter(lister(tree), path -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+            try {
+                Thread.sleep(1L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (Boolean.TRUE.equals(tree.get(path)) && !children(tree, path).isEmpty()) {
+                nonEmptyDirectories.incrementAndGet();
+            }
+
+            inFlight.decrementAndGet();
+
+            if (tree.remove(path) == null) {
+                repeatedDeletes.incrementAndGet();
+            }
+        }, 8, 0, null);
+
+        deleter.delete("/user/stor/cosbench/c");
+
+        Assert.assertTrue(tree.isEmpty(), "Every entry should be deleted");
+        Assert.assertEquals(nonEmptyDirectories.get(), 0, "Directories should be empty when deleted");
+        Assert.assertEquals(repeatedDeletes.get(), 0, "Entries should be deleted once");
+        Assert.assertEquals(deleter.getDeletedObjects() + deleter.getDeletedDirectories(), (long)entries);
+        Assert.assertEquals(deleter.getDeletedDirectories(), 1L + 4L + 16L);
+        Assert.assertEquals(deleter.getListed(), 1L + 4L + 16L);
+        Assert.assertTrue(maxInFlight.get() > 1, "Entries should be deleted concurrently");
+        Assert.assertTrue(maxInFlight.get() <= 8, "No more than the configured threads should delete");
+    }
+
+    public void firstFailureStopsTheDeleteAndIsThrown() {
+        final Map<String, Boolean> tree = tree("/d", 2, 10, 1000);
+        final IOException failure = new IOException("boom");
+        final AtomicInteger attempts = new AtomicInteger();
+
+        final TreeDeleter deleter = new TreeDeleter(lister(tree), path -> {
+            attempts.incrementAndGet();
+            throw failure;
+        }, 4, 0, null);
+
+        try {
+            deleter.delete("/d");
+            Assert.fail("The delete failure should be thrown");
+        } catch (IOException e) {
+            Assert.assertSame(e, failure);
+        }
+
+        Assert.assertTrue(attempts.get() < tree.size(), "Deletes should stop after a failure");
+    }
+
+    public void deletesAreRateLimited() throws IOException {
+        final Map<String, Boolean> tree = tree("/d", 1, 0, 20);
+        final TreeDeleter deleter = new TreeDeleter(lister(tree), tree::remove, 4, 100, null);
+        final long start = System.nanoTime();
+
+        deleter.delete("/d");
+
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.assertTrue(elapsedMillis >= 190L,
+                "21 deletes at 100 per second should take at least 200ms but took " + elapsedMillis);
+    }
+
+    private static Map<String, Boolean> tree(final String root, final int depth,
+                                             final int subdirectories, final int objects) {
+        final Map<String, Boolean> tree = new ConcurrentSkipListMap<>();
+        addDirectory(tree, root, depth, subdirectories, objects);
+        return tree;
+    }
+
+    private static void addDirectory(final Map<String, Boolean> tree, final String path, final int depth,
+                                     final int subdirectories, final int objects) {
+        tree.put(path, true);
+
+        for (int i = 0; i < objects; i++) {
+            tree.put(path + "/o" + i, false);
+        }
+
+        if (depth > 1) {
+            for (int i = 0; i < subdirectories; i++) {
+                addDirectory(tree, path + "/d" + i, depth - 1, subdirectories, objects);
+            }
+        }
+    }
+
+    private static List<String> children(final Map<String, Boolean> tree, final String directory) {
+        final List<String> children = new ArrayList<>();
+        final String prefix = directory + "/";
+
+        for (String path : tree.keySet()) {
+            if (path.startsWith(prefix) && path.indexOf('/', prefix.length()) < 0) {
+                children.add(path);
+            }
+        }
+
+        return children;
+    }
+
+    private static TreeDeleter.DirectoryLister lister(final Map<String, Boolean> tree) {
+        return (directory, visitor) -> {
+            for (String child : children(tree, directory)) {
+                visitor.visit(child, tree.getOrDefault(child, false));
+            }
+        };
+    }
+}
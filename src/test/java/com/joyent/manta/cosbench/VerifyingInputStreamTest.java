@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench;
+
+import org.apache.commons.io.IOUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+@Test
+public class VerifyingInputStreamTest {
+    private static final long SEED = PayloadGenerator.objectSeed(7L, "c", "o");
+
+    public void payloadReplacesTheDataAndKeepsItsLength() throws IOException {
+        final byte[] data = new byte[10000];
+
+        try (InputStream payload = new PayloadInputStream(new ByteArrayInputStream(data), SEED)) {
+            final byte[] written = IOUtils.toByteArray(payload);
+
+            Assert.assertEquals(written.length, data.length);
+            Assert.assertEquals(PayloadGenerator.mismatch(SEED, 0L, written, 0, written.length), -1);
+        }
+    }
+
+    public void payloadVerifiesWithAnyReadSizes() throws IOException {
+        final VerifyingInputStream.Stats stats = new VerifyingInputStream.Stats();
+        final byte[] written = payload(100003);
+
+        try (InputStream in = new VerifyingInputStream(new ByteArrayInputStream(written), SEED, "/c/o",
+                written.length, stats)) {
+            final byte[] buffer = new byte[4099];
+            int chunk = 1;
+
+            Assert.assertEquals(in.read(), written[0] & 0xFF);
+
+            while (in.read(buffer, 0, chunk) != -1) {
+                chunk = chunk % buffer.length + 7;
+            }
+        }
+
+        Assert.assertEquals(stats.getVerifiedObjects(), 1L);
+        Assert.assertEquals(stats.getVerifiedBytes(), (long)written.length);
+        Assert.assertEquals(stats.getMismatches(), 0L);
+    }
+
+    public void skippedBytesKeepTheRestInPosition() throws IOException {
+        final VerifyingInputStream.Stats stats = new VerifyingInputStream.Stats();
+        final byte[] written = payload(5000);
+
+        try (InputStream in = new VerifyingInputStream(new ByteArrayInputStream(written), SEED, "/c/o",
+                written.length, stats)) {
+            Assert.assertEquals(in.skip(1234L), 1234L);
+            IOUtils.toByteArray(in);
+        }
+
+        Assert.assertEquals(stats.getVerifiedObjects(), 1L);
+        Assert.assertEquals(stats.getVerifiedBytes(), 5000L - 1234L);
+    }
+
+    public void corruptedByteFailsTheReadAndIsCounted() throws IOException {
+        final VerifyingInputStream.Stats stats = new VerifyingInputStream.Stats();
+        final byte[] written = payload(5000);
+        written[3001] ^= 0x40;
+
+        try (InputStream in = new VerifyingInputStream(new ByteArrayInputStream(written), SEED, "/c/o",
+                written.length, stats)) {
+            IOUtils.toByteArray(in);
+            Assert.fail("The corrupted byte should be detected");
+        } catch (VerifyingInputStream.ContentMismatchException e) {
+            Assert.assertEquals(e.getPosition(), 3001L);
+            Assert.assertTrue(e.getMessage().contains("/c/o"), e.getMessage());
+        }
+
+        Assert.assertEquals(stats.getVerifiedObjects(), 0L);
+        Assert.assertEquals(stats.getMismatches(), 1L);
+        Assert.assertEquals(stats.getVerifiedBytes(), 3001L);
+    }
+
+    public void contentOfAnotherObjectDoesNotVerify() throws IOException {
+        final VerifyingInputStream.Stats stats = new VerifyingInputStream.Stats();
+        final byte[] written = payload(64);
+        final long otherSeed = PayloadGenerator.objectSeed(7L, "c", "other");
+
+        try (InputStream in = new VerifyingInputStream(new ByteArrayInputStream(written), otherSeed, "/c/o",
+                written.length, stats)) {
+            IOUtils.toByteArray(in);
+            Assert.fail("Content of another object should not verify");
+        } catch (VerifyingInputStream.ContentMismatchException e) {
+            Assert.assertTrue(e.getPosition() < 8L);
+        }
+
+        Assert.assertEquals(stats.getMismatches(), 1L);
+    }
+
+    public void streamEndingEarlyIsAMismatch() throws IOException {
+        final VerifyingInputStream.Stats stats = new VerifyingInputStream.Stats();
+        final byte[] written = payload(5000);
+        final byte[] truncated = new byte[4000];
+        System.arraycopy(written, 0, truncated, 0, truncated.length);
+
+        try (InputStream in = new VerifyingInputStream(new ByteArrayInputStream(truncated), SEED, "/c/o",
+                written.length, stats)) {
+            IOUtils.toByteArray(in);
+            Assert.fail("A stream shorter than the object should not verify");
+        } catch (VerifyingInputStream.ContentMismatchException e) {
+            Assert.assertEquals(e.getPosition(), 4000L);
+            Assert.assertTrue(e.getMessage().contains("5000"), e.getMessage());
+        }
+
+        Assert.assertEquals(stats.getVerifiedObjects(), 0L);
+        Assert.assertEquals(stats.getMismatches(), 1L);
+        Assert.assertEquals(stats.getVerifiedBytes(), 4000L);
+    }
+
+    public void streamEndingLateIsAMismatch() throws IOException {
+        final VerifyingInputStream.Stats stats = new VerifyingInputStream.Stats();
+        final byte[] written = payload(5000);
+
+        try (InputStream in = new VerifyingInputStream(new ByteArrayInputStream(written), SEED, "/c/o",
+                4000L, stats)) {
+            IOUtils.toByteArray(in);
+            Assert.fail("A stream longer than the object should not verify");
+        } catch (VerifyingInputStream.ContentMismatchException e) {
+            Assert.assertEquals(e.getPosition(), 5000L);
+        }
+
+        Assert.assertEquals(stats.getMismatches(), 1L);
+    }
+
+    public void streamOfUnknownLengthVerifiesAtAnyEnd() throws IOException {
+        final VerifyingInputStream.Stats stats = new VerifyingInputStream.Stats();
+        final byte[] written = payload(5000);
+
+        try (InputStream in = new VerifyingInputStream(new ByteArrayInputStream(written), SEED, "/c/o",
+                -1L, stats)) {
+            IOUtils.toByteArray(in);
+        }
+
+        Assert.assertEquals(stats.getVerifiedObjects(), 1L);
+        Assert.assertEquals(stats.getMismatches(), 0L);
+    }
+
+    private static byte[] payload(final int length) throws IOException {
+        try (InputStream payload = new PayloadInputStream(new ByteArrayInputStream(new byte[length]), SEED)) {
+            return IOUtils.toByteArray(payload);
+        }
+    }
+}
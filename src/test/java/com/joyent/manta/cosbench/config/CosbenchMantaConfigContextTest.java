@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench.config;
+
+import com.joyent.manta.config.MapConfigContext;
+import com.joyent.manta.cosbench.MapConfig;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Test
+public class CosbenchMantaConfigContextTest {
+    public void unsetValuesUseDefaults() {
+        final CosbenchMantaConfigContext context = new CosbenchMantaConfigContext(new MapConfig(new HashMap<>()));
+
+        Assert.assertTrue(context.logging());
+        Assert.assertFalse(context.isSharedClient());
+        Assert.assertFalse(context.isMultipart());
+        Assert.assertEquals(context.getNumberOfSections(), 1);
+        Assert.assertEquals(context.getRangeParallelism(), 1);
+        Assert.assertEquals(context.getMultipartParallelism(), 1);
+        Assert.assertEquals(context.testType(), "dir");
+        Assert.assertNull(context.getMantaURL());
+        Assert.assertNull(context.getObjectSize());
+        Assert.assertNull(context.chunked());
+        Assert.assertNull(context.getMantaHomeDirectory());
+    }
+
+    public void valuesAreParsedOnce() {
+        final Map<String, String> values = new HashMap<>();
+        values.put(MapConfigContext.MANTA_USER_KEY, "cosbench");
+        values.put(MapConfigContext.MANTA_MAX_CONNS_KEY, "64");
+        values.put("logging", "false");
+        values.put("multipart", "TRUE");
+        values.put("no-of-http-range-sections", " 4 ");
+        values.put("range-section-size", "8589934592");
+        values.put("test_type", "buckets");
+
+        final CosbenchMantaConfigContext context = new CosbenchMantaConfigContext(new MapConfig(values));
+        values.clear();
+
+        Assert.assertEquals(context.getMantaUser(), "cosbench");
+        Assert.assertEquals(context.getMaximumConnections(), Integer.valueOf(64));
+        Assert.assertFalse(context.logging());
+        Assert.assertTrue(context.isMultipart());
+        Assert.assertEquals(context.getNumberOfSections(), 4);
+        Assert.assertEquals(context.getRangeSectionSize(), Long.valueOf(8589934592L));
+        Assert.assertEquals(context.testType(), "buckets");
+        Assert.assertEquals(context.getMantaBucketsDirectory(), context.getMantaHomeDirectory() + "/buckets");
+    }
+
+    public void everyInvalidValueIsReportedTogether() {
+        final Map<String, String> values = new HashMap<>();
+        values.put(MapConfigContext.MANTA_TIMEOUT_KEY, "soon");
+        values.put("chunked", "maybe");
+        values.put("range-parallelism", "0");
+        values.put("bucket-delete-rate", "-5");
+        values.put("range-buffer-size", "0");
+        values.put("object-size-cache-capacity", "-1");
+        values.put("range-section-size", "0");
+        values.put("min-range-sections", "0");
+        values.put("max-range-sections", "0");
+
+        try {
+            new CosbenchMantaConfigContext(new MapConfig(values));
+            Assert.fail("Invalid values should be rejected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains(MapConfigContext.MANTA_TIMEOUT_KEY), e.getMessage());
+            Assert.assertTrue(e.getMessage().contains("chunked"), e.getMessage());
+            Assert.assertTrue(e.getMessage().contains("Range parallelism"), e.getMessage());
+            Assert.assertTrue(e.getMessage().contains("Bucket delete rate"), e.getMessage());
+            Assert.assertTrue(e.getMessage().contains("Range buffer size"), e.getMessage());
+            Assert.assertTrue(e.getMessage().contains("Object size cache capacity"), e.getMessage());
+            Assert.assertTrue(e.getMessage().contains("Range section size"), e.getMessage());
+            Assert.assertTrue(e.getMessage().contains("Minimum range sections"), e.getMessage());
+            Assert.assertTrue(e.getMessage().contains("Maximum range sections"), e.getMessage());
+        }
+    }
+
+    public void minimumRangeSectionsMustNotExceedTheMaximum() {
+        final Map<String, String> values = new HashMap<>();
+        values.put("min-range-sections", "4");
+        values.put("max-range-sections", "4");
+
+        Assert.assertEquals(new CosbenchMantaConfigContext(new MapConfig(values)).getMaxRangeSections(),
+                Integer.valueOf(4));
+
+        values.put("min-range-sections", "5");
+
+        try {
+            new CosbenchMantaConfigContext(new MapConfig(values));
+            Assert.fail("A minimum above the maximum should be rejected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("min-range-sections"), e.getMessage());
+        }
+    }
+
+    public void hedgePercentileMustBeBetweenZeroAndOneHundred() {
+        final Map<String, String> values = new HashMap<>();
+        values.put("range-hedge-percentile", "99.5");
+
+        Assert.assertEquals(new CosbenchMantaConfigContext(new MapConfig(values)).getRangeHedgePercentile(),
+                Double.valueOf(99.5));
+
+        values.put("range-hedge-percentile", "100");
+
+        try {
+            new CosbenchMantaConfigContext(new MapConfig(values));
+            Assert.fail("A percentile of 100 should be rejected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("range-hedge-percentile"), e.getMessage());
+        }
+    }
+
+    public void multipartMemoryBudgetMustHoldTwoParts() {
+        final Map<String, String> values = new HashMap<>();
+        values.put("multipart-memory-budget", "10485760");
+
+        Assert.assertEquals(new CosbenchMantaConfigContext(new MapConfig(values)).getMultipartMemoryBudget(),
+                Long.valueOf(10485760L));
+
+        values.put("splitSize", "8388608");
+
+        try {
+            new CosbenchMantaConfigContext(new MapConfig(values));
+            Assert.fail("A budget smaller than two parts should be rejected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("multipart-memory-budget"), e.getMessage());
+        }
+
+        values.remove("splitSize");
+        values.put("multipart-memory-budget", "0");
+
+        try {
+            new CosbenchMantaConfigContext(new MapConfig(values));
+            Assert.fail("A budget smaller than two default parts should be rejected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("multipart-memory-budget"), e.getMessage());
+        }
+    }
+
+    public void openLoopModeRequiresARateAndALatencySummary() {
+        final Map<String, String> values = new HashMap<>();
+        values.put("load-mode", "open");
+        values.put("open-loop-rate", "200");
+        values.put("latency-summary-file", "/tmp/latency.csv");
+
+        final CosbenchMantaConfigContext context = new CosbenchMantaConfigContext(new MapConfig(values));
+        Assert.assertTrue(context.isOpenLoop());
+        Assert.assertEquals(context.getOpenLoopRate(), Integer.valueOf(200));
+        Assert.assertNull(context.getOpenLoopMaxOutstanding());
+
+        values.remove("open-loop-rate");
+        values.remove("latency-summary-file");
+        values.put("open-loop-max-outstanding", "0");
+
+        try {
+            new CosbenchMantaConfigContext(new MapConfig(values));
+            Assert.fail("Open-loop mode without a rate should be rejected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("open-loop-rate"), e.getMessage());
+            Assert.assertTrue(e.getMessage().contains("outstanding"), e.getMessage());
+            Assert.assertTrue(e.getMessage().contains("latency-summary-file"), e.getMessage());
+        }
+
+        values.put("load-mode", "sideways");
+
+        try {
+            new CosbenchMantaConfigContext(new MapConfig(values));
+            Assert.fail("An unknown load mode should be rejected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("load-mode"), e.getMessage());
+        }
+    }
+
+    public void throttleLimitsAreSchedules() {
+        final Map<String, String> values = new HashMap<>();
+        values.put("throttle-ops-rate", "1000:60,5000");
+        values.put("throttle-get-bandwidth", "2147483648");
+
+        final CosbenchMantaConfigContext context = new CosbenchMantaConfigContext(new MapConfig(values));
+        Assert.assertEquals(context.getThrottleOpsRate(), RateSchedule.parse("1000:60,5000"));
+        Assert.assertEquals(context.getThrottleGetBandwidth(), RateSchedule.parse("2147483648"));
+        Assert.assertNull(context.getThrottlePutBandwidth());
+
+        values.put("throttle-put-bandwidth", "1000,2000");
+
+        try {
+            new CosbenchMantaConfigContext(new MapConfig(values));
+            Assert.fail("A step without a duration should be rejected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("throttle-put-bandwidth"), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2020, Joyent, Inc. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.joyent.manta.cosbench.config;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+@Test
+public class RateScheduleTest {
+    public void singleRateNeverChanges() {
+        final RateSchedule schedule = RateSchedule.parse(" 2147483648 ");
+
+        Assert.assertEquals(schedule.rateAt(0L), 2147483648L);
+        Assert.assertEquals(schedule.rateAt(TimeUnit.DAYS.toNanos(1L)), 2147483648L);
+        Assert.assertEquals(schedule.toString(), "2147483648");
+    }
+
+    public void stepsFollowEachOther() {
+        final RateSchedule schedule = RateSchedule.parse("1000:60, 2000:30,5000");
+
+        Assert.assertEquals(schedule.rateAt(0L), 1000L);
+        Assert.assertEquals(schedule.rateAt(TimeUnit.SECONDS.toNanos(60L) - 1L), 1000L);
+        Assert.assertEquals(schedule.rateAt(TimeUnit.SECONDS.toNanos(60L)), 2000L);
+        Assert.assertEquals(schedule.rateAt(TimeUnit.SECONDS.toNanos(89L)), 2000L);
+        Assert.assertEquals(schedule.rateAt(TimeUnit.SECONDS.toNanos(90L)), 5000L);
+        Assert.assertEquals(schedule.rateAt(TimeUnit.HOURS.toNanos(1L)), 5000L);
+        Assert.assertEquals(schedule.toString(), "1000:60,2000:30,5000");
+    }
+
+    public void schedulesWithTheSameStepsAreEqual() {
+        Assert.assertEquals(RateSchedule.parse("10:5,20"), RateSchedule.parse("10:5, 20"));
+        Assert.assertEquals(RateSchedule.parse("10:5,20").hashCode(), RateSchedule.parse("10:5, 20").hashCode());
+        Assert.assertNotEquals(RateSchedule.parse("10:5,20"), RateSchedule.parse("10:6,20"));
+    }
+
+    public void invalidSchedulesAreRejected() {
+        final String[] invalid = {"", "fast", "0", "-5", "1000,2000", "1000:0,2000", "1000:10:20", "1000:"};
+
+        for (String value : invalid) {
+            try {
+                RateSchedule.parse(value);
+                Assert.fail("Schedule should be rejected: " + value);
+            } catch (IllegalArgumentException e) {
+                Assert.assertNotNull(e.getMessage());
+            }
+        }
+    }
+}